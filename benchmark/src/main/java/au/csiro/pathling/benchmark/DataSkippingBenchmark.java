@@ -0,0 +1,196 @@
+/*
+ * Copyright © 2018-2026 Commonwealth Scientific and Industrial Research
+ * Organisation (CSIRO) ABN 41 687 119 230.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.pathling.benchmark;
+
+import static org.apache.spark.sql.functions.col;
+import static org.apache.spark.sql.functions.concat;
+import static org.apache.spark.sql.functions.lit;
+
+import au.csiro.pathling.library.PathlingContext;
+import au.csiro.pathling.library.io.sink.DeltaOptimizer;
+import au.csiro.pathling.library.io.sink.FileStatistics;
+import au.csiro.pathling.library.io.sink.WriteDetails;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.SparkSession;
+import org.apache.spark.sql.delta.DeltaLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks measuring a patient-scoped Observation search before and after the table is
+ * clustered by subject.
+ *
+ * <p>The Observation test data is replicated, with each copy referring to a distinct set of
+ * patients, and written in arrival order to many small files. The clustered layout then rewrites
+ * the table using {@link DeltaOptimizer}. The number of files that Delta must read for the search,
+ * based on the statistics of each file, is printed at the end of each trial.
+ *
+ * @author John Grimes
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class DataSkippingBenchmark {
+
+  /** The number of files that the table is written to before it is optimised. */
+  private static final int INITIAL_FILES = 50;
+
+  /** The number of copies of the Observation test data in the table. */
+  @Nullable
+  @Param({"1", "10"})
+  private String scale;
+
+  /** The layout of the table: {@code unclustered} or {@code clustered}. */
+  @Nullable
+  @Param({"unclustered", "clustered"})
+  private String layout;
+
+  @Nullable private Path temporaryDirectory;
+
+  @Nullable private SparkSession spark;
+
+  @Nullable private String tablePath;
+
+  @Nullable private String subject;
+
+  /** Writes the Observation table, and clusters it if required. */
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    spark =
+        SparkSession.builder()
+            .appName("DataSkippingBenchmark")
+            .master("local[*]")
+            .config("spark.sql.extensions", "io.delta.sql.DeltaSparkSessionExtension")
+            .config(
+                "spark.sql.catalog.spark_catalog",
+                "org.apache.spark.sql.delta.catalog.DeltaCatalog")
+            .getOrCreate();
+    final PathlingContext pathlingContext = PathlingContext.create(spark);
+    temporaryDirectory = Files.createTempDirectory("pathling-benchmark-data-skipping-");
+    final String databasePath = temporaryDirectory.resolve("database").toString();
+
+    // Replicate the Observation test data, giving each copy distinct resource IDs and subjects.
+    final Path ndjson = temporaryDirectory.resolve("Observation.ndjson");
+    try (final InputStream in =
+        Objects.requireNonNull(
+            Thread.currentThread()
+                .getContextClassLoader()
+                .getResourceAsStream("bulk/fhir/Observation.ndjson"))) {
+      Files.copy(in, ndjson);
+    }
+    final Dataset<Row> observations =
+        pathlingContext.encode(spark.read().text(ndjson.toString()), "Observation");
+    Dataset<Row> replicated = observations;
+    for (int copy = 1; copy < Integer.parseInt(Objects.requireNonNull(scale)); copy++) {
+      final String suffix = "-" + copy;
+      replicated =
+          replicated.unionByName(
+              observations
+                  .withColumn("id", concat(col("id"), lit(suffix)))
+                  .withColumn(
+                      "subject",
+                      col("subject")
+                          .withField("reference", concat(col("subject.reference"), lit(suffix)))));
+    }
+    final long count = replicated.count();
+    final WriteDetails details =
+        pathlingContext
+            .read()
+            .datasets()
+            .dataset("Observation", replicated.coalesce(1))
+            .write()
+            .saveMode("overwrite")
+            .maxRecordsPerFile(Math.max(1, count / INITIAL_FILES))
+            .delta(databasePath);
+    tablePath = details.fileInfos().get(0).absoluteUrl();
+
+    if ("clustered".equals(layout)) {
+      final FileStatistics statistics = details.fileStatistics().get("Observation");
+      new DeltaOptimizer(pathlingContext, databasePath, statistics.totalBytes() / INITIAL_FILES)
+          .optimize(Map.of("Observation", List.of("subject.reference")));
+    }
+    subject = table().select("subject.reference").first().getString(0);
+  }
+
+  /** Reports the number of files read by the search and removes the temporary files. */
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    final Dataset<Row> files =
+        DeltaLog.forTable(spark, Objects.requireNonNull(tablePath))
+            .unsafeVolatileSnapshot()
+            .withStats();
+    // Files without statistics on the subject cannot be skipped.
+    final long filesRead =
+        files
+            .filter(
+                col("stats.minValues.subject.reference")
+                    .isNull()
+                    .or(
+                        col("stats.minValues.subject.reference")
+                            .leq(subject)
+                            .and(col("stats.maxValues.subject.reference").geq(subject))))
+            .count();
+    System.out.printf(
+        "%nFiles read with layout '%s': %d of %d%n", layout, filesRead, files.count());
+    FileUtils.deleteDirectory(Objects.requireNonNull(temporaryDirectory).toFile());
+  }
+
+  /**
+   * Retrieves the Observations of a single patient.
+   *
+   * @return the matching Observations
+   */
+  @Benchmark
+  public List<Row> patientObservations() {
+    return table().filter(col("subject.reference").equalTo(subject)).collectAsList();
+  }
+
+  @Nonnull
+  private Dataset<Row> table() {
+    return Objects.requireNonNull(spark)
+        .read()
+        .format("delta")
+        .load(Objects.requireNonNull(tablePath));
+  }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright © 2018-2026 Commonwealth Scientific and Industrial Research
+ * Organisation (CSIRO) ABN 41 687 119 230.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.pathling.benchmark;
+
+import static org.apache.spark.sql.functions.concat;
+import static org.apache.spark.sql.functions.lit;
+
+import au.csiro.pathling.library.PathlingContext;
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.parser.IParser;
+import jakarta.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serial;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.apache.spark.api.java.function.MapPartitionsFunction;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Encoders;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.SparkSession;
+import org.hl7.fhir.r4.model.Observation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks comparing the serialisation of encoded resources to FHIR JSON directly from the
+ * encoded rows with the previous approach of decoding each row into a HAPI object and serialising
+ * it with the HAPI JSON parser.
+ *
+ * @author John Grimes
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class JsonExportBenchmark {
+
+  /** The number of copies of the Observation test data that are serialised. */
+  @Nullable
+  @Param({"1", "10"})
+  private String scale;
+
+  @Nullable private PathlingContext pathlingContext;
+
+  @Nullable private Path temporaryDirectory;
+
+  @Nullable private Dataset<Row> observations;
+
+  /** Encodes and caches the Observation test data. */
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    final SparkSession spark =
+        SparkSession.builder().appName("JsonExportBenchmark").master("local[*]").getOrCreate();
+    pathlingContext = PathlingContext.create(spark);
+    temporaryDirectory = Files.createTempDirectory("pathling-benchmark-json-export-");
+
+    final Path ndjson = temporaryDirectory.resolve("Observation.ndjson");
+    try (final InputStream in =
+        Objects.requireNonNull(
+            Thread.currentThread()
+                .getContextClassLoader()
+                .getResourceAsStream("bulk/fhir/Observation.ndjson"))) {
+      Files.copy(in, ndjson);
+    }
+    final Dataset<Row> encoded =
+        pathlingContext.encode(spark.read().text(ndjson.toString()), "Observation");
+    Dataset<Row> replicated = encoded;
+    for (int copy = 1; copy < Integer.parseInt(Objects.requireNonNull(scale)); copy++) {
+      replicated =
+          replicated.unionByName(
+              encoded.withColumn("id", concat(encoded.col("id"), lit("-" + copy))));
+    }
+    observations = replicated.cache();
+    observations.count();
+  }
+
+  /** Removes the temporary files. */
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    Objects.requireNonNull(observations).unpersist();
+    FileUtils.deleteDirectory(Objects.requireNonNull(temporaryDirectory).toFile());
+  }
+
+  /**
+   * Writes the JSON directly from the encoded rows.
+   *
+   * @return the number of resources serialised
+   */
+  @Benchmark
+  public long directWriter() {
+    return Objects.requireNonNull(pathlingContext)
+        .decode(Objects.requireNonNull(observations), "Observation", PathlingContext.FHIR_JSON)
+        .count();
+  }
+
+  /**
+   * Decodes each row into a HAPI object and serialises it with the HAPI JSON parser, which is the
+   * baseline for the direct writer.
+   *
+   * @return the number of resources serialised
+   */
+  @Benchmark
+  public long hapiParser() {
+    return Objects.requireNonNull(observations)
+        .as(Objects.requireNonNull(pathlingContext).getFhirEncoders().of(Observation.class))
+        .mapPartitions(new HapiJsonSerialiser(), Encoders.STRING())
+        .count();
+  }
+
+  /** Serialises each resource within a partition using the HAPI JSON parser. */
+  private static class HapiJsonSerialiser implements MapPartitionsFunction<Observation, String> {
+
+    @Serial private static final long serialVersionUID = 5121736457262218871L;
+
+    @Override
+    public Iterator<String> call(final Iterator<Observation> iterator) {
+      final IParser parser = FhirContext.forR4Cached().newJsonParser();
+      return new Iterator<>() {
+        @Override
+        public boolean hasNext() {
+          return iterator.hasNext();
+        }
+
+        @Override
+        public String next() {
+          return parser.encodeResourceToString(iterator.next());
+        }
+      };
+    }
+  }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright © 2018-2026 Commonwealth Scientific and Industrial Research
+ * Organisation (CSIRO) ABN 41 687 119 230.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.pathling.benchmark;
+
+import static org.apache.spark.sql.functions.concat;
+import static org.apache.spark.sql.functions.lit;
+
+import au.csiro.pathling.library.PathlingContext;
+import au.csiro.pathling.library.io.source.DatasetSource;
+import jakarta.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.apache.commons.io.FileUtils;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.SparkSession;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks measuring the time taken to write NDJSON with each of the supported compression
+ * codecs. The size of the output written with each codec is printed at the end of each trial.
+ *
+ * @author John Grimes
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class NdjsonCompressionBenchmark {
+
+  /** The number of copies of the Observation test data that are written. */
+  @Nullable
+  @Param({"1", "10"})
+  private String scale;
+
+  /** The compression codec used to write the output. */
+  @Nullable
+  @Param({"none", "gzip", "bzip2", "zstd"})
+  private String compression;
+
+  @Nullable private Path temporaryDirectory;
+
+  @Nullable private Dataset<Row> observations;
+
+  @Nullable private DatasetSource source;
+
+  /** Encodes and caches the Observation test data. */
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    final SparkSession spark =
+        SparkSession.builder()
+            .appName("NdjsonCompressionBenchmark")
+            .master("local[*]")
+            .getOrCreate();
+    final PathlingContext pathlingContext = PathlingContext.create(spark);
+    temporaryDirectory = Files.createTempDirectory("pathling-benchmark-ndjson-compression-");
+
+    final Path ndjson = temporaryDirectory.resolve("Observation.ndjson");
+    try (final InputStream in =
+        Objects.requireNonNull(
+            Thread.currentThread()
+                .getContextClassLoader()
+                .getResourceAsStream("bulk/fhir/Observation.ndjson"))) {
+      Files.copy(in, ndjson);
+    }
+    final Dataset<Row> encoded =
+        pathlingContext.encode(spark.read().text(ndjson.toString()), "Observation");
+    Dataset<Row> replicated = encoded;
+    for (int copy = 1; copy < Integer.parseInt(Objects.requireNonNull(scale)); copy++) {
+      replicated =
+          replicated.unionByName(
+              encoded.withColumn("id", concat(encoded.col("id"), lit("-" + copy))));
+    }
+    observations = replicated.cache();
+    observations.count();
+    source = pathlingContext.read().datasets().dataset("Observation", observations);
+  }
+
+  /** Reports the size of the output and removes the temporary files. */
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    final Path output = Objects.requireNonNull(temporaryDirectory).resolve("output");
+    try (final Stream<Path> files = Files.list(output)) {
+      final long bytes =
+          files
+              .mapToLong(
+                  file -> {
+                    try {
+                      return Files.size(file);
+                    } catch (final IOException e) {
+                      throw new RuntimeException(e);
+                    }
+                  })
+              .sum();
+      System.out.printf("%nOutput size with compression '%s': %d bytes%n", compression, bytes);
+    }
+    Objects.requireNonNull(observations).unpersist();
+    FileUtils.deleteDirectory(temporaryDirectory.toFile());
+  }
+
+  /** Writes the Observations to NDJSON using the configured compression codec. */
+  @Benchmark
+  public void write() {
+    Objects.requireNonNull(source)
+        .write()
+        .saveMode("overwrite")
+        .compression(Objects.requireNonNull(compression))
+        .ndjson(Objects.requireNonNull(temporaryDirectory).resolve("output").toString());
+  }
+}
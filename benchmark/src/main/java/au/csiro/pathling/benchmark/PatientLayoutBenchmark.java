@@ -0,0 +1,246 @@
+/*
+ * Copyright © 2018-2026 Commonwealth Scientific and Industrial Research
+ * Organisation (CSIRO) ABN 41 687 119 230.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.pathling.benchmark;
+
+import static org.apache.spark.sql.functions.col;
+import static org.apache.spark.sql.functions.concat;
+import static org.apache.spark.sql.functions.lit;
+
+import au.csiro.pathling.library.PathlingContext;
+import au.csiro.pathling.library.io.sink.DeltaOptimizer;
+import au.csiro.pathling.library.io.sink.WriteDetails;
+import au.csiro.pathling.library.io.source.DatasetSource;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.apache.spark.sql.Column;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Encoders;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.SparkSession;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks measuring patient-scoped reads with and without a patient-keyed table layout.
+ *
+ * <p>The Patient, Condition and Encounter test data is replicated, with each copy describing a
+ * distinct set of patients, and written in arrival order to many small files. The patient layout
+ * then clusters each table by its patient key: the ID of each Patient, and the subject reference of
+ * each Condition and Encounter. The test data contains 125 patients, so a scale of 80 gives a
+ * cohort of 10,000 patients for the group export.
+ *
+ * @author John Grimes
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PatientLayoutBenchmark {
+
+  /** The number of files that each table is written to before it is optimised. */
+  private static final int INITIAL_FILES = 50;
+
+  /** The maximum number of patients within the group that is exported. */
+  private static final int GROUP_SIZE = 10_000;
+
+  /** The columns that hold the patient key of each resource type. */
+  private static final Map<String, String> PATIENT_KEYS =
+      Map.of("Patient", "id", "Condition", "subject.reference", "Encounter", "subject.reference");
+
+  /** The number of copies of the test data in each table. */
+  @Nullable
+  @Param({"1", "80"})
+  private String scale;
+
+  /** The layout of the tables: {@code arrival} or {@code patient}. */
+  @Nullable
+  @Param({"arrival", "patient"})
+  private String layout;
+
+  @Nullable private PathlingContext pathlingContext;
+
+  @Nullable private Path temporaryDirectory;
+
+  @Nullable private Map<String, String> tablePaths;
+
+  @Nullable private String patientId;
+
+  @Nullable private List<String> groupMembers;
+
+  /** Writes the tables, and clusters them by patient if required. */
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    final SparkSession spark =
+        SparkSession.builder()
+            .appName("PatientLayoutBenchmark")
+            .master("local[*]")
+            .config("spark.sql.extensions", "io.delta.sql.DeltaSparkSessionExtension")
+            .config(
+                "spark.sql.catalog.spark_catalog",
+                "org.apache.spark.sql.delta.catalog.DeltaCatalog")
+            .getOrCreate();
+    pathlingContext = PathlingContext.create(spark);
+    temporaryDirectory = Files.createTempDirectory("pathling-benchmark-patient-layout-");
+    final String databasePath = temporaryDirectory.resolve("database").toString();
+
+    tablePaths = new HashMap<>();
+    final Map<String, Long> tableSizes = new HashMap<>();
+    for (final String resourceType : PATIENT_KEYS.keySet()) {
+      final Dataset<Row> resources = replicate(resourceType);
+      final long count = resources.count();
+      final WriteDetails details =
+          pathlingContext
+              .read()
+              .datasets()
+              .dataset(resourceType, resources.coalesce(1))
+              .write()
+              .saveMode("overwrite")
+              .maxRecordsPerFile(Math.max(1, count / INITIAL_FILES))
+              .delta(databasePath);
+      tablePaths.put(resourceType, details.fileInfos().get(0).absoluteUrl());
+      tableSizes.put(resourceType, details.fileStatistics().get(resourceType).totalBytes());
+    }
+
+    if ("patient".equals(layout)) {
+      for (final Map.Entry<String, String> key : PATIENT_KEYS.entrySet()) {
+        new DeltaOptimizer(
+                pathlingContext, databasePath, tableSizes.get(key.getKey()) / INITIAL_FILES)
+            .optimize(Map.of(key.getKey(), List.of(key.getValue())));
+      }
+    }
+
+    final Dataset<String> ids = table("Patient").select("id").orderBy("id").as(Encoders.STRING());
+    patientId = ids.first();
+    groupMembers = ids.limit(GROUP_SIZE).collectAsList();
+  }
+
+  /** Removes the temporary tables. */
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    FileUtils.deleteDirectory(Objects.requireNonNull(temporaryDirectory).toFile());
+  }
+
+  /**
+   * Retrieves all the resources within the compartment of a single patient, in the manner of the
+   * {@code $everything} operation.
+   *
+   * @return the number of resources retrieved
+   */
+  @Benchmark
+  public long patientEverything() {
+    long resources = 0;
+    for (final String resourceType : PATIENT_KEYS.keySet()) {
+      resources +=
+          table(resourceType)
+              .filter(patientFilter(resourceType, List.of(Objects.requireNonNull(patientId))))
+              .collectAsList()
+              .size();
+    }
+    return resources;
+  }
+
+  /**
+   * Exports the resources within the compartments of the patients within a group to NDJSON.
+   *
+   * @return the path of the export
+   */
+  @Benchmark
+  public String groupExport() {
+    final String outputPath =
+        Objects.requireNonNull(temporaryDirectory).resolve("export").toString();
+    final DatasetSource source = Objects.requireNonNull(pathlingContext).read().datasets();
+    for (final String resourceType : PATIENT_KEYS.keySet()) {
+      source.dataset(
+          resourceType,
+          table(resourceType)
+              .filter(patientFilter(resourceType, Objects.requireNonNull(groupMembers))));
+    }
+    source.write().saveMode("overwrite").ndjson(outputPath);
+    return outputPath;
+  }
+
+  @Nonnull
+  private Dataset<Row> replicate(@Nonnull final String resourceType) throws IOException {
+    final Path ndjson =
+        Objects.requireNonNull(temporaryDirectory).resolve(resourceType + ".ndjson");
+    try (final InputStream in =
+        Objects.requireNonNull(
+            Thread.currentThread()
+                .getContextClassLoader()
+                .getResourceAsStream("bulk/fhir/" + resourceType + ".ndjson"))) {
+      Files.copy(in, ndjson);
+    }
+    final Dataset<Row> resources =
+        Objects.requireNonNull(pathlingContext)
+            .encode(pathlingContext.getSpark().read().text(ndjson.toString()), resourceType);
+    Dataset<Row> replicated = resources;
+    for (int copy = 1; copy < Integer.parseInt(Objects.requireNonNull(scale)); copy++) {
+      final String suffix = "-" + copy;
+      Dataset<Row> renamed = resources.withColumn("id", concat(col("id"), lit(suffix)));
+      if (!"Patient".equals(resourceType)) {
+        renamed =
+            renamed.withColumn(
+                "subject",
+                col("subject")
+                    .withField("reference", concat(col("subject.reference"), lit(suffix))));
+      }
+      replicated = replicated.unionByName(renamed);
+    }
+    return replicated;
+  }
+
+  @Nonnull
+  private Column patientFilter(
+      @Nonnull final String resourceType, @Nonnull final List<String> patientIds) {
+    final String prefix = "Patient".equals(resourceType) ? "" : "Patient/";
+    return col(PATIENT_KEYS.get(resourceType))
+        .isin(patientIds.stream().map(id -> prefix + id).toArray());
+  }
+
+  @Nonnull
+  private Dataset<Row> table(@Nonnull final String resourceType) {
+    return Objects.requireNonNull(pathlingContext)
+        .getSpark()
+        .read()
+        .format("delta")
+        .load(Objects.requireNonNull(tablePaths).get(resourceType));
+  }
+}
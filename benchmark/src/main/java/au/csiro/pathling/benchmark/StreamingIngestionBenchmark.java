@@ -0,0 +1,171 @@
+/*
+ * Copyright © 2018-2026 Commonwealth Scientific and Industrial Research
+ * Organisation (CSIRO) ABN 41 687 119 230.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package au.csiro.pathling.benchmark;
+
+import au.csiro.pathling.library.PathlingContext;
+import au.csiro.pathling.library.io.sink.StreamingDeltaSink;
+import jakarta.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.apache.commons.io.FileUtils;
+import org.apache.spark.sql.SparkSession;
+import org.apache.spark.sql.streaming.StreamingQuery;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A file-drop harness that measures the end-to-end latency of streaming ingestion into Delta
+ * tables.
+ *
+ * <p>Each invocation drops a number of NDJSON files into the directory that is monitored by a
+ * running {@link StreamingDeltaSink}, and waits until they have been merged into the tables. The
+ * reported time is the latency between a file arriving and its resources becoming visible. The
+ * throughput of the stream is the number of resources dropped per invocation divided by this time.
+ *
+ * @author John Grimes
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class StreamingIngestionBenchmark {
+
+  /** The number of NDJSON files that are dropped in each invocation. */
+  @Nullable
+  @Param({"1", "10"})
+  private String filesPerDrop;
+
+  /** The maximum number of files that are included in each micro-batch, or 0 for no limit. */
+  @Nullable
+  @Param({"0", "1"})
+  private String maxFilesPerTrigger;
+
+  @Nullable private Path temporaryDirectory;
+
+  @Nullable private Path inputPath;
+
+  @Nullable private List<String> observations;
+
+  @Nullable private StreamingQuery query;
+
+  private int drop = 0;
+
+  /** Starts the stream, with an initial table created from the Observation test data. */
+  @Setup(Level.Trial)
+  public void setup() throws IOException, TimeoutException {
+    final SparkSession spark =
+        SparkSession.builder()
+            .appName("StreamingIngestionBenchmark")
+            .master("local[*]")
+            .config("spark.sql.extensions", "io.delta.sql.DeltaSparkSessionExtension")
+            .config(
+                "spark.sql.catalog.spark_catalog",
+                "org.apache.spark.sql.delta.catalog.DeltaCatalog")
+            .getOrCreate();
+    final PathlingContext pathlingContext = PathlingContext.create(spark);
+    temporaryDirectory = Files.createTempDirectory("pathling-benchmark-streaming-");
+    inputPath = Files.createDirectory(temporaryDirectory.resolve("input"));
+    try (final InputStream in =
+        Objects.requireNonNull(
+            Thread.currentThread()
+                .getContextClassLoader()
+                .getResourceAsStream("bulk/fhir/Observation.ndjson"))) {
+      observations =
+          new String(in.readAllBytes(), StandardCharsets.UTF_8)
+              .lines()
+              .filter(line -> !line.isBlank())
+              .toList();
+    }
+
+    StreamingDeltaSink sink =
+        StreamingDeltaSink.ndjson(
+            pathlingContext,
+            inputPath.toString(),
+            temporaryDirectory.resolve("database").toString(),
+            temporaryDirectory.resolve("checkpoint").toString());
+    final int maxFiles = Integer.parseInt(Objects.requireNonNull(maxFilesPerTrigger));
+    if (maxFiles > 0) {
+      sink = sink.maxFilesPerTrigger(maxFiles);
+    }
+    query = sink.start();
+
+    // Create the table before measuring, so that each drop is merged into an existing table.
+    dropFiles(1);
+    query.processAllAvailable();
+  }
+
+  /** Stops the stream and removes the temporary files. */
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException, TimeoutException {
+    Objects.requireNonNull(query).stop();
+    FileUtils.deleteDirectory(Objects.requireNonNull(temporaryDirectory).toFile());
+  }
+
+  /**
+   * Drops new files into the input directory and waits until the stream has ingested them.
+   *
+   * @return the number of resources that were dropped
+   * @throws IOException if the files cannot be written
+   */
+  @Benchmark
+  public int dropAndIngest() throws IOException {
+    final int resources = dropFiles(Integer.parseInt(Objects.requireNonNull(filesPerDrop)));
+    Objects.requireNonNull(query).processAllAvailable();
+    return resources;
+  }
+
+  /**
+   * Writes a number of copies of the Observation test data to the input directory. Each copy has
+   * distinct resource IDs, so that every resource is inserted into the table.
+   */
+  private int dropFiles(final int files) throws IOException {
+    int resources = 0;
+    for (int file = 0; file < files; file++) {
+      final String prefix = "drop" + drop++ + "-";
+      final List<String> lines =
+          Objects.requireNonNull(observations).stream()
+              .map(line -> line.replaceFirst("\"id\":\"", "\"id\":\"" + prefix))
+              .toList();
+      // Write to a hidden file and rename it, so that the stream never sees a partial file.
+      final Path staging = Objects.requireNonNull(inputPath).resolve("." + prefix + "ndjson");
+      Files.write(staging, lines, StandardCharsets.UTF_8);
+      Files.move(staging, inputPath.resolve(prefix + "Observation.ndjson"));
+      resources += lines.size();
+    }
+    return resources;
+  }
+}
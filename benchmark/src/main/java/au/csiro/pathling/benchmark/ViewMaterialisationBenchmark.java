@@ -0,0 +1,214 @@
+/*
+ * Copyright © 2018-2026 Commonwealth Scientific and Industrial Research
+ * Organisation (CSIRO) ABN 41 687 119 230.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package au.csiro.pathling.benchmark;
+
+import static au.csiro.pathling.views.FhirView.column;
+import static au.csiro.pathling.views.FhirView.forEach;
+import static au.csiro.pathling.views.FhirView.select;
+import static org.apache.spark.sql.functions.concat;
+import static org.apache.spark.sql.functions.lit;
+
+import au.csiro.pathling.library.PathlingContext;
+import au.csiro.pathling.library.query.ViewMaterialiser;
+import au.csiro.pathling.library.query.ViewMaterialiser.MaterialisationResult;
+import au.csiro.pathling.views.FhirView;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.SaveMode;
+import org.apache.spark.sql.SparkSession;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks comparing an incremental refresh of a materialised view with a full rebuild.
+ *
+ * <p>The Observation test data is replicated to produce source tables of different sizes. Before
+ * each invocation, a fixed number of resources in the source table are updated. The cost of the
+ * incremental refresh should follow the number of changed resources, while the cost of the rebuild
+ * should follow the size of the table.
+ *
+ * @author John Grimes
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ViewMaterialisationBenchmark {
+
+  private static final FhirView VIEW =
+      FhirView.ofResource("Observation")
+          .select(
+              select(
+                  column("id", "id"),
+                  column("status", "status"),
+                  column("patient", "subject.getReferenceKey()")),
+              forEach("code.coding", column("system", "system"), column("code", "code")))
+          .build();
+
+  /** The number of copies of the Observation test data in the source table. */
+  @Nullable
+  @Param({"1", "10", "50"})
+  private String scale;
+
+  /** The number of resources that are updated before each invocation. */
+  @Nullable
+  @Param({"10", "1000"})
+  private String changedResources;
+
+  @Nullable private PathlingContext pathlingContext;
+
+  @Nullable private Path temporaryDirectory;
+
+  @Nullable private String databasePath;
+
+  @Nullable private Dataset<Row> resourcesToChange;
+
+  @Nullable private ViewMaterialiser materialiser;
+
+  private int invocation = 0;
+
+  /** Creates the source table and an initial materialisation of the view. */
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    final SparkSession spark =
+        SparkSession.builder()
+            .appName("ViewMaterialisationBenchmark")
+            .master("local[*]")
+            .config("spark.sql.extensions", "io.delta.sql.DeltaSparkSessionExtension")
+            .config(
+                "spark.sql.catalog.spark_catalog",
+                "org.apache.spark.sql.delta.catalog.DeltaCatalog")
+            .getOrCreate();
+    pathlingContext = PathlingContext.create(spark);
+    temporaryDirectory = Files.createTempDirectory("pathling-benchmark-materialisation-");
+    databasePath = temporaryDirectory.resolve("database").toString();
+
+    // Replicate the Observation test data, giving each copy distinct resource IDs.
+    final Path ndjson = temporaryDirectory.resolve("Observation.ndjson");
+    try (final InputStream in =
+        Objects.requireNonNull(
+            Thread.currentThread()
+                .getContextClassLoader()
+                .getResourceAsStream("bulk/fhir/Observation.ndjson"))) {
+      Files.copy(in, ndjson);
+    }
+    final Dataset<Row> observations =
+        pathlingContext.encode(spark.read().text(ndjson.toString()), "Observation");
+    Dataset<Row> replicated = observations;
+    for (int copy = 1; copy < Integer.parseInt(Objects.requireNonNull(scale)); copy++) {
+      replicated =
+          replicated.unionByName(
+              observations.withColumn("id", concat(observations.col("id"), lit("-" + copy))));
+    }
+    pathlingContext
+        .read()
+        .datasets()
+        .dataset("Observation", replicated)
+        .write()
+        .saveMode("overwrite")
+        .delta(databasePath);
+
+    resourcesToChange =
+        spark
+            .read()
+            .format("delta")
+            .load(databasePath + "/Observation.parquet")
+            .orderBy("id")
+            .limit(Integer.parseInt(Objects.requireNonNull(changedResources)))
+            .cache();
+    materialiser = new ViewMaterialiser(pathlingContext, databasePath);
+    materialiser.materialise(VIEW, getOutputPath("materialised"));
+  }
+
+  /** Updates a fixed number of resources within the source table. */
+  @Setup(Level.Invocation)
+  public void changeResources() {
+    final String status = invocation++ % 2 == 0 ? "amended" : "final";
+    Objects.requireNonNull(pathlingContext)
+        .read()
+        .datasets()
+        .dataset(
+            "Observation",
+            Objects.requireNonNull(resourcesToChange).withColumn("status", lit(status)))
+        .write()
+        .saveMode("merge")
+        .delta(Objects.requireNonNull(databasePath));
+  }
+
+  /** Removes the temporary tables. */
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    FileUtils.deleteDirectory(Objects.requireNonNull(temporaryDirectory).toFile());
+  }
+
+  /**
+   * Brings the materialised view up to date using the change data feed of the source table.
+   *
+   * @return the result of the materialisation
+   */
+  @Benchmark
+  public MaterialisationResult incrementalRefresh() {
+    return Objects.requireNonNull(materialiser).materialise(VIEW, getOutputPath("materialised"));
+  }
+
+  /**
+   * Rebuilds the view from the entire source table, which is the baseline for the refresh.
+   *
+   * @return the path of the rebuilt table
+   */
+  @Benchmark
+  public String fullRebuild() {
+    final String outputPath = getOutputPath("rebuilt");
+    Objects.requireNonNull(pathlingContext)
+        .read()
+        .delta(Objects.requireNonNull(databasePath))
+        .view(VIEW)
+        .execute()
+        .write()
+        .format("delta")
+        .mode(SaveMode.Overwrite)
+        .save(outputPath);
+    return outputPath;
+  }
+
+  @Nonnull
+  private String getOutputPath(@Nonnull final String name) {
+    return Objects.requireNonNull(temporaryDirectory).resolve(name).toString();
+  }
+}
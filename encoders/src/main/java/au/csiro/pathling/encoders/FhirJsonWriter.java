@@ -0,0 +1,774 @@
+/*
+ * This is a modified version of the Bunsen library, originally published at
+ * https://github.com/cerner/bunsen.
+ *
+ * Bunsen is copyright 2017 Cerner Innovation, Inc., and is licensed under
+ * the Apache License, version 2.0 (http://www.apache.org/licenses/LICENSE-2.0).
+ *
+ * These modifications are copyright 2018-2026 Commonwealth Scientific
+ * and Industrial Research Organisation (CSIRO) ABN 41 687 119 230.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package au.csiro.pathling.encoders;
+
+import au.csiro.pathling.encoders.datatypes.DecimalCustomCoder;
+import au.csiro.pathling.encoders.datatypes.IdCustomCoder;
+import ca.uhn.fhir.context.BaseRuntimeChildDefinition;
+import ca.uhn.fhir.context.BaseRuntimeElementCompositeDefinition;
+import ca.uhn.fhir.context.BaseRuntimeElementDefinition;
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.RuntimeChildChoiceDefinition;
+import ca.uhn.fhir.context.RuntimeChildContainedResources;
+import ca.uhn.fhir.context.RuntimeChildExtension;
+import ca.uhn.fhir.context.RuntimeResourceDefinition;
+import ca.uhn.fhir.model.api.TemporalPrecisionEnum;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.spark.sql.catalyst.InternalRow;
+import org.apache.spark.sql.catalyst.expressions.SpecializedGetters;
+import org.apache.spark.sql.catalyst.util.ArrayData;
+import org.apache.spark.sql.catalyst.util.DateTimeUtils;
+import org.apache.spark.sql.catalyst.util.MapData;
+import org.apache.spark.sql.types.ArrayType;
+import org.apache.spark.sql.types.BinaryType;
+import org.apache.spark.sql.types.BooleanType;
+import org.apache.spark.sql.types.DataType;
+import org.apache.spark.sql.types.DecimalType;
+import org.apache.spark.sql.types.IntegerType;
+import org.apache.spark.sql.types.MapType;
+import org.apache.spark.sql.types.StringType;
+import org.apache.spark.sql.types.StructType;
+import org.apache.spark.sql.types.TimestampType;
+import org.hl7.fhir.instance.model.api.IBaseReference;
+import org.hl7.fhir.r4.model.Base64BinaryType;
+import org.hl7.fhir.r4.model.Extension;
+import org.hl7.fhir.r4.model.IdType;
+import org.hl7.fhir.r4.model.InstantType;
+
+/**
+ * Writes encoded resources directly to FHIR JSON, without first decoding them into HAPI objects.
+ *
+ * <p>The writer is built once for a resource type and the schema of its encoded rows. It walks the
+ * HAPI definition of the resource alongside the schema, and produces a tree of field writers that
+ * read values straight out of each {@link InternalRow} and stream them to a Jackson generator. The
+ * output is the same as that produced by the HAPI JSON parser for the decoded resource: elements
+ * appear in definition order, empty elements are omitted, and extensions are restored from the
+ * extension map of the resource. Elements that are not present within the schema (such as those
+ * beyond the maximum nesting level, or contained resources) are not written, as they would not be
+ * present within the decoded resource either.
+ *
+ * <p>Instances are not thread safe, and should be created once per partition.
+ *
+ * @author John Grimes
+ */
+public class FhirJsonWriter {
+
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+  private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+  private static final String ID_ELEMENT_NAME = "id";
+
+  private static final String URL_ELEMENT_NAME = "url";
+
+  private static final String META_ELEMENT_NAME = "meta";
+
+  private static final String VERSION_ID_ELEMENT_NAME = "versionId";
+
+  @Nonnull private final String resourceType;
+
+  @Nonnull private final CompositeWriter resourceWriter;
+
+  private final int extensionsOrdinal;
+
+  @Nullable private final CompositeWriter extensionWriter;
+
+  @Nullable private final CompositeWriter nestedExtensionWriter;
+
+  @Nonnull private final Output output = new Output();
+
+  @Nonnull private final Map<Integer, Integer> extensionIndex = new HashMap<>();
+
+  @Nullable private ArrayData extensionValues;
+
+  /**
+   * The version of the resource being written, taken from its ID. HAPI writes this into the meta
+   * element of the resource if it does not already have a version.
+   */
+  @Nullable private String versionId;
+
+  private FhirJsonWriter(
+      @Nonnull final FhirContext fhirContext,
+      @Nonnull final String resourceType,
+      @Nonnull final StructType schema) {
+    this.resourceType = resourceType;
+    final RuntimeResourceDefinition definition = fhirContext.getResourceDefinition(resourceType);
+    extensionsOrdinal =
+        Arrays.asList(schema.fieldNames()).indexOf(ExtensionSupport.EXTENSIONS_FIELD_NAME());
+
+    // The extensions of all elements within the resource are stored in a single map, so the writers
+    // for the values of this map are shared by all elements. Extensions directly on an element are
+    // only written if they have content, while extensions nested within other extensions are always
+    // written.
+    if (extensionsOrdinal >= 0) {
+      final MapType extensionsType = (MapType) schema.apply(extensionsOrdinal).dataType();
+      final StructType extensionType =
+          (StructType) ((ArrayType) extensionsType.valueType()).elementType();
+      final BaseRuntimeElementCompositeDefinition<?> extensionDefinition =
+          (BaseRuntimeElementCompositeDefinition<?>)
+              definition
+                  .getChildByName(ExtensionSupport.EXTENSION_ELEMENT_NAME())
+                  .getChildByName(ExtensionSupport.EXTENSION_ELEMENT_NAME());
+      extensionWriter = new CompositeWriter(true);
+      nestedExtensionWriter = new CompositeWriter(false);
+      extensionWriter.initialise(this, extensionDefinition, extensionType, false);
+      nestedExtensionWriter.initialise(this, extensionDefinition, extensionType, false);
+    } else {
+      extensionWriter = null;
+      nestedExtensionWriter = null;
+    }
+    resourceWriter = new CompositeWriter(false);
+    resourceWriter.initialise(this, definition, schema, false);
+  }
+
+  /**
+   * Creates a writer for resources of the specified type.
+   *
+   * @param fhirContext the FHIR context to use to obtain the definition of the resource
+   * @param resourceType the type of the resources
+   * @param schema the schema of the encoded resources
+   * @return a new writer
+   */
+  @Nonnull
+  public static FhirJsonWriter forSchema(
+      @Nonnull final FhirContext fhirContext,
+      @Nonnull final String resourceType,
+      @Nonnull final StructType schema) {
+    return new FhirJsonWriter(fhirContext, resourceType, schema);
+  }
+
+  /**
+   * Writes an encoded resource as FHIR JSON.
+   *
+   * @param row the encoded resource
+   * @return the JSON representation of the resource
+   */
+  @Nonnull
+  public String write(@Nonnull final InternalRow row) {
+    try {
+      indexExtensions(row);
+      versionId = null;
+      output.reset();
+      output.beginObject(null);
+      output.writeString("resourceType", resourceType);
+      resourceWriter.writeFields(row, output);
+      output.end();
+      return output.finish();
+    } catch (final IOException e) {
+      throw new UncheckedIOException("Failed to write resource as JSON", e);
+    }
+  }
+
+  private void indexExtensions(@Nonnull final InternalRow row) {
+    extensionIndex.clear();
+    extensionValues = null;
+    if (extensionsOrdinal < 0 || row.isNullAt(extensionsOrdinal)) {
+      return;
+    }
+    final MapData extensions = row.getMap(extensionsOrdinal);
+    if (extensions.numElements() == 0) {
+      return;
+    }
+    final ArrayData keys = extensions.keyArray();
+    extensionValues = extensions.valueArray();
+    for (int i = 0; i < extensions.numElements(); i++) {
+      extensionIndex.put(keys.getInt(i), i);
+    }
+  }
+
+  @Nullable
+  private ArrayData extensionsFor(final int fid) {
+    if (extensionValues == null) {
+      return null;
+    }
+    final Integer index = extensionIndex.get(fid);
+    return index == null || extensionValues.isNullAt(index)
+        ? null
+        : extensionValues.getArray(index);
+  }
+
+  /** Writes a single value, which is read from a row or an array at the specified ordinal. */
+  @FunctionalInterface
+  private interface ValueWriter {
+
+    void write(
+        @Nullable String name,
+        @Nonnull SpecializedGetters data,
+        int ordinal,
+        @Nonnull Output output)
+        throws IOException;
+  }
+
+  /** Writes a child element of a composite, which is read from the row of the composite. */
+  @FunctionalInterface
+  private interface FieldWriter {
+
+    void write(@Nonnull InternalRow row, @Nonnull Output output) throws IOException;
+  }
+
+  /**
+   * Writes the children of a composite element. Writers are created before they are initialised so
+   * that recursive structures (such as extensions within extensions) can refer to themselves.
+   */
+  private static class CompositeWriter implements ValueWriter {
+
+    /**
+     * Whether the ID and URL of an extension should only be written if the extension has a value or
+     * nested extensions.
+     */
+    private final boolean deferIdentity;
+
+    @Nonnull private FieldWriter[] fields = new FieldWriter[0];
+
+    private int numFields;
+
+    CompositeWriter(final boolean deferIdentity) {
+      this.deferIdentity = deferIdentity;
+    }
+
+    void initialise(
+        @Nonnull final FhirJsonWriter writer,
+        @Nonnull final BaseRuntimeElementCompositeDefinition<?> definition,
+        @Nonnull final StructType type,
+        final boolean resourceMeta) {
+      numFields = type.size();
+      final List<String> fieldNames = Arrays.asList(type.fieldNames());
+      final boolean isResource = definition instanceof RuntimeResourceDefinition;
+      final boolean isExtension = Extension.class.equals(definition.getImplementingClass());
+      final List<FieldWriter> writers = new ArrayList<>();
+
+      for (final BaseRuntimeChildDefinition child : orderedChildren(definition, isExtension)) {
+        final String elementName = child.getElementName();
+        if (child instanceof RuntimeChildContainedResources) {
+          // Contained resources are not encoded.
+          continue;
+        }
+        if (child instanceof RuntimeChildExtension) {
+          final int fidOrdinal = fieldNames.indexOf(ExtensionSupport.FID_FIELD_NAME());
+          // Modifier extensions are not encoded.
+          final CompositeWriter extensionWriter =
+              isExtension ? writer.nestedExtensionWriter : writer.extensionWriter;
+          if (extensionWriter != null
+              && fidOrdinal >= 0
+              && ExtensionSupport.EXTENSION_ELEMENT_NAME().equals(elementName)) {
+            writers.add(extensionsWriter(writer, fidOrdinal, extensionWriter));
+          }
+          continue;
+        }
+        if (isResource && ID_ELEMENT_NAME.equals(elementName)) {
+          final int ordinal =
+              fieldNames.indexOf(new IdCustomCoder(ID_ELEMENT_NAME).versionedName());
+          if (ordinal >= 0) {
+            writers.add(resourceIdWriter(writer, ordinal));
+          }
+          continue;
+        }
+        if (isExtension
+            && deferIdentity
+            && (ID_ELEMENT_NAME.equals(elementName) || URL_ELEMENT_NAME.equals(elementName))) {
+          final int ordinal = fieldNames.indexOf(elementName);
+          if (ordinal >= 0) {
+            writers.add(
+                (row, output) -> {
+                  if (!row.isNullAt(ordinal)) {
+                    output.deferString(elementName, row.getUTF8String(ordinal).toString());
+                  }
+                });
+          }
+          continue;
+        }
+        if (child instanceof final RuntimeChildChoiceDefinition choice) {
+          writers.add(choiceWriter(writer, definition, choice, type));
+          continue;
+        }
+        final int ordinal = fieldNames.indexOf(elementName);
+        if (ordinal < 0) {
+          // Elements that are not present within the schema are not written.
+          continue;
+        }
+        final FieldWriter fieldWriter =
+            fieldWriter(writer, definition, child, elementName, type, resourceMeta);
+        writers.add(
+            isResource && META_ELEMENT_NAME.equals(elementName)
+                ? resourceMetaWriter(writer, ordinal, fieldWriter)
+                : fieldWriter);
+      }
+      fields = writers.toArray(FieldWriter[]::new);
+    }
+
+    void writeFields(@Nonnull final InternalRow row, @Nonnull final Output output)
+        throws IOException {
+      for (final FieldWriter field : fields) {
+        field.write(row, output);
+      }
+    }
+
+    @Override
+    public void write(
+        @Nullable final String name,
+        @Nonnull final SpecializedGetters data,
+        final int ordinal,
+        @Nonnull final Output output)
+        throws IOException {
+      output.beginObject(name);
+      writeFields(data.getStruct(ordinal, numFields), output);
+      output.end();
+    }
+  }
+
+  @Nonnull
+  private static List<BaseRuntimeChildDefinition> orderedChildren(
+      @Nonnull final BaseRuntimeElementCompositeDefinition<?> definition,
+      final boolean isExtension) {
+    final List<BaseRuntimeChildDefinition> children = new ArrayList<>(definition.getChildren());
+    if (isExtension) {
+      // HAPI writes the ID and URL of an extension before its nested extensions and value.
+      final Set<String> first = Set.of(ID_ELEMENT_NAME, URL_ELEMENT_NAME);
+      children.sort(Comparator.comparing(child -> !first.contains(child.getElementName())));
+    }
+    return children;
+  }
+
+  @Nonnull
+  private static FieldWriter extensionsWriter(
+      @Nonnull final FhirJsonWriter writer,
+      final int fidOrdinal,
+      @Nonnull final CompositeWriter extensionWriter) {
+    final String name = ExtensionSupport.EXTENSION_ELEMENT_NAME();
+    return (row, output) -> {
+      if (row.isNullAt(fidOrdinal)) {
+        return;
+      }
+      final ArrayData extensions = writer.extensionsFor(row.getInt(fidOrdinal));
+      if (extensions != null) {
+        writeArray(name, extensions, extensionWriter, output);
+      }
+    };
+  }
+
+  @Nonnull
+  private static FieldWriter resourceIdWriter(
+      @Nonnull final FhirJsonWriter writer, final int versionedOrdinal) {
+    return (row, output) -> {
+      if (row.isNullAt(versionedOrdinal)) {
+        return;
+      }
+      final String value = row.getUTF8String(versionedOrdinal).toString();
+      if (value.indexOf('/') < 0 && value.indexOf(':') < 0) {
+        // This is a plain logical ID, which can be written as it is.
+        if (!StringUtils.isBlank(value)) {
+          output.writeString(ID_ELEMENT_NAME, value);
+        }
+        return;
+      }
+      // Otherwise, only the logical ID is written. URNs are not written at all, and the version is
+      // written into the meta element instead.
+      final IdType id = new IdType(value);
+      if (id.hasIdPart() && !id.isUrn()) {
+        output.writeString(ID_ELEMENT_NAME, id.getIdPart());
+      }
+      writer.versionId = id.getVersionIdPart();
+    };
+  }
+
+  @Nonnull
+  private static FieldWriter resourceMetaWriter(
+      @Nonnull final FhirJsonWriter writer,
+      final int ordinal,
+      @Nonnull final FieldWriter metaWriter) {
+    return (row, output) -> {
+      if (row.isNullAt(ordinal) && writer.versionId != null) {
+        output.beginObject(META_ELEMENT_NAME);
+        output.writeString(VERSION_ID_ELEMENT_NAME, writer.versionId);
+        output.end();
+      } else {
+        metaWriter.write(row, output);
+      }
+    };
+  }
+
+  @Nonnull
+  private static FieldWriter choiceWriter(
+      @Nonnull final FhirJsonWriter writer,
+      @Nonnull final BaseRuntimeElementCompositeDefinition<?> parent,
+      @Nonnull final RuntimeChildChoiceDefinition choice,
+      @Nonnull final StructType type) {
+    // A value may be stored in more than one of the options of a choice (e.g. a code is also a
+    // string), so only the first non-null option is written. This matches the order in which the
+    // options are considered when decoding.
+    final List<String> fieldNames = Arrays.asList(type.fieldNames());
+    final List<String> names =
+        choice.getValidChildTypes().stream()
+            .sorted(Comparator.comparing(Class::getTypeName))
+            .map(choice::getChildNameByDatatype)
+            .distinct()
+            .filter(fieldNames::contains)
+            .toList();
+    final int[] ordinals = names.stream().mapToInt(fieldNames::indexOf).toArray();
+    final FieldWriter[] options =
+        names.stream()
+            .map(name -> fieldWriter(writer, parent, choice, name, type, false))
+            .toArray(FieldWriter[]::new);
+    return (row, output) -> {
+      for (int i = 0; i < ordinals.length; i++) {
+        if (!row.isNullAt(ordinals[i])) {
+          options[i].write(row, output);
+          return;
+        }
+      }
+    };
+  }
+
+  @Nonnull
+  private static FieldWriter fieldWriter(
+      @Nonnull final FhirJsonWriter writer,
+      @Nonnull final BaseRuntimeElementCompositeDefinition<?> parent,
+      @Nonnull final BaseRuntimeChildDefinition child,
+      @Nonnull final String name,
+      @Nonnull final StructType type,
+      final boolean parentIsResourceMeta) {
+    final List<String> fieldNames = Arrays.asList(type.fieldNames());
+    final int ordinal = fieldNames.indexOf(name);
+    final int scaleOrdinal = fieldNames.indexOf(new DecimalCustomCoder(name).scaleFieldName());
+    final DataType dataType = type.apply(ordinal).dataType();
+    final boolean collection = dataType instanceof ArrayType;
+    final DataType elementType = collection ? ((ArrayType) dataType).elementType() : dataType;
+    final BaseRuntimeElementDefinition<?> elementDefinition = child.getChildByName(name);
+
+    if (elementType instanceof DecimalType) {
+      // Decimals are stored alongside their original scale, which is needed to reproduce them.
+      return decimalWriter(name, ordinal, scaleOrdinal, collection);
+    }
+    if (parentIsResourceMeta && VERSION_ID_ELEMENT_NAME.equals(name)) {
+      // The version within the ID of the resource is used if the meta element does not have one.
+      return (row, output) -> {
+        if (!row.isNullAt(ordinal)) {
+          writeString(name, row, ordinal, output);
+        } else if (writer.versionId != null) {
+          output.writeString(name, writer.versionId);
+        }
+      };
+    }
+
+    final ValueWriter valueWriter;
+    if (elementDefinition instanceof final BaseRuntimeElementCompositeDefinition<?> composite) {
+      final CompositeWriter compositeWriter = new CompositeWriter(false);
+      compositeWriter.initialise(
+          writer,
+          composite,
+          (StructType) elementType,
+          parent instanceof RuntimeResourceDefinition && META_ELEMENT_NAME.equals(name));
+      valueWriter = compositeWriter;
+    } else if (elementType instanceof StringType) {
+      valueWriter =
+          "reference".equals(name)
+                  && IBaseReference.class.isAssignableFrom(parent.getImplementingClass())
+              ? FhirJsonWriter::writeReference
+              : FhirJsonWriter::writeString;
+    } else if (elementType instanceof BooleanType) {
+      valueWriter =
+          (fieldName, data, i, output) -> output.writeBoolean(fieldName, data.getBoolean(i));
+    } else if (elementType instanceof IntegerType) {
+      valueWriter = (fieldName, data, i, output) -> output.writeNumber(fieldName, data.getInt(i));
+    } else if (elementType instanceof TimestampType) {
+      valueWriter = FhirJsonWriter::writeInstant;
+    } else if (elementType instanceof BinaryType) {
+      valueWriter =
+          (fieldName, data, i, output) ->
+              output.writeString(
+                  fieldName, new Base64BinaryType(data.getBinary(i)).getValueAsString());
+    } else {
+      throw new IllegalArgumentException(
+          "Cannot write element " + name + " with type: " + elementType.simpleString());
+    }
+
+    return collection
+        ? (row, output) -> {
+          if (!row.isNullAt(ordinal)) {
+            writeArray(name, row.getArray(ordinal), valueWriter, output);
+          }
+        }
+        : (row, output) -> {
+          if (!row.isNullAt(ordinal)) {
+            valueWriter.write(name, row, ordinal, output);
+          }
+        };
+  }
+
+  private static void writeArray(
+      @Nonnull final String name,
+      @Nonnull final ArrayData array,
+      @Nonnull final ValueWriter valueWriter,
+      @Nonnull final Output output)
+      throws IOException {
+    output.beginArray(name);
+    for (int i = 0; i < array.numElements(); i++) {
+      if (!array.isNullAt(i)) {
+        valueWriter.write(null, array, i, output);
+      }
+    }
+    output.end();
+  }
+
+  @Nonnull
+  private static FieldWriter decimalWriter(
+      @Nonnull final String name,
+      final int ordinal,
+      final int scaleOrdinal,
+      final boolean collection) {
+    if (collection) {
+      return (row, output) -> {
+        if (row.isNullAt(ordinal)) {
+          return;
+        }
+        final ArrayData values = row.getArray(ordinal);
+        final ArrayData scales = row.getArray(scaleOrdinal);
+        output.beginArray(name);
+        for (int i = 0; i < values.numElements(); i++) {
+          if (!values.isNullAt(i)) {
+            writeDecimal(null, values, i, scales.getInt(i), output);
+          }
+        }
+        output.end();
+      };
+    }
+    return (row, output) -> {
+      if (!row.isNullAt(ordinal)) {
+        writeDecimal(name, row, ordinal, row.getInt(scaleOrdinal), output);
+      }
+    };
+  }
+
+  private static void writeDecimal(
+      @Nullable final String name,
+      @Nonnull final SpecializedGetters data,
+      final int ordinal,
+      final int scale,
+      @Nonnull final Output output)
+      throws IOException {
+    final BigDecimal value =
+        data.getDecimal(ordinal, DecimalCustomCoder.precision(), DecimalCustomCoder.scale())
+            .toJavaBigDecimal()
+            .setScale(scale);
+    output.writeRawNumber(name, new org.hl7.fhir.r4.model.DecimalType(value).getValueAsString());
+  }
+
+  private static void writeString(
+      @Nullable final String name,
+      @Nonnull final SpecializedGetters data,
+      final int ordinal,
+      @Nonnull final Output output)
+      throws IOException {
+    final String value = data.getUTF8String(ordinal).toString();
+    // Blank primitives are considered to be empty, and are not written.
+    if (!StringUtils.isBlank(value)) {
+      output.writeString(name, value);
+    }
+  }
+
+  private static void writeReference(
+      @Nullable final String name,
+      @Nonnull final SpecializedGetters data,
+      final int ordinal,
+      @Nonnull final Output output)
+      throws IOException {
+    final String value = data.getUTF8String(ordinal).toString();
+    if (StringUtils.isBlank(value)) {
+      return;
+    }
+    // Versions are stripped from references when they are written.
+    output.writeString(
+        name, value.contains("/_history/") ? new IdType(value).toVersionless().getValue() : value);
+  }
+
+  private static void writeInstant(
+      @Nullable final String name,
+      @Nonnull final SpecializedGetters data,
+      final int ordinal,
+      @Nonnull final Output output)
+      throws IOException {
+    final InstantType instant =
+        new InstantType(
+            DateTimeUtils.toJavaTimestamp(data.getLong(ordinal)), TemporalPrecisionEnum.MILLI, UTC);
+    output.writeString(name, instant.getValueAsString());
+  }
+
+  /**
+   * Wraps a JSON generator so that objects and arrays are only started once a value is written
+   * within them, which means that empty elements are left out of the output. Fields can also be
+   * deferred, so that they are only written if their enclosing object has some other content.
+   */
+  private static class Output {
+
+    @Nonnull private final StringWriter buffer = new StringWriter();
+
+    @Nonnull private final JsonGenerator generator;
+
+    @Nonnull private String[] names = new String[32];
+
+    @Nonnull private boolean[] arrays = new boolean[32];
+
+    @Nonnull private int[] deferredFrom = new int[32];
+
+    @Nonnull private String[] deferredNames = new String[8];
+
+    @Nonnull private String[] deferredValues = new String[8];
+
+    private int depth;
+
+    private int started;
+
+    private int deferred;
+
+    Output() {
+      try {
+        generator = JSON_FACTORY.createGenerator(buffer);
+      } catch (final IOException e) {
+        throw new UncheckedIOException("Failed to create JSON generator", e);
+      }
+      generator.setRootValueSeparator(null);
+    }
+
+    void reset() {
+      buffer.getBuffer().setLength(0);
+      depth = 0;
+      started = 0;
+      deferred = 0;
+    }
+
+    @Nonnull
+    String finish() throws IOException {
+      generator.flush();
+      return buffer.toString();
+    }
+
+    void beginObject(@Nullable final String name) {
+      push(name, false);
+    }
+
+    void beginArray(@Nullable final String name) {
+      push(name, true);
+    }
+
+    void end() throws IOException {
+      depth--;
+      deferred = deferredFrom[depth];
+      if (started > depth) {
+        started = depth;
+        if (arrays[depth]) {
+          generator.writeEndArray();
+        } else {
+          generator.writeEndObject();
+        }
+      }
+    }
+
+    void deferString(@Nonnull final String name, @Nonnull final String value) throws IOException {
+      if (started == depth) {
+        writeString(name, value);
+        return;
+      }
+      if (deferred == deferredNames.length) {
+        deferredNames = Arrays.copyOf(deferredNames, deferred * 2);
+        deferredValues = Arrays.copyOf(deferredValues, deferred * 2);
+      }
+      deferredNames[deferred] = name;
+      deferredValues[deferred] = value;
+      deferred++;
+    }
+
+    void writeString(@Nullable final String name, @Nonnull final String value) throws IOException {
+      startValue(name);
+      generator.writeString(value);
+    }
+
+    void writeBoolean(@Nullable final String name, final boolean value) throws IOException {
+      startValue(name);
+      generator.writeBoolean(value);
+    }
+
+    void writeNumber(@Nullable final String name, final int value) throws IOException {
+      startValue(name);
+      generator.writeNumber(value);
+    }
+
+    void writeRawNumber(@Nullable final String name, @Nonnull final String value)
+        throws IOException {
+      startValue(name);
+      generator.writeNumber(value);
+    }
+
+    private void push(@Nullable final String name, final boolean array) {
+      if (depth == names.length) {
+        names = Arrays.copyOf(names, depth * 2);
+        arrays = Arrays.copyOf(arrays, depth * 2);
+        deferredFrom = Arrays.copyOf(deferredFrom, depth * 2);
+      }
+      names[depth] = name;
+      arrays[depth] = array;
+      deferredFrom[depth] = deferred;
+      depth++;
+    }
+
+    private void startValue(@Nullable final String name) throws IOException {
+      // Start any objects and arrays that enclose this value and have not yet been started, along
+      // with any fields that were deferred within them.
+      for (; started < depth; started++) {
+        if (names[started] != null) {
+          generator.writeFieldName(names[started]);
+        }
+        if (arrays[started]) {
+          generator.writeStartArray();
+        } else {
+          generator.writeStartObject();
+        }
+        final int to = started + 1 < depth ? deferredFrom[started + 1] : deferred;
+        for (int i = deferredFrom[started]; i < to; i++) {
+          generator.writeFieldName(deferredNames[i]);
+          generator.writeString(deferredValues[i]);
+        }
+      }
+      if (name != null) {
+        generator.writeFieldName(name);
+      }
+    }
+  }
+}
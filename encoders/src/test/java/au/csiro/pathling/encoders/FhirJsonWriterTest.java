@@ -0,0 +1,203 @@
+/*
+ * This is a modified version of the Bunsen library, originally published at
+ * https://github.com/cerner/bunsen.
+ *
+ * Bunsen is copyright 2017 Cerner Innovation, Inc., and is licensed under
+ * the Apache License, version 2.0 (http://www.apache.org/licenses/LICENSE-2.0).
+ *
+ * These modifications are copyright 2018-2026 Commonwealth Scientific
+ * and Industrial Research Organisation (CSIRO) ABN 41 687 119 230.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package au.csiro.pathling.encoders;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.parser.IParser;
+import jakarta.annotation.Nonnull;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import org.apache.spark.sql.catalyst.InternalRow;
+import org.apache.spark.sql.catalyst.encoders.ExpressionEncoder;
+import org.apache.spark.sql.catalyst.encoders.ExpressionEncoder.Deserializer;
+import org.apache.spark.sql.catalyst.encoders.ExpressionEncoder.Serializer;
+import org.apache.spark.sql.types.StructType;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Bundle.BundleEntryComponent;
+import org.hl7.fhir.r4.model.Extension;
+import org.hl7.fhir.r4.model.IdType;
+import org.hl7.fhir.r4.model.InstantType;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Quantity;
+import org.hl7.fhir.r4.model.Resource;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+/**
+ * Tests for {@link FhirJsonWriter}, which check that the JSON written directly from encoded rows is
+ * identical to the JSON produced by HAPI for the decoded resources.
+ *
+ * @author John Grimes
+ */
+class FhirJsonWriterTest {
+
+  private static final FhirContext FHIR_CONTEXT = FhirContext.forR4();
+
+  private static final FhirEncoders FHIR_ENCODERS =
+      FhirEncoders.forR4()
+          .withMaxNestingLevel(2)
+          .withOpenTypes(FhirEncoders.STANDARD_OPEN_TYPES)
+          .withExtensionsEnabled(true)
+          .getOrCreate();
+
+  private static final Map<Class<?>, Codec> CODECS = new HashMap<>();
+
+  private static final Path RESOURCES_PATH = Path.of("src/test/resources/data/resources/R4/json");
+
+  private static final Path BUNDLES_PATH = Path.of("src/test/resources/data/bundles/R4/json");
+
+  @Nonnull
+  static Stream<Path> resourceFiles() throws IOException {
+    try (final Stream<Path> files = Files.list(RESOURCES_PATH)) {
+      return files.sorted().toList().stream();
+    }
+  }
+
+  @Nonnull
+  static Stream<Path> bundleFiles() throws IOException {
+    try (final Stream<Path> files = Files.list(BUNDLES_PATH)) {
+      return files.sorted().toList().stream();
+    }
+  }
+
+  @ParameterizedTest
+  @MethodSource("resourceFiles")
+  void writesSameJsonAsHapiForResources(@Nonnull final Path file) throws IOException {
+    final IParser parser = FHIR_CONTEXT.newJsonParser();
+    for (final String line : Files.readAllLines(file)) {
+      if (!line.isBlank()) {
+        assertWritesSameJsonAsHapi((Resource) parser.parseResource(line));
+      }
+    }
+  }
+
+  @ParameterizedTest
+  @MethodSource("bundleFiles")
+  void writesSameJsonAsHapiForBundles(@Nonnull final Path file) throws IOException {
+    final Bundle bundle =
+        (Bundle) FHIR_CONTEXT.newJsonParser().parseResource(Files.readString(file));
+    for (final BundleEntryComponent entry : bundle.getEntry()) {
+      assertWritesSameJsonAsHapi(entry.getResource());
+    }
+  }
+
+  @Test
+  void writesSameJsonAsHapiForTestData() {
+    final List<Resource> resources =
+        List.of(
+            TestData.newCondition(),
+            TestData.conditionWithReferencesWithIdentifiers(),
+            TestData.conditionWithIdentifiersWithReferences(),
+            TestData.conditionWithVersion(),
+            TestData.newObservation(),
+            TestData.newUcumObservation(),
+            TestData.newDevice(),
+            TestData.newPatient(),
+            TestData.newMedication(),
+            TestData.newProvenance(),
+            TestData.newMedRequest(),
+            TestData.newEncounter(),
+            TestData.newQuestionnaire(),
+            TestData.newQuestionnaireResponse(),
+            TestData.newObservationWithCodingExtension(),
+            TestData.newConditionWithExtensions());
+    resources.forEach(FhirJsonWriterTest::assertWritesSameJsonAsHapi);
+  }
+
+  @Test
+  void writesSameJsonAsHapiForVersionedAndUrnIds() {
+    final Patient versioned = new Patient();
+    versioned.setIdElement(new IdType("Patient/1/_history/2"));
+    final Patient versionedWithMeta = new Patient();
+    versionedWithMeta.setIdElement(new IdType("http://example.com/fhir/Patient/1/_history/3"));
+    versionedWithMeta.getMeta().setSource("http://example.com").addProfile("http://profile");
+    final Patient urn = new Patient();
+    urn.setId("urn:uuid:704c9750-f6e6-473b-ee83-fbd48e07fe3f");
+    List.of(versioned, versionedWithMeta, urn)
+        .forEach(FhirJsonWriterTest::assertWritesSameJsonAsHapi);
+  }
+
+  @Test
+  void writesSameJsonAsHapiForEmptyAndSpecialValues() {
+    final Observation observation = new Observation();
+    observation.setId("observation");
+    observation.getSubject().setReference("Patient/1/_history/2");
+    observation.addPerformer().setReference("urn:uuid:1234");
+    observation.setIssuedElement(new InstantType("2020-01-02T03:04:05.678+10:00"));
+    observation.setValue(new Quantity().setValue(new BigDecimal("1.50")).setUnit("mg"));
+    observation.addNote().setText(" ");
+    observation.getCode().addCoding().setCode("code").setDisplay("");
+    // An extension without a value or nested extensions is empty.
+    observation.addExtension().setUrl("http://example.com/empty");
+    observation
+        .addExtension()
+        .setUrl("http://example.com/nested")
+        .addExtension(new Extension("http://example.com/empty"));
+    observation.addComponent().getValueQuantity().setValue(new BigDecimal("1E+2"));
+
+    final Patient patient = new Patient();
+    patient.setId("patient");
+    patient.addName().addGiven("").addGiven("Given").setFamily("  ");
+    patient.addPhoto().setData("data".getBytes(StandardCharsets.UTF_8));
+    patient.getMaritalStatus();
+    List.of(observation, patient).forEach(FhirJsonWriterTest::assertWritesSameJsonAsHapi);
+  }
+
+  private static void assertWritesSameJsonAsHapi(@Nonnull final Resource resource) {
+    final Codec codec = CODECS.computeIfAbsent(resource.getClass(), Codec::forClass);
+    final InternalRow row = codec.serializer().apply(resource);
+
+    final String actual =
+        FhirJsonWriter.forSchema(FHIR_CONTEXT, resource.fhirType(), codec.schema()).write(row);
+    final String expected =
+        FHIR_CONTEXT.newJsonParser().encodeResourceToString(codec.deserializer().apply(row));
+    assertEquals(expected, actual, "JSON written for " + resource.getIdElement().getValue());
+  }
+
+  private record Codec(
+      @Nonnull Serializer<Resource> serializer,
+      @Nonnull Deserializer<Resource> deserializer,
+      @Nonnull StructType schema) {
+
+    @Nonnull
+    @SuppressWarnings("unchecked")
+    static Codec forClass(@Nonnull final Class<?> resourceClass) {
+      final ExpressionEncoder<Resource> encoder =
+          EncoderUtils.defaultResolveAndBind(FHIR_ENCODERS.of((Class<Resource>) resourceClass));
+      return new Codec(encoder.createSerializer(), encoder.createDeserializer(), encoder.schema());
+    }
+  }
+}
@@ -15,7 +15,7 @@
 
 # noinspection PyPackageRequirements
 
-from typing import TYPE_CHECKING, Optional, Sequence
+from typing import TYPE_CHECKING, Dict, List, Optional, Sequence
 
 from py4j.java_gateway import JavaObject
 from pyspark.sql import Column, DataFrame, SparkSession
@@ -28,6 +28,7 @@ from pathling._version import (
 from pathling.fhir import MimeType
 
 if TYPE_CHECKING:
+    from .datasink import OptimizeStatistics
     from .datasource import DataSources
 
 __all__ = ["PathlingContext"]
@@ -510,3 +511,52 @@ class PathlingContext:
         """
         jcolumn = self._jpc.searchToColumn(resource_type, search_expression)
         return Column(jcolumn)
+
+    def optimize_delta(
+        self,
+        path: str,
+        cluster_columns: Dict[str, List[str]],
+        target_file_size: Optional[int] = None,
+    ) -> Dict[str, "OptimizeStatistics"]:
+        """
+        Rewrites the files of the Delta tables within a database, so that resources with similar
+        values of the chosen columns are clustered within the same files. This allows Delta to skip
+        more files when the tables are filtered on those columns.
+
+        Example usage::
+
+            pc.optimize_delta(
+                "/data/delta",
+                {"Observation": ["subject.reference", "meta.lastUpdated"], "Patient": []},
+            )
+
+        :param path: the path to the Delta database
+        :param cluster_columns: the columns to cluster each table by, keyed by resource type. Tables
+            with an empty list of columns are compacted without clustering.
+        :param target_file_size: the maximum size in bytes of each file written, or None to use the
+            Delta default
+        :return: the counts of the files affected within each table, keyed by resource type
+        """
+        from pathling.datasink import OptimizeStatistics
+
+        jvm = self._spark._jvm
+        target = (
+            jvm.java.lang.Long.valueOf(target_file_size)
+            if target_file_size is not None
+            else None
+        )
+        optimizer = jvm.au.csiro.pathling.library.io.sink.DeltaOptimizer(
+            self._jpc, path, target
+        )
+        result = optimizer.optimize(
+            {
+                resource_type: jvm.java.util.ArrayList(columns)
+                for resource_type, columns in cluster_columns.items()
+            }
+        )
+        return {
+            resource_type: OptimizeStatistics(
+                files_added=stats.filesAdded(), files_removed=stats.filesRemoved()
+            )
+            for resource_type, stats in result.items()
+        }
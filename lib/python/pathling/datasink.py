@@ -13,8 +13,8 @@
 #  See the License for the specific language governing permissions and
 #  limitations under the License.
 
-from dataclasses import dataclass
-from typing import TYPE_CHECKING, Callable, List, Optional
+from dataclasses import dataclass, field
+from typing import TYPE_CHECKING, Callable, Dict, List, Optional
 
 from pathling.core import SparkConversionsMixin, StringMapper
 
@@ -35,15 +35,52 @@ class FileInformation:
     absolute_url: str
 
 
+@dataclass
+class FileStatistics:
+    """
+    Statistics describing the Parquet files that hold the resources of a type after a write.
+
+    :param files: The number of files.
+    :param records: The number of resources within the files.
+    :param row_groups: The number of Parquet row groups within the files.
+    :param total_bytes: The combined size of the files in bytes.
+    :param min_file_bytes: The size of the smallest file in bytes.
+    :param max_file_bytes: The size of the largest file in bytes.
+    """
+
+    files: int
+    records: int
+    row_groups: int
+    total_bytes: int
+    min_file_bytes: int
+    max_file_bytes: int
+
+
+@dataclass
+class OptimizeStatistics:
+    """
+    Counts of the data files affected by the optimisation of a Delta table.
+
+    :param files_added: The number of files written by the optimisation.
+    :param files_removed: The number of files that were replaced by the optimisation.
+    """
+
+    files_added: int
+    files_removed: int
+
+
 @dataclass
 class WriteDetails:
     """
     Details about files created or modified by a write operation.
 
     :param file_infos: A list of file information objects describing each file written.
+    :param file_statistics: The statistics of the files that hold each resource type after the
+        write, keyed by resource type. These are only collected for Parquet and Delta output.
     """
 
     file_infos: List[FileInformation]
+    file_statistics: Dict[str, FileStatistics] = field(default_factory=dict)
 
 
 def _convert_write_details(java_result) -> WriteDetails:
@@ -61,7 +98,18 @@ def _convert_write_details(java_result) -> WriteDetails:
         )
         for fi in java_file_infos
     ]
-    return WriteDetails(file_infos=file_infos)
+    file_statistics = {
+        resource_type: FileStatistics(
+            files=stats.files(),
+            records=stats.records(),
+            row_groups=stats.rowGroups(),
+            total_bytes=stats.totalBytes(),
+            min_file_bytes=stats.minFileBytes(),
+            max_file_bytes=stats.maxFileBytes(),
+        )
+        for resource_type, stats in java_result.fileStatistics().items()
+    }
+    return WriteDetails(file_infos=file_infos, file_statistics=file_statistics)
 
 
 class SaveMode:
@@ -100,6 +148,7 @@ class DataSinks(SparkConversionsMixin):
         path: str,
         save_mode: Optional[str] = SaveMode.ERROR,
         file_name_mapper: Callable[[str], str] = None,
+        compression: Optional[str] = "none",
     ) -> WriteDetails:
         """
         Writes the data to a directory of NDJSON files. The files will be named using the resource
@@ -113,19 +162,28 @@ class DataSinks(SparkConversionsMixin):
             - "error" will raise an error if the file already exists.
         :param file_name_mapper: An optional function that can be used to customise the mapping of
         the resource type to the file name.
+        :param compression: The compression codec to use: "none", "gzip", "bzip2" or "zstd". The
+        extension of the codec is appended to the file names, e.g. "Patient.00000.ndjson.gz".
         :returns: Details about the files that were written.
         """
+        datasinks = self._datasinks.saveMode(save_mode).compression(compression)
         if file_name_mapper:
             wrapped_mapper = StringMapper(
                 self.spark._jvm._gateway_client, file_name_mapper
             )
-            result = self._datasinks.saveMode(save_mode).ndjson(path, wrapped_mapper)
+            result = datasinks.ndjson(path, wrapped_mapper)
         else:
-            result = self._datasinks.saveMode(save_mode).ndjson(path)
+            result = datasinks.ndjson(path)
         return _convert_write_details(result)
 
     def parquet(
-        self, path: str, save_mode: Optional[str] = SaveMode.ERROR
+        self,
+        path: str,
+        save_mode: Optional[str] = SaveMode.ERROR,
+        target_file_size: Optional[int] = None,
+        max_records_per_file: Optional[int] = None,
+        row_group_size: Optional[int] = None,
+        sort_keys: Optional[Dict[str, List[str]]] = None,
     ) -> WriteDetails:
         """
         Writes the data to a directory of Parquet files.
@@ -136,13 +194,27 @@ class DataSinks(SparkConversionsMixin):
             - "append" will append the new data to the existing data.
             - "ignore" will only save the data if the file does not already exist.
             - "error" will raise an error if the file already exists.
+        :param target_file_size: The approximate size of each file in bytes.
+        :param max_records_per_file: The maximum number of resources within each file.
+        :param row_group_size: The size of each Parquet row group in bytes.
+        :param sort_keys: The columns to sort the resources of each type by, keyed by resource
+        type, e.g. ``{"Observation": ["subject.reference", "effectiveDateTime"]}``.
         :returns: Details about the files that were written.
         """
-        result = self._datasinks.saveMode(save_mode).parquet(path)
+        datasinks = self._with_layout(
+            target_file_size, max_records_per_file, row_group_size, sort_keys
+        )
+        result = datasinks.saveMode(save_mode).parquet(path)
         return _convert_write_details(result)
 
     def delta(
-        self, path: str, save_mode: Optional[str] = SaveMode.OVERWRITE
+        self,
+        path: str,
+        save_mode: Optional[str] = SaveMode.OVERWRITE,
+        target_file_size: Optional[int] = None,
+        max_records_per_file: Optional[int] = None,
+        row_group_size: Optional[int] = None,
+        sort_keys: Optional[Dict[str, List[str]]] = None,
     ) -> WriteDetails:
         """
         Writes the data to a directory of Delta files.
@@ -151,11 +223,37 @@ class DataSinks(SparkConversionsMixin):
         :param save_mode: The save mode to use when writing the data - "overwrite" will
         overwrite any existing data, "merge" will merge the new data with the existing data based
         on resource ID.
+        :param target_file_size: The approximate size of each file in bytes.
+        :param max_records_per_file: The maximum number of resources within each file.
+        :param row_group_size: The size of each Parquet row group in bytes.
+        :param sort_keys: The columns to sort the resources of each type by, keyed by resource
+        type, e.g. ``{"Observation": ["subject.reference", "effectiveDateTime"]}``.
         :returns: Details about the files that were written.
         """
-        result = self._datasinks.saveMode(save_mode).delta(path)
+        datasinks = self._with_layout(
+            target_file_size, max_records_per_file, row_group_size, sort_keys
+        )
+        result = datasinks.saveMode(save_mode).delta(path)
         return _convert_write_details(result)
 
+    def _with_layout(
+        self,
+        target_file_size: Optional[int],
+        max_records_per_file: Optional[int],
+        row_group_size: Optional[int],
+        sort_keys: Optional[Dict[str, List[str]]],
+    ):
+        datasinks = self._datasinks
+        if target_file_size is not None:
+            datasinks = datasinks.targetFileSize(target_file_size)
+        if max_records_per_file is not None:
+            datasinks = datasinks.maxRecordsPerFile(max_records_per_file)
+        if row_group_size is not None:
+            datasinks = datasinks.rowGroupSize(row_group_size)
+        for resource_type, columns in (sort_keys or {}).items():
+            datasinks = datasinks.sortBy(resource_type, columns)
+        return datasinks
+
     def tables(
         self,
         schema: Optional[str] = None,
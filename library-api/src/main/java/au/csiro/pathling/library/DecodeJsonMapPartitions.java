@@ -0,0 +1,73 @@
+/*
+ * Copyright © 2018-2026 Commonwealth Scientific and Industrial Research
+ * Organisation (CSIRO) ABN 41 687 119 230.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.pathling.library;
+
+import au.csiro.pathling.encoders.FhirEncoders;
+import au.csiro.pathling.encoders.FhirJsonWriter;
+import ca.uhn.fhir.context.FhirVersionEnum;
+import jakarta.annotation.Nonnull;
+import java.io.Serial;
+import java.util.Iterator;
+import org.apache.spark.api.java.function.FlatMapFunction;
+import org.apache.spark.sql.catalyst.InternalRow;
+import org.apache.spark.sql.types.StructType;
+
+/**
+ * Writes a partition of encoded resources directly to FHIR JSON strings, without decoding them into
+ * HAPI objects first.
+ *
+ * @author John Grimes
+ * @see FhirJsonWriter
+ */
+class DecodeJsonMapPartitions implements FlatMapFunction<Iterator<InternalRow>, String> {
+
+  @Serial private static final long serialVersionUID = 2707906323744436398L;
+
+  @Nonnull private final FhirVersionEnum fhirVersion;
+
+  @Nonnull private final String resourceName;
+
+  @Nonnull private final StructType schema;
+
+  DecodeJsonMapPartitions(
+      @Nonnull final FhirVersionEnum fhirVersion,
+      @Nonnull final String resourceName,
+      @Nonnull final StructType schema) {
+    this.fhirVersion = fhirVersion;
+    this.resourceName = resourceName;
+    this.schema = schema;
+  }
+
+  @Override
+  @Nonnull
+  public Iterator<String> call(@Nonnull final Iterator<InternalRow> iterator) {
+    final FhirJsonWriter writer =
+        FhirJsonWriter.forSchema(FhirEncoders.contextFor(fhirVersion), resourceName, schema);
+    return new Iterator<>() {
+      @Override
+      public boolean hasNext() {
+        return iterator.hasNext();
+      }
+
+      @Override
+      public String next() {
+        return writer.write(iterator.next());
+      }
+    };
+  }
+}
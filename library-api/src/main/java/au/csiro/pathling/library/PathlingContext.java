@@ -50,6 +50,7 @@ import java.util.Map;
 import java.util.Optional;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.spark.api.java.JavaRDD;
 import org.apache.spark.api.java.function.MapPartitionsFunction;
 import org.apache.spark.sql.Column;
 import org.apache.spark.sql.Dataset;
@@ -475,6 +476,19 @@ public class PathlingContext {
       @Nonnull final Dataset<Row> resources,
       @Nonnull final String resourceName,
       @Nonnull final String outputMimeType) {
+    if (FHIR_JSON.equals(outputMimeType) && !resources.isStreaming()) {
+      // JSON is written directly from the encoded rows, which avoids the cost of decoding each
+      // resource into a HAPI object before serialising it.
+      final JavaRDD<String> json =
+          resources
+              .queryExecution()
+              .toRdd()
+              .toJavaRDD()
+              .mapPartitions(
+                  new DecodeJsonMapPartitions(fhirVersion, resourceName, resources.schema()));
+      return resources.sparkSession().createDataset(json.rdd(), Encoders.STRING());
+    }
+
     final RuntimeResourceDefinition definition =
         FhirEncoders.contextFor(fhirVersion).getResourceDefinition(resourceName);
 
@@ -0,0 +1,78 @@
+/*
+ * Copyright © 2018-2026 Commonwealth Scientific and Industrial Research
+ * Organisation (CSIRO) ABN 41 687 119 230.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package au.csiro.pathling.library.io;
+
+import jakarta.annotation.Nonnull;
+import lombok.Getter;
+
+/**
+ * Compression codecs supported when writing text-based output, such as NDJSON, to a data sink.
+ *
+ * <p>Each partition of the output is compressed independently as it is written, so compression runs
+ * in parallel across the executors.
+ *
+ * @author John Grimes
+ */
+@Getter
+public enum Compression {
+  /** The output is not compressed. */
+  NONE("none", "none", ""),
+
+  /** The output is compressed using gzip, and named using the ".gz" extension. */
+  GZIP("gzip", "gzip", ".gz"),
+
+  /** The output is compressed using bzip2, and named using the ".bz2" extension. */
+  BZIP2("bzip2", "bzip2", ".bz2"),
+
+  /** The output is compressed using Zstandard, and named using the ".zst" extension. */
+  ZSTD("zstd", ZstdCodec.class.getName(), ".zst");
+
+  /** The code used to select this codec. */
+  @Nonnull private final String code;
+
+  /** The value of the "compression" option passed to the Spark writer. */
+  @Nonnull private final String sparkCodec;
+
+  /** The extension appended to the names of the files, including the leading dot. */
+  @Nonnull private final String fileExtension;
+
+  Compression(
+      @Nonnull final String code,
+      @Nonnull final String sparkCodec,
+      @Nonnull final String fileExtension) {
+    this.code = code;
+    this.sparkCodec = sparkCodec;
+    this.fileExtension = fileExtension;
+  }
+
+  /**
+   * Returns the Compression corresponding to the given code.
+   *
+   * @param code the string code to convert
+   * @return the corresponding Compression
+   * @throws IllegalArgumentException if the code is not recognised
+   */
+  @Nonnull
+  public static Compression fromCode(final String code) {
+    for (final Compression compression : values()) {
+      if (compression.code.equals(code)) {
+        return compression;
+      }
+    }
+    throw new IllegalArgumentException("Unknown compression: " + code);
+  }
+}
@@ -29,6 +29,8 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.hadoop.fs.FileStatus;
@@ -44,6 +46,9 @@ import org.apache.spark.sql.SparkSession;
 @Slf4j
 public class FileSystemPersistence {
 
+  /** Matches the counter that Spark adds to the names of files after the UUID, e.g. "-c001". */
+  private static final Pattern FILE_COUNTER = Pattern.compile("-c(\\d+)(?:\\.|$)");
+
   private FileSystemPersistence() {}
 
   /**
@@ -108,11 +113,36 @@ public class FileSystemPersistence {
       @Nonnull final String partitionedLocation,
       @Nonnull final String departitionedLocation,
       @Nonnull final String extension) {
+    return renamePartitionedFiles(
+        spark, partitionedLocation, departitionedLocation, extension, Compression.NONE);
+  }
+
+  /**
+   * Rename the compressed partitioned file to follow the naming convention in {@link
+   * FileSource#resourceNameWithQualifierMapper(String)}, keeping the extension of the compression
+   * codec, e.g. "Patient.00000.ndjson.gz".
+   *
+   * @param spark the Spark session
+   * @param partitionedLocation the location URL containing the partitioned file
+   * @param departitionedLocation the desired URL of the resulting file, without the compression
+   *     extension
+   * @param extension the file extension used within the partitioned directory
+   * @param compression the compression codec that the files were written with
+   * @return the locations of the resulting (renamed) file
+   */
+  @Nonnull
+  public static Collection<String> renamePartitionedFiles(
+      @Nonnull final SparkSession spark,
+      @Nonnull final String partitionedLocation,
+      @Nonnull final String departitionedLocation,
+      @Nonnull final String extension,
+      @Nonnull final Compression compression) {
     return renamePartitionedFiles(
         getFileSystem(spark, partitionedLocation),
         partitionedLocation,
         departitionedLocation,
-        extension);
+        extension,
+        compression);
   }
 
   /**
@@ -133,6 +163,32 @@ public class FileSystemPersistence {
       @Nonnull final String partitionedUrl,
       @Nonnull final String departitionedUrl,
       @Nonnull final String extension) {
+    return renamePartitionedFiles(
+        partitionedLocation, partitionedUrl, departitionedUrl, extension, Compression.NONE);
+  }
+
+  /**
+   * Rename the compressed partitioned file to follow the pathling naming convention in {@link
+   * au.csiro.pathling.library.io.source.FileSource#resourceNameWithQualifierMapper(String)},
+   * keeping the extension of the compression codec.
+   *
+   * @param partitionedLocation a Hadoop {@link FileSystem} representing the location that both the
+   *     partitioned and departitioned files are located in
+   * @param partitionedUrl the URL of the partitioned file
+   * @param departitionedUrl the desired URL of the resulting file, without the compression
+   *     extension
+   * @param extension the file extension used within the partitioned directory
+   * @param compression the compression codec that the files were written with
+   * @return the locations of the resulting (renamed) file
+   * @throws PersistenceError if there is a problem copying the partition file
+   */
+  @Nonnull
+  public static Collection<String> renamePartitionedFiles(
+      @Nonnull final FileSystem partitionedLocation,
+      @Nonnull final String partitionedUrl,
+      @Nonnull final String departitionedUrl,
+      @Nonnull final String extension,
+      @Nonnull final Compression compression) {
     try {
       final Path partitionedPath = new Path(partitionedUrl);
       final FileStatus[] partitionFiles = partitionedLocation.listStatus(partitionedPath);
@@ -140,7 +196,7 @@ public class FileSystemPersistence {
       final Collection<String> targetFiles =
           Arrays.stream(partitionFiles)
               .map(f -> f.getPath().toString())
-              .filter(f -> f.endsWith("." + extension))
+              .filter(f -> f.endsWith("." + extension + compression.getFileExtension()))
               .toList();
       if (targetFiles.isEmpty()) {
         throw new IOException("Partition file not found");
@@ -168,10 +224,21 @@ public class FileSystemPersistence {
                   .formatted(fileName),
               null);
         }
+        // Spark splits a partition into several files when there is a limit on the number of
+        // records per file, numbering them with a counter after the UUID. The counter of any file
+        // after the first is added to the part ID so that each file keeps a distinct name.
+        final Matcher fileCounter = FILE_COUNTER.matcher(filenamePath.getName());
+        final String partId =
+            fileCounter.find() && Integer.parseInt(fileCounter.group(1)) > 0
+                ? partIdSplit[1] + "-c" + fileCounter.group(1)
+                : partIdSplit[1];
         final String renamedFilename =
-            "%s.%s.%s"
+            "%s.%s.%s%s"
                 .formatted(
-                    departitionFilenameAndExt[0], partIdSplit[1], departitionFilenameAndExt[1]);
+                    departitionFilenameAndExt[0],
+                    partId,
+                    departitionFilenameAndExt[1],
+                    compression.getFileExtension());
         final Path renamedPath = new Path(new Path(departitionedUrl).getParent(), renamedFilename);
         log.info("Renaming result to: {}", renamedPath);
         partitionedLocation.rename(new Path(fileName), renamedPath);
@@ -0,0 +1,177 @@
+/*
+ * Copyright © 2018-2026 Commonwealth Scientific and Industrial Research
+ * Organisation (CSIRO) ABN 41 687 119 230.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package au.csiro.pathling.library.io;
+
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionInputStream;
+import org.apache.hadoop.io.compress.CompressionOutputStream;
+import org.apache.hadoop.io.compress.Compressor;
+import org.apache.hadoop.io.compress.Decompressor;
+
+/**
+ * A Hadoop compression codec for Zstandard that uses the zstd-jni library bundled with Spark.
+ *
+ * <p>The Zstandard codec that ships with Hadoop requires a native Hadoop library built with
+ * Zstandard support, which is not available in most Spark deployments. This codec only supports the
+ * stream-based methods, which are the ones used when writing and reading text files.
+ *
+ * @author John Grimes
+ */
+public class ZstdCodec implements CompressionCodec {
+
+  /** The compression level, which is the default level used by the zstd command line tool. */
+  private static final int LEVEL = 3;
+
+  @Override
+  @Nonnull
+  public CompressionOutputStream createOutputStream(@Nonnull final OutputStream out)
+      throws IOException {
+    return new ZstdCompressionOutputStream(out);
+  }
+
+  @Override
+  @Nonnull
+  public CompressionOutputStream createOutputStream(
+      @Nonnull final OutputStream out, @Nullable final Compressor compressor) throws IOException {
+    return createOutputStream(out);
+  }
+
+  @Override
+  @Nullable
+  public Class<? extends Compressor> getCompressorType() {
+    return null;
+  }
+
+  @Override
+  @Nullable
+  public Compressor createCompressor() {
+    return null;
+  }
+
+  @Override
+  @Nonnull
+  public CompressionInputStream createInputStream(@Nonnull final InputStream in)
+      throws IOException {
+    return new ZstdCompressionInputStream(in);
+  }
+
+  @Override
+  @Nonnull
+  public CompressionInputStream createInputStream(
+      @Nonnull final InputStream in, @Nullable final Decompressor decompressor) throws IOException {
+    return createInputStream(in);
+  }
+
+  @Override
+  @Nullable
+  public Class<? extends Decompressor> getDecompressorType() {
+    return null;
+  }
+
+  @Override
+  @Nullable
+  public Decompressor createDecompressor() {
+    return null;
+  }
+
+  @Override
+  @Nonnull
+  public String getDefaultExtension() {
+    return ".zst";
+  }
+
+  private static class ZstdCompressionOutputStream extends CompressionOutputStream {
+
+    @Nonnull private final ZstdOutputStream zstd;
+
+    ZstdCompressionOutputStream(@Nonnull final OutputStream out) throws IOException {
+      super(out);
+      zstd = new ZstdOutputStream(out, LEVEL);
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+      zstd.write(b);
+    }
+
+    @Override
+    public void write(@Nonnull final byte[] b, final int off, final int len) throws IOException {
+      zstd.write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+      zstd.flush();
+    }
+
+    @Override
+    public void finish() throws IOException {
+      // End the current frame without closing the underlying stream. Any further output is written
+      // to a new frame, and concatenated frames are decompressed as a single stream.
+      zstd.setCloseFrameOnFlush(true);
+      zstd.flush();
+      zstd.setCloseFrameOnFlush(false);
+    }
+
+    @Override
+    public void resetState() {
+      // Each stream produces a single frame, so there is no state to reset.
+    }
+
+    @Override
+    public void close() throws IOException {
+      zstd.close();
+    }
+  }
+
+  private static class ZstdCompressionInputStream extends CompressionInputStream {
+
+    @Nonnull private final ZstdInputStream zstd;
+
+    ZstdCompressionInputStream(@Nonnull final InputStream in) throws IOException {
+      super(in);
+      zstd = new ZstdInputStream(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+      return zstd.read();
+    }
+
+    @Override
+    public int read(@Nonnull final byte[] b, final int off, final int len) throws IOException {
+      return zstd.read(b, off, len);
+    }
+
+    @Override
+    public void resetState() {
+      // Each stream is read from the start, so there is no state to reset.
+    }
+
+    @Override
+    public void close() throws IOException {
+      zstd.close();
+    }
+  }
+}
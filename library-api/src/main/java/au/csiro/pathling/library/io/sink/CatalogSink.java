@@ -25,7 +25,9 @@ import au.csiro.pathling.library.io.SaveMode;
 import io.delta.tables.DeltaTable;
 import jakarta.annotation.Nonnull;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import org.apache.spark.sql.DataFrameWriter;
 import org.apache.spark.sql.Dataset;
@@ -99,6 +101,7 @@ class CatalogSink implements DataSink {
   @Nonnull
   public WriteDetails write(@Nonnull final DataSource source) {
     final List<FileInformation> fileInfos = new ArrayList<>();
+    final Map<String, MergeStatistics> mergeStatistics = new HashMap<>();
     for (final String resourceType : source.getResourceTypes()) {
       final Dataset<Row> dataset = source.read(resourceType);
       final String tableName = getTableName(resourceType);
@@ -124,7 +127,7 @@ class CatalogSink implements DataSink {
           if (deltaTableExists(tableName)) {
             // If the table already exists, merge the data in.
             final DeltaTable table = DeltaTable.forName(tableName);
-            merge(table, dataset);
+            mergeStatistics.put(resourceType, merge(table, dataset));
           } else {
             // If the table does not exist, create it.
             writeDataset(dataset, tableName, SaveMode.ERROR_IF_EXISTS);
@@ -133,7 +136,7 @@ class CatalogSink implements DataSink {
         default -> throw new IllegalStateException("Unexpected save mode: " + saveMode);
       }
     }
-    return new WriteDetails(fileInfos);
+    return new WriteDetails(fileInfos, mergeStatistics);
   }
 
   private void writeDataset(
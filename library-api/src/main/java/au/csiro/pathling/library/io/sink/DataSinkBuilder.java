@@ -17,13 +17,18 @@
 
 package au.csiro.pathling.library.io.sink;
 
+import static au.csiro.pathling.utilities.Preconditions.checkArgument;
 import static au.csiro.pathling.utilities.Preconditions.checkArgumentNotNull;
 
 import au.csiro.pathling.io.source.DataSource;
 import au.csiro.pathling.library.PathlingContext;
+import au.csiro.pathling.library.io.Compression;
 import au.csiro.pathling.library.io.SaveMode;
 import jakarta.annotation.Nonnull;
 import jakarta.annotation.Nullable;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.function.UnaryOperator;
 
 /**
@@ -43,6 +48,21 @@ public class DataSinkBuilder {
   /** The save mode to use when writing data. */
   @Nonnull private SaveMode saveMode = SaveMode.ERROR_IF_EXISTS;
 
+  /** The compression codec to use when writing text-based files. */
+  @Nonnull private Compression compression = Compression.NONE;
+
+  /** The approximate size of each Parquet or Delta file in bytes, if set. */
+  @Nullable private Long targetFileSize;
+
+  /** The maximum number of resources within each Parquet or Delta file, if set. */
+  @Nullable private Long maxRecordsPerFile;
+
+  /** The size of each Parquet row group in bytes, if set. */
+  @Nullable private Long rowGroupSize;
+
+  /** The columns to sort the resources of each type by, keyed by resource type. */
+  @Nonnull private final Map<String, List<String>> sortKeys = new HashMap<>();
+
   /**
    * Constructs a new DataSinkBuilder with the specified context and data source.
    *
@@ -66,6 +86,77 @@ public class DataSinkBuilder {
     return this;
   }
 
+  /**
+   * Sets the compression codec to use when writing NDJSON files: "none", "gzip", "bzip2" or "zstd".
+   * The extension of the codec is appended to the names of the files, e.g.
+   * "Patient.00000.ndjson.gz".
+   *
+   * @param compression the code of the compression codec to use
+   * @return this builder for method chaining
+   */
+  @Nonnull
+  public DataSinkBuilder compression(@Nonnull final String compression) {
+    this.compression = Compression.fromCode(compression);
+    return this;
+  }
+
+  /**
+   * Sets the approximate size of each file written to Parquet or Delta. The number of files written
+   * for each resource type is derived from Spark's estimate of the size of the data. Without this
+   * setting, the number of files follows the partitioning of the input data.
+   *
+   * @param targetFileSize the approximate size of each file in bytes
+   * @return this builder for method chaining
+   */
+  @Nonnull
+  public DataSinkBuilder targetFileSize(final long targetFileSize) {
+    checkArgument(targetFileSize > 0, "Target file size must be positive");
+    this.targetFileSize = targetFileSize;
+    return this;
+  }
+
+  /**
+   * Sets the maximum number of resources within each file written to Parquet or Delta.
+   *
+   * @param maxRecordsPerFile the maximum number of resources within each file
+   * @return this builder for method chaining
+   */
+  @Nonnull
+  public DataSinkBuilder maxRecordsPerFile(final long maxRecordsPerFile) {
+    checkArgument(maxRecordsPerFile > 0, "Maximum records per file must be positive");
+    this.maxRecordsPerFile = maxRecordsPerFile;
+    return this;
+  }
+
+  /**
+   * Sets the size of each row group within the files written to Parquet or Delta.
+   *
+   * @param rowGroupSize the size of each row group in bytes
+   * @return this builder for method chaining
+   */
+  @Nonnull
+  public DataSinkBuilder rowGroupSize(final long rowGroupSize) {
+    checkArgument(rowGroupSize > 0, "Row group size must be positive");
+    this.rowGroupSize = rowGroupSize;
+    return this;
+  }
+
+  /**
+   * Sets the columns to sort the resources of a type by when writing to Parquet or Delta, e.g.
+   * {@code subject.reference} and {@code effectiveDateTime} for Observation. Sorting clusters
+   * related resources within the same files, which allows more files to be skipped when reading.
+   *
+   * @param resourceType the resource type
+   * @param columns the columns to sort by, in order of precedence
+   * @return this builder for method chaining
+   */
+  @Nonnull
+  public DataSinkBuilder sortBy(
+      @Nonnull final String resourceType, @Nonnull final List<String> columns) {
+    sortKeys.put(resourceType, List.copyOf(columns));
+    return this;
+  }
+
   /**
    * Writes the data in the data source to NDJSON files, one per resource type and named using the
    * "ndjson" extension.
@@ -74,7 +165,9 @@ public class DataSinkBuilder {
    * @return Details about the performed operation.
    */
   public WriteDetails ndjson(@Nullable final String path) {
-    return new NdjsonSink(context, checkArgumentNotNull(path), saveMode).write(source);
+    return new NdjsonSink(
+            context, checkArgumentNotNull(path), saveMode, UnaryOperator.identity(), compression)
+        .write(source);
   }
 
   /**
@@ -88,7 +181,11 @@ public class DataSinkBuilder {
   public WriteDetails ndjson(
       @Nullable final String path, @Nullable final UnaryOperator<String> fileNameMapper) {
     return new NdjsonSink(
-            context, checkArgumentNotNull(path), saveMode, checkArgumentNotNull(fileNameMapper))
+            context,
+            checkArgumentNotNull(path),
+            saveMode,
+            checkArgumentNotNull(fileNameMapper),
+            compression)
         .write(source);
   }
 
@@ -100,7 +197,9 @@ public class DataSinkBuilder {
    * @return Details about the performed operation.
    */
   public WriteDetails parquet(@Nullable final String path) {
-    return new ParquetSink(context, checkArgumentNotNull(path), saveMode).write(source);
+    return new ParquetSink(
+            context, checkArgumentNotNull(path), saveMode, UnaryOperator.identity(), layout())
+        .write(source);
   }
 
   /**
@@ -114,7 +213,11 @@ public class DataSinkBuilder {
   public WriteDetails parquet(
       @Nullable final String path, @Nullable final UnaryOperator<String> fileNameMapper) {
     return new ParquetSink(
-            context, checkArgumentNotNull(path), saveMode, checkArgumentNotNull(fileNameMapper))
+            context,
+            checkArgumentNotNull(path),
+            saveMode,
+            checkArgumentNotNull(fileNameMapper),
+            layout())
         .write(source);
   }
 
@@ -125,7 +228,9 @@ public class DataSinkBuilder {
    * @return Details about the performed operation.
    */
   public WriteDetails delta(@Nullable final String path) {
-    return new DeltaSink(context, checkArgumentNotNull(path), saveMode).write(source);
+    return new DeltaSink(
+            context, checkArgumentNotNull(path), saveMode, UnaryOperator.identity(), layout())
+        .write(source);
   }
 
   /**
@@ -138,7 +243,11 @@ public class DataSinkBuilder {
   public WriteDetails delta(
       @Nullable final String path, @Nullable final UnaryOperator<String> fileNameMapper) {
     return new DeltaSink(
-            context, checkArgumentNotNull(path), saveMode, checkArgumentNotNull(fileNameMapper))
+            context,
+            checkArgumentNotNull(path),
+            saveMode,
+            checkArgumentNotNull(fileNameMapper),
+            layout())
         .write(source);
   }
 
@@ -176,4 +285,9 @@ public class DataSinkBuilder {
             context, saveMode, checkArgumentNotNull(schema), checkArgumentNotNull(format))
         .write(source);
   }
+
+  @Nonnull
+  private WriteLayout layout() {
+    return new WriteLayout(targetFileSize, maxRecordsPerFile, rowGroupSize, Map.copyOf(sortKeys));
+  }
 }
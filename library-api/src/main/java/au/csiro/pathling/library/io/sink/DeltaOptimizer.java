@@ -0,0 +1,185 @@
+/*
+ * Copyright © 2018-2026 Commonwealth Scientific and Industrial Research
+ * Organisation (CSIRO) ABN 41 687 119 230.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.pathling.library.io.sink;
+
+import static au.csiro.pathling.library.io.FileSystemPersistence.safelyJoinPaths;
+
+import au.csiro.pathling.library.PathlingContext;
+import io.delta.tables.DeltaTable;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.RuntimeConfig;
+import org.apache.spark.sql.SparkSession;
+import scala.Option;
+
+/**
+ * Rewrites the files of the Delta tables within a Pathling database, so that resources with similar
+ * values of the chosen columns are clustered within the same files.
+ *
+ * <p>Delta Lake records the minimum and maximum value of each column within each file, and uses
+ * these to skip files that cannot match a filter. Data that is written in arrival order has files
+ * that each span most of the range of values, which defeats this. Clustering the files using a
+ * Z-order curve over the columns that are commonly searched on (e.g. {@code subject.reference} and
+ * {@code meta.lastUpdated}) narrows the range of values within each file.
+ *
+ * @author John Grimes
+ */
+public class DeltaOptimizer {
+
+  /**
+   * The table property that determines the columns that Delta collects file statistics for. By
+   * default, statistics are only collected for the first 32 columns of the table, which does not
+   * include many of the elements that are searched on.
+   */
+  static final String STATS_COLUMNS_PROPERTY = "delta.dataSkippingStatsColumns";
+
+  /** The columns that statistics are always collected for within a clustered table. */
+  private static final List<String> DEFAULT_STATS_COLUMNS = List.of("id", "meta.lastUpdated");
+
+  /** The session configuration that determines the maximum size of the files that are written. */
+  static final String MAX_FILE_SIZE_CONFIGURATION = "spark.databricks.delta.optimize.maxFileSize";
+
+  @Nonnull private final PathlingContext context;
+
+  @Nonnull private final String path;
+
+  @Nullable private final Long targetFileSize;
+
+  /**
+   * Constructs a DeltaOptimizer for a Pathling database.
+   *
+   * @param context the PathlingContext to use
+   * @param path the path to the Delta database
+   */
+  public DeltaOptimizer(@Nonnull final PathlingContext context, @Nonnull final String path) {
+    this(context, path, null);
+  }
+
+  /**
+   * Constructs a DeltaOptimizer for a Pathling database that writes files of a target size.
+   *
+   * @param context the PathlingContext to use
+   * @param path the path to the Delta database
+   * @param targetFileSize the maximum size in bytes of each file written, or null to use the Delta
+   *     default
+   */
+  public DeltaOptimizer(
+      @Nonnull final PathlingContext context,
+      @Nonnull final String path,
+      @Nullable final Long targetFileSize) {
+    this.context = context;
+    this.path = path;
+    this.targetFileSize = targetFileSize;
+  }
+
+  /**
+   * Optimises the tables of the given resource types. Where columns are given for a resource type,
+   * the files of its table are clustered by those columns. Otherwise, the small files of the table
+   * are compacted into larger files. Resource types that do not have a table in the database are
+   * ignored.
+   *
+   * @param clusterColumns the columns to cluster each table by, keyed by resource type
+   * @return the counts of the files affected within each table, keyed by resource type
+   */
+  @Nonnull
+  public Map<String, OptimizeStatistics> optimize(
+      @Nonnull final Map<String, List<String>> clusterColumns) {
+    final SparkSession spark = context.getSpark();
+    final RuntimeConfig conf = spark.conf();
+    final Option<String> previousFileSize = conf.getOption(MAX_FILE_SIZE_CONFIGURATION);
+    if (targetFileSize != null) {
+      conf.set(MAX_FILE_SIZE_CONFIGURATION, targetFileSize);
+    }
+    try {
+      final Map<String, OptimizeStatistics> statistics = new HashMap<>();
+      for (final Entry<String, List<String>> entry : clusterColumns.entrySet()) {
+        final String tablePath = safelyJoinPaths(path, entry.getKey() + ".parquet");
+        if (DeltaTable.isDeltaTable(spark, tablePath)) {
+          statistics.put(
+              entry.getKey(), optimize(DeltaTable.forPath(spark, tablePath), entry.getValue()));
+        }
+      }
+      return statistics;
+    } finally {
+      if (targetFileSize != null) {
+        if (previousFileSize.isDefined()) {
+          conf.set(MAX_FILE_SIZE_CONFIGURATION, previousFileSize.get());
+        } else {
+          conf.unset(MAX_FILE_SIZE_CONFIGURATION);
+        }
+      }
+    }
+  }
+
+  /**
+   * Optimises a single table.
+   *
+   * @param table the Delta table
+   * @param columns the columns to cluster the table by, which may be empty
+   * @return the counts of the files affected
+   */
+  @Nonnull
+  static OptimizeStatistics optimize(
+      @Nonnull final DeltaTable table, @Nonnull final List<String> columns) {
+    final Dataset<Row> result;
+    if (columns.isEmpty()) {
+      result = table.optimize().executeCompaction();
+    } else {
+      // Z-ordering requires statistics on each of the columns, so statistics collection is
+      // extended to them before the files are rewritten.
+      collectStatisticsFor(table, columns);
+      result = table.optimize().executeZOrderBy(columns.toArray(String[]::new));
+    }
+    final Row metrics = result.select("metrics.numFilesAdded", "metrics.numFilesRemoved").first();
+    return new OptimizeStatistics(metrics.getLong(0), metrics.getLong(1));
+  }
+
+  /**
+   * Sets the columns that file statistics are collected for within a table, including the columns
+   * that it is clustered by.
+   *
+   * @param table the Delta table
+   * @param columns the columns that the table is clustered by
+   */
+  private static void collectStatisticsFor(
+      @Nonnull final DeltaTable table, @Nonnull final List<String> columns) {
+    final Set<String> statsColumns = new LinkedHashSet<>(DEFAULT_STATS_COLUMNS);
+    statsColumns.addAll(columns);
+    final Row detail = table.detail().first();
+    final String location = detail.getString(detail.fieldIndex("location"));
+    table
+        .toDF()
+        .sparkSession()
+        .sql(
+            "ALTER TABLE delta.`"
+                + location.replace("`", "``")
+                + "` SET TBLPROPERTIES ('"
+                + STATS_COLUMNS_PROPERTY
+                + "' = '"
+                + String.join(",", statsColumns)
+                + "')");
+  }
+}
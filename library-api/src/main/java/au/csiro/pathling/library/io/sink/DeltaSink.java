@@ -18,17 +18,38 @@
 package au.csiro.pathling.library.io.sink;
 
 import static au.csiro.pathling.library.io.FileSystemPersistence.safelyJoinPaths;
+import static org.apache.spark.sql.functions.array_join;
+import static org.apache.spark.sql.functions.array_sort;
+import static org.apache.spark.sql.functions.coalesce;
+import static org.apache.spark.sql.functions.col;
+import static org.apache.spark.sql.functions.concat_ws;
+import static org.apache.spark.sql.functions.lit;
+import static org.apache.spark.sql.functions.map_values;
+import static org.apache.spark.sql.functions.monotonically_increasing_id;
+import static org.apache.spark.sql.functions.regexp_replace;
+import static org.apache.spark.sql.functions.row_number;
+import static org.apache.spark.sql.functions.struct;
+import static org.apache.spark.sql.functions.to_json;
+import static org.apache.spark.sql.functions.transform;
 
+import au.csiro.pathling.encoders.ExtensionSupport;
 import au.csiro.pathling.io.source.DataSource;
 import au.csiro.pathling.library.PathlingContext;
 import au.csiro.pathling.library.io.SaveMode;
 import io.delta.tables.DeltaTable;
 import jakarta.annotation.Nonnull;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.function.UnaryOperator;
+import org.apache.spark.sql.Column;
 import org.apache.spark.sql.Dataset;
 import org.apache.spark.sql.Row;
+import org.apache.spark.sql.expressions.Window;
+import org.apache.spark.sql.expressions.WindowSpec;
+import org.apache.spark.sql.types.StructType;
 
 /**
  * A data sink that writes data to a Delta Lake table on a filesystem.
@@ -37,6 +58,16 @@ import org.apache.spark.sql.Row;
  */
 final class DeltaSink implements DataSink {
 
+  /**
+   * The table property that enables the Delta change data feed, which allows consumers to read only
+   * the rows that have changed between two versions of a table.
+   */
+  static final String CHANGE_DATA_FEED_PROPERTY = "delta.enableChangeDataFeed";
+
+  private static final String INPUT_ORDER_COLUMN = "_input_order";
+
+  private static final String RANK_COLUMN = "_rank";
+
   /** The Pathling context to use. */
   @Nonnull private final PathlingContext context;
 
@@ -49,23 +80,45 @@ final class DeltaSink implements DataSink {
   /** A function that maps resource type to file name. */
   @Nonnull private final UnaryOperator<String> fileNameMapper;
 
+  /** The layout of the files written for each resource type. */
+  @Nonnull private final WriteLayout layout;
+
   /**
-   * Constructs a DeltaSink with a custom file name mapper.
+   * Constructs a DeltaSink with a custom file name mapper and file layout.
    *
    * @param context the PathlingContext to use
    * @param path the path to write the Delta database to
    * @param saveMode the {@link SaveMode} to use
    * @param fileNameMapper a function that maps resource type to file name
+   * @param layout the layout of the files written for each resource type
    */
   DeltaSink(
       @Nonnull final PathlingContext context,
       @Nonnull final String path,
       @Nonnull final SaveMode saveMode,
-      @Nonnull final UnaryOperator<String> fileNameMapper) {
+      @Nonnull final UnaryOperator<String> fileNameMapper,
+      @Nonnull final WriteLayout layout) {
     this.context = context;
     this.path = path;
     this.saveMode = saveMode;
     this.fileNameMapper = fileNameMapper;
+    this.layout = layout;
+  }
+
+  /**
+   * Constructs a DeltaSink with a custom file name mapper.
+   *
+   * @param context the PathlingContext to use
+   * @param path the path to write the Delta database to
+   * @param saveMode the {@link SaveMode} to use
+   * @param fileNameMapper a function that maps resource type to file name
+   */
+  DeltaSink(
+      @Nonnull final PathlingContext context,
+      @Nonnull final String path,
+      @Nonnull final SaveMode saveMode,
+      @Nonnull final UnaryOperator<String> fileNameMapper) {
+    this(context, path, saveMode, fileNameMapper, WriteLayout.DEFAULT);
   }
 
   /**
@@ -87,6 +140,8 @@ final class DeltaSink implements DataSink {
   @Nonnull
   public WriteDetails write(@Nonnull final DataSource source) {
     final List<FileInformation> fileInfos = new ArrayList<>();
+    final Map<String, MergeStatistics> mergeStatistics = new HashMap<>();
+    final Map<String, FileStatistics> fileStatistics = new HashMap<>();
     for (final String resourceType : source.getResourceTypes()) {
       final Dataset<Row> dataset = source.read(resourceType);
       final String fileName = String.join(".", fileNameMapper.apply(resourceType), "parquet");
@@ -94,24 +149,48 @@ final class DeltaSink implements DataSink {
 
       fileInfos.add(new FileInformation(resourceType, tablePath));
 
-      switch (saveMode) {
-        case ERROR_IF_EXISTS, APPEND, IGNORE, OVERWRITE ->
-            writeDataset(dataset, tablePath, saveMode);
-        case MERGE -> {
-          if (deltaTableExists(tablePath)) {
-            // If the table already exists, merge the data in.
-            final DeltaTable table = DeltaTable.forPath(context.getSpark(), tablePath);
-            merge(table, dataset);
-          } else {
-            // If the table does not exist, create it. If an error occurs here, there must be a
-            // pre-existing file at the path that is not a Delta table.
-            writeDataset(dataset, tablePath, SaveMode.ERROR_IF_EXISTS);
-          }
-        }
-        default -> throw new IllegalStateException("Unexpected save mode: " + saveMode);
-      }
+      // Delta does not pass the row group size from the writer options through to Parquet, so it
+      // is applied to the session for the duration of the write.
+      layout.runWithRowGroupSize(
+          context.getSpark(),
+          () -> {
+            switch (saveMode) {
+              case ERROR_IF_EXISTS, APPEND, IGNORE, OVERWRITE ->
+                  writeDataset(layout.arrange(resourceType, dataset), tablePath, saveMode, layout);
+              case MERGE -> {
+                if (deltaTableExists(tablePath)) {
+                  // If the table already exists, merge the data in.
+                  final DeltaTable table = DeltaTable.forPath(context.getSpark(), tablePath);
+                  enableChangeDataFeed(table);
+                  mergeStatistics.put(resourceType, merge(table, dataset));
+                } else {
+                  // If the table does not exist, create it. If an error occurs here, there must
+                  // be a pre-existing file at the path that is not a Delta table.
+                  writeDataset(
+                      layout.arrange(resourceType, dataset),
+                      tablePath,
+                      SaveMode.ERROR_IF_EXISTS,
+                      layout);
+                }
+              }
+              default -> throw new IllegalStateException("Unexpected save mode: " + saveMode);
+            }
+          });
+      fileStatistics.put(resourceType, tableFileStatistics(tablePath));
     }
-    return new WriteDetails(fileInfos);
+    return new WriteDetails(fileInfos, mergeStatistics, fileStatistics);
+  }
+
+  /**
+   * Collects the statistics of the data files that make up the current version of a table.
+   *
+   * @param tablePath the path to the Delta table
+   * @return the statistics of the files
+   */
+  @Nonnull
+  private FileStatistics tableFileStatistics(@Nonnull final String tablePath) {
+    final String[] files = context.getSpark().read().format("delta").load(tablePath).inputFiles();
+    return FileStatistics.collect(context.getSpark(), Arrays.asList(files));
   }
 
   /**
@@ -120,12 +199,14 @@ final class DeltaSink implements DataSink {
    * @param dataset the dataset to write to the Delta table
    * @param tablePath the path to write the Delta table to
    * @param saveMode the save mode to use for writing
+   * @param layout the layout of the files to write
    */
   private static void writeDataset(
       @Nonnull final Dataset<Row> dataset,
       @Nonnull final String tablePath,
-      @Nonnull final SaveMode saveMode) {
-    final var writer = dataset.write().format("delta");
+      @Nonnull final SaveMode saveMode,
+      @Nonnull final WriteLayout layout) {
+    final var writer = layout.configure(dataset.write().format("delta"));
 
     // Apply save mode if it has a Spark equivalent
     saveMode.getSparkSaveMode().ifPresent(writer::mode);
@@ -135,25 +216,197 @@ final class DeltaSink implements DataSink {
       writer.option("overwriteSchema", "true");
     }
 
+    // Record the change data feed for any table that is created by this write. This has no effect
+    // when appending to an existing table.
+    writer.option(CHANGE_DATA_FEED_PROPERTY, "true");
+
     writer.save(tablePath);
   }
 
   /**
    * Merges the given dataset into the specified Delta table.
    *
+   * <p>Where the dataset contains more than one row with the same ID, only the latest is merged.
+   * This is the row with the latest {@code meta.lastUpdated}, or the last row in the input where
+   * this does not distinguish them. Rows that match an existing row with identical content are
+   * excluded from the merge, so that merging data that has not changed does not rewrite the files
+   * of the table.
+   *
    * @param table the Delta table to merge into
    * @param dataset the dataset containing updates to be merged
+   * @return the counts of the resources affected by the merge
+   */
+  @Nonnull
+  static MergeStatistics merge(
+      @Nonnull final DeltaTable table, @Nonnull final Dataset<Row> dataset) {
+    final Dataset<Row> updates = latestById(dataset).persist();
+    final Dataset<Row> changed = withoutUnchanged(table.toDF(), updates).persist();
+    try {
+      final long unchanged = updates.count() - changed.count();
+      if (changed.isEmpty()) {
+        // There is nothing to write, so avoid creating a new version of the table.
+        return new MergeStatistics(0, 0, unchanged, 0);
+      }
+      // Perform a merge operation where we match on the 'id' column.
+      table
+          .as("original")
+          .merge(changed.as("updates"), "original.id = updates.id")
+          .whenMatched()
+          .updateAll()
+          .whenNotMatched()
+          .insertAll()
+          .execute();
+      return lastMergeStatistics(table, unchanged);
+    } finally {
+      changed.unpersist();
+      updates.unpersist();
+    }
+  }
+
+  /**
+   * Removes rows with duplicate IDs from a merge source, as Delta cannot merge more than one source
+   * row into the same target row.
+   *
+   * @param dataset the rows to be merged
+   * @return the latest row for each ID
+   */
+  @Nonnull
+  static Dataset<Row> latestById(@Nonnull final Dataset<Row> dataset) {
+    final List<Column> ordering = new ArrayList<>();
+    if (hasLastUpdated(dataset.schema())) {
+      ordering.add(col("meta.lastUpdated").desc_nulls_last());
+    }
+    ordering.add(col(INPUT_ORDER_COLUMN).desc());
+    final WindowSpec latestFirst =
+        Window.partitionBy(col("id")).orderBy(ordering.toArray(Column[]::new));
+    return dataset
+        .withColumn(INPUT_ORDER_COLUMN, monotonically_increasing_id())
+        .withColumn(RANK_COLUMN, row_number().over(latestFirst))
+        .filter(col(RANK_COLUMN).equalTo(1))
+        .drop(INPUT_ORDER_COLUMN, RANK_COLUMN);
+  }
+
+  /**
+   * Removes the rows from a merge source that match an existing row with identical content.
+   *
+   * @param target the current content of the table
+   * @param updates the rows to be merged, with unique IDs
+   * @return the rows that are either new or have changed
    */
-  static void merge(@Nonnull final DeltaTable table, @Nonnull final Dataset<Row> dataset) {
-    // Perform a merge operation where we match on the 'id' column.
-    table
-        .as("original")
-        .merge(dataset.as("updates"), "original.id = updates.id")
-        .whenMatched()
-        .updateAll()
-        .whenNotMatched()
-        .insertAll()
-        .execute();
+  @Nonnull
+  static Dataset<Row> withoutUnchanged(
+      @Nonnull final Dataset<Row> target, @Nonnull final Dataset<Row> updates) {
+    final String[] columns = updates.columns();
+    final Column unchanged =
+        col("updates.id")
+            .equalTo(col("original.id"))
+            .and(content("original", columns).equalTo(content("updates", columns)));
+    return updates.as("updates").join(target.as("original"), unchanged, "left_anti");
+  }
+
+  /**
+   * Builds a representation of the content of an encoded resource that can be compared for
+   * equality.
+   *
+   * <p>The resource is converted to JSON, as equality is not defined for some of the types used
+   * within encoded resources (e.g. maps). The field IDs ({@code _fid}) that the encoders assign to
+   * each element are different each time a resource is encoded, so they are removed. As the
+   * extensions of the resource are keyed by these field IDs, they are compared as a sorted list of
+   * values.
+   *
+   * @param alias the alias of the dataset that contains the resource
+   * @param columns the columns of the resource
+   * @return a string column containing the comparable content
+   */
+  @Nonnull
+  static Column content(@Nonnull final String alias, @Nonnull final String[] columns) {
+    final String extensionsField = ExtensionSupport.EXTENSIONS_FIELD_NAME();
+    final Column elements =
+        withoutFieldIds(
+            to_json(
+                struct(
+                    Arrays.stream(columns)
+                        .filter(column -> !column.equals(extensionsField))
+                        .map(
+                            column ->
+                                col(alias + ".`" + column.replace("`", "``") + "`").as(column))
+                        .toArray(Column[]::new))));
+    if (!Arrays.asList(columns).contains(extensionsField)) {
+      return elements;
+    }
+    final Column extensions =
+        array_sort(
+            transform(
+                map_values(col(alias + "." + extensionsField)),
+                extension -> withoutFieldIds(to_json(extension))));
+    return concat_ws("|", elements, coalesce(array_join(extensions, ","), lit("")));
+  }
+
+  @Nonnull
+  private static Column withoutFieldIds(@Nonnull final Column json) {
+    // Quotes within JSON string values are always escaped, so this only matches field names.
+    return regexp_replace(
+        regexp_replace(json, ",?\"" + ExtensionSupport.FID_FIELD_NAME() + "\":-?\\d+", ""),
+        "\\{,",
+        "{");
+  }
+
+  private static boolean hasLastUpdated(@Nonnull final StructType schema) {
+    return Arrays.asList(schema.fieldNames()).contains("meta")
+        && schema.apply("meta").dataType() instanceof final StructType meta
+        && Arrays.asList(meta.fieldNames()).contains("lastUpdated");
+  }
+
+  /**
+   * Reads the statistics of the most recent merge into a table from the operation metrics recorded
+   * in its history.
+   *
+   * @param table the Delta table
+   * @param unchanged the number of rows that were excluded from the merge as they had not changed
+   * @return the statistics of the merge
+   */
+  @Nonnull
+  private static MergeStatistics lastMergeStatistics(
+      @Nonnull final DeltaTable table, final long unchanged) {
+    final Row commit = table.history(1).select("operation", "operationMetrics").first();
+    if (!"MERGE".equals(commit.getString(0)) || commit.isNullAt(1)) {
+      return new MergeStatistics(0, 0, unchanged, 0);
+    }
+    final Map<String, String> metrics = commit.getJavaMap(1);
+    return new MergeStatistics(
+        metric(metrics, "numTargetRowsInserted"),
+        metric(metrics, "numTargetRowsUpdated"),
+        unchanged,
+        metric(metrics, "numTargetRowsDeleted"));
+  }
+
+  private static long metric(
+      @Nonnull final Map<String, String> metrics, @Nonnull final String name) {
+    final String value = metrics.get(name);
+    return value == null ? 0 : Long.parseLong(value);
+  }
+
+  /**
+   * Enables the change data feed on an existing Delta table, if it is not already enabled. Changes
+   * are only recorded from the version at which the feed was enabled.
+   *
+   * @param table the Delta table to update
+   */
+  static void enableChangeDataFeed(@Nonnull final DeltaTable table) {
+    final Row detail = table.detail().first();
+    final Map<String, String> properties = detail.getJavaMap(detail.fieldIndex("properties"));
+    if (!"true".equals(properties.get(CHANGE_DATA_FEED_PROPERTY))) {
+      final String location = detail.getString(detail.fieldIndex("location"));
+      table
+          .toDF()
+          .sparkSession()
+          .sql(
+              "ALTER TABLE delta.`"
+                  + location.replace("`", "``")
+                  + "` SET TBLPROPERTIES ("
+                  + CHANGE_DATA_FEED_PROPERTY
+                  + " = true)");
+    }
   }
 
   /**
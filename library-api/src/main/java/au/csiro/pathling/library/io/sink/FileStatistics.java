@@ -0,0 +1,86 @@
+/*
+ * Copyright © 2018-2026 Commonwealth Scientific and Industrial Research
+ * Organisation (CSIRO) ABN 41 687 119 230.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.pathling.library.io.sink;
+
+import au.csiro.pathling.library.io.FileSystemPersistence;
+import au.csiro.pathling.library.io.PersistenceError;
+import jakarta.annotation.Nonnull;
+import java.io.IOException;
+import java.util.Collection;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.parquet.hadoop.ParquetFileReader;
+import org.apache.parquet.hadoop.util.HadoopInputFile;
+import org.apache.spark.sql.SparkSession;
+
+/**
+ * Statistics describing the Parquet files that hold the resources of a type after a write.
+ *
+ * @param files the number of files
+ * @param records the number of resources within the files
+ * @param rowGroups the number of Parquet row groups within the files
+ * @param totalBytes the combined size of the files in bytes
+ * @param minFileBytes the size of the smallest file in bytes
+ * @param maxFileBytes the size of the largest file in bytes
+ * @author John Grimes
+ */
+public record FileStatistics(
+    long files,
+    long records,
+    long rowGroups,
+    long totalBytes,
+    long minFileBytes,
+    long maxFileBytes) {
+
+  /**
+   * Collects the statistics of a set of Parquet files, reading only the file sizes and the footers
+   * of the files.
+   *
+   * @param spark the Spark session
+   * @param fileUrls the URLs of the Parquet files
+   * @return the statistics of the files
+   */
+  @Nonnull
+  static FileStatistics collect(
+      @Nonnull final SparkSession spark, @Nonnull final Collection<String> fileUrls) {
+    final Configuration configuration = spark.sparkContext().hadoopConfiguration();
+    long records = 0;
+    long rowGroups = 0;
+    long totalBytes = 0;
+    long minFileBytes = fileUrls.isEmpty() ? 0 : Long.MAX_VALUE;
+    long maxFileBytes = 0;
+    for (final String fileUrl : fileUrls) {
+      final FileSystem fileSystem = FileSystemPersistence.getFileSystem(spark, fileUrl);
+      final Path path = new Path(fileUrl);
+      try (final ParquetFileReader reader =
+          ParquetFileReader.open(HadoopInputFile.fromPath(path, configuration))) {
+        final long bytes = fileSystem.getFileStatus(path).getLen();
+        records += reader.getRecordCount();
+        rowGroups += reader.getRowGroups().size();
+        totalBytes += bytes;
+        minFileBytes = Math.min(minFileBytes, bytes);
+        maxFileBytes = Math.max(maxFileBytes, bytes);
+      } catch (final IOException e) {
+        throw new PersistenceError("Problem reading statistics of file: " + fileUrl, e);
+      }
+    }
+    return new FileStatistics(
+        fileUrls.size(), records, rowGroups, totalBytes, minFileBytes, maxFileBytes);
+  }
+}
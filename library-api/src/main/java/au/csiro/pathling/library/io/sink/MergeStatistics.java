@@ -0,0 +1,29 @@
+/*
+ * Copyright © 2018-2026 Commonwealth Scientific and Industrial Research
+ * Organisation (CSIRO) ABN 41 687 119 230.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package au.csiro.pathling.library.io.sink;
+
+/**
+ * Counts of the rows affected by a merge of resources into a table.
+ *
+ * @param inserted the number of resources that were not previously present in the table
+ * @param updated the number of resources whose content was changed
+ * @param unchanged the number of resources that were already present with identical content, and
+ *     which were not rewritten
+ * @param deleted the number of resources that were removed from the table
+ * @author John Grimes
+ */
+public record MergeStatistics(long inserted, long updated, long unchanged, long deleted) {}
@@ -21,6 +21,7 @@ import static au.csiro.pathling.library.io.FileSystemPersistence.safelyJoinPaths
 
 import au.csiro.pathling.io.source.DataSource;
 import au.csiro.pathling.library.PathlingContext;
+import au.csiro.pathling.library.io.Compression;
 import au.csiro.pathling.library.io.FileSystemPersistence;
 import au.csiro.pathling.library.io.SaveMode;
 import jakarta.annotation.Nonnull;
@@ -52,23 +53,45 @@ final class NdjsonSink implements DataSink {
   /** A function that maps resource type to file name. */
   @Nonnull private final UnaryOperator<String> fileNameMapper;
 
+  /** The compression codec to use when writing the files. */
+  @Nonnull private final Compression compression;
+
   /**
-   * Constructs an NdjsonSink with a custom file name mapper.
+   * Constructs an NdjsonSink with a custom file name mapper and compression codec.
    *
    * @param context the {@link PathlingContext} to use
    * @param path the path to write the NDJSON files to
    * @param saveMode the {@link SaveMode} to use
    * @param fileNameMapper a function that maps resource type to file name
+   * @param compression the {@link Compression} codec to use
    */
   NdjsonSink(
       @Nonnull final PathlingContext context,
       @Nonnull final String path,
       @Nonnull final SaveMode saveMode,
-      @Nonnull final UnaryOperator<String> fileNameMapper) {
+      @Nonnull final UnaryOperator<String> fileNameMapper,
+      @Nonnull final Compression compression) {
     this.context = context;
     this.path = path;
     this.saveMode = saveMode;
     this.fileNameMapper = fileNameMapper;
+    this.compression = compression;
+  }
+
+  /**
+   * Constructs an NdjsonSink with a custom file name mapper.
+   *
+   * @param context the {@link PathlingContext} to use
+   * @param path the path to write the NDJSON files to
+   * @param saveMode the {@link SaveMode} to use
+   * @param fileNameMapper a function that maps resource type to file name
+   */
+  NdjsonSink(
+      @Nonnull final PathlingContext context,
+      @Nonnull final String path,
+      @Nonnull final SaveMode saveMode,
+      @Nonnull final UnaryOperator<String> fileNameMapper) {
+    this(context, path, saveMode, fileNameMapper, Compression.NONE);
   }
 
   /**
@@ -108,10 +131,11 @@ final class NdjsonSink implements DataSink {
         default -> throw new IllegalStateException("Unexpected save mode: " + saveMode);
       }
       // Remove the partitioned directory and replace it with the renamed partitioned files
-      // <resource_type>.<partId>.ndjson, i.e. Patient.00000.ndjson
+      // <resource_type>.<partId>.ndjson, i.e. Patient.00000.ndjson, followed by the extension of
+      // the compression codec if there is one, i.e. Patient.00000.ndjson.gz
       final Collection<String> renamed =
           FileSystemPersistence.renamePartitionedFiles(
-              context.getSpark(), resultUrl, resultUrl, "txt");
+              context.getSpark(), resultUrl, resultUrl, "txt", compression);
       renamed.forEach(
           renamedFilename -> fileInfos.add(new FileInformation(resourceType, renamedFilename)));
     }
@@ -127,6 +151,7 @@ final class NdjsonSink implements DataSink {
     // Apply save mode if it has a Spark equivalent
     saveMode.getSparkSaveMode().ifPresent(writer::mode);
 
-    writer.text(resultUrlPartitioned);
+    // Each partition is compressed by the task that writes it.
+    writer.option("compression", compression.getSparkCodec()).text(resultUrlPartitioned);
   }
 }
@@ -0,0 +1,27 @@
+/*
+ * Copyright © 2018-2026 Commonwealth Scientific and Industrial Research
+ * Organisation (CSIRO) ABN 41 687 119 230.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.pathling.library.io.sink;
+
+/**
+ * Counts of the data files affected by the optimisation of a table.
+ *
+ * @param filesAdded the number of files written by the optimisation
+ * @param filesRemoved the number of files that were replaced by the optimisation
+ * @author John Grimes
+ */
+public record OptimizeStatistics(long filesAdded, long filesRemoved) {}
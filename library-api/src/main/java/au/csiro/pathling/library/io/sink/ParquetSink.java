@@ -26,7 +26,9 @@ import au.csiro.pathling.library.io.SaveMode;
 import jakarta.annotation.Nonnull;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.function.UnaryOperator;
 import org.apache.spark.sql.Dataset;
 import org.apache.spark.sql.Row;
@@ -50,23 +52,45 @@ final class ParquetSink implements DataSink {
   /** A function that maps resource type to file name. */
   @Nonnull private final UnaryOperator<String> fileNameMapper;
 
+  /** The layout of the files written for each resource type. */
+  @Nonnull private final WriteLayout layout;
+
   /**
-   * Constructs a ParquetSink with a custom file name mapper.
+   * Constructs a ParquetSink with a custom file name mapper and file layout.
    *
    * @param context the {@link PathlingContext} to use
    * @param path the path to write the Parquet files to
    * @param saveMode the {@link SaveMode} to use
    * @param fileNameMapper a function that maps resource type to file name
+   * @param layout the layout of the files written for each resource type
    */
   ParquetSink(
       @Nonnull final PathlingContext context,
       @Nonnull final String path,
       @Nonnull final SaveMode saveMode,
-      @Nonnull final UnaryOperator<String> fileNameMapper) {
+      @Nonnull final UnaryOperator<String> fileNameMapper,
+      @Nonnull final WriteLayout layout) {
     this.context = context;
     this.path = path;
     this.saveMode = saveMode;
     this.fileNameMapper = fileNameMapper;
+    this.layout = layout;
+  }
+
+  /**
+   * Constructs a ParquetSink with a custom file name mapper.
+   *
+   * @param context the {@link PathlingContext} to use
+   * @param path the path to write the Parquet files to
+   * @param saveMode the {@link SaveMode} to use
+   * @param fileNameMapper a function that maps resource type to file name
+   */
+  ParquetSink(
+      @Nonnull final PathlingContext context,
+      @Nonnull final String path,
+      @Nonnull final SaveMode saveMode,
+      @Nonnull final UnaryOperator<String> fileNameMapper) {
+    this(context, path, saveMode, fileNameMapper, WriteLayout.DEFAULT);
   }
 
   /**
@@ -88,8 +112,9 @@ final class ParquetSink implements DataSink {
   @Nonnull
   public WriteDetails write(@Nonnull final DataSource source) {
     final List<FileInformation> fileInfos = new ArrayList<>();
+    final Map<String, FileStatistics> fileStatistics = new HashMap<>();
     for (final String resourceType : source.getResourceTypes()) {
-      final Dataset<Row> dataset = source.read(resourceType);
+      final Dataset<Row> dataset = layout.arrange(resourceType, source.read(resourceType));
       final String fileName = String.join(".", fileNameMapper.apply(resourceType), "parquet");
       final String tablePath = safelyJoinPaths(path, fileName);
 
@@ -109,15 +134,16 @@ final class ParquetSink implements DataSink {
               context.getSpark(), tablePath, tablePath, "parquet");
       renamed.forEach(
           renamedFilename -> fileInfos.add(new FileInformation(resourceType, renamedFilename)));
+      fileStatistics.put(resourceType, FileStatistics.collect(context.getSpark(), renamed));
     }
-    return new WriteDetails(fileInfos);
+    return new WriteDetails(fileInfos, Map.of(), fileStatistics);
   }
 
   void writeDataset(
       @Nonnull final Dataset<Row> dataset,
       @Nonnull final String tablePath,
       @Nonnull final SaveMode saveMode) {
-    final var writer = dataset.write();
+    final var writer = layout.configure(dataset.write());
 
     // Apply save mode if it has a Spark equivalent
     saveMode.getSparkSaveMode().ifPresent(writer::mode);
@@ -0,0 +1,349 @@
+/*
+ * Copyright © 2018-2026 Commonwealth Scientific and Industrial Research
+ * Organisation (CSIRO) ABN 41 687 119 230.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package au.csiro.pathling.library.io.sink;
+
+import static au.csiro.pathling.library.io.FileSystemPersistence.safelyJoinPaths;
+import static au.csiro.pathling.utilities.Preconditions.checkArgument;
+import static org.apache.spark.sql.functions.col;
+import static org.apache.spark.sql.functions.get_json_object;
+
+import au.csiro.pathling.library.PathlingContext;
+import io.delta.tables.DeltaTable;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeoutException;
+import java.util.function.UnaryOperator;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.spark.api.java.function.VoidFunction2;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Encoders;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.RuntimeConfig;
+import org.apache.spark.sql.streaming.DataStreamReader;
+import org.apache.spark.sql.streaming.DataStreamWriter;
+import org.apache.spark.sql.streaming.StreamingQuery;
+import org.apache.spark.sql.streaming.Trigger;
+
+/**
+ * Continuously ingests FHIR data from files that arrive within a directory into a set of Delta
+ * tables, one per resource type.
+ *
+ * <p>New files are discovered using the Spark file stream source. Each micro-batch of new files is
+ * encoded and merged into the Delta tables by resource ID, in the same way as a write using the
+ * {@code merge} save mode. The progress of the stream is recorded within a checkpoint directory, so
+ * that a stream that is restarted resumes with the files that it has not yet processed.
+ *
+ * <p>Each merge is recorded within the Delta log along with the ID of the micro-batch that produced
+ * it. If a micro-batch is replayed after a failure, the tables that it has already been written to
+ * are skipped, so that each file is applied to the tables exactly once.
+ *
+ * <p>The ingestion is started using {@link #start()}, which returns a {@link StreamingQuery} that
+ * can be used to monitor the progress of the stream and to stop it.
+ *
+ * @author John Grimes
+ */
+@Slf4j
+public class StreamingDeltaSink {
+
+  /** The Delta configuration that identifies the application performing an idempotent write. */
+  static final String TXN_APP_ID_CONFIGURATION = "spark.databricks.delta.write.txnAppId";
+
+  /** The Delta configuration that identifies the version of an idempotent write. */
+  static final String TXN_VERSION_CONFIGURATION = "spark.databricks.delta.write.txnVersion";
+
+  private static final String RESOURCE_TYPE_COLUMN = "resourceType";
+
+  /** The file extensions of the Bundle MIME types that can be ingested. */
+  private static final Map<String, String> BUNDLE_EXTENSIONS =
+      Map.of(PathlingContext.FHIR_JSON, "json", PathlingContext.FHIR_XML, "xml");
+
+  /** The Pathling context to use. */
+  @Nonnull private final PathlingContext context;
+
+  /** The directory that is monitored for new files. */
+  @Nonnull private final String inputPath;
+
+  /** The MIME type of the input files. */
+  @Nonnull private final String mimeType;
+
+  /**
+   * The resource types to extract from each Bundle, or null if the input files are NDJSON. The
+   * resource type of each NDJSON line is determined from the resource itself.
+   */
+  @Nullable private final Set<String> bundleResourceTypes;
+
+  /** The path to write the Delta database to. */
+  @Nonnull private final String databasePath;
+
+  /** The directory in which the progress of the stream is recorded. */
+  @Nonnull private final String checkpointPath;
+
+  /** A function that maps resource type to file name. */
+  @Nonnull private UnaryOperator<String> fileNameMapper = UnaryOperator.identity();
+
+  /** The maximum number of new files to include in each micro-batch, or null for no limit. */
+  @Nullable private Integer maxFilesPerTrigger;
+
+  /** The interval at which micro-batches are started, or null to start them as soon as possible. */
+  @Nullable private Duration triggerInterval;
+
+  private StreamingDeltaSink(
+      @Nonnull final PathlingContext context,
+      @Nonnull final String inputPath,
+      @Nonnull final String mimeType,
+      @Nullable final Set<String> bundleResourceTypes,
+      @Nonnull final String databasePath,
+      @Nonnull final String checkpointPath) {
+    this.context = context;
+    this.inputPath = inputPath;
+    this.mimeType = mimeType;
+    this.bundleResourceTypes = bundleResourceTypes;
+    this.databasePath = databasePath;
+    this.checkpointPath = checkpointPath;
+  }
+
+  /**
+   * Creates a stream that ingests NDJSON files with the "ndjson" extension. Each line may contain a
+   * resource of any supported type.
+   *
+   * @param context the Pathling context to use
+   * @param inputPath the directory that is monitored for new files
+   * @param databasePath the path to write the Delta database to
+   * @param checkpointPath the directory in which the progress of the stream is recorded
+   * @return a new stream, which has not yet been started
+   */
+  @Nonnull
+  public static StreamingDeltaSink ndjson(
+      @Nonnull final PathlingContext context,
+      @Nonnull final String inputPath,
+      @Nonnull final String databasePath,
+      @Nonnull final String checkpointPath) {
+    return new StreamingDeltaSink(
+        context, inputPath, PathlingContext.FHIR_JSON, null, databasePath, checkpointPath);
+  }
+
+  /**
+   * Creates a stream that ingests files that each contain a single FHIR Bundle.
+   *
+   * @param context the Pathling context to use
+   * @param inputPath the directory that is monitored for new files
+   * @param mimeType the MIME type of the Bundles, which also determines the extension of the files
+   *     that are ingested
+   * @param resourceTypes the resource types to extract from the Bundles
+   * @param databasePath the path to write the Delta database to
+   * @param checkpointPath the directory in which the progress of the stream is recorded
+   * @return a new stream, which has not yet been started
+   */
+  @Nonnull
+  public static StreamingDeltaSink bundles(
+      @Nonnull final PathlingContext context,
+      @Nonnull final String inputPath,
+      @Nonnull final String mimeType,
+      @Nonnull final Set<String> resourceTypes,
+      @Nonnull final String databasePath,
+      @Nonnull final String checkpointPath) {
+    checkArgument(
+        BUNDLE_EXTENSIONS.containsKey(mimeType), "Unsupported Bundle MIME type: " + mimeType);
+    return new StreamingDeltaSink(
+        context, inputPath, mimeType, Set.copyOf(resourceTypes), databasePath, checkpointPath);
+  }
+
+  /**
+   * Sets the function that maps a resource type to the name of its table.
+   *
+   * @param fileNameMapper a function that maps resource type to file name
+   * @return this stream, for chaining
+   */
+  @Nonnull
+  public StreamingDeltaSink fileNameMapper(@Nonnull final UnaryOperator<String> fileNameMapper) {
+    this.fileNameMapper = fileNameMapper;
+    return this;
+  }
+
+  /**
+   * Limits the number of new files that are included in each micro-batch. Smaller batches reduce
+   * the latency of each file, while larger batches reduce the number of commits to each table.
+   *
+   * @param maxFilesPerTrigger the maximum number of files per micro-batch
+   * @return this stream, for chaining
+   */
+  @Nonnull
+  public StreamingDeltaSink maxFilesPerTrigger(final int maxFilesPerTrigger) {
+    checkArgument(maxFilesPerTrigger > 0, "maxFilesPerTrigger must be positive");
+    this.maxFilesPerTrigger = maxFilesPerTrigger;
+    return this;
+  }
+
+  /**
+   * Sets the interval at which the input directory is checked for new files. By default, a new
+   * micro-batch is started as soon as the previous one has finished.
+   *
+   * @param triggerInterval the interval between micro-batches
+   * @return this stream, for chaining
+   */
+  @Nonnull
+  public StreamingDeltaSink triggerInterval(@Nonnull final Duration triggerInterval) {
+    this.triggerInterval = triggerInterval;
+    return this;
+  }
+
+  /**
+   * Starts the stream. Files that already exist within the input directory and that have not been
+   * recorded within the checkpoint are included in the first micro-batch.
+   *
+   * @return the running query, which can be used to monitor and stop the stream
+   * @throws TimeoutException if the query cannot be started
+   */
+  @Nonnull
+  public StreamingQuery start() throws TimeoutException {
+    final boolean isBundles = bundleResourceTypes != null;
+    DataStreamReader reader =
+        context
+            .getSpark()
+            .readStream()
+            .format("text")
+            .option(
+                "pathGlobFilter", "*." + (isBundles ? BUNDLE_EXTENSIONS.get(mimeType) : "ndjson"));
+    if (isBundles) {
+      // Treat the whole file as a record, rather than individual lines.
+      reader = reader.option("wholetext", true);
+    }
+    if (maxFilesPerTrigger != null) {
+      reader = reader.option("maxFilesPerTrigger", maxFilesPerTrigger);
+    }
+    final Dataset<String> input = reader.load(inputPath).as(Encoders.STRING());
+
+    DataStreamWriter<String> writer =
+        input
+            .writeStream()
+            .queryName("pathling-ingest-" + appId())
+            .option("checkpointLocation", checkpointPath)
+            .foreachBatch((VoidFunction2<Dataset<String>, Long>) this::writeBatch);
+    if (triggerInterval != null) {
+      writer = writer.trigger(Trigger.ProcessingTime(triggerInterval.toMillis()));
+    }
+    log.info("Starting ingestion from {} into {}", inputPath, databasePath);
+    return writer.start();
+  }
+
+  /**
+   * Encodes a micro-batch of input records and merges the resources into the Delta tables.
+   *
+   * @param batch the lines or Bundles within the new files
+   * @param batchId the ID of the micro-batch, which increases with each batch
+   */
+  void writeBatch(@Nonnull final Dataset<String> batch, final long batchId) {
+    final Dataset<String> cached = batch.persist();
+    try {
+      if (bundleResourceTypes == null) {
+        writeNdjsonBatch(cached, batchId);
+      } else {
+        for (final String resourceType : bundleResourceTypes) {
+          writeResources(
+              resourceType,
+              context.encodeBundle(cached.toDF(), resourceType, mimeType),
+              batch,
+              batchId);
+        }
+      }
+    } finally {
+      cached.unpersist();
+    }
+  }
+
+  private void writeNdjsonBatch(@Nonnull final Dataset<String> batch, final long batchId) {
+    final Dataset<Row> typed =
+        batch
+            .toDF()
+            .withColumn(RESOURCE_TYPE_COLUMN, get_json_object(col("value"), "$.resourceType"));
+    final List<String> resourceTypes =
+        typed.select(RESOURCE_TYPE_COLUMN).distinct().as(Encoders.STRING()).collectAsList();
+    for (final String resourceType : resourceTypes) {
+      if (resourceType == null || !context.isResourceTypeSupported(resourceType)) {
+        log.warn("Skipping resources of unsupported type in batch {}: {}", batchId, resourceType);
+        continue;
+      }
+      final Dataset<Row> lines =
+          typed.filter(col(RESOURCE_TYPE_COLUMN).equalTo(resourceType)).select("value");
+      writeResources(resourceType, context.encode(lines, resourceType), batch, batchId);
+    }
+  }
+
+  /**
+   * Merges encoded resources into the table for their resource type, creating the table if it does
+   * not exist. The write is skipped if the table has already recorded this micro-batch.
+   */
+  private void writeResources(
+      @Nonnull final String resourceType,
+      @Nonnull final Dataset<Row> resources,
+      @Nonnull final Dataset<String> batch,
+      final long batchId) {
+    final Dataset<Row> encoded = resources.persist();
+    try {
+      if (encoded.isEmpty()) {
+        return;
+      }
+      final String tablePath =
+          safelyJoinPaths(databasePath, fileNameMapper.apply(resourceType) + ".parquet");
+      final String appId = appId();
+      // The write must use the session of the micro-batch, which is isolated from other work
+      // using the same Spark context.
+      final var spark = batch.sparkSession();
+      if (DeltaTable.isDeltaTable(spark, tablePath)) {
+        final DeltaTable table = DeltaTable.forPath(spark, tablePath);
+        DeltaSink.enableChangeDataFeed(table);
+        // Delta resets these settings after the next commit, so they only apply to the merge.
+        final RuntimeConfig conf = spark.conf();
+        conf.set(TXN_APP_ID_CONFIGURATION, appId);
+        conf.set(TXN_VERSION_CONFIGURATION, batchId);
+        final MergeStatistics statistics = DeltaSink.merge(table, encoded);
+        log.debug("Merged {} resources from batch {}: {}", resourceType, batchId, statistics);
+      } else {
+        encoded
+            .write()
+            .format("delta")
+            .options(
+                Map.of(
+                    "txnAppId",
+                    appId,
+                    "txnVersion",
+                    String.valueOf(batchId),
+                    DeltaSink.CHANGE_DATA_FEED_PROPERTY,
+                    "true"))
+            .save(tablePath);
+      }
+      log.debug("Wrote {} resources from batch {} to {}", resourceType, batchId, tablePath);
+    } finally {
+      encoded.unpersist();
+    }
+  }
+
+  /**
+   * Derives an identifier for this stream from its checkpoint location, so that it remains the same
+   * when the stream is restarted.
+   */
+  @Nonnull
+  private String appId() {
+    return UUID.nameUUIDFromBytes(checkpointPath.getBytes(StandardCharsets.UTF_8)).toString();
+  }
+}
@@ -14,15 +14,48 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-
 package au.csiro.pathling.library.io.sink;
 
+import jakarta.annotation.Nonnull;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Capture changes made by the write operation methods on the filesystem.
  *
  * @param fileInfos A list of files that have been created/modified on the filesystem.
+ * @param mergeStatistics The counts of the resources affected within each table that data was
+ *     merged into, keyed by resource type. Tables that were created or overwritten are not
+ *     included.
+ * @param fileStatistics The statistics of the files that hold the data of each resource type after
+ *     the write, keyed by resource type. These are only collected for Parquet and Delta output
+ *     written to a filesystem.
  * @author Felix Naumann
  */
-public record WriteDetails(List<FileInformation> fileInfos) {}
+public record WriteDetails(
+    List<FileInformation> fileInfos,
+    Map<String, MergeStatistics> mergeStatistics,
+    Map<String, FileStatistics> fileStatistics) {
+
+  /**
+   * Constructs a WriteDetails for a write that did not collect file statistics.
+   *
+   * @param fileInfos A list of files that have been created/modified on the filesystem.
+   * @param mergeStatistics The counts of the resources affected within each table that data was
+   *     merged into, keyed by resource type.
+   */
+  public WriteDetails(
+      @Nonnull final List<FileInformation> fileInfos,
+      @Nonnull final Map<String, MergeStatistics> mergeStatistics) {
+    this(fileInfos, mergeStatistics, Map.of());
+  }
+
+  /**
+   * Constructs a WriteDetails for a write that did not merge into any existing tables.
+   *
+   * @param fileInfos A list of files that have been created/modified on the filesystem.
+   */
+  public WriteDetails(@Nonnull final List<FileInformation> fileInfos) {
+    this(fileInfos, Map.of(), Map.of());
+  }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright © 2018-2026 Commonwealth Scientific and Industrial Research
+ * Organisation (CSIRO) ABN 41 687 119 230.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.pathling.library.io.sink;
+
+import static org.apache.spark.sql.functions.col;
+
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import java.util.List;
+import java.util.Map;
+import org.apache.spark.sql.Column;
+import org.apache.spark.sql.DataFrameWriter;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.RuntimeConfig;
+import org.apache.spark.sql.SparkSession;
+import org.apache.spark.sql.catalyst.plans.logical.Statistics;
+import scala.Option;
+
+/**
+ * Controls the layout of the files written for each resource type by the Parquet, Delta and catalog
+ * sinks.
+ *
+ * <p>Without any of these settings, the layout of the files follows the partitioning of the input
+ * data. A single large input file is written as a single large file, and many small input files are
+ * written as many small files.
+ *
+ * @param targetFileSize the approximate size of each file in bytes, or null to follow the
+ *     partitioning of the input. The number of files is derived from Spark's estimate of the size
+ *     of the data, so the files may be smaller than this where the data compresses well.
+ * @param maxRecordsPerFile the maximum number of resources within each file, or null for no limit
+ * @param rowGroupSize the size of each Parquet row group in bytes, or null for the Parquet default
+ * @param sortKeys the columns to sort the resources of each type by, keyed by resource type (e.g.
+ *     {@code subject.reference} and {@code effectiveDateTime} for Observation). Sorting clusters
+ *     related resources within the same files, which allows more files to be skipped when reading.
+ * @author John Grimes
+ */
+public record WriteLayout(
+    @Nullable Long targetFileSize,
+    @Nullable Long maxRecordsPerFile,
+    @Nullable Long rowGroupSize,
+    @Nonnull Map<String, List<String>> sortKeys) {
+
+  /** The layout that follows the partitioning of the input data. */
+  public static final WriteLayout DEFAULT = new WriteLayout(null, null, null, Map.of());
+
+  /** The Parquet writer option that sets the size of each row group. */
+  static final String ROW_GROUP_SIZE_OPTION = "parquet.block.size";
+
+  /**
+   * Rearranges the resources of a type so that they are written with this layout.
+   *
+   * @param resourceType the type of the resources
+   * @param dataset the resources to write
+   * @return the rearranged resources
+   */
+  @Nonnull
+  public Dataset<Row> arrange(
+      @Nonnull final String resourceType, @Nonnull final Dataset<Row> dataset) {
+    final Column[] keys =
+        sortKeys.getOrDefault(resourceType, List.of()).stream()
+            .map(key -> col(key))
+            .toArray(Column[]::new);
+    final Integer files = targetFileCount(dataset);
+    if (keys.length > 0) {
+      // Range partitioning gives each file a distinct range of the key values, which keeps the
+      // minimum and maximum values recorded for each file narrow.
+      final Dataset<Row> partitioned =
+          files == null
+              ? dataset.repartitionByRange(keys)
+              : dataset.repartitionByRange(files, keys);
+      return partitioned.sortWithinPartitions(keys);
+    }
+    return files == null ? dataset : dataset.repartition(files);
+  }
+
+  /**
+   * Applies the options of this layout to a writer.
+   *
+   * @param writer the writer to configure
+   * @return the configured writer
+   */
+  @Nonnull
+  public DataFrameWriter<Row> configure(@Nonnull final DataFrameWriter<Row> writer) {
+    if (maxRecordsPerFile != null) {
+      writer.option("maxRecordsPerFile", maxRecordsPerFile);
+    }
+    if (rowGroupSize != null) {
+      writer.option(ROW_GROUP_SIZE_OPTION, rowGroupSize);
+    }
+    return writer;
+  }
+
+  /**
+   * Runs a write with the row group size of this layout set within the SQL configuration of the
+   * session, which is used by writers that do not accept the row group size as an option. The
+   * previous configuration is restored once the write is complete.
+   *
+   * @param spark the Spark session
+   * @param write the write to run
+   */
+  public void runWithRowGroupSize(
+      @Nonnull final SparkSession spark, @Nonnull final Runnable write) {
+    if (rowGroupSize == null) {
+      write.run();
+      return;
+    }
+    final RuntimeConfig conf = spark.conf();
+    final Option<String> previous = conf.getOption(ROW_GROUP_SIZE_OPTION);
+    conf.set(ROW_GROUP_SIZE_OPTION, rowGroupSize);
+    try {
+      write.run();
+    } finally {
+      if (previous.isDefined()) {
+        conf.set(ROW_GROUP_SIZE_OPTION, previous.get());
+      } else {
+        conf.unset(ROW_GROUP_SIZE_OPTION);
+      }
+    }
+  }
+
+  /**
+   * Derives the number of files to write from the target file size and Spark's estimate of the size
+   * of the data.
+   *
+   * @param dataset the resources to write
+   * @return the number of files, or null if there is no target file size or the size of the data
+   *     cannot be estimated
+   */
+  @Nullable
+  private Integer targetFileCount(@Nonnull final Dataset<Row> dataset) {
+    if (targetFileSize == null) {
+      return null;
+    }
+    final Statistics statistics = dataset.queryExecution().optimizedPlan().stats();
+    final long defaultSize = dataset.sparkSession().sessionState().conf().defaultSizeInBytes();
+    final long sizeInBytes = statistics.sizeInBytes().longValue();
+    if (sizeInBytes <= 0 || sizeInBytes >= defaultSize) {
+      return null;
+    }
+    return (int)
+        Math.max(1, Math.min(Integer.MAX_VALUE, Math.ceilDiv(sizeInBytes, targetFileSize)));
+  }
+}
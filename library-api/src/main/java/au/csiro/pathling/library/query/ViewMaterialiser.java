@@ -0,0 +1,346 @@
+/*
+ * Copyright © 2018-2026 Commonwealth Scientific and Industrial Research
+ * Organisation (CSIRO) ABN 41 687 119 230.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package au.csiro.pathling.library.query;
+
+import static au.csiro.pathling.library.io.FileSystemPersistence.safelyJoinPaths;
+import static au.csiro.pathling.validation.ValidationUtils.ensureValid;
+import static org.apache.spark.sql.functions.col;
+import static org.apache.spark.sql.functions.row_number;
+import static org.apache.spark.sql.functions.when;
+
+import au.csiro.pathling.library.PathlingContext;
+import au.csiro.pathling.views.FhirView;
+import au.csiro.pathling.views.SelectClause;
+import io.delta.tables.DeltaTable;
+import jakarta.annotation.Nonnull;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.UnaryOperator;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.spark.sql.DataFrameWriter;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.SaveMode;
+import org.apache.spark.sql.SparkSession;
+import org.apache.spark.sql.delta.DeltaLog;
+import org.apache.spark.sql.delta.Snapshot;
+import org.apache.spark.sql.expressions.Window;
+import org.apache.spark.sql.expressions.WindowSpec;
+import scala.Option;
+
+/**
+ * Materialises the result of a view into a Delta table, and keeps it up to date by reprocessing
+ * only the resources that have changed since it was last built.
+ *
+ * <p>The source data is read from a Delta database such as one written by {@link
+ * au.csiro.pathling.library.io.sink.DataSinkBuilder#delta(String)}. Each row of the output table
+ * carries the ID of the resource it was projected from, in the {@link #RESOURCE_KEY_COLUMN} column.
+ * The version of the source table that the output reflects is recorded atomically with each write
+ * to the output table, as a Delta transaction identifier.
+ *
+ * <p>When the output table already reflects an earlier version of the source table, the change data
+ * feed of the source table is used to find the resources that have been created, updated or deleted
+ * since then. The rows projected from those resources are removed from the output, and the current
+ * versions of the resources are projected and appended. The cost of a refresh is therefore
+ * proportional to the size of the change, rather than the size of the table.
+ *
+ * <p>The output is rebuilt in full when it does not exist, when the view definition has changed,
+ * when the source table has been recreated, or when the change data feed does not cover the
+ * versions that need to be processed.
+ *
+ * @author John Grimes
+ */
+@Slf4j
+public class ViewMaterialiser {
+
+  /** The name of the column that holds the ID of the resource each row was projected from. */
+  public static final String RESOURCE_KEY_COLUMN = "pathling_resource_id";
+
+  private static final String APPLICATION_ID_PREFIX = "pathling-view-";
+
+  private static final String CHANGE_TYPE_COLUMN = "_change_type";
+
+  private static final String COMMIT_VERSION_COLUMN = "_commit_version";
+
+  private static final String COMMIT_TIMESTAMP_COLUMN = "_commit_timestamp";
+
+  private static final String DELETE_CHANGE_TYPE = "delete";
+
+  @Nonnull private final PathlingContext context;
+
+  @Nonnull private final String databasePath;
+
+  @Nonnull private final UnaryOperator<String> fileNameMapper;
+
+  /**
+   * Constructs a ViewMaterialiser that reads from a Delta database with default file naming.
+   *
+   * @param context the PathlingContext to use
+   * @param databasePath the path to the Delta database that contains the source tables
+   */
+  public ViewMaterialiser(
+      @Nonnull final PathlingContext context, @Nonnull final String databasePath) {
+    this(context, databasePath, UnaryOperator.identity());
+  }
+
+  /**
+   * Constructs a ViewMaterialiser that reads from a Delta database with a custom file name mapper.
+   *
+   * @param context the PathlingContext to use
+   * @param databasePath the path to the Delta database that contains the source tables
+   * @param fileNameMapper a function that maps resource type to file name
+   */
+  public ViewMaterialiser(
+      @Nonnull final PathlingContext context,
+      @Nonnull final String databasePath,
+      @Nonnull final UnaryOperator<String> fileNameMapper) {
+    this.context = context;
+    this.databasePath = databasePath;
+    this.fileNameMapper = fileNameMapper;
+  }
+
+  /**
+   * Brings the materialisation of a view at the specified path up to date with the current version
+   * of its source table, creating it if it does not already exist.
+   *
+   * @param view the view to materialise
+   * @param outputPath the path of the Delta table to write the view result to
+   * @return details of the work that was done
+   * @throws IllegalArgumentException if the view is not valid
+   */
+  @Nonnull
+  public MaterialisationResult materialise(
+      @Nonnull final FhirView view, @Nonnull final String outputPath) {
+    ensureValid(view, "View is not valid");
+    final SparkSession spark = context.getSpark();
+    final String sourcePath =
+        safelyJoinPaths(databasePath, fileNameMapper.apply(view.getResource()) + ".parquet");
+    final Snapshot source = DeltaLog.forTable(spark, sourcePath).update(false, none(), none());
+    final long sourceVersion = source.version();
+    final String applicationId = getApplicationId(view, source);
+
+    final Optional<Long> builtFrom = getBuiltFromVersion(outputPath, applicationId);
+    if (builtFrom.isPresent() && builtFrom.get() == sourceVersion) {
+      log.debug("Materialisation at {} is up to date with version {}", outputPath, sourceVersion);
+      return new MaterialisationResult(sourceVersion, false, 0);
+    }
+    if (builtFrom.isPresent() && builtFrom.get() < sourceVersion) {
+      final Optional<Dataset<Row>> changes =
+          readChanges(sourcePath, builtFrom.get() + 1, sourceVersion);
+      if (changes.isPresent()) {
+        return refresh(view, sourceVersion, outputPath, applicationId, changes.get());
+      }
+    }
+    return rebuild(view, sourcePath, sourceVersion, outputPath, applicationId);
+  }
+
+  /**
+   * Replaces the rows projected from the changed resources with a projection of their current
+   * versions.
+   */
+  @Nonnull
+  private MaterialisationResult refresh(
+      @Nonnull final FhirView view,
+      final long sourceVersion,
+      @Nonnull final String outputPath,
+      @Nonnull final String applicationId,
+      @Nonnull final Dataset<Row> changes) {
+    final long changedResources = changes.count();
+    log.info(
+        "Refreshing materialisation at {} to version {} ({} changed resources)",
+        outputPath,
+        sourceVersion,
+        changedResources);
+    if (changedResources > 0) {
+      DeltaTable.forPath(context.getSpark(), outputPath)
+          .as("output")
+          .merge(changes.as("changes"), "output." + RESOURCE_KEY_COLUMN + " = changes.id")
+          .whenMatched()
+          .delete()
+          .execute();
+    }
+    // Deleted resources have no current version, so they are not projected again.
+    final Dataset<Row> current =
+        changes
+            .filter(col(CHANGE_TYPE_COLUMN).notEqual(DELETE_CHANGE_TYPE))
+            .drop(CHANGE_TYPE_COLUMN, COMMIT_VERSION_COLUMN, COMMIT_TIMESTAMP_COLUMN);
+    // The append also records the new source version, even where there are no rows to add.
+    write(project(view, current), outputPath, applicationId, sourceVersion)
+        .mode(SaveMode.Append)
+        .save(outputPath);
+    return new MaterialisationResult(sourceVersion, false, changedResources);
+  }
+
+  /** Projects the entire source table and replaces the content of the output table with it. */
+  @Nonnull
+  private MaterialisationResult rebuild(
+      @Nonnull final FhirView view,
+      @Nonnull final String sourcePath,
+      final long sourceVersion,
+      @Nonnull final String outputPath,
+      @Nonnull final String applicationId) {
+    log.info("Rebuilding materialisation at {} from version {}", outputPath, sourceVersion);
+    write(
+            project(view, readSource(sourcePath, sourceVersion)),
+            outputPath,
+            applicationId,
+            sourceVersion)
+        .mode(SaveMode.Overwrite)
+        .option("overwriteSchema", "true")
+        .save(outputPath);
+    return new MaterialisationResult(sourceVersion, true, 0);
+  }
+
+  /**
+   * Reads the latest change to each resource that changed within a range of versions, using the
+   * change data feed of the source table. For resources that still exist, this includes their
+   * current content, so the source table itself does not need to be read.
+   *
+   * @return the changes, or empty if the change data feed is not available for the range
+   */
+  @Nonnull
+  private Optional<Dataset<Row>> readChanges(
+      @Nonnull final String sourcePath, final long startingVersion, final long endingVersion) {
+    try {
+      // Where a resource is both deleted and inserted within a single version (e.g. by an
+      // overwrite), the insert reflects its state at the end of that version.
+      final WindowSpec latestFirst =
+          Window.partitionBy(col("id"))
+              .orderBy(
+                  col(COMMIT_VERSION_COLUMN).desc(),
+                  when(col(CHANGE_TYPE_COLUMN).equalTo(DELETE_CHANGE_TYPE), 1).otherwise(0));
+      final Dataset<Row> changes =
+          context
+              .getSpark()
+              .read()
+              .format("delta")
+              .option("readChangeFeed", "true")
+              .option("startingVersion", startingVersion)
+              .option("endingVersion", endingVersion)
+              .load(sourcePath)
+              .filter(col(CHANGE_TYPE_COLUMN).notEqual("update_preimage"))
+              .withColumn("_rank", row_number().over(latestFirst))
+              .filter(col("_rank").equalTo(1))
+              .drop("_rank");
+      // Materialise the changes eagerly, so that an incomplete change data feed is detected here
+      // and the changes are not recomputed by each of the operations that use them.
+      return Optional.of(changes.localCheckpoint(true));
+    } catch (final Exception e) {
+      log.warn(
+          "Change data feed is not available for versions {} to {} of {}, rebuilding in full",
+          startingVersion,
+          endingVersion,
+          sourcePath,
+          e);
+      return Optional.empty();
+    }
+  }
+
+  /** Reads the source table as at the specified version. */
+  @Nonnull
+  private Dataset<Row> readSource(@Nonnull final String sourcePath, final long version) {
+    return context
+        .getSpark()
+        .read()
+        .format("delta")
+        .option("versionAsOf", version)
+        .load(sourcePath);
+  }
+
+  /** Executes the view over the supplied resources, adding the resource key column. */
+  @Nonnull
+  private Dataset<Row> project(
+      @Nonnull final FhirView view, @Nonnull final Dataset<Row> resources) {
+    return context
+        .read()
+        .datasets()
+        .dataset(view.getResource(), resources)
+        .view(withResourceKey(view))
+        .execute();
+  }
+
+  @Nonnull
+  private static DataFrameWriter<Row> write(
+      @Nonnull final Dataset<Row> rows,
+      @Nonnull final String outputPath,
+      @Nonnull final String applicationId,
+      final long sourceVersion) {
+    log.debug("Writing materialisation to {} as of source version {}", outputPath, sourceVersion);
+    // Delta records the transaction identifier in the same commit as the data, and skips writes
+    // with a version that is not greater than the one already recorded.
+    return rows.write()
+        .format("delta")
+        .option("txnAppId", applicationId)
+        .option("txnVersion", sourceVersion);
+  }
+
+  /**
+   * Gets the version of the source table that the output table was last built from, if the output
+   * table exists and was built using the same view and source table.
+   */
+  @Nonnull
+  private Optional<Long> getBuiltFromVersion(
+      @Nonnull final String outputPath, @Nonnull final String applicationId) {
+    final SparkSession spark = context.getSpark();
+    if (!DeltaTable.isDeltaTable(spark, outputPath)) {
+      return Optional.empty();
+    }
+    final Snapshot output = DeltaLog.forTable(spark, outputPath).update(false, none(), none());
+    final Option<Object> version = output.transactions().get(applicationId);
+    return version.isDefined() ? Optional.of((Long) version.get()) : Optional.empty();
+  }
+
+  /**
+   * Derives an identifier for the combination of a view definition and a source table. This changes
+   * whenever the view is modified or the source table is recreated, forcing a full rebuild.
+   */
+  @Nonnull
+  private static String getApplicationId(
+      @Nonnull final FhirView view, @Nonnull final Snapshot source) {
+    // The string representation of a view includes all of its clauses and constant values.
+    final String identity = view + source.metadata().id();
+    return APPLICATION_ID_PREFIX
+        + UUID.nameUUIDFromBytes(identity.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /** Returns a copy of the view with an additional column containing the resource ID. */
+  @Nonnull
+  private static FhirView withResourceKey(@Nonnull final FhirView view) {
+    final List<SelectClause> select = new ArrayList<>(view.getSelect());
+    select.add(FhirView.select(FhirView.column(RESOURCE_KEY_COLUMN, "id")));
+    return new FhirView(
+        view.getName(), view.getResource(), view.getConstant(), select, view.getWhere());
+  }
+
+  @Nonnull
+  private static <T> Option<T> none() {
+    return Option.empty();
+  }
+
+  /**
+   * Describes the outcome of a materialisation.
+   *
+   * @param sourceVersion the version of the source table that the output now reflects
+   * @param rebuilt true if the output was rebuilt from the entire source table
+   * @param changedResources the number of changed resources that were reprocessed by an incremental
+   *     refresh, or zero if the output was rebuilt or already up to date
+   */
+  public record MaterialisationResult(long sourceVersion, boolean rebuilt, long changedResources) {}
+}
@@ -216,6 +216,32 @@ public class PathlingContextTest {
     assertValidRelativeRefColumns(conditionsDataframe, col("encounter"));
   }
 
+  @Test
+  void testDecodeResourcesToJson() {
+    final Dataset<String> jsonResources =
+        spark.read().textFile(TEST_DATA_URL + "/resources/R4/json");
+
+    final PathlingContext pathling = PathlingContext.create(spark);
+    final Dataset<Row> conditionsDataframe =
+        pathling.encode(jsonResources.toDF(), "Condition", PathlingContext.FHIR_JSON);
+
+    // The JSON written directly from the encoded rows should be the same as the JSON produced by
+    // HAPI from the decoded resources.
+    final List<String> expected =
+        conditionsDataframe
+            .as(pathling.getFhirEncoders().of(Condition.class))
+            .collectAsList()
+            .stream()
+            .map(pathling.getFhirContext().newJsonParser()::encodeResourceToString)
+            .toList();
+    final List<String> actual =
+        pathling
+            .decode(conditionsDataframe, "Condition", PathlingContext.FHIR_JSON)
+            .collectAsList();
+    assertEquals(71, actual.size());
+    assertEquals(expected, actual);
+  }
+
   @Test
   void testEncoderOptions() {
     final Dataset<Row> jsonResourcesDF = spark.read().text(TEST_DATA_URL + "/resources/R4/json");
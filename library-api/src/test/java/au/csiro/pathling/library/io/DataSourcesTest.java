@@ -17,6 +17,10 @@
 
 package au.csiro.pathling.library.io;
 
+import static org.apache.spark.sql.functions.col;
+import static org.apache.spark.sql.functions.lit;
+import static org.apache.spark.sql.functions.max;
+import static org.apache.spark.sql.functions.min;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertInstanceOf;
@@ -30,27 +34,44 @@ import au.csiro.pathling.encoders.FhirEncoders;
 import au.csiro.pathling.library.PathlingContext;
 import au.csiro.pathling.library.TestHelpers;
 import au.csiro.pathling.library.io.sink.DataSinkBuilder;
+import au.csiro.pathling.library.io.sink.DeltaOptimizer;
+import au.csiro.pathling.library.io.sink.FileInformation;
+import au.csiro.pathling.library.io.sink.FileStatistics;
+import au.csiro.pathling.library.io.sink.MergeStatistics;
+import au.csiro.pathling.library.io.sink.OptimizeStatistics;
+import au.csiro.pathling.library.io.sink.WriteDetails;
 import au.csiro.pathling.library.io.source.DataSourceBuilder;
 import au.csiro.pathling.library.io.source.QueryableDataSource;
 import au.csiro.pathling.terminology.TerminologyServiceFactory;
 import au.csiro.pathling.test.assertions.DatasetAssert;
+import io.delta.tables.DeltaTable;
 import jakarta.annotation.Nonnull;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
 import org.apache.commons.io.FileUtils;
 import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Encoders;
 import org.apache.spark.sql.Row;
 import org.apache.spark.sql.RowFactory;
 import org.apache.spark.sql.SparkSession;
+import org.apache.spark.sql.delta.DeltaLog;
 import org.apache.spark.sql.functions;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.AfterEach;
@@ -185,6 +206,57 @@ class DataSourcesTest {
     queryNdjsonData(newData);
   }
 
+  @ParameterizedTest
+  @ValueSource(strings = {"gzip", "bzip2", "zstd"})
+  void ndjsonWriteWithCompression(final String codec) throws IOException {
+    // Read the test NDJSON data.
+    final QueryableDataSource data =
+        pathlingContext.read().ndjson(TEST_DATA_PATH.resolve("ndjson").toString());
+
+    // Write the data back out to a temporary location, compressed using the specified codec.
+    final Compression compression = Compression.fromCode(codec);
+    final Path outputDir = temporaryDirectory.resolve("ndjson-" + codec);
+    final WriteDetails writeDetails =
+        data.write().saveMode("error").compression(codec).ndjson(outputDir.toString());
+
+    // The files should be named using the extension of the codec, and decompress to the original
+    // resources.
+    final List<String> patientFiles =
+        writeDetails.fileInfos().stream()
+            .filter(fileInfo -> fileInfo.fhirResourceType().equals("Patient"))
+            .map(FileInformation::absoluteUrl)
+            .toList();
+    assertFalse(patientFiles.isEmpty());
+    long lines = 0;
+    for (final String patientFile : patientFiles) {
+      final Path filePath = Path.of(URI.create(patientFile).getPath());
+      assertTrue(
+          filePath
+              .getFileName()
+              .toString()
+              .matches("Patient\\.\\d+\\.ndjson" + Pattern.quote(compression.getFileExtension())));
+      try (final InputStream in = decompress(compression, Files.newInputStream(filePath))) {
+        lines +=
+            new String(in.readAllBytes(), StandardCharsets.UTF_8)
+                .lines()
+                .filter(l -> !l.isBlank())
+                .count();
+      }
+    }
+    assertEquals(data.read("Patient").count(), lines);
+  }
+
+  @Nonnull
+  private static InputStream decompress(
+      @Nonnull final Compression compression, @Nonnull final InputStream in) throws IOException {
+    return switch (compression) {
+      case GZIP -> new GZIPInputStream(in);
+      case BZIP2 -> new BZip2CompressorInputStream(in);
+      case ZSTD -> new ZstdCodec().createInputStream(in);
+      case NONE -> in;
+    };
+  }
+
   @Test
   void ndjsonWithExtension() {
     // Read the test NDJSON data.
@@ -428,6 +500,61 @@ class DataSourcesTest {
     queryNdjsonData(newData);
   }
 
+  @Test
+  void parquetWriteWithLayout() {
+    final QueryableDataSource data =
+        pathlingContext.read().ndjson(TEST_DATA_PATH.resolve("ndjson").toString());
+    final long conditions = data.read("Condition").count();
+
+    // Write the Conditions sorted by subject, with a limit on the number of records per file.
+    final Path parquetDir = temporaryDirectory.resolve("parquet-layout");
+    final WriteDetails details =
+        data.write()
+            .saveMode("error")
+            .maxRecordsPerFile(20)
+            .sortBy("Condition", List.of("subject.reference"))
+            .parquet(parquetDir.toString());
+
+    // The statistics account for every Condition, and no file holds more than the limit.
+    final FileStatistics statistics = details.fileStatistics().get("Condition");
+    assertEquals(conditions, statistics.records());
+    assertTrue(statistics.files() >= Math.ceilDiv(conditions, 20));
+
+    // Each file holds a distinct range of subjects.
+    final List<Row> ranges =
+        details.fileInfos().stream()
+            .filter(file -> file.fhirResourceType().equals("Condition"))
+            .map(
+                file ->
+                    pathlingContext
+                        .getSpark()
+                        .read()
+                        .parquet(file.absoluteUrl())
+                        .agg(min("subject.reference"), max("subject.reference"))
+                        .first())
+            .sorted(Comparator.comparing(range -> range.getString(0)))
+            .toList();
+    for (int i = 1; i < ranges.size(); i++) {
+      assertTrue(ranges.get(i).getString(0).compareTo(ranges.get(i - 1).getString(1)) >= 0);
+    }
+  }
+
+  @Test
+  void parquetWriteWithTargetFileSize() {
+    final QueryableDataSource data =
+        pathlingContext.read().ndjson(TEST_DATA_PATH.resolve("ndjson").toString());
+
+    // Write the data with a target file size that is larger than any of the resource types.
+    final WriteDetails details =
+        data.write()
+            .saveMode("error")
+            .targetFileSize(1024L * 1024 * 1024)
+            .parquet(temporaryDirectory.resolve("parquet-target-size").toString());
+
+    // Each resource type is written to a single file.
+    details.fileStatistics().values().forEach(statistics -> assertEquals(1, statistics.files()));
+  }
+
   @Test
   void parquetReadWriteCustom() {
     final Function<String, Set<String>> readMapper =
@@ -567,6 +694,95 @@ class DataSourcesTest {
     queryNdjsonData(newData);
   }
 
+  @Test
+  void deltaWriteWithRowGroupSize() {
+    // Parquet only checks the size of a row group every 100 records, so the Conditions are
+    // repeated within a single partition to give enough records to fill several row groups.
+    final Dataset<Row> original =
+        pathlingContext
+            .read()
+            .ndjson(TEST_DATA_PATH.resolve("ndjson").toString())
+            .read("Condition");
+    Dataset<Row> repeated = original;
+    for (int copy = 1; copy < 20; copy++) {
+      repeated =
+          repeated.unionByName(
+              original.withColumn("id", functions.concat(col("id"), lit("-" + copy))));
+    }
+    final long conditions = repeated.count();
+    final QueryableDataSource data =
+        pathlingContext.read().datasets().dataset("Condition", repeated.coalesce(1));
+
+    // Write the data with a small row group size.
+    final WriteDetails details =
+        data.write()
+            .saveMode("error")
+            .rowGroupSize(16 * 1024)
+            .delta(temporaryDirectory.resolve("delta-row-groups").toString());
+
+    // The files of the table are split into more than one row group.
+    final FileStatistics statistics = details.fileStatistics().get("Condition");
+    assertEquals(conditions, statistics.records());
+    assertTrue(statistics.rowGroups() > statistics.files());
+    assertTrue(statistics.minFileBytes() <= statistics.maxFileBytes());
+  }
+
+  @Test
+  void deltaOptimizeClustersByColumn() {
+    // Write the Conditions to a table with many small files, in the order in which they arrived.
+    final Dataset<Row> original =
+        pathlingContext
+            .read()
+            .ndjson(TEST_DATA_PATH.resolve("ndjson").toString())
+            .read("Condition");
+    Dataset<Row> repeated = original;
+    for (int copy = 1; copy < 20; copy++) {
+      repeated =
+          repeated.unionByName(
+              original.withColumn("id", functions.concat(col("id"), lit("-" + copy))));
+    }
+    final long conditions = repeated.count();
+    final String path = temporaryDirectory.resolve("delta-optimize").toString();
+    final WriteDetails details =
+        pathlingContext
+            .read()
+            .datasets()
+            .dataset("Condition", repeated.coalesce(1))
+            .write()
+            .saveMode("error")
+            .maxRecordsPerFile(conditions / 10)
+            .delta(path);
+    final long filesBefore = details.fileStatistics().get("Condition").files();
+
+    // Optimise the table, clustering it by subject.
+    final long targetFileSize = details.fileStatistics().get("Condition").totalBytes() / 8;
+    final Map<String, OptimizeStatistics> statistics =
+        new DeltaOptimizer(pathlingContext, path, targetFileSize)
+            .optimize(Map.of("Condition", List.of("subject.reference")));
+
+    // All the original files were replaced, and the content of the table is unchanged.
+    final OptimizeStatistics conditionStatistics = statistics.get("Condition");
+    assertEquals(filesBefore, conditionStatistics.filesRemoved());
+    assertTrue(conditionStatistics.filesAdded() > 1);
+    final String tablePath = details.fileInfos().get(0).absoluteUrl();
+    final Dataset<Row> table = spark.read().format("delta").load(tablePath);
+    assertEquals(conditions, table.count());
+
+    // The statistics of the files allow most of them to be skipped when filtering by subject.
+    final String subject = table.select("subject.reference").first().getString(0);
+    final Dataset<Row> files =
+        DeltaLog.forTable(spark, tablePath).unsafeVolatileSnapshot().withStats();
+    final long candidateFiles =
+        files
+            .filter(
+                col("stats.minValues.subject.reference")
+                    .leq(subject)
+                    .and(col("stats.maxValues.subject.reference").geq(subject)))
+            .count();
+    assertEquals(conditionStatistics.filesAdded(), files.count());
+    assertTrue(candidateFiles < files.count());
+  }
+
   @Test
   void deltaReadWriteWithMerge() {
     final String sourcePath = TEST_DATA_PATH.resolve("delta").toString();
@@ -594,6 +810,103 @@ class DataSourcesTest {
     queryDeltaData(newData);
   }
 
+  @Test
+  void deltaWriteEnablesChangeDataFeed() {
+    final String sourcePath = TEST_DATA_PATH.resolve("delta").toString();
+    final String destinationPath = temporaryDirectory.resolve("delta-cdf").toString();
+    final String patientPath = destinationPath + "/Patient.parquet";
+    final QueryableDataSource data = pathlingContext.read().delta(sourcePath);
+
+    // Create a table without the change data feed, as would be the case for an older table.
+    spark
+        .read()
+        .format("delta")
+        .load(sourcePath + "/Patient.parquet")
+        .write()
+        .format("delta")
+        .save(patientPath);
+    assertFalse(changeDataFeedEnabled(patientPath));
+
+    // Merging into the existing table enables the change data feed, and new tables are created
+    // with it enabled.
+    data.write().saveMode("merge").delta(destinationPath);
+
+    assertTrue(changeDataFeedEnabled(patientPath));
+    assertTrue(changeDataFeedEnabled(destinationPath + "/Condition.parquet"));
+  }
+
+  @Test
+  void deltaMergeOfUnchangedDataRewritesNoFiles() {
+    final String sourcePath = TEST_DATA_PATH.resolve("ndjson").toString();
+    final String destinationPath = temporaryDirectory.resolve("delta-merge-unchanged").toString();
+    // The resources are encoded each time they are read, which assigns them new field IDs.
+    final QueryableDataSource data = pathlingContext.read().ndjson(sourcePath);
+    data.write().saveMode("merge").delta(destinationPath);
+    final long patients = data.read("Patient").count();
+    final DeltaTable table = DeltaTable.forPath(spark, destinationPath + "/Patient.parquet");
+    final long version = table.history(1).select("version").first().getLong(0);
+
+    // Merge the same data again.
+    final WriteDetails details = data.write().saveMode("merge").delta(destinationPath);
+
+    // Every resource is reported as unchanged, and the table is not rewritten.
+    assertEquals(new MergeStatistics(0, 0, patients, 0), details.mergeStatistics().get("Patient"));
+    assertEquals(version, table.history(1).select("version").first().getLong(0));
+  }
+
+  @Test
+  void deltaMergeDeduplicatesAndCountsChanges() {
+    final String sourcePath = TEST_DATA_PATH.resolve("delta").toString();
+    final String destinationPath = temporaryDirectory.resolve("delta-merge-counts").toString();
+    final Dataset<Row> patients = pathlingContext.read().delta(sourcePath).read("Patient");
+    final List<String> ids = patients.select("id").as(Encoders.STRING()).collectAsList();
+    pathlingContext
+        .read()
+        .datasets()
+        .dataset("Patient", patients.filter(col("id").notEqual(ids.get(0))))
+        .write()
+        .saveMode("merge")
+        .delta(destinationPath);
+
+    // Merge a batch that includes a new resource, a changed resource and unchanged resources, in
+    // which the changed resource appears twice.
+    final Dataset<Row> changed =
+        patients.filter(col("id").equalTo(ids.get(1))).withColumn("gender", lit("other"));
+    final Dataset<Row> batch =
+        patients
+            .filter(col("id").notEqual(ids.get(1)))
+            .unionByName(patients.filter(col("id").equalTo(ids.get(1))))
+            .unionByName(changed)
+            .coalesce(1);
+    final WriteDetails details =
+        pathlingContext
+            .read()
+            .datasets()
+            .dataset("Patient", batch)
+            .write()
+            .saveMode("merge")
+            .delta(destinationPath);
+
+    // The last occurrence of the duplicated resource is merged.
+    assertEquals(
+        new MergeStatistics(1, 1, ids.size() - 2, 0), details.mergeStatistics().get("Patient"));
+    final Dataset<Row> result =
+        spark.read().format("delta").load(destinationPath + "/Patient.parquet");
+    assertEquals(ids.size(), result.count());
+    assertEquals(
+        "other",
+        result.filter(col("id").equalTo(ids.get(1))).select("gender").first().getString(0));
+  }
+
+  private static boolean changeDataFeedEnabled(@Nonnull final String tablePath) {
+    final Row detail = DeltaTable.forPath(spark, tablePath).detail().first();
+    return "true"
+        .equals(
+            detail
+                .<String, String>getJavaMap(detail.fieldIndex("properties"))
+                .get("delta.enableChangeDataFeed"));
+  }
+
   @Test
   void deltaWriteOverwriteExisting() {
     // Read the test NDJSON data.
@@ -0,0 +1,209 @@
+/*
+ * Copyright © 2018-2026 Commonwealth Scientific and Industrial Research
+ * Organisation (CSIRO) ABN 41 687 119 230.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package au.csiro.pathling.library.io.sink;
+
+import static org.apache.spark.sql.functions.col;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import au.csiro.pathling.library.PathlingContext;
+import au.csiro.pathling.library.TestHelpers;
+import io.delta.tables.DeltaTable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+import org.apache.commons.io.FileUtils;
+import org.apache.spark.sql.Encoders;
+import org.apache.spark.sql.SparkSession;
+import org.apache.spark.sql.streaming.StreamingQuery;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link StreamingDeltaSink}.
+ *
+ * @author John Grimes
+ */
+class StreamingDeltaSinkTest {
+
+  static final Path TEST_DATA_PATH =
+      Path.of("src/test/resources/test-data").toAbsolutePath().normalize();
+
+  static final String PATIENT_ID = "8ee183e2-b3c0-4151-be94-b945d6aa8c6d";
+
+  static SparkSession spark;
+  static PathlingContext pathlingContext;
+
+  Path temporaryDirectory;
+  Path inputPath;
+  String databasePath;
+  String checkpointPath;
+
+  @BeforeAll
+  static void setupContext() {
+    spark = TestHelpers.spark();
+    pathlingContext = PathlingContext.create(spark);
+  }
+
+  @AfterAll
+  static void tearDownAll() {
+    spark.stop();
+  }
+
+  @BeforeEach
+  void setUp() throws IOException {
+    temporaryDirectory = Files.createTempDirectory("pathling-streaming-test-");
+    inputPath = Files.createDirectory(temporaryDirectory.resolve("input"));
+    databasePath = temporaryDirectory.resolve("database").toString();
+    checkpointPath = temporaryDirectory.resolve("checkpoint").toString();
+  }
+
+  @AfterEach
+  void tearDown() throws IOException, TimeoutException {
+    for (final StreamingQuery query : spark.streams().active()) {
+      query.stop();
+    }
+    FileUtils.deleteDirectory(temporaryDirectory.toFile());
+  }
+
+  @Test
+  void ndjsonFilesAreMergedIntoTables() throws Exception {
+    dropNdjson("Patient.ndjson");
+    dropNdjson("Condition.ndjson");
+
+    runToCompletion(ndjsonStream());
+
+    assertEquals(9, table("Patient").toDF().count());
+    assertEquals(71, table("Condition").toDF().count());
+  }
+
+  @Test
+  void newFilesAreMergedIntoExistingTables() throws Exception {
+    dropNdjson("Patient.ndjson");
+    final StreamingQuery query = ndjsonStream().start();
+    try {
+      query.processAllAvailable();
+
+      // Drop a file containing an update to an existing patient.
+      final String updated =
+          Files.readAllLines(TEST_DATA_PATH.resolve("ndjson/Patient.ndjson"))
+              .get(0)
+              .replace("\"gender\":\"male\"", "\"gender\":\"other\"");
+      Files.writeString(inputPath.resolve("update.ndjson"), updated + "\n");
+      query.processAllAvailable();
+    } finally {
+      query.stop();
+    }
+
+    assertEquals(9, table("Patient").toDF().count());
+    assertEquals(
+        List.of("other"),
+        table("Patient")
+            .toDF()
+            .filter(col("id").equalTo(PATIENT_ID))
+            .select("gender")
+            .as(Encoders.STRING())
+            .collectAsList());
+  }
+
+  @Test
+  void restartedStreamDoesNotReprocessFiles() throws Exception {
+    dropNdjson("Patient.ndjson");
+    runToCompletion(ndjsonStream());
+    final long version = latestVersion("Patient");
+
+    // Restart the stream using the same checkpoint, without adding any new files.
+    runToCompletion(ndjsonStream());
+
+    assertEquals(version, latestVersion("Patient"));
+  }
+
+  @Test
+  void replayedBatchIsNotAppliedTwice() throws Exception {
+    dropNdjson("Patient.ndjson");
+    final StreamingDeltaSink sink = ndjsonStream();
+    final var lines =
+        spark.read().text(inputPath.toString()).as(Encoders.STRING()).limit(3).cache();
+    sink.writeBatch(lines, 0);
+    sink.writeBatch(spark.read().text(inputPath.toString()).as(Encoders.STRING()), 1);
+    final long version = latestVersion("Patient");
+
+    // Replay the second batch, as would happen if the stream failed before its checkpoint was
+    // updated.
+    sink.writeBatch(spark.read().text(inputPath.toString()).as(Encoders.STRING()), 1);
+
+    assertEquals(version, latestVersion("Patient"));
+    assertEquals(9, table("Patient").toDF().count());
+  }
+
+  @Test
+  void bundlesAreMergedIntoTables() throws Exception {
+    final Path bundles = TEST_DATA_PATH.resolve("bundles");
+    try (final var files = Files.list(bundles)) {
+      for (final Path file : files.limit(2).toList()) {
+        Files.copy(file, inputPath.resolve(file.getFileName()));
+      }
+    }
+
+    runToCompletion(
+        StreamingDeltaSink.bundles(
+            pathlingContext,
+            inputPath.toString(),
+            PathlingContext.FHIR_JSON,
+            Set.of("Patient", "Condition"),
+            databasePath,
+            checkpointPath));
+
+    assertEquals(2, table("Patient").toDF().count());
+    assertEquals(2, table("Condition").toDF().select("subject.reference").distinct().count());
+  }
+
+  private StreamingDeltaSink ndjsonStream() {
+    return StreamingDeltaSink.ndjson(
+        pathlingContext, inputPath.toString(), databasePath, checkpointPath);
+  }
+
+  private void dropNdjson(final String fileName) throws IOException {
+    Files.writeString(
+        inputPath.resolve(fileName),
+        Files.readString(TEST_DATA_PATH.resolve("ndjson").resolve(fileName)),
+        StandardCharsets.UTF_8);
+  }
+
+  private static void runToCompletion(final StreamingDeltaSink sink) throws TimeoutException {
+    final StreamingQuery query = sink.start();
+    try {
+      query.processAllAvailable();
+    } finally {
+      query.stop();
+    }
+  }
+
+  private DeltaTable table(final String resourceType) {
+    return DeltaTable.forPath(spark, databasePath + "/" + resourceType + ".parquet");
+  }
+
+  private long latestVersion(final String resourceType) {
+    return table(resourceType).history(1).select("version").first().getLong(0);
+  }
+}
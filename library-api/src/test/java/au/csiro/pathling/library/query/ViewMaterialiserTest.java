@@ -0,0 +1,221 @@
+/*
+ * Copyright © 2018-2026 Commonwealth Scientific and Industrial Research
+ * Organisation (CSIRO) ABN 41 687 119 230.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package au.csiro.pathling.library.query;
+
+import static au.csiro.pathling.views.FhirView.column;
+import static au.csiro.pathling.views.FhirView.forEach;
+import static au.csiro.pathling.views.FhirView.select;
+import static org.apache.spark.sql.functions.col;
+import static org.apache.spark.sql.functions.lit;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import au.csiro.pathling.library.PathlingContext;
+import au.csiro.pathling.library.TestHelpers;
+import au.csiro.pathling.library.query.ViewMaterialiser.MaterialisationResult;
+import au.csiro.pathling.test.assertions.DatasetAssert;
+import au.csiro.pathling.views.FhirView;
+import io.delta.tables.DeltaTable;
+import jakarta.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.apache.commons.io.FileUtils;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.SparkSession;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link ViewMaterialiser}.
+ *
+ * @author John Grimes
+ */
+class ViewMaterialiserTest {
+
+  static final Path TEST_DATA_PATH =
+      Path.of("src/test/resources/test-data").toAbsolutePath().normalize();
+
+  static final String UPDATED_ID = "e62e52ae-2d75-4070-a0ae-3cc78d35ed08";
+
+  static final String DELETED_ID = "121503c8-9564-4b48-9086-a22df717948e";
+
+  static final FhirView VIEW =
+      FhirView.ofResource("Patient")
+          .select(
+              select(column("id", "id"), column("gender", "gender")),
+              forEach("name", column("family", "family")))
+          .where("gender = 'female'")
+          .build();
+
+  static SparkSession spark;
+  static PathlingContext pathlingContext;
+
+  Path temporaryDirectory;
+  String databasePath;
+  String outputPath;
+
+  @BeforeAll
+  static void setupContext() {
+    spark = TestHelpers.spark();
+    pathlingContext = PathlingContext.create(spark);
+  }
+
+  @AfterAll
+  static void tearDownAll() {
+    spark.stop();
+  }
+
+  @BeforeEach
+  void setUp() throws IOException {
+    temporaryDirectory = Files.createTempDirectory("pathling-materialiser-test-");
+    databasePath = temporaryDirectory.resolve("database").toString();
+    outputPath = temporaryDirectory.resolve("output").toString();
+    pathlingContext
+        .read()
+        .ndjson(TEST_DATA_PATH.resolve("ndjson").toString())
+        .filterByResourceType("Patient"::equals)
+        .write()
+        .delta(databasePath);
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    FileUtils.deleteDirectory(temporaryDirectory.toFile());
+  }
+
+  @Test
+  void initialMaterialisationBuildsOutput() {
+    final ViewMaterialiser materialiser = new ViewMaterialiser(pathlingContext, databasePath);
+
+    final MaterialisationResult result = materialiser.materialise(VIEW, outputPath);
+
+    assertTrue(result.rebuilt());
+    assertEquals(0, result.sourceVersion());
+    assertMatchesFullProjection(outputPath);
+  }
+
+  @Test
+  void incrementalRefreshMatchesFullRebuild() {
+    final ViewMaterialiser materialiser = new ViewMaterialiser(pathlingContext, databasePath);
+    materialiser.materialise(VIEW, outputPath);
+
+    // Update one resource, delete another and create a third.
+    final Dataset<Row> patients = readPatients();
+    final Dataset<Row> changes =
+        patients
+            .filter(col("id").equalTo(UPDATED_ID))
+            .withColumn("gender", lit("male"))
+            .unionByName(
+                patients
+                    .filter(col("id").equalTo(DELETED_ID))
+                    .withColumn("id", lit("new-patient")));
+    pathlingContext
+        .read()
+        .datasets()
+        .dataset("Patient", changes)
+        .write()
+        .saveMode("merge")
+        .delta(databasePath);
+    DeltaTable.forPath(spark, patientTablePath()).delete(col("id").equalTo(DELETED_ID));
+
+    final MaterialisationResult result = materialiser.materialise(VIEW, outputPath);
+
+    assertFalse(result.rebuilt());
+    assertEquals(3, result.changedResources());
+    assertMatchesFullProjection(outputPath);
+
+    // The refreshed output is identical to one that is built from scratch.
+    final String rebuiltPath = temporaryDirectory.resolve("rebuilt").toString();
+    assertTrue(materialiser.materialise(VIEW, rebuiltPath).rebuilt());
+    DatasetAssert.of(readOutput(outputPath)).hasRowsUnordered(readOutput(rebuiltPath));
+  }
+
+  @Test
+  void upToDateMaterialisationIsNotRewritten() {
+    final ViewMaterialiser materialiser = new ViewMaterialiser(pathlingContext, databasePath);
+    materialiser.materialise(VIEW, outputPath);
+    final long outputVersion = latestVersion(outputPath);
+
+    final MaterialisationResult result = materialiser.materialise(VIEW, outputPath);
+
+    assertFalse(result.rebuilt());
+    assertEquals(0, result.changedResources());
+    assertEquals(outputVersion, latestVersion(outputPath));
+  }
+
+  @Test
+  void changedViewIsRebuilt() {
+    final ViewMaterialiser materialiser = new ViewMaterialiser(pathlingContext, databasePath);
+    materialiser.materialise(VIEW, outputPath);
+    final FhirView changedView =
+        FhirView.ofResource("Patient").select(select(column("id", "id"))).build();
+
+    final MaterialisationResult result = materialiser.materialise(changedView, outputPath);
+
+    assertTrue(result.rebuilt());
+    assertEquals(9, readOutput(outputPath).count());
+  }
+
+  @Test
+  void changesWithoutChangeDataFeedAreRebuilt() {
+    final ViewMaterialiser materialiser = new ViewMaterialiser(pathlingContext, databasePath);
+    materialiser.materialise(VIEW, outputPath);
+
+    // Disable the change data feed, and then make a change that it does not record.
+    spark.sql(
+        "ALTER TABLE delta.`"
+            + patientTablePath()
+            + "` SET TBLPROPERTIES (delta.enableChangeDataFeed = false)");
+    DeltaTable.forPath(spark, patientTablePath()).delete(col("id").equalTo(DELETED_ID));
+
+    final MaterialisationResult result = materialiser.materialise(VIEW, outputPath);
+
+    assertTrue(result.rebuilt());
+    assertMatchesFullProjection(outputPath);
+  }
+
+  private void assertMatchesFullProjection(@Nonnull final String path) {
+    final Dataset<Row> expected = pathlingContext.read().delta(databasePath).view(VIEW).execute();
+    DatasetAssert.of(readOutput(path).drop(ViewMaterialiser.RESOURCE_KEY_COLUMN))
+        .hasRowsUnordered(expected);
+  }
+
+  @Nonnull
+  private Dataset<Row> readPatients() {
+    return spark.read().format("delta").load(patientTablePath());
+  }
+
+  @Nonnull
+  private String patientTablePath() {
+    return databasePath + "/Patient.parquet";
+  }
+
+  @Nonnull
+  private static Dataset<Row> readOutput(@Nonnull final String path) {
+    return spark.read().format("delta").load(path);
+  }
+
+  private static long latestVersion(@Nonnull final String path) {
+    return DeltaTable.forPath(spark, path).history(1).first().getLong(0);
+  }
+}
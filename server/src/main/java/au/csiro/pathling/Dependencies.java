@@ -20,6 +20,7 @@ package au.csiro.pathling;
 import au.csiro.pathling.config.ServerConfiguration;
 import au.csiro.pathling.encoders.FhirEncoders;
 import au.csiro.pathling.io.DynamicDeltaSource;
+import au.csiro.pathling.io.PendingWriteOverlay;
 import au.csiro.pathling.library.PathlingContext;
 import au.csiro.pathling.library.io.source.QueryableDataSource;
 import ca.uhn.fhir.context.FhirContext;
@@ -79,7 +80,8 @@ public class Dependencies {
   @Nonnull
   static QueryableDataSource deltaLake(
       @Nonnull final PathlingContext pathlingContext,
-      @Nonnull final ServerConfiguration serverConfiguration) {
+      @Nonnull final ServerConfiguration serverConfiguration,
+      @Nonnull final PendingWriteOverlay pendingWriteOverlay) {
     final String databaseLocation =
         serverConfiguration.getStorage().getWarehouseUrl()
             + "/"
@@ -89,7 +91,8 @@ public class Dependencies {
         baseSource,
         pathlingContext.getSpark(),
         databaseLocation,
-        pathlingContext.getFhirEncoders());
+        pathlingContext.getFhirEncoders(),
+        pendingWriteOverlay);
   }
 
   @Bean
@@ -42,6 +42,7 @@ import au.csiro.pathling.operations.bulksubmit.BulkSubmitProvider;
 import au.csiro.pathling.operations.bulksubmit.BulkSubmitStatusProvider;
 import au.csiro.pathling.operations.create.CreateProviderFactory;
 import au.csiro.pathling.operations.delete.DeleteProviderFactory;
+import au.csiro.pathling.operations.optimize.OptimizeProvider;
 import au.csiro.pathling.operations.update.BatchProvider;
 import au.csiro.pathling.operations.update.UpdateProviderFactory;
 import au.csiro.pathling.operations.view.ViewDefinitionExportProvider;
@@ -174,6 +175,8 @@ public class FhirServer extends RestfulServer {
 
   @Nonnull private final transient ViewDefinitionExportProvider viewDefinitionExportProvider;
 
+  @Nonnull private final transient OptimizeProvider optimizeProvider;
+
   /**
    * Constructs a new FhirServer.
    *
@@ -203,6 +206,7 @@ public class FhirServer extends RestfulServer {
    * @param viewDefinitionRunProvider the view definition run provider
    * @param viewDefinitionInstanceRunProvider the view definition instance run provider
    * @param viewDefinitionExportProvider the view definition export provider
+   * @param optimizeProvider the optimize provider
    */
   public FhirServer(
       @Nonnull final FhirContext fhirContext,
@@ -230,7 +234,8 @@ public class FhirServer extends RestfulServer {
       @Nonnull final BatchProvider batchProvider,
       @Nonnull final ViewDefinitionRunProvider viewDefinitionRunProvider,
       @Nonnull final ViewDefinitionInstanceRunProvider viewDefinitionInstanceRunProvider,
-      @Nonnull final ViewDefinitionExportProvider viewDefinitionExportProvider) {
+      @Nonnull final ViewDefinitionExportProvider viewDefinitionExportProvider,
+      @Nonnull final OptimizeProvider optimizeProvider) {
     // Pass the FhirContext to the RestfulServer superclass to ensure custom types like
     // ViewDefinitionResource are recognized when parsing request bodies.
     super(fhirContext);
@@ -259,6 +264,7 @@ public class FhirServer extends RestfulServer {
     this.viewDefinitionRunProvider = viewDefinitionRunProvider;
     this.viewDefinitionInstanceRunProvider = viewDefinitionInstanceRunProvider;
     this.viewDefinitionExportProvider = viewDefinitionExportProvider;
+    this.optimizeProvider = optimizeProvider;
   }
 
   @Override
@@ -306,6 +312,11 @@ public class FhirServer extends RestfulServer {
         registerProvider(importPnpProvider);
       }
 
+      // Register the optimize provider based on configuration.
+      if (ops.isOptimizeEnabled()) {
+        registerProvider(optimizeProvider);
+      }
+
       // Register bulk submit providers based on configuration.
       if (ops.isBulkSubmitEnabled()) {
         bulkSubmitProvider.ifPresent(this::registerProvider);
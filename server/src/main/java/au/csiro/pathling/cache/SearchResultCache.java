@@ -0,0 +1,283 @@
+/*
+ * Copyright © 2018-2026 Commonwealth Scientific and Industrial Research
+ * Organisation (CSIRO) ABN 41 687 119 230.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.pathling.cache;
+
+import au.csiro.pathling.config.SearchCacheConfiguration;
+import au.csiro.pathling.config.ServerConfiguration;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * A bounded cache of search result datasets that is shared across requests.
+ *
+ * <p>Results are keyed by resource type, a normalised representation of the search query, and the
+ * current cache key of the database. This means that identical searches from different clients, and
+ * successive page requests for the same search, reuse a single cached copy of the result. Any write
+ * to the database changes its cache key, at which point results computed against the previous
+ * version are evicted.
+ *
+ * <p>The cache is bounded by both a number of entries and an estimated size in bytes. When either
+ * bound is exceeded, the least recently used results are evicted and their cached blocks are
+ * released using {@link Dataset#unpersist(boolean)}.
+ *
+ * @author John Grimes
+ */
+@Component
+@Slf4j
+public class SearchResultCache implements MeterBinder {
+
+  @Nonnull private final Cacheable database;
+
+  private final int maxEntries;
+
+  private final long maxSizeBytes;
+
+  /** Entries in access order, so that the eldest entry is the least recently used. */
+  @Nonnull private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+  @Nonnull private final AtomicLong hits = new AtomicLong();
+
+  @Nonnull private final AtomicLong misses = new AtomicLong();
+
+  @Nonnull private final AtomicLong evictions = new AtomicLong();
+
+  private long totalSizeBytes = 0;
+
+  /**
+   * Constructs a new SearchResultCache.
+   *
+   * @param database the database whose cache key determines the validity of cached results
+   * @param configuration the server configuration
+   */
+  @Autowired
+  public SearchResultCache(
+      @Nonnull final CacheableDatabase database, @Nonnull final ServerConfiguration configuration) {
+    this(database, configuration.getSearchCache());
+  }
+
+  /**
+   * Constructs a new SearchResultCache.
+   *
+   * @param database the object whose cache key determines the validity of cached results
+   * @param configuration the search cache configuration
+   */
+  public SearchResultCache(
+      @Nonnull final Cacheable database, @Nonnull final SearchCacheConfiguration configuration) {
+    this.database = database;
+    this.maxEntries = configuration.getMaxEntries();
+    this.maxSizeBytes = configuration.getMaxSizeBytes();
+  }
+
+  /**
+   * Returns the cached result for a search, or builds, caches and returns it if it is not already
+   * present.
+   *
+   * @param resourceType the type of resource being searched
+   * @param normalisedQuery a normalised representation of the search criteria, such that equivalent
+   *     searches produce the same string
+   * @param loader a function that builds the (uncached) result dataset
+   * @return the cached result dataset
+   */
+  @Nonnull
+  public Dataset<Row> getOrCache(
+      @Nonnull final String resourceType,
+      @Nonnull final String normalisedQuery,
+      @Nonnull final Supplier<Dataset<Row>> loader) {
+    final String version = database.getCacheKey().orElse("");
+    final Key key = new Key(resourceType, normalisedQuery, version);
+
+    synchronized (this) {
+      evictStale(version);
+      final Entry existing = entries.get(key);
+      if (existing != null) {
+        hits.incrementAndGet();
+        log.debug("Search result cache hit: {}", key);
+        return existing.dataset();
+      }
+    }
+
+    // Build the dataset outside the lock, as query planning can be expensive.
+    misses.incrementAndGet();
+    final Dataset<Row> dataset = loader.get();
+
+    synchronized (this) {
+      final Entry existing = entries.get(key);
+      if (existing != null) {
+        // Another request built the same result concurrently, use that one instead.
+        return existing.dataset();
+      }
+      dataset.cache();
+      // An individual result is never counted as larger than the whole budget, so that an
+      // unbounded estimate cannot overflow the running total.
+      final long sizeBytes = Math.min(estimateSize(dataset), maxSizeBytes);
+      entries.put(key, new Entry(dataset, sizeBytes));
+      totalSizeBytes += sizeBytes;
+      log.debug("Cached search result: {} (estimated {} bytes)", key, sizeBytes);
+      evictOverBudget();
+    }
+    return dataset;
+  }
+
+  /** Evicts and unpersists all cached results. */
+  public synchronized void clear() {
+    final List<Key> keys = new ArrayList<>(entries.keySet());
+    keys.forEach(this::evict);
+  }
+
+  /**
+   * Returns the number of results currently held in the cache.
+   *
+   * @return the number of cached results
+   */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * Returns the estimated total size of the results currently held in the cache.
+   *
+   * @return the estimated size in bytes
+   */
+  public synchronized long getTotalSizeBytes() {
+    return totalSizeBytes;
+  }
+
+  /**
+   * Returns the number of requests that were served from the cache.
+   *
+   * @return the number of cache hits
+   */
+  public long getHits() {
+    return hits.get();
+  }
+
+  /**
+   * Returns the number of requests that required a result to be built.
+   *
+   * @return the number of cache misses
+   */
+  public long getMisses() {
+    return misses.get();
+  }
+
+  /**
+   * Returns the number of results that have been evicted from the cache.
+   *
+   * @return the number of evictions
+   */
+  public long getEvictions() {
+    return evictions.get();
+  }
+
+  @Override
+  public void bindTo(@Nonnull final MeterRegistry registry) {
+    Gauge.builder("pathling.search.cache.entries", this, SearchResultCache::size)
+        .description("Number of search results held in the search result cache")
+        .register(registry);
+    Gauge.builder("pathling.search.cache.size", this, SearchResultCache::getTotalSizeBytes)
+        .description("Estimated size of the search results held in the search result cache")
+        .baseUnit("bytes")
+        .register(registry);
+    FunctionCounter.builder("pathling.search.cache.hits", hits, AtomicLong::get)
+        .description("Number of searches served from the search result cache")
+        .register(registry);
+    FunctionCounter.builder("pathling.search.cache.misses", misses, AtomicLong::get)
+        .description("Number of searches that were not served from the search result cache")
+        .register(registry);
+    FunctionCounter.builder("pathling.search.cache.evictions", evictions, AtomicLong::get)
+        .description("Number of search results evicted from the search result cache")
+        .register(registry);
+  }
+
+  /** Evicts any entries that were computed against a different version of the database. */
+  private void evictStale(@Nonnull final String currentVersion) {
+    final List<Key> stale =
+        entries.keySet().stream().filter(key -> !key.version().equals(currentVersion)).toList();
+    stale.forEach(this::evict);
+  }
+
+  /** Evicts least recently used entries until the cache is within its bounds. */
+  private void evictOverBudget() {
+    final Iterator<Key> iterator = new ArrayList<>(entries.keySet()).iterator();
+    // Always retain the most recently added entry, even if it exceeds the size budget on its own.
+    while ((entries.size() > maxEntries || totalSizeBytes > maxSizeBytes)
+        && entries.size() > 1
+        && iterator.hasNext()) {
+      evict(iterator.next());
+    }
+  }
+
+  private void evict(@Nonnull final Key key) {
+    final Entry entry = entries.remove(key);
+    if (entry != null) {
+      totalSizeBytes -= entry.sizeBytes();
+      evictions.incrementAndGet();
+      log.debug("Evicting search result from cache: {}", key);
+      entry.dataset().unpersist(false);
+    }
+  }
+
+  /**
+   * Estimates the in-memory size of a dataset using the statistics of its optimised plan.
+   *
+   * @param dataset the dataset to estimate
+   * @return the estimated size in bytes
+   */
+  private static long estimateSize(@Nonnull final Dataset<Row> dataset) {
+    try {
+      final scala.math.BigInt sizeInBytes =
+          dataset.queryExecution().optimizedPlan().stats().sizeInBytes();
+      return sizeInBytes.isValidLong() ? sizeInBytes.longValue() : Long.MAX_VALUE;
+    } catch (final Exception e) {
+      log.debug("Unable to estimate size of search result", e);
+      return 0;
+    }
+  }
+
+  /**
+   * Identifies a cached search result.
+   *
+   * @param resourceType the type of resource searched
+   * @param normalisedQuery the normalised search criteria
+   * @param version the cache key of the database at the time the result was computed
+   */
+  record Key(
+      @Nonnull String resourceType, @Nonnull String normalisedQuery, @Nonnull String version) {}
+
+  /**
+   * A cached search result.
+   *
+   * @param dataset the cached dataset
+   * @param sizeBytes the estimated size of the dataset in bytes
+   */
+  record Entry(@Nonnull Dataset<Row> dataset, long sizeBytes) {}
+}
@@ -36,4 +36,11 @@ public class ExportConfiguration {
   @NotNull
   @Min(1)
   private Long resultExpiry = 86400L;
+
+  /**
+   * Whether exports with a {@code _since} parameter report the resources that have been deleted
+   * since that time, within the {@code deleted} section of the manifest. Deletions can only be
+   * reported for tables that have the Delta change data feed enabled.
+   */
+  private boolean includeDeleted = false;
 }
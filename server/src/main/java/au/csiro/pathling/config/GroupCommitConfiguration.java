@@ -0,0 +1,51 @@
+/*
+ * Copyright © 2018-2026 Commonwealth Scientific and Industrial Research
+ * Organisation (CSIRO) ABN 41 687 119 230.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.pathling.config;
+
+import jakarta.validation.constraints.Min;
+import lombok.Data;
+
+/**
+ * Configuration for the grouping of single-resource writes (create, update and delete) into shared
+ * Delta commits.
+ *
+ * @author John Grimes
+ */
+@Data
+public class GroupCommitConfiguration {
+
+  /**
+   * Whether writes are grouped into shared commits. When disabled, each write is committed to the
+   * Delta table individually.
+   */
+  private boolean enabled = true;
+
+  /**
+   * The maximum time in milliseconds that a write will wait for other writes to the same resource
+   * type to join its commit.
+   */
+  @Min(0)
+  private long maxWait = 20;
+
+  /**
+   * The number of pending writes to the same resource type that will cause a commit to start
+   * without waiting for the remainder of the window.
+   */
+  @Min(1)
+  private int maxBatchSize = 500;
+}
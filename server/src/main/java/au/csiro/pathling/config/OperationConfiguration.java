@@ -73,6 +73,9 @@ public class OperationConfiguration {
   /** Enables $bulk-submit operation. */
   private boolean bulkSubmitEnabled = true;
 
+  /** Enables $optimize operation. */
+  private boolean optimizeEnabled = true;
+
   /**
    * Returns true if any export operation is enabled.
    *
@@ -0,0 +1,42 @@
+/*
+ * Copyright © 2018-2026 Commonwealth Scientific and Industrial Research
+ * Organisation (CSIRO) ABN 41 687 119 230.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.pathling.config;
+
+import jakarta.validation.constraints.Min;
+import lombok.Data;
+
+/**
+ * Configuration for the shared cache of search results, which is used when {@code
+ * pathling.query.cacheResults} is enabled.
+ *
+ * @author John Grimes
+ */
+@Data
+public class SearchCacheConfiguration {
+
+  /** The maximum number of distinct search results that will be held in the cache. */
+  @Min(1)
+  private int maxEntries = 50;
+
+  /**
+   * The estimated total size in bytes of the cached search results, above which the least recently
+   * used results will be evicted. Defaults to 512 MiB.
+   */
+  @Min(1)
+  private long maxSizeBytes = 512L * 1024 * 1024;
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright © 2018-2026 Commonwealth Scientific and Industrial Research
+ * Organisation (CSIRO) ABN 41 687 119 230.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.pathling.config;
+
+import au.csiro.pathling.search.SearchTotalMode;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+/**
+ * Configuration relating to the execution of searches.
+ *
+ * @author John Grimes
+ */
+@Data
+public class SearchConfiguration {
+
+  /**
+   * The way in which the total number of matches is reported when the client does not specify the
+   * {@code _total} parameter.
+   */
+  @NotNull private SearchTotalMode defaultTotalMode = SearchTotalMode.ACCURATE;
+
+  /**
+   * The maximum time in milliseconds that a search response will wait for an accurate total to be
+   * calculated. If the count has not completed within this time, the response is returned without a
+   * total, and the count continues in the background so that it can be reported on subsequent
+   * pages. A value of zero causes the response to wait until the count completes.
+   */
+  @Min(0)
+  private long accurateTotalTimeout = 2000;
+
+  /**
+   * Indicates that all references between resources within the server are relative (e.g. {@code
+   * Patient/123}). This allows searches on reference parameters to skip the data files that cannot
+   * contain a matching reference. Searches will not match absolute references to the same resources
+   * when this is enabled.
+   */
+  private boolean relativeReferences = false;
+}
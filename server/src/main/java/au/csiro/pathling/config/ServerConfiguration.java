@@ -111,6 +111,18 @@ public class ServerConfiguration {
   /** Configuration for enabling/disabling individual server operations. */
   @Valid @NotNull private OperationConfiguration operations = new OperationConfiguration();
 
+  /** Configuration relating to the execution of searches. */
+  @Valid @NotNull private SearchConfiguration search = new SearchConfiguration();
+
+  /** Configuration for the shared cache of search results. */
+  @Valid @NotNull private SearchCacheConfiguration searchCache = new SearchCacheConfiguration();
+
+  /** Configuration for the grouping of single-resource writes into shared commits. */
+  @Valid @NotNull private GroupCommitConfiguration groupCommit = new GroupCommitConfiguration();
+
+  /** Configuration for the streaming of $viewdefinition-run results. */
+  @Valid @NotNull private ViewRunConfiguration viewRun = new ViewRunConfiguration();
+
   /** Configuration for the admin UI. */
   @Valid @NotNull private AdminUiConfiguration adminUi = new AdminUiConfiguration();
 
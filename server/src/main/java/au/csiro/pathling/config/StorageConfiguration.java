@@ -17,11 +17,15 @@
 
 package au.csiro.pathling.config;
 
+import jakarta.annotation.Nullable;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Pattern;
 import jakarta.validation.constraints.Size;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -62,4 +66,39 @@ public class StorageConfiguration {
   @Min(1)
   @Builder.Default
   private int compactionThreshold = 10;
+
+  /**
+   * The approximate size in bytes of each data file written by an import. The number of files is
+   * derived from Spark's estimate of the size of the data. If not set, the number of files follows
+   * the partitioning of the imported data.
+   */
+  @Nullable
+  @Min(1)
+  private Long targetFileSize;
+
+  /** The maximum number of resources within each data file written by an import. */
+  @Nullable
+  @Min(1)
+  private Long maxRecordsPerFile;
+
+  /** The size in bytes of each row group within the Parquet files written by the server. */
+  @Nullable
+  @Min(1)
+  private Long rowGroupSize;
+
+  /**
+   * The columns to sort the resources of each type by when they are imported, keyed by resource
+   * type (e.g. {@code subject.reference} and {@code effectiveDateTime} for Observation). Sorting
+   * clusters related resources within the same files, which allows more files to be skipped when
+   * searching.
+   */
+  @NotNull @Builder.Default private Map<String, List<String>> sortKeys = new HashMap<>();
+
+  /**
+   * Whether resources within the Patient compartment are clustered by the patient that they refer
+   * to, where no sort keys are configured for their type. This applies to imports and the optimize
+   * operation, and allows searches and exports for individual patients or cohorts to skip the files
+   * that do not contain their resources.
+   */
+  @Builder.Default private boolean patientLayout = false;
 }
@@ -0,0 +1,45 @@
+/*
+ * Copyright © 2018-2026 Commonwealth Scientific and Industrial Research
+ * Organisation (CSIRO) ABN 41 687 119 230.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.pathling.config;
+
+import jakarta.validation.constraints.Min;
+import lombok.Data;
+
+/**
+ * Configuration relating to the streaming of results from the $viewdefinition-run operation.
+ *
+ * @author John Grimes
+ */
+@Data
+public class ViewRunConfiguration {
+
+  /**
+   * The number of partitions of the view result that may be computed concurrently ahead of the
+   * partition currently being written to the response. Setting this to zero disables prefetching,
+   * in which case each partition is computed only once the previous one has been written.
+   */
+  @Min(0)
+  private int prefetchPartitions = 4;
+
+  /**
+   * Whether the rows of prefetched partitions are delivered in partition order. When disabled,
+   * partitions are written in the order in which they finish computing, which can reduce latency
+   * when partitions are unevenly sized.
+   */
+  private boolean orderedDelivery = true;
+}
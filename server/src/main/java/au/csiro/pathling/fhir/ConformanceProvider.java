@@ -114,7 +114,8 @@ public class ConformanceProvider
           "import",
           "import-pnp",
           "viewdefinition-run",
-          "viewdefinition-export");
+          "viewdefinition-export",
+          "optimize");
 
   /** Bulk submit operations, added when bulk submit is configured. */
   private static final List<String> BULK_SUBMIT_OPERATIONS =
@@ -504,6 +505,9 @@ public class ConformanceProvider
     addOperationIfEnabled(operations, "viewdefinition-run", ops.isViewDefinitionRunEnabled());
     addOperationIfEnabled(operations, "viewdefinition-export", ops.isViewDefinitionExportEnabled());
 
+    // Add optimize operation.
+    addOperationIfEnabled(operations, "optimize", ops.isOptimizeEnabled());
+
     // Add bulk submit operations if configured and enabled.
     if (configuration.getBulkSubmit() != null && ops.isBulkSubmitEnabled()) {
       addOperationIfEnabled(operations, "bulk-submit", true);
@@ -0,0 +1,167 @@
+/*
+ * Copyright © 2018-2026 Commonwealth Scientific and Industrial Research
+ * Organisation (CSIRO) ABN 41 687 119 230.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package au.csiro.pathling.io;
+
+import static org.apache.spark.sql.functions.col;
+import static org.apache.spark.sql.functions.lit;
+import static org.apache.spark.sql.functions.max;
+import static org.apache.spark.sql.functions.min;
+import static org.apache.spark.sql.functions.row_number;
+import static org.apache.spark.sql.functions.when;
+
+import io.delta.tables.DeltaTable;
+import jakarta.annotation.Nonnull;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Optional;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.SparkSession;
+import org.apache.spark.sql.expressions.Window;
+import org.apache.spark.sql.expressions.WindowSpec;
+
+/**
+ * Reads the resources that have changed within a Delta table since a point in time, using the
+ * change data feed of the table.
+ *
+ * <p>The point in time is translated to a table version using the commit timestamps in the history
+ * of the table. Only the change data recorded for later versions is read, so the cost of the read
+ * depends on the number of changes rather than the size of the table.
+ *
+ * @author John Grimes
+ */
+@Slf4j
+public final class ChangeDataFeed {
+
+  /** The column of the change data feed that describes the type of each change. */
+  public static final String CHANGE_TYPE_COLUMN = "_change_type";
+
+  /** The change type that indicates that a resource was deleted. */
+  public static final String DELETE_CHANGE_TYPE = "delete";
+
+  private static final String COMMIT_VERSION_COLUMN = "_commit_version";
+
+  private static final String COMMIT_TIMESTAMP_COLUMN = "_commit_timestamp";
+
+  private ChangeDataFeed() {}
+
+  /**
+   * Reads the latest change to each resource in a Delta table that has changed since the specified
+   * time.
+   *
+   * <p>The result has the columns of the table, along with the {@link #CHANGE_TYPE_COLUMN} column.
+   * For resources that still exist, the row contains their current content. For resources that have
+   * been deleted, the row contains their content prior to deletion, and the change type is {@link
+   * #DELETE_CHANGE_TYPE}.
+   *
+   * <p>The changes cannot be determined where the table does not exist, where the table was created
+   * after the specified time (in which case every resource within it is new), or where the change
+   * data feed is not available for the versions that need to be read.
+   *
+   * @param spark the Spark session
+   * @param tablePath the path to the Delta table
+   * @param since the time after which changes are included
+   * @return the changes, or empty if they cannot be determined from the change data feed
+   */
+  @Nonnull
+  public static Optional<Dataset<Row>> readLatestChanges(
+      @Nonnull final SparkSession spark,
+      @Nonnull final String tablePath,
+      @Nonnull final Instant since) {
+    try {
+      if (!DeltaTable.isDeltaTable(spark, tablePath)) {
+        return Optional.empty();
+      }
+      final DeltaTable table = DeltaTable.forPath(spark, tablePath);
+      final Timestamp sinceTimestamp = Timestamp.from(since);
+      final Row versions =
+          table
+              .history()
+              .agg(
+                  max(when(col("timestamp").lt(sinceTimestamp), col("version"))),
+                  min(when(col("timestamp").geq(sinceTimestamp), col("version"))))
+              .first();
+      if (versions.isNullAt(0)) {
+        // There are no commits before the specified time within the retained history, so the
+        // change data feed cannot exclude anything.
+        return Optional.empty();
+      }
+      if (versions.isNullAt(1)) {
+        // There have been no commits since the specified time.
+        log.debug("No changes to {} since {}", tablePath, since);
+        return Optional.of(
+            table.toDF().filter(lit(false)).withColumn(CHANGE_TYPE_COLUMN, lit("insert")));
+      }
+      final long startingVersion = versions.getLong(1);
+      log.debug("Reading changes to {} from version {}", tablePath, startingVersion);
+
+      // Take the latest change to each resource. Where a resource is both deleted and inserted
+      // within a single version (e.g. by an overwrite), the insert reflects its state at the end
+      // of that version.
+      final WindowSpec latestFirst =
+          Window.partitionBy(col("id"))
+              .orderBy(
+                  col(COMMIT_VERSION_COLUMN).desc(),
+                  when(col(CHANGE_TYPE_COLUMN).equalTo(DELETE_CHANGE_TYPE), 1).otherwise(0));
+      final Dataset<Row> changes =
+          spark
+              .read()
+              .format("delta")
+              .option("readChangeFeed", "true")
+              .option("startingVersion", startingVersion)
+              .load(tablePath)
+              .filter(col(CHANGE_TYPE_COLUMN).notEqual("update_preimage"))
+              .withColumn("_rank", row_number().over(latestFirst))
+              .filter(col("_rank").equalTo(1))
+              .drop("_rank", COMMIT_VERSION_COLUMN, COMMIT_TIMESTAMP_COLUMN);
+      // Plan the query, so that an incomplete change data feed is detected here rather than when
+      // the result is written.
+      changes.queryExecution().executedPlan();
+      return Optional.of(changes);
+    } catch (final Exception e) {
+      log.warn("Change data feed is not available for {} since {}", tablePath, since, e);
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Selects the resources that still exist from a set of changes.
+   *
+   * @param changes the result of {@link #readLatestChanges}
+   * @return the current content of the changed resources, with the columns of the table
+   */
+  @Nonnull
+  public static Dataset<Row> current(@Nonnull final Dataset<Row> changes) {
+    return changes
+        .filter(col(CHANGE_TYPE_COLUMN).notEqual(DELETE_CHANGE_TYPE))
+        .drop(CHANGE_TYPE_COLUMN);
+  }
+
+  /**
+   * Selects the resources that have been deleted from a set of changes.
+   *
+   * @param changes the result of {@link #readLatestChanges}
+   * @return the content of the deleted resources prior to deletion, with the columns of the table
+   */
+  @Nonnull
+  public static Dataset<Row> deleted(@Nonnull final Dataset<Row> changes) {
+    return changes
+        .filter(col(CHANGE_TYPE_COLUMN).equalTo(DELETE_CHANGE_TYPE))
+        .drop(CHANGE_TYPE_COLUMN);
+  }
+}
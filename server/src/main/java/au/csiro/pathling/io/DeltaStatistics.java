@@ -0,0 +1,135 @@
+/*
+ * Copyright © 2018-2026 Commonwealth Scientific and Industrial Research
+ * Organisation (CSIRO) ABN 41 687 119 230.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.pathling.io;
+
+import static org.apache.spark.sql.functions.coalesce;
+import static org.apache.spark.sql.functions.col;
+import static org.apache.spark.sql.functions.count_if;
+import static org.apache.spark.sql.functions.lit;
+import static org.apache.spark.sql.functions.sum;
+
+import jakarta.annotation.Nonnull;
+import java.util.List;
+import java.util.Optional;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.catalyst.plans.logical.LogicalPlan;
+import org.apache.spark.sql.delta.Snapshot;
+import org.apache.spark.sql.delta.files.TahoeFileIndex;
+import org.apache.spark.sql.delta.stats.PreparedDeltaFileIndex;
+import org.apache.spark.sql.execution.datasources.HadoopFsRelation;
+import org.apache.spark.sql.execution.datasources.LogicalRelation;
+import scala.Option;
+import scala.jdk.javaapi.CollectionConverters;
+
+/**
+ * Derives estimates about the contents of datasets from the statistics that Delta Lake records in
+ * its transaction log, without scanning any data files.
+ *
+ * @author John Grimes
+ */
+@Slf4j
+public final class DeltaStatistics {
+
+  private DeltaStatistics() {}
+
+  /**
+   * Estimates the number of rows in a dataset that is read from a Delta table.
+   *
+   * <p>For an unfiltered read, this is the exact number of records recorded in the file statistics
+   * of the transaction log. Where the dataset is filtered, this is the number of records within the
+   * files that remain after Delta data skipping has been applied to the filter, which is an upper
+   * bound on the true count.
+   *
+   * <p>Any caching of the dataset is ignored, so that the estimate is always derived from the
+   * underlying Delta table.
+   *
+   * @param dataset the dataset to estimate
+   * @return the estimated number of rows, or empty if the dataset is not read from a single Delta
+   *     table or the table does not have record count statistics
+   */
+  @Nonnull
+  public static Optional<Long> estimateRowCount(@Nonnull final Dataset<Row> dataset) {
+    try {
+      // Optimise the analysed plan directly, rather than using the optimised plan of the query
+      // execution, as the latter substitutes any cached data for the Delta relation.
+      final LogicalPlan analyzed = dataset.queryExecution().analyzed();
+      final LogicalPlan optimized =
+          dataset.sparkSession().sessionState().optimizer().execute(analyzed);
+      final List<TahoeFileIndex> indexes =
+          CollectionConverters.asJava(optimized.collectLeaves()).stream()
+              .filter(LogicalRelation.class::isInstance)
+              .map(leaf -> ((LogicalRelation) leaf).relation())
+              .filter(HadoopFsRelation.class::isInstance)
+              .map(relation -> ((HadoopFsRelation) relation).location())
+              .filter(TahoeFileIndex.class::isInstance)
+              .map(TahoeFileIndex.class::cast)
+              .toList();
+      if (indexes.size() != 1) {
+        return Optional.empty();
+      }
+      return estimateRowCount(indexes.get(0));
+    } catch (final Exception e) {
+      log.debug("Unable to estimate row count from Delta statistics", e);
+      return Optional.empty();
+    }
+  }
+
+  @Nonnull
+  private static Optional<Long> estimateRowCount(@Nonnull final TahoeFileIndex index) {
+    if (index instanceof final PreparedDeltaFileIndex preparedIndex) {
+      // Data skipping has already been applied to the filters of the query. Delta only reports a
+      // record count where at least one filter was applied.
+      final Optional<Long> scanned = toOptionalLong(preparedIndex.preparedScan().scanned().rows());
+      if (scanned.isPresent()) {
+        return scanned;
+      }
+    }
+    return countRecords(index.deltaLog().unsafeVolatileSnapshot());
+  }
+
+  /**
+   * Sums the record counts in the file statistics of a snapshot, excluding rows that have been
+   * marked as deleted by deletion vectors.
+   */
+  @Nonnull
+  private static Optional<Long> countRecords(@Nonnull final Snapshot snapshot) {
+    final Row totals =
+        snapshot
+            .withStats()
+            .agg(
+                sum(col("stats.numRecords")),
+                count_if(col("stats.numRecords").isNull()),
+                sum(coalesce(col("deletionVector.cardinality"), lit(0L))))
+            .first();
+    if (totals.getLong(1) > 0) {
+      // Some files do not have statistics, so the total cannot be determined.
+      return Optional.empty();
+    }
+    // The sums are null where the table does not contain any files.
+    final long records = totals.isNullAt(0) ? 0 : totals.getLong(0);
+    final long deleted = totals.isNullAt(2) ? 0 : totals.getLong(2);
+    return Optional.of(records - deleted);
+  }
+
+  @Nonnull
+  private static Optional<Long> toOptionalLong(@Nonnull final Option<Object> option) {
+    return option.isDefined() ? Optional.of((Long) option.get()) : Optional.empty();
+  }
+}
@@ -56,6 +56,8 @@ public class DynamicDeltaSource implements QueryableDataSource {
 
   @Nonnull private final FhirEncoders fhirEncoders;
 
+  @Nullable private final PendingWriteOverlay overlay;
+
   @Nonnull private final Set<String> dynamicallyDiscoveredTypes = ConcurrentHashMap.newKeySet();
 
   /**
@@ -71,10 +73,29 @@ public class DynamicDeltaSource implements QueryableDataSource {
       @Nonnull final SparkSession spark,
       @Nonnull final String databasePath,
       @Nonnull final FhirEncoders fhirEncoders) {
+    this(delegate, spark, databasePath, fhirEncoders, null);
+  }
+
+  /**
+   * Constructs a new DynamicDeltaSource that applies pending writes to the datasets it reads.
+   *
+   * @param delegate the underlying QueryableDataSource to delegate to
+   * @param spark the Spark session for Delta table operations
+   * @param databasePath the path to the Delta database
+   * @param fhirEncoders the FHIR encoders for creating empty datasets
+   * @param overlay the overlay of writes that have not yet been committed, or null if there is none
+   */
+  public DynamicDeltaSource(
+      @Nonnull final QueryableDataSource delegate,
+      @Nonnull final SparkSession spark,
+      @Nonnull final String databasePath,
+      @Nonnull final FhirEncoders fhirEncoders,
+      @Nullable final PendingWriteOverlay overlay) {
     this.delegate = delegate;
     this.spark = spark;
     this.databasePath = databasePath;
     this.fhirEncoders = fhirEncoders;
+    this.overlay = overlay;
   }
 
   @Override
@@ -83,6 +104,12 @@ public class DynamicDeltaSource implements QueryableDataSource {
     if (resourceCode == null) {
       throw new IllegalArgumentException("Resource code must not be null");
     }
+    final Dataset<Row> dataset = readCommitted(resourceCode);
+    return overlay != null ? overlay.apply(resourceCode, dataset) : dataset;
+  }
+
+  @Nonnull
+  private Dataset<Row> readCommitted(@Nonnull final String resourceCode) {
 
     // If delegate knows about this type, use it.
     if (delegate.getResourceTypes().contains(resourceCode)) {
@@ -0,0 +1,154 @@
+/*
+ * Copyright © 2018-2026 Commonwealth Scientific and Industrial Research
+ * Organisation (CSIRO) ABN 41 687 119 230.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.pathling.io;
+
+import au.csiro.pathling.library.io.FileSystemPersistence;
+import au.csiro.pathling.library.io.PersistenceError;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.spark.sql.SparkSession;
+
+/**
+ * Compression codecs that can be applied to text-based export output, such as NDJSON and CSV.
+ *
+ * <p>Each partition of the output is compressed by the task that writes it, so compression runs in
+ * parallel across the executors. The extension of the codec is appended to the names of the output
+ * files, e.g. "Patient.00000.ndjson.gz".
+ *
+ * @author John Grimes
+ */
+@Slf4j
+@Getter
+public enum OutputCompression {
+  /** The output is not compressed. */
+  NONE("none", "none", ""),
+
+  /** The output is compressed using gzip. */
+  GZIP("gzip", "gzip", ".gz"),
+
+  /** The output is compressed using bzip2. */
+  BZIP2("bzip2", "bzip2", ".bz2"),
+
+  /** The output is compressed using Zstandard. */
+  ZSTD("zstd", ZstdCodec.class.getName(), ".zst");
+
+  /** The code used to select this codec within a request. */
+  @Nonnull private final String code;
+
+  /** The value of the "compression" option passed to the Spark writer. */
+  @Nonnull private final String sparkCodec;
+
+  /** The extension appended to the names of the files, including the leading dot. */
+  @Nonnull private final String fileExtension;
+
+  OutputCompression(
+      @Nonnull final String code,
+      @Nonnull final String sparkCodec,
+      @Nonnull final String fileExtension) {
+    this.code = code;
+    this.sparkCodec = sparkCodec;
+    this.fileExtension = fileExtension;
+  }
+
+  /**
+   * Parses a compression parameter string and returns the corresponding OutputCompression.
+   *
+   * @param param the compression parameter string (e.g., "gzip"), or null for no compression
+   * @return the corresponding OutputCompression
+   * @throws InvalidRequestException if the parameter does not match a supported codec
+   */
+  @Nonnull
+  public static OutputCompression fromParam(@Nullable final String param) {
+    if (param == null || param.isBlank()) {
+      return NONE;
+    }
+    final String normalised = param.toLowerCase().trim();
+    return Arrays.stream(values())
+        .filter(compression -> compression.code.equals(normalised))
+        .findFirst()
+        .orElseThrow(
+            () ->
+                new InvalidRequestException(
+                    "Unknown compression '%s'. Only %s are allowed."
+                        .formatted(
+                            param,
+                            Arrays.stream(values()).map(OutputCompression::getCode).toList())));
+  }
+
+  /**
+   * Renames the files within a directory written by Spark to follow the naming convention used for
+   * export output, i.e. "[name].[part].[extension][compression extension]", and removes the
+   * directory.
+   *
+   * @param spark the Spark session
+   * @param partitionedUrl the URL of the directory written by Spark, which is also the desired URL
+   *     of the resulting files without the part number, e.g. "/jobs/123/Patient.ndjson"
+   * @param extension the extension of the files written by Spark, without the compression extension
+   * @return the URLs of the renamed files
+   */
+  @Nonnull
+  public List<String> renamePartitionedFiles(
+      @Nonnull final SparkSession spark,
+      @Nonnull final String partitionedUrl,
+      @Nonnull final String extension) {
+    if (this == NONE) {
+      return new ArrayList<>(
+          FileSystemPersistence.renamePartitionedFiles(
+              spark, partitionedUrl, partitionedUrl, extension));
+    }
+    final FileSystem fileSystem = FileSystemPersistence.getFileSystem(spark, partitionedUrl);
+    final Path partitionedPath = new Path(partitionedUrl);
+    final String baseName = FilenameUtils.removeExtension(partitionedPath.getName());
+    final String outputExtension = FilenameUtils.getExtension(partitionedPath.getName());
+    try {
+      final List<String> renamedFiles = new ArrayList<>();
+      for (final FileStatus file : fileSystem.listStatus(partitionedPath)) {
+        final String fileName = file.getPath().getName();
+        if (!fileName.endsWith("." + extension + fileExtension)) {
+          continue;
+        }
+        // Spark names the files "part-[part number]-[UUID]...", so the part number is the second
+        // component of the name.
+        final String partId = fileName.split("-")[1];
+        final Path renamedPath =
+            new Path(
+                partitionedPath.getParent(),
+                "%s.%s.%s%s".formatted(baseName, partId, outputExtension, fileExtension));
+        log.info("Renaming result to: {}", renamedPath);
+        fileSystem.rename(file.getPath(), renamedPath);
+        renamedFiles.add(renamedPath.toString());
+      }
+      log.info("Cleaning up: {}", partitionedUrl);
+      fileSystem.delete(partitionedPath, true);
+      return renamedFiles;
+    } catch (final IOException e) {
+      throw new PersistenceError("Problem renaming partition files", e);
+    }
+  }
+}
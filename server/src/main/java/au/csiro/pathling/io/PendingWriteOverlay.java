@@ -0,0 +1,180 @@
+/*
+ * Copyright © 2018-2026 Commonwealth Scientific and Industrial Research
+ * Organisation (CSIRO) ABN 41 687 119 230.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.pathling.io;
+
+import static java.util.Objects.requireNonNull;
+import static org.apache.spark.sql.functions.not;
+
+import au.csiro.pathling.encoders.FhirEncoders;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.SparkSession;
+import org.apache.spark.sql.catalyst.encoders.ExpressionEncoder;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.springframework.stereotype.Component;
+
+/**
+ * Holds writes that have been accepted but not yet committed to the Delta tables, and applies them
+ * to datasets that are read from those tables.
+ *
+ * <p>This allows resources that have been recently created, updated or deleted to be visible to
+ * reads and searches while the commit that contains them is still being assembled or executed. Once
+ * the commit lands, the corresponding writes are removed from the overlay.
+ *
+ * @author John Grimes
+ */
+@Component
+@Slf4j
+public class PendingWriteOverlay {
+
+  @Nonnull private final SparkSession spark;
+
+  @Nonnull private final FhirEncoders fhirEncoders;
+
+  /** Pending writes, keyed by resource type and then by resource ID. */
+  @Nonnull private final Map<String, Map<String, PendingWrite>> pending = new ConcurrentHashMap<>();
+
+  /**
+   * Constructs a new PendingWriteOverlay.
+   *
+   * @param spark the Spark session
+   * @param fhirEncoders the encoders used to convert pending resources into rows
+   */
+  public PendingWriteOverlay(
+      @Nonnull final SparkSession spark, @Nonnull final FhirEncoders fhirEncoders) {
+    this.spark = spark;
+    this.fhirEncoders = fhirEncoders;
+  }
+
+  /**
+   * Adds a write to the overlay, replacing any earlier pending write to the same resource.
+   *
+   * @param resourceCode the type of the resource being written
+   * @param write the pending write
+   */
+  public void put(@Nonnull final String resourceCode, @Nonnull final PendingWrite write) {
+    pending.computeIfAbsent(resourceCode, code -> new ConcurrentHashMap<>()).put(write.id(), write);
+  }
+
+  /**
+   * Removes a write from the overlay, if it has not already been replaced by a later write to the
+   * same resource.
+   *
+   * @param resourceCode the type of the resource that was written
+   * @param write the write that has been committed
+   */
+  public void remove(@Nonnull final String resourceCode, @Nonnull final PendingWrite write) {
+    final Map<String, PendingWrite> writes = pending.get(resourceCode);
+    if (writes != null) {
+      writes.computeIfPresent(write.id(), (id, current) -> current == write ? null : current);
+    }
+  }
+
+  /**
+   * Returns the latest pending write to a resource, if there is one.
+   *
+   * @param resourceCode the type of the resource
+   * @param id the ID of the resource
+   * @return the pending write, or empty if there is no pending write to the resource
+   */
+  @Nonnull
+  public Optional<PendingWrite> get(@Nonnull final String resourceCode, @Nonnull final String id) {
+    final Map<String, PendingWrite> writes = pending.get(resourceCode);
+    return writes == null ? Optional.empty() : Optional.ofNullable(writes.get(id));
+  }
+
+  /**
+   * Applies the pending writes for a resource type to a dataset of that type. Rows for resources
+   * with pending writes are replaced by the pending version, or removed if the resource has been
+   * deleted.
+   *
+   * @param resourceCode the type of the resources in the dataset
+   * @param dataset the dataset read from the Delta table
+   * @return the dataset with pending writes applied, or the original dataset if there are none
+   */
+  @Nonnull
+  public Dataset<Row> apply(
+      @Nonnull final String resourceCode, @Nonnull final Dataset<Row> dataset) {
+    final Map<String, PendingWrite> writes = pending.get(resourceCode);
+    if (writes == null || writes.isEmpty()) {
+      return dataset;
+    }
+    final List<PendingWrite> snapshot = List.copyOf(writes.values());
+    log.debug("Applying {} pending write(s) to {}", snapshot.size(), resourceCode);
+
+    final Object[] ids = snapshot.stream().map(PendingWrite::id).toArray();
+    final Dataset<Row> unchanged = dataset.filter(not(dataset.col("id").isin(ids)));
+    final List<IBaseResource> resources =
+        snapshot.stream().map(PendingWrite::resource).filter(Objects::nonNull).toList();
+    if (resources.isEmpty()) {
+      return unchanged;
+    }
+    final ExpressionEncoder<IBaseResource> encoder = fhirEncoders.of(resourceCode);
+    requireNonNull(encoder, "No encoder found for resource type: " + resourceCode);
+    final Dataset<Row> written = spark.createDataset(resources, encoder).toDF();
+    return unchanged.unionByName(written, true);
+  }
+
+  /**
+   * A write that has been accepted but not yet committed.
+   *
+   * @param id the ID of the resource being written
+   * @param resource the new version of the resource, or null if the resource is being deleted
+   */
+  public record PendingWrite(@Nonnull String id, @Nullable IBaseResource resource) {
+
+    /**
+     * Creates a pending write that creates or updates a resource.
+     *
+     * @param resource the new version of the resource
+     * @return the pending write
+     */
+    @Nonnull
+    public static PendingWrite upsert(@Nonnull final IBaseResource resource) {
+      return new PendingWrite(resource.getIdElement().getIdPart(), resource);
+    }
+
+    /**
+     * Creates a pending write that deletes a resource.
+     *
+     * @param id the ID of the resource to delete
+     * @return the pending write
+     */
+    @Nonnull
+    public static PendingWrite delete(@Nonnull final String id) {
+      return new PendingWrite(id, null);
+    }
+
+    /**
+     * Returns whether this write deletes the resource.
+     *
+     * @return true if the resource is being deleted
+     */
+    public boolean isDelete() {
+      return resource == null;
+    }
+  }
+}
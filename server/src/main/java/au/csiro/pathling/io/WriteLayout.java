@@ -0,0 +1,185 @@
+/*
+ * Copyright © 2018-2026 Commonwealth Scientific and Industrial Research
+ * Organisation (CSIRO) ABN 41 687 119 230.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.pathling.io;
+
+import static org.apache.spark.sql.functions.col;
+
+import au.csiro.pathling.config.StorageConfiguration;
+import au.csiro.pathling.io.source.DataSource;
+import au.csiro.pathling.library.PathlingContext;
+import au.csiro.pathling.library.io.source.DatasetSource;
+import au.csiro.pathling.operations.compartment.PatientCompartmentService;
+import io.delta.tables.DeltaTable;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import java.util.List;
+import java.util.Map;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.spark.sql.Column;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.SparkSession;
+import org.apache.spark.sql.types.StructType;
+
+/**
+ * Applies the file layout settings within the {@link StorageConfiguration} to data before it is
+ * written to the Delta tables of the server, and reports the layout of the tables that result.
+ *
+ * @author John Grimes
+ */
+@Slf4j
+public final class WriteLayout {
+
+  private WriteLayout() {}
+
+  /**
+   * Rearranges the resources within a data source so that they are written with the configured
+   * layout. Each resource type is sorted by its sort keys, and split into the number of partitions
+   * required to meet the target file size and the maximum number of records per file.
+   *
+   * @param context the Pathling context
+   * @param source the data source to rearrange
+   * @param configuration the storage configuration
+   * @param compartmentService the service used to find the patient key of each resource type
+   * @return a data source containing the rearranged resources
+   */
+  @Nonnull
+  public static DataSource arrange(
+      @Nonnull final PathlingContext context,
+      @Nonnull final DataSource source,
+      @Nonnull final StorageConfiguration configuration,
+      @Nonnull final PatientCompartmentService compartmentService) {
+    if (configuration.getTargetFileSize() == null
+        && configuration.getMaxRecordsPerFile() == null
+        && configuration.getSortKeys().isEmpty()
+        && !configuration.isPatientLayout()) {
+      return source;
+    }
+    final DatasetSource arranged = new DatasetSource(context);
+    for (final String resourceType : source.getResourceTypes()) {
+      arranged.dataset(
+          resourceType,
+          arrange(resourceType, source.read(resourceType), configuration, compartmentService));
+    }
+    return arranged;
+  }
+
+  @Nonnull
+  private static Dataset<Row> arrange(
+      @Nonnull final String resourceType,
+      @Nonnull final Dataset<Row> dataset,
+      @Nonnull final StorageConfiguration configuration,
+      @Nonnull final PatientCompartmentService compartmentService) {
+    final Column[] keys =
+        sortKeys(resourceType, dataset.schema(), configuration, compartmentService).stream()
+            .map(key -> col(key))
+            .toArray(Column[]::new);
+    final Integer partitions = partitionCount(dataset, configuration);
+    if (keys.length > 0) {
+      // Range partitioning gives each file a distinct range of the key values, which keeps the
+      // minimum and maximum values recorded for each file narrow.
+      final Dataset<Row> partitioned =
+          partitions == null
+              ? dataset.repartitionByRange(keys)
+              : dataset.repartitionByRange(partitions, keys);
+      return partitioned.sortWithinPartitions(keys);
+    }
+    return partitions == null ? dataset : dataset.repartition(partitions);
+  }
+
+  /**
+   * Determines the columns that the resources of a type are sorted and clustered by. These are the
+   * configured sort keys for the type, or the patient key of the type where the patient layout is
+   * enabled and no sort keys are configured.
+   *
+   * @param resourceType the resource type
+   * @param schema the schema of the resources
+   * @param configuration the storage configuration
+   * @param compartmentService the service used to find the patient key of the resource type
+   * @return the columns, which may be empty
+   */
+  @Nonnull
+  public static List<String> sortKeys(
+      @Nonnull final String resourceType,
+      @Nonnull final StructType schema,
+      @Nonnull final StorageConfiguration configuration,
+      @Nonnull final PatientCompartmentService compartmentService) {
+    final List<String> configured = configuration.getSortKeys().get(resourceType);
+    if (configured != null && !configured.isEmpty()) {
+      return configured;
+    }
+    if (configuration.isPatientLayout()) {
+      return compartmentService.getPatientKeyColumn(resourceType, schema).stream().toList();
+    }
+    return List.of();
+  }
+
+  /**
+   * Derives the number of partitions to write from the target file size and the maximum number of
+   * records per file. The Delta sink of the library does not accept writer options, so the maximum
+   * number of records is enforced by splitting the data into partitions of at most that size.
+   *
+   * @param dataset the resources to write
+   * @param configuration the storage configuration
+   * @return the number of partitions, or null to retain the partitioning of the input
+   */
+  @Nullable
+  private static Integer partitionCount(
+      @Nonnull final Dataset<Row> dataset, @Nonnull final StorageConfiguration configuration) {
+    long partitions = 0;
+    final Long targetFileSize = configuration.getTargetFileSize();
+    if (targetFileSize != null) {
+      final long sizeInBytes =
+          dataset.queryExecution().optimizedPlan().stats().sizeInBytes().longValue();
+      final long defaultSize = dataset.sparkSession().sessionState().conf().defaultSizeInBytes();
+      if (sizeInBytes > 0 && sizeInBytes < defaultSize) {
+        partitions = Math.ceilDiv(sizeInBytes, targetFileSize);
+      }
+    }
+    final Long maxRecordsPerFile = configuration.getMaxRecordsPerFile();
+    if (maxRecordsPerFile != null) {
+      partitions = Math.max(partitions, Math.ceilDiv(dataset.count(), maxRecordsPerFile));
+    }
+    return partitions == 0 ? null : (int) Math.min(Integer.MAX_VALUE, partitions);
+  }
+
+  /**
+   * Logs the number and size of the data files within each of the written Delta tables.
+   *
+   * @param spark the Spark session
+   * @param tablePaths the paths of the written tables, keyed by resource type
+   */
+  public static void logFileStatistics(
+      @Nonnull final SparkSession spark, @Nonnull final Map<String, String> tablePaths) {
+    tablePaths.forEach(
+        (resourceType, tablePath) -> {
+          if (!DeltaTable.isDeltaTable(spark, tablePath)) {
+            return;
+          }
+          final Row detail = DeltaTable.forPath(spark, tablePath).detail().first();
+          final long files = detail.getLong(detail.fieldIndex("numFiles"));
+          final long bytes = detail.getLong(detail.fieldIndex("sizeInBytes"));
+          log.info(
+              "{} table contains {} files totalling {} bytes (average {} bytes per file)",
+              resourceType,
+              files,
+              bytes,
+              files == 0 ? 0 : bytes / files);
+        });
+  }
+}
@@ -17,21 +17,30 @@
 
 package au.csiro.pathling.operations.bulkexport;
 
+import static au.csiro.pathling.library.io.FileSystemPersistence.safelyJoinPaths;
 import static org.apache.spark.sql.functions.array;
 import static org.apache.spark.sql.functions.array_union;
 import static org.apache.spark.sql.functions.coalesce;
 import static org.apache.spark.sql.functions.col;
+import static org.apache.spark.sql.functions.concat;
 import static org.apache.spark.sql.functions.lit;
 import static org.apache.spark.sql.functions.map;
 import static org.apache.spark.sql.functions.struct;
+import static org.apache.spark.sql.functions.to_json;
 
 import au.csiro.pathling.config.ServerConfiguration;
+import au.csiro.pathling.io.ChangeDataFeed;
+import au.csiro.pathling.io.OutputCompression;
 import au.csiro.pathling.library.PathlingContext;
 import au.csiro.pathling.library.io.sink.DataSinkBuilder;
+import au.csiro.pathling.library.io.sink.FileInformation;
 import au.csiro.pathling.library.io.sink.WriteDetails;
 import au.csiro.pathling.library.io.source.QueryableDataSource;
 import au.csiro.pathling.operations.bulkexport.ExportRequest.ExportLevel;
 import au.csiro.pathling.operations.compartment.PatientCompartmentService;
+import au.csiro.pathling.search.DataSkippingFilter;
+import au.csiro.pathling.search.SearchColumnBuilder;
+import au.csiro.pathling.search.SearchParameterRegistry;
 import au.csiro.pathling.security.PathlingAuthority;
 import au.csiro.pathling.security.ResourceAccess.AccessType;
 import au.csiro.pathling.security.SecurityAspect;
@@ -42,9 +51,12 @@ import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
 import jakarta.annotation.Nonnull;
 import java.io.IOException;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
@@ -54,12 +66,15 @@ import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.spark.sql.Column;
 import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Encoders;
 import org.apache.spark.sql.Row;
+import org.apache.spark.sql.SaveMode;
 import org.apache.spark.sql.SparkSession;
 import org.apache.spark.sql.types.DataType;
 import org.apache.spark.sql.types.DataTypes;
 import org.apache.spark.sql.types.MapType;
 import org.apache.spark.sql.types.StructField;
+import org.hl7.fhir.r4.model.InstantType;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
@@ -132,6 +147,7 @@ public class ExportExecutor {
     QueryableDataSource mapped = checkResourceAccess(AccessType.READ, deltaLake);
 
     mapped = applyResourceTypeFiltering(exportRequest, mapped);
+    final QueryableDataSource unfiltered = mapped;
     mapped = applySinceDateFilter(exportRequest, mapped);
     mapped = applyUntilDateFilter(exportRequest, mapped);
     mapped = applyTypeFilters(exportRequest, mapped);
@@ -148,7 +164,7 @@ public class ExportExecutor {
       final Column subsettedTagArray = createSubsettedTagInSparkStructure();
       mapped = addSubsettedTag(mapped, subsettedTagArray);
     }
-    return writeResultToJobDirectory(exportRequest, jobId, mapped);
+    return writeResultToJobDirectory(exportRequest, jobId, mapped, unfiltered);
   }
 
   /**
@@ -168,13 +184,13 @@ public class ExportExecutor {
         dataSource.filterByResourceType(patientCompartmentService::isInPatientCompartment);
 
     // Then, apply row-level filtering based on patient compartment membership.
-    // We use filterByPatientCompartment which performs a semi-join, avoiding the need to collect
-    // all matching IDs into driver memory. This is more scalable for large datasets.
+    // The compartment filter is evaluated over each dataset and applied within a single scan,
+    // avoiding the need to collect all matching IDs into driver memory.
     return filtered.map(
         (resourceType, rowDataset) -> {
           log.debug("Applying patient compartment filter for resource type {}", resourceType);
           return patientCompartmentService.filterByPatientCompartment(
-              resourceType, patientIds, rowDataset, deltaLake);
+              resourceType, patientIds, rowDataset);
         });
   }
 
@@ -203,7 +219,8 @@ public class ExportExecutor {
   private ExportResponse writeResultToJobDirectory(
       @Nonnull final ExportRequest exportRequest,
       @Nonnull final String jobId,
-      @Nonnull final QueryableDataSource mapped) {
+      @Nonnull final QueryableDataSource mapped,
+      @Nonnull final QueryableDataSource exportedTypes) {
     final URI warehouseUri = URI.create(databasePath);
     final Path warehousePath = new Path(warehouseUri);
     final Path jobDirPath = new Path(new Path(warehousePath, "jobs"), jobId);
@@ -219,18 +236,24 @@ public class ExportExecutor {
         log.debug("Created dir {}", jobDirPath);
       }
 
+      final OutputCompression compression = exportRequest.outputCompression();
       final DataSinkBuilder sinkBuilder =
           new DataSinkBuilder(pathlingContext, mapped).saveMode("overwrite");
       final WriteDetails writeDetails =
           switch (exportRequest.outputFormat()) {
-            case NDJSON -> sinkBuilder.ndjson(jobDirPath.toString());
             case PARQUET -> sinkBuilder.parquet(jobDirPath.toString());
-            case null -> sinkBuilder.ndjson(jobDirPath.toString());
+            case NDJSON -> writeNdjson(sinkBuilder, mapped, jobDirPath, compression);
+            case null -> writeNdjson(sinkBuilder, mapped, jobDirPath, compression);
           };
+      final WriteDetails deletedDetails =
+          getDeletedBundles(exportRequest, exportedTypes)
+              .map(bundles -> writeDeletedBundles(bundles, jobDirPath, compression))
+              .orElse(null);
       return new ExportResponse(
           exportRequest.originalRequest(),
           exportRequest.serverBaseUrl(),
           writeDetails,
+          deletedDetails,
           serverConfiguration.getAuth().isEnabled());
     } catch (final IOException e) {
       throw new InternalErrorException(
@@ -238,6 +261,90 @@ public class ExportExecutor {
     }
   }
 
+  @Nonnull
+  private WriteDetails writeNdjson(
+      @Nonnull final DataSinkBuilder sinkBuilder,
+      @Nonnull final QueryableDataSource dataSource,
+      @Nonnull final Path jobDirPath,
+      @Nonnull final OutputCompression compression) {
+    return compression == OutputCompression.NONE
+        ? sinkBuilder.ndjson(jobDirPath.toString())
+        : writeCompressedNdjson(dataSource, jobDirPath, compression);
+  }
+
+  /**
+   * Writes each resource type to compressed NDJSON files within the job directory, named "[resource
+   * type].[part].ndjson[compression extension]".
+   *
+   * @param dataSource the resources to write
+   * @param jobDirPath the job directory
+   * @param compression the compression codec to apply to the files
+   * @return the details of the files written
+   */
+  @Nonnull
+  private WriteDetails writeCompressedNdjson(
+      @Nonnull final QueryableDataSource dataSource,
+      @Nonnull final Path jobDirPath,
+      @Nonnull final OutputCompression compression) {
+    final List<FileInformation> fileInfos = new ArrayList<>();
+    for (final String resourceType : dataSource.getResourceTypes()) {
+      final Dataset<String> jsonStrings =
+          pathlingContext.decode(
+              dataSource.read(resourceType), resourceType, PathlingContext.FHIR_JSON);
+      final String resultUrl = safelyJoinPaths(jobDirPath.toString(), resourceType + ".ndjson");
+      writeText(jsonStrings, resultUrl, compression).stream()
+          .map(file -> new FileInformation(resourceType, file))
+          .forEach(fileInfos::add);
+    }
+    return new WriteDetails(fileInfos);
+  }
+
+  /**
+   * Writes the Bundles that describe deleted resources to the job directory.
+   *
+   * @param bundles the Bundles as JSON strings
+   * @param jobDirPath the job directory
+   * @param compression the compression codec to apply to the files
+   * @return the details of the files written, which is empty if there are no deletions
+   */
+  @Nonnull
+  private WriteDetails writeDeletedBundles(
+      @Nonnull final Dataset<String> bundles,
+      @Nonnull final Path jobDirPath,
+      @Nonnull final OutputCompression compression) {
+    if (bundles.isEmpty()) {
+      return new WriteDetails(List.of());
+    }
+    final String resultUrl = safelyJoinPaths(jobDirPath.toString(), "Deleted.ndjson");
+    final List<FileInformation> fileInfos =
+        writeText(bundles, resultUrl, compression).stream()
+            .map(file -> new FileInformation("Bundle", file))
+            .toList();
+    return new WriteDetails(fileInfos);
+  }
+
+  /**
+   * Writes lines of text to files, compressing each partition as it is written, and renames the
+   * files to follow the naming convention of the export output.
+   *
+   * @param lines the lines to write
+   * @param resultUrl the URL of the resulting files, without the part number
+   * @param compression the compression codec to apply to the files
+   * @return the URLs of the files written
+   */
+  @Nonnull
+  private List<String> writeText(
+      @Nonnull final Dataset<String> lines,
+      @Nonnull final String resultUrl,
+      @Nonnull final OutputCompression compression) {
+    lines
+        .write()
+        .mode(SaveMode.Overwrite)
+        .option("compression", compression.getSparkCodec())
+        .text(resultUrl);
+    return compression.renamePartitionedFiles(sparkSession, resultUrl, "txt");
+  }
+
   @Nonnull
   private static QueryableDataSource addSubsettedTag(
       @Nonnull final QueryableDataSource mapped, @Nonnull final Column subsettedTagArray) {
@@ -386,6 +493,9 @@ public class ExportExecutor {
       return dataSource;
     }
 
+    final SearchParameterRegistry registry =
+        SearchColumnBuilder.withDefaultRegistry(fhirContext).getRegistry();
+    final boolean relativeReferences = serverConfiguration.getSearch().isRelativeReferences();
     return dataSource.map(
         (resourceType, rowDataset) -> {
           final java.util.List<String> filters = exportRequest.typeFilters().get(resourceType);
@@ -393,32 +503,110 @@ public class ExportExecutor {
             return rowDataset;
           }
 
-          // Convert each search query string to a Spark Column and combine with OR.
+          // Convert each search query string to a Spark Column and combine with OR. Where a
+          // simpler form of every query can be derived, this is added so that Delta can skip files.
           Column combined = null;
+          Optional<Column> skipping = Optional.of(lit(false));
           for (final String searchQuery : filters) {
             final Column filterColumn = pathlingContext.searchToColumn(resourceType, searchQuery);
             combined = combined == null ? filterColumn : combined.or(filterColumn);
+            final Optional<Column> querySkipping =
+                DataSkippingFilter.fromQueryString(
+                    registry, resourceType, searchQuery, rowDataset.schema(), relativeReferences);
+            skipping = skipping.flatMap(previous -> querySkipping.map(previous::or));
           }
           log.debug(
               "Applying _typeFilter for resource type {} with {} filter(s)",
               resourceType,
               filters.size());
-          return rowDataset.filter(combined);
+          final Column typeFilter = combined;
+          return rowDataset.filter(
+              skipping.map(skippingFilter -> skippingFilter.and(typeFilter)).orElse(typeFilter));
         });
   }
 
+  /**
+   * Restricts the exported resources to those that have changed since the time given by the {@code
+   * _since} parameter. Where the change data feed of a table covers that time, only the changed
+   * resources are read. Otherwise, the resources are filtered on {@code meta.lastUpdated}.
+   *
+   * @param exportRequest the export request
+   * @param mapped the data source to filter
+   * @return the filtered data source
+   */
   @Nonnull
-  private static QueryableDataSource applySinceDateFilter(
+  private QueryableDataSource applySinceDateFilter(
       @Nonnull final ExportRequest exportRequest, @Nonnull final QueryableDataSource mapped) {
-    if (exportRequest.since() != null) {
-      return mapped.map(
-          rowDataset ->
-              rowDataset.filter(
-                  "meta.lastUpdated IS NULL OR meta.lastUpdated >= '"
-                      + exportRequest.since().getValueAsString()
-                      + "'"));
+    final InstantType since = exportRequest.since();
+    if (since == null) {
+      return mapped;
     }
-    return mapped;
+    return mapped.map(
+        (resourceType, rowDataset) ->
+            readChanges(resourceType, since)
+                .map(ChangeDataFeed::current)
+                .orElseGet(
+                    () ->
+                        rowDataset.filter(
+                            "meta.lastUpdated IS NULL OR meta.lastUpdated >= '"
+                                + since.getValueAsString()
+                                + "'")));
+  }
+
+  /**
+   * Builds a dataset of transaction Bundles, one for each resource that has been deleted since the
+   * time given by the {@code _since} parameter, as described for the {@code deleted} section of the
+   * bulk export manifest.
+   *
+   * @param exportRequest the export request
+   * @param dataSource the data source, filtered to the resource types that are being exported
+   * @return the Bundles as JSON strings, or empty if deletions are not being reported
+   */
+  @Nonnull
+  private Optional<Dataset<String>> getDeletedBundles(
+      @Nonnull final ExportRequest exportRequest, @Nonnull final QueryableDataSource dataSource) {
+    final InstantType since = exportRequest.since();
+    if (since == null || !serverConfiguration.getExport().isIncludeDeleted()) {
+      return Optional.empty();
+    }
+    Dataset<String> bundles = sparkSession.emptyDataset(Encoders.STRING());
+    for (final String resourceType : dataSource.getResourceTypes()) {
+      final Optional<Dataset<Row>> changes = readChanges(resourceType, since);
+      if (changes.isEmpty()) {
+        continue;
+      }
+      Dataset<Row> deleted = ChangeDataFeed.deleted(changes.get());
+      if (exportRequest.exportLevel() != ExportLevel.SYSTEM) {
+        if (!patientCompartmentService.isInPatientCompartment(resourceType)) {
+          continue;
+        }
+        // The content of each resource prior to its deletion determines its compartment.
+        deleted =
+            patientCompartmentService.filterByPatientCompartment(
+                resourceType, exportRequest.patientIds(), deleted);
+      }
+      final Column bundle =
+          to_json(
+              struct(
+                  lit("Bundle").as("resourceType"),
+                  lit("transaction").as("type"),
+                  array(
+                          struct(
+                              struct(
+                                      lit("DELETE").as("method"),
+                                      concat(lit(resourceType + "/"), col("id")).as("url"))
+                                  .as("request")))
+                      .as("entry")));
+      bundles = bundles.union(deleted.select(bundle).as(Encoders.STRING()));
+    }
+    return Optional.of(bundles);
+  }
+
+  @Nonnull
+  private Optional<Dataset<Row>> readChanges(
+      @Nonnull final String resourceType, @Nonnull final InstantType since) {
+    final String tablePath = safelyJoinPaths(databasePath, resourceType + ".parquet");
+    return ChangeDataFeed.readLatestChanges(sparkSession, tablePath, since.getValue().toInstant());
   }
 
   @Nonnull
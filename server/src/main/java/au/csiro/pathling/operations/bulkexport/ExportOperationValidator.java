@@ -20,6 +20,7 @@ package au.csiro.pathling.operations.bulkexport;
 import au.csiro.pathling.FhirServer;
 import au.csiro.pathling.async.PreAsyncValidation;
 import au.csiro.pathling.config.ServerConfiguration;
+import au.csiro.pathling.io.OutputCompression;
 import au.csiro.pathling.operations.OperationValidation;
 import au.csiro.pathling.operations.bulkexport.ExportRequest.ExportLevel;
 import au.csiro.pathling.operations.compartment.PatientCompartmentService;
@@ -39,6 +40,7 @@ import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.function.Predicate;
@@ -408,6 +410,31 @@ public class ExportOperationValidator {
     return result;
   }
 
+  /**
+   * Applies the output compression parameter to a validated export request.
+   *
+   * @param validationResult the result of validating the other parameters of the request
+   * @param outputCompression the output compression parameter
+   * @return the validation result, with the compression applied to the request
+   * @throws InvalidRequestException if the codec is unknown, or compression is requested for an
+   *     output format other than NDJSON
+   */
+  @Nonnull
+  public PreAsyncValidation.PreAsyncValidationResult<ExportRequest> applyOutputCompression(
+      @Nonnull final PreAsyncValidation.PreAsyncValidationResult<ExportRequest> validationResult,
+      @Nullable final String outputCompression) {
+    final OutputCompression compression = OutputCompression.fromParam(outputCompression);
+    final ExportRequest exportRequest = Objects.requireNonNull(validationResult.result());
+    if (compression != OutputCompression.NONE
+        && exportRequest.outputFormat() != ExportOutputFormat.NDJSON) {
+      throw new InvalidRequestException(
+          "'%s' is only supported for the ndjson output format."
+              .formatted(SystemExportProvider.OUTPUT_COMPRESSION_PARAM_NAME));
+    }
+    return new PreAsyncValidation.PreAsyncValidationResult<>(
+        exportRequest.withOutputCompression(compression), validationResult.warnings());
+  }
+
   /**
    * Creates an ExportRequest for system-level exports.
    *
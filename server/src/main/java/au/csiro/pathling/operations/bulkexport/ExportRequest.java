@@ -17,6 +17,7 @@
 
 package au.csiro.pathling.operations.bulkexport;
 
+import au.csiro.pathling.io.OutputCompression;
 import jakarta.annotation.Nonnull;
 import jakarta.annotation.Nullable;
 import java.util.List;
@@ -46,6 +47,7 @@ import org.hl7.fhir.r4.model.InstantType;
  * @param lenient Lenient handling enabled.
  * @param exportLevel The level at which the export is being performed.
  * @param patientIds The patient IDs to filter by for patient-level or group-level exports.
+ * @param outputCompression The compression codec applied to NDJSON output files.
  * @author Felix Naumann
  * @author John Grimes
  */
@@ -60,7 +62,73 @@ public record ExportRequest(
     @Nonnull List<FhirElement> elements,
     boolean lenient,
     @Nonnull ExportLevel exportLevel,
-    @Nonnull Set<String> patientIds) {
+    @Nonnull Set<String> patientIds,
+    @Nonnull OutputCompression outputCompression) {
+
+  /**
+   * Creates an export request with uncompressed output.
+   *
+   * @param originalRequest The original request URL.
+   * @param serverBaseUrl The FHIR server base URL (without trailing slash).
+   * @param outputFormat The desired output format.
+   * @param since The lower bound of the time of the changes to include.
+   * @param until The upper bound of the time of the changes to include.
+   * @param includeResourceTypeFilters The resource types to include.
+   * @param typeFilters Search-based filters for exported resources, keyed by resource type code.
+   * @param elements The elements to include in the exported resources.
+   * @param lenient Lenient handling enabled.
+   * @param exportLevel The level at which the export is being performed.
+   * @param patientIds The patient IDs to filter by for patient-level or group-level exports.
+   */
+  public ExportRequest(
+      @Nonnull final String originalRequest,
+      @Nonnull final String serverBaseUrl,
+      @Nullable final ExportOutputFormat outputFormat,
+      @Nullable final InstantType since,
+      @Nullable final InstantType until,
+      @Nonnull final List<String> includeResourceTypeFilters,
+      @Nonnull final Map<String, List<String>> typeFilters,
+      @Nonnull final List<FhirElement> elements,
+      final boolean lenient,
+      @Nonnull final ExportLevel exportLevel,
+      @Nonnull final Set<String> patientIds) {
+    this(
+        originalRequest,
+        serverBaseUrl,
+        outputFormat,
+        since,
+        until,
+        includeResourceTypeFilters,
+        typeFilters,
+        elements,
+        lenient,
+        exportLevel,
+        patientIds,
+        OutputCompression.NONE);
+  }
+
+  /**
+   * Returns a copy of this request with the specified output compression.
+   *
+   * @param compression the compression codec to apply to the output files
+   * @return the updated request
+   */
+  @Nonnull
+  public ExportRequest withOutputCompression(@Nonnull final OutputCompression compression) {
+    return new ExportRequest(
+        originalRequest,
+        serverBaseUrl,
+        outputFormat,
+        since,
+        until,
+        includeResourceTypeFilters,
+        typeFilters,
+        elements,
+        lenient,
+        exportLevel,
+        patientIds,
+        compression);
+  }
 
   /** The level at which the export operation is being executed. */
   public enum ExportLevel {
@@ -25,8 +25,10 @@ import au.csiro.pathling.shaded.com.fasterxml.jackson.databind.node.ArrayNode;
 import au.csiro.pathling.shaded.com.fasterxml.jackson.databind.node.ObjectNode;
 import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
 import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
 import java.net.URISyntaxException;
 import java.util.Objects;
+import java.util.Optional;
 import lombok.Getter;
 import org.apache.http.client.utils.URIBuilder;
 import org.hl7.fhir.r4.model.BooleanType;
@@ -53,6 +55,9 @@ public class ExportResponse implements OperationResponse<Parameters> {
 
   @Nonnull private final WriteDetails writeDetails;
 
+  /** Details of the files describing deleted resources, or null if these are not reported. */
+  @Nullable private final WriteDetails deletedDetails;
+
   /** Whether an access token is required to retrieve results. */
   @Getter private final boolean requiresAccessToken;
 
@@ -69,9 +74,29 @@ public class ExportResponse implements OperationResponse<Parameters> {
       @Nonnull final String serverBaseUrl,
       @Nonnull final WriteDetails writeDetails,
       final boolean requiresAccessToken) {
+    this(kickOffRequestUrl, serverBaseUrl, writeDetails, null, requiresAccessToken);
+  }
+
+  /**
+   * Creates a new ExportResponse that reports deleted resources.
+   *
+   * @param kickOffRequestUrl the original export request URL (used in the manifest)
+   * @param serverBaseUrl the FHIR server base URL (used for constructing result URLs)
+   * @param writeDetails the write details containing file information
+   * @param deletedDetails the write details of the files describing deleted resources, or null if
+   *     deleted resources are not reported
+   * @param requiresAccessToken whether access token is required to retrieve results
+   */
+  public ExportResponse(
+      @Nonnull final String kickOffRequestUrl,
+      @Nonnull final String serverBaseUrl,
+      @Nonnull final WriteDetails writeDetails,
+      @Nullable final WriteDetails deletedDetails,
+      final boolean requiresAccessToken) {
     this.kickOffRequestUrl = kickOffRequestUrl;
     this.serverBaseUrl = serverBaseUrl;
     this.writeDetails = writeDetails;
+    this.deletedDetails = deletedDetails;
     this.requiresAccessToken = requiresAccessToken;
   }
 
@@ -115,6 +140,16 @@ public class ExportResponse implements OperationResponse<Parameters> {
       entry.put("url", buildResultUrl(normalizedBaseUrl, fileInfo.absoluteUrl()));
     }
 
+    // Deleted resources are only reported when requested.
+    if (deletedDetails != null) {
+      final ArrayNode deletedArray = json.putArray("deleted");
+      for (final FileInformation fileInfo : deletedDetails.fileInfos()) {
+        final ObjectNode entry = deletedArray.addObject();
+        entry.put("type", fileInfo.fhirResourceType());
+        entry.put("url", buildResultUrl(normalizedBaseUrl, fileInfo.absoluteUrl()));
+      }
+    }
+
     // Error is always an array (even when empty).
     json.putArray("error");
 
@@ -158,6 +193,19 @@ public class ExportResponse implements OperationResponse<Parameters> {
           .setValue(new UriType(buildResultUrl(normalizedBaseUrl, fileInfo.absoluteUrl())));
     }
 
+    // Add deleted parameters.
+    if (deletedDetails != null) {
+      for (final FileInformation fileInfo : deletedDetails.fileInfos()) {
+        final ParametersParameterComponent deletedParam =
+            parameters.addParameter().setName("deleted");
+        deletedParam.addPart().setName("type").setValue(new CodeType(fileInfo.fhirResourceType()));
+        deletedParam
+            .addPart()
+            .setName("url")
+            .setValue(new UriType(buildResultUrl(normalizedBaseUrl, fileInfo.absoluteUrl())));
+      }
+    }
+
     // Add empty error parameter to match JSON structure.
     parameters.addParameter().setName("error");
 
@@ -209,6 +257,16 @@ public class ExportResponse implements OperationResponse<Parameters> {
     return writeDetails;
   }
 
+  /**
+   * Returns the write details of the files describing deleted resources.
+   *
+   * @return the write details, or empty if deleted resources are not reported
+   */
+  @Nonnull
+  public Optional<WriteDetails> getDeletedDetails() {
+    return Optional.ofNullable(deletedDetails);
+  }
+
   @Override
   public boolean equals(final Object o) {
     if (o == null || getClass() != o.getClass()) {
@@ -217,12 +275,13 @@ public class ExportResponse implements OperationResponse<Parameters> {
     final ExportResponse that = (ExportResponse) o;
     return requiresAccessToken == that.requiresAccessToken
         && Objects.equals(kickOffRequestUrl, that.kickOffRequestUrl)
-        && Objects.equals(writeDetails, that.writeDetails);
+        && Objects.equals(writeDetails, that.writeDetails)
+        && Objects.equals(deletedDetails, that.deletedDetails);
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(kickOffRequestUrl, writeDetails, requiresAccessToken);
+    return Objects.hash(kickOffRequestUrl, writeDetails, deletedDetails, requiresAccessToken);
   }
 
   @Override
@@ -233,6 +292,8 @@ public class ExportResponse implements OperationResponse<Parameters> {
         + '\''
         + ", writeDetails="
         + writeDetails
+        + ", deletedDetails="
+        + deletedDetails
         + ", requiresAccessToken="
         + requiresAccessToken
         + '}';
@@ -18,6 +18,7 @@
 package au.csiro.pathling.operations.bulkexport;
 
 import static au.csiro.pathling.operations.bulkexport.SystemExportProvider.ELEMENTS_PARAM_NAME;
+import static au.csiro.pathling.operations.bulkexport.SystemExportProvider.OUTPUT_COMPRESSION_PARAM_NAME;
 import static au.csiro.pathling.operations.bulkexport.SystemExportProvider.OUTPUT_FORMAT_PARAM_NAME;
 import static au.csiro.pathling.operations.bulkexport.SystemExportProvider.SINCE_PARAM_NAME;
 import static au.csiro.pathling.operations.bulkexport.SystemExportProvider.TYPE_FILTER_PARAM_NAME;
@@ -100,6 +101,7 @@ public class GroupExportProvider implements IResourceProvider, PreAsyncValidatio
    * @param type the type parameter
    * @param typeFilter the type filter parameter
    * @param elements the elements parameter
+   * @param outputCompression the output compression parameter
    * @param requestDetails the request details
    * @return the binary result, or null if the job was cancelled
    */
@@ -116,6 +118,8 @@ public class GroupExportProvider implements IResourceProvider, PreAsyncValidatio
       @Nullable @OperationParam(name = TYPE_PARAM_NAME) final List<String> type,
       @Nullable @OperationParam(name = TYPE_FILTER_PARAM_NAME) final List<String> typeFilter,
       @Nullable @OperationParam(name = ELEMENTS_PARAM_NAME) final List<String> elements,
+      @Nullable @OperationParam(name = OUTPUT_COMPRESSION_PARAM_NAME)
+          final String outputCompression,
       @Nonnull final ServletRequestDetails requestDetails) {
     return exportOperationHelper.executeExport(requestDetails);
   }
@@ -125,7 +129,8 @@ public class GroupExportProvider implements IResourceProvider, PreAsyncValidatio
   @Nonnull
   public PreAsyncValidationResult<ExportRequest> preAsyncValidate(
       @Nonnull final ServletRequestDetails servletRequestDetails, @Nonnull final Object[] args) {
-    // args = [groupId, outputFormat, since, until, type, typeFilter, elements, requestDetails]
+    // args = [groupId, outputFormat, since, until, type, typeFilter, elements, outputCompression,
+    // requestDetails]
     final IdType groupId = (IdType) args[0];
     final String outputFormat = (String) args[1];
     final InstantType since = (InstantType) args[2];
@@ -133,20 +138,23 @@ public class GroupExportProvider implements IResourceProvider, PreAsyncValidatio
     final List<String> type = (List<String>) args[4];
     final List<String> typeFilter = (List<String>) args[5];
     final List<String> elements = (List<String>) args[6];
+    final String outputCompression = (String) args[7];
 
     // Extract patient IDs from the group during validation.
     final Set<String> patientIds =
         groupMemberService.extractPatientIdsFromGroup(groupId.getIdPart());
 
-    return exportOperationValidator.validatePatientExportRequest(
-        servletRequestDetails,
-        ExportLevel.GROUP,
-        patientIds,
-        outputFormat,
-        since,
-        until,
-        type,
-        typeFilter,
-        elements);
+    return exportOperationValidator.applyOutputCompression(
+        exportOperationValidator.validatePatientExportRequest(
+            servletRequestDetails,
+            ExportLevel.GROUP,
+            patientIds,
+            outputFormat,
+            since,
+            until,
+            type,
+            typeFilter,
+            elements),
+        outputCompression);
   }
 }
@@ -18,6 +18,7 @@
 package au.csiro.pathling.operations.bulkexport;
 
 import static au.csiro.pathling.operations.bulkexport.SystemExportProvider.ELEMENTS_PARAM_NAME;
+import static au.csiro.pathling.operations.bulkexport.SystemExportProvider.OUTPUT_COMPRESSION_PARAM_NAME;
 import static au.csiro.pathling.operations.bulkexport.SystemExportProvider.OUTPUT_FORMAT_PARAM_NAME;
 import static au.csiro.pathling.operations.bulkexport.SystemExportProvider.SINCE_PARAM_NAME;
 import static au.csiro.pathling.operations.bulkexport.SystemExportProvider.TYPE_FILTER_PARAM_NAME;
@@ -85,6 +86,7 @@ public class PatientExportProvider implements IResourceProvider, PreAsyncValidat
    * @param type the type parameter
    * @param typeFilter the type filter parameter
    * @param elements the elements parameter
+   * @param outputCompression the output compression parameter
    * @param requestDetails the request details
    * @return the binary result, or null if the job was cancelled
    */
@@ -100,6 +102,8 @@ public class PatientExportProvider implements IResourceProvider, PreAsyncValidat
       @Nullable @OperationParam(name = TYPE_PARAM_NAME) final List<String> type,
       @Nullable @OperationParam(name = TYPE_FILTER_PARAM_NAME) final List<String> typeFilter,
       @Nullable @OperationParam(name = ELEMENTS_PARAM_NAME) final List<String> elements,
+      @Nullable @OperationParam(name = OUTPUT_COMPRESSION_PARAM_NAME)
+          final String outputCompression,
       @Nonnull final ServletRequestDetails requestDetails) {
     return exportOperationHelper.executeExport(requestDetails);
   }
@@ -115,6 +119,7 @@ public class PatientExportProvider implements IResourceProvider, PreAsyncValidat
    * @param type the type parameter
    * @param typeFilter the type filter parameter
    * @param elements the elements parameter
+   * @param outputCompression the output compression parameter
    * @param requestDetails the request details
    * @return the binary result, or null if the job was cancelled
    */
@@ -131,6 +136,8 @@ public class PatientExportProvider implements IResourceProvider, PreAsyncValidat
       @Nullable @OperationParam(name = TYPE_PARAM_NAME) final List<String> type,
       @Nullable @OperationParam(name = TYPE_FILTER_PARAM_NAME) final List<String> typeFilter,
       @Nullable @OperationParam(name = ELEMENTS_PARAM_NAME) final List<String> elements,
+      @Nullable @OperationParam(name = OUTPUT_COMPRESSION_PARAM_NAME)
+          final String outputCompression,
       @Nonnull final ServletRequestDetails requestDetails) {
     return exportOperationHelper.executeExport(requestDetails);
   }
@@ -141,9 +148,10 @@ public class PatientExportProvider implements IResourceProvider, PreAsyncValidat
   public PreAsyncValidationResult<ExportRequest> preAsyncValidate(
       @Nonnull final ServletRequestDetails servletRequestDetails, @Nonnull final Object[] args) {
     // Determine if this is a type-level or instance-level operation based on args.
-    // Type-level: args = [outputFormat, since, until, type, typeFilter, elements, requestDetails]
+    // Type-level: args = [outputFormat, since, until, type, typeFilter, elements,
+    // outputCompression, requestDetails]
     // Instance-level: args = [patientId, outputFormat, since, until, type, typeFilter, elements,
-    // requestDetails]
+    // outputCompression, requestDetails]
     final boolean isInstanceLevel = args.length > 0 && args[0] instanceof IdType;
 
     final ExportLevel exportLevel;
@@ -154,6 +162,7 @@ public class PatientExportProvider implements IResourceProvider, PreAsyncValidat
     final List<String> type;
     final List<String> typeFilter;
     final List<String> elements;
+    final String outputCompression;
 
     if (isInstanceLevel) {
       final IdType patientId = (IdType) args[0];
@@ -165,6 +174,7 @@ public class PatientExportProvider implements IResourceProvider, PreAsyncValidat
       type = (List<String>) args[4];
       typeFilter = (List<String>) args[5];
       elements = (List<String>) args[6];
+      outputCompression = (String) args[7];
     } else {
       exportLevel = ExportLevel.PATIENT_TYPE;
       patientIds = Set.of();
@@ -174,17 +184,20 @@ public class PatientExportProvider implements IResourceProvider, PreAsyncValidat
       type = (List<String>) args[3];
       typeFilter = (List<String>) args[4];
       elements = (List<String>) args[5];
+      outputCompression = (String) args[6];
     }
 
-    return exportOperationValidator.validatePatientExportRequest(
-        servletRequestDetails,
-        exportLevel,
-        patientIds,
-        outputFormat,
-        since,
-        until,
-        type,
-        typeFilter,
-        elements);
+    return exportOperationValidator.applyOutputCompression(
+        exportOperationValidator.validatePatientExportRequest(
+            servletRequestDetails,
+            exportLevel,
+            patientIds,
+            outputFormat,
+            since,
+            until,
+            type,
+            typeFilter,
+            elements),
+        outputCompression);
   }
 }
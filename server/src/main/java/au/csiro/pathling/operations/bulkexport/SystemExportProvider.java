@@ -57,6 +57,9 @@ public class SystemExportProvider implements PreAsyncValidation<ExportRequest> {
   /** The name of the elements parameter. */
   public static final String ELEMENTS_PARAM_NAME = "_elements";
 
+  /** The name of the output compression parameter. */
+  public static final String OUTPUT_COMPRESSION_PARAM_NAME = "_outputCompression";
+
   @Nonnull private final ExportOperationValidator exportOperationValidator;
 
   @Nonnull private final ExportOperationHelper exportOperationHelper;
@@ -84,6 +87,7 @@ public class SystemExportProvider implements PreAsyncValidation<ExportRequest> {
    * @param type the type parameter (validated in pre-async validation)
    * @param typeFilter the type filter parameter (validated in pre-async validation)
    * @param elements the elements parameter (validated in pre-async validation)
+   * @param outputCompression the output compression parameter (validated in pre-async validation)
    * @param requestDetails the request details
    * @return the binary result, or null if the job was cancelled
    */
@@ -99,6 +103,8 @@ public class SystemExportProvider implements PreAsyncValidation<ExportRequest> {
       @Nullable @OperationParam(name = TYPE_PARAM_NAME) final List<String> type,
       @Nullable @OperationParam(name = TYPE_FILTER_PARAM_NAME) final List<String> typeFilter,
       @Nullable @OperationParam(name = ELEMENTS_PARAM_NAME) final List<String> elements,
+      @Nullable @OperationParam(name = OUTPUT_COMPRESSION_PARAM_NAME)
+          final String outputCompression,
       @Nonnull final ServletRequestDetails requestDetails) {
     return exportOperationHelper.executeExport(requestDetails);
   }
@@ -108,13 +114,15 @@ public class SystemExportProvider implements PreAsyncValidation<ExportRequest> {
   @Nonnull
   public PreAsyncValidationResult<ExportRequest> preAsyncValidate(
       @Nonnull final ServletRequestDetails servletRequestDetails, @Nonnull final Object[] args) {
-    return exportOperationValidator.validateRequest(
-        servletRequestDetails,
-        (String) args[0],
-        (InstantType) args[1],
-        (InstantType) args[2],
-        (List<String>) args[3],
-        (List<String>) args[4],
-        (List<String>) args[5]);
+    return exportOperationValidator.applyOutputCompression(
+        exportOperationValidator.validateRequest(
+            servletRequestDetails,
+            (String) args[0],
+            (InstantType) args[1],
+            (InstantType) args[2],
+            (List<String>) args[3],
+            (List<String>) args[4],
+            (List<String>) args[5]),
+        (String) args[6]);
   }
 }
@@ -20,12 +20,15 @@ package au.csiro.pathling.operations.bulkimport;
 import au.csiro.pathling.cache.CacheableDatabase;
 import au.csiro.pathling.config.ServerConfiguration;
 import au.csiro.pathling.errors.AccessDeniedError;
+import au.csiro.pathling.io.WriteLayout;
 import au.csiro.pathling.io.source.DataSource;
 import au.csiro.pathling.library.PathlingContext;
 import au.csiro.pathling.library.io.sink.DataSinkBuilder;
+import au.csiro.pathling.library.io.sink.FileInformation;
 import au.csiro.pathling.library.io.sink.WriteDetails;
 import au.csiro.pathling.library.io.source.NdjsonSource;
 import au.csiro.pathling.library.io.source.ParquetSource;
+import au.csiro.pathling.operations.compartment.PatientCompartmentService;
 import au.csiro.pathling.security.PathlingAuthority;
 import au.csiro.pathling.security.ResourceAccess.AccessType;
 import au.csiro.pathling.security.SecurityAspect;
@@ -37,6 +40,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.function.Predicate;
+import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
 import org.jetbrains.annotations.NotNull;
 import org.springframework.beans.factory.annotation.Value;
@@ -61,6 +65,8 @@ public class ImportExecutor {
 
   @Nonnull private final CacheableDatabase cacheableDatabase;
 
+  @Nonnull private final PatientCompartmentService patientCompartmentService;
+
   /**
    * Creates a new ImportExecutor.
    *
@@ -69,6 +75,7 @@ public class ImportExecutor {
    * @param databasePath directory to where the data will be imported
    * @param serverConfiguration the server configuration including authentication settings
    * @param cacheableDatabase the cacheable database for cache invalidation
+   * @param patientCompartmentService the service used to find the patient key of each resource type
    */
   public ImportExecutor(
       @Nonnull final Optional<AccessRules> accessRules,
@@ -76,12 +83,14 @@ public class ImportExecutor {
       @Value("${pathling.storage.warehouseUrl}/${pathling.storage.databaseName}")
           final String databasePath,
       final ServerConfiguration serverConfiguration,
-      @Nonnull final CacheableDatabase cacheableDatabase) {
+      @Nonnull final CacheableDatabase cacheableDatabase,
+      @Nonnull final PatientCompartmentService patientCompartmentService) {
     this.accessRules = accessRules;
     this.pathlingContext = pathlingContext;
     this.databasePath = databasePath;
     this.serverConfiguration = serverConfiguration;
     this.cacheableDatabase = cacheableDatabase;
+    this.patientCompartmentService = patientCompartmentService;
   }
 
   /**
@@ -135,11 +144,25 @@ public class ImportExecutor {
                   pathlingContext, resourcesWithAuthority, (Predicate<String>) ignored -> true);
         };
 
-    // Always write to Delta format regardless of source format.
+    // Always write to Delta format regardless of source format, using the configured file layout.
     final WriteDetails writeDetails =
-        new DataSinkBuilder(pathlingContext, dataSource)
+        new DataSinkBuilder(
+                pathlingContext,
+                WriteLayout.arrange(
+                    pathlingContext,
+                    dataSource,
+                    serverConfiguration.getStorage(),
+                    patientCompartmentService))
             .saveMode(request.saveMode().getCode())
             .delta(databasePath);
+    WriteLayout.logFileStatistics(
+        pathlingContext.getSpark(),
+        writeDetails.fileInfos().stream()
+            .collect(
+                Collectors.toMap(
+                    FileInformation::fhirResourceType,
+                    FileInformation::absoluteUrl,
+                    (first, second) -> first)));
 
     // Invalidate the cache to ensure subsequent requests see the updated data.
     cacheableDatabase.invalidate();
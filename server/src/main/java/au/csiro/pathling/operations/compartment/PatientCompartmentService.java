@@ -27,21 +27,27 @@ import au.csiro.pathling.fhirpath.collection.ResourceCollection;
 import au.csiro.pathling.fhirpath.evaluation.DatasetEvaluator;
 import au.csiro.pathling.fhirpath.evaluation.DatasetEvaluatorBuilder;
 import au.csiro.pathling.fhirpath.parser.Parser;
-import au.csiro.pathling.io.source.DataSource;
+import au.csiro.pathling.search.DataSkippingFilter;
+import au.csiro.pathling.search.SingleScanFilter;
 import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.context.RuntimeResourceDefinition;
 import ca.uhn.fhir.context.RuntimeSearchParam;
 import jakarta.annotation.Nonnull;
 import jakarta.annotation.Nullable;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.spark.sql.Column;
 import org.apache.spark.sql.Dataset;
 import org.apache.spark.sql.Row;
+import org.apache.spark.sql.types.StructType;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
@@ -66,6 +72,15 @@ public class PatientCompartmentService {
   /** Prefix for patient references. */
   private static final String PATIENT_REF_PREFIX = PATIENT_RESOURCE_TYPE + "/";
 
+  /** The names of the elements that are preferred as the patient key of a resource type. */
+  private static final Set<String> PATIENT_KEY_ELEMENTS = Set.of("subject", "patient");
+
+  /**
+   * Matches a compartment path that refers to an element, or to the Patient references within it.
+   */
+  private static final Pattern REFERENCE_ELEMENT =
+      Pattern.compile("^(\\w+)(?:\\.where\\(resolve\\(\\) is Patient\\))?$");
+
   @Nonnull private final FhirContext fhirContext;
 
   /** Cache of resource type to compartment element paths. */
@@ -111,6 +126,29 @@ public class PatientCompartmentService {
         || !getPatientCompartmentPaths(resourceType).isEmpty();
   }
 
+  /**
+   * Get the column that holds the patient key of a resource type, which is used to cluster the
+   * resources of the type by the patient that they belong to. For Patient this is the resource ID,
+   * and for other types it is the reference within a compartment element that is a single
+   * reference, preferring an element named {@code subject} or {@code patient}.
+   *
+   * @param resourceType the FHIR resource type code
+   * @param schema the schema of the resources
+   * @return the name of the column, or empty if the type has no single patient reference
+   */
+  @Nonnull
+  public Optional<String> getPatientKeyColumn(
+      @Nonnull final String resourceType, @Nonnull final StructType schema) {
+    if (PATIENT_RESOURCE_TYPE.equals(resourceType)) {
+      return Optional.of("id");
+    }
+    return getPatientCompartmentPaths(resourceType).stream()
+        .map(PatientCompartmentService::getReferenceElement)
+        .filter(element -> element != null && DataSkippingFilter.isSingleReference(schema, element))
+        .min(Comparator.comparing((String element) -> !PATIENT_KEY_ELEMENTS.contains(element)))
+        .map(element -> element + ".reference");
+  }
+
   /**
    * Build a Spark filter Column for compartment membership. This method is for simple cases where
    * the filter doesn't require FHIRPath evaluation (e.g., Patient resources).
@@ -136,7 +174,7 @@ public class PatientCompartmentService {
       }
     }
 
-    // For non-Patient resources without DataSource, we can't evaluate FHIRPath properly.
+    // For non-Patient resources without a dataset, we can't evaluate FHIRPath properly.
     // Return a filter that matches nothing (this shouldn't normally be called for such cases).
     final List<String> paths = getPatientCompartmentPaths(resourceType);
     if (paths.isEmpty()) {
@@ -146,33 +184,31 @@ public class PatientCompartmentService {
     // Fall back to simple column-based filtering for backward compatibility.
     // This will only work for simple paths without FHIRPath functions.
     log.warn(
-        "buildPatientFilter called without DataSource for resource type {} - "
+        "buildPatientFilter called without a dataset for resource type {} - "
             + "FHIRPath expressions in compartment paths will not be evaluated correctly",
         resourceType);
     return buildSimpleFilter(paths, patientIds);
   }
 
   /**
-   * Filter a dataset to only include resources in the Patient compartment. This method uses a
-   * semi-join approach that avoids collecting IDs into driver memory, making it suitable for large
-   * datasets.
+   * Filter a dataset to only include resources in the Patient compartment.
    *
    * <p>For complex compartment paths that contain FHIRPath expressions like {@code where(resolve()
-   * is Patient)}, this method uses FHIRPath evaluation to correctly identify matching resources and
-   * then performs a semi-join to filter the input dataset.
+   * is Patient)}, this method uses FHIRPath evaluation over the dataset to correctly identify
+   * matching resources. The resulting filter is applied directly to the dataset, so that the
+   * compartment filter requires only a single scan of the data and does not collect IDs into driver
+   * memory.
    *
    * @param resourceType the resource type
    * @param patientIds the patient IDs to filter by (empty set means all patients in compartment)
    * @param rowDataset the dataset to filter (must have flat column structure with 'id' column)
-   * @param dataSource the data source for FHIRPath evaluation
    * @return the filtered dataset containing only resources in the Patient compartment
    */
   @Nonnull
-  public org.apache.spark.sql.Dataset<org.apache.spark.sql.Row> filterByPatientCompartment(
+  public Dataset<Row> filterByPatientCompartment(
       @Nonnull final String resourceType,
       @Nonnull final Set<String> patientIds,
-      @Nonnull final Dataset<Row> rowDataset,
-      @Nonnull final DataSource dataSource) {
+      @Nonnull final Dataset<Row> rowDataset) {
     // Handle Patient resource specially - no FHIRPath evaluation needed.
     if (PATIENT_RESOURCE_TYPE.equals(resourceType)) {
       if (patientIds.isEmpty()) {
@@ -190,41 +226,37 @@ public class PatientCompartmentService {
       return rowDataset.filter(lit(false));
     }
 
-    // Read the resource data from the data source.
-    final org.apache.spark.sql.Dataset<org.apache.spark.sql.Row> resourceDataset =
-        dataSource.read(resourceType);
-
-    // Create a FHIRPath evaluator for this resource type.
+    // Create a FHIRPath evaluator for this resource type over the dataset being filtered.
     final DatasetEvaluator evaluator =
-        DatasetEvaluatorBuilder.create(resourceType, fhirContext)
-            .withDataset(resourceDataset)
-            .build();
+        DatasetEvaluatorBuilder.create(resourceType, fhirContext).withDataset(rowDataset).build();
 
     // Get the input context for FHIRPath evaluation.
     final ResourceCollection inputContext = evaluator.getDefaultInputContext();
 
-    // Build OR filter across all compartment paths using FHIRPath evaluation.
+    // Build OR filter across all compartment paths. Paths that are a single reference are compared
+    // directly with the patient references, which allows Delta to skip files using the statistics
+    // of the reference column. Other paths use FHIRPath evaluation.
+    final List<String> patientRefs =
+        patientIds.stream().map(id -> PATIENT_REF_PREFIX + id).sorted().toList();
     Column filter = lit(false);
     for (final String path : paths) {
-      final Column pathFilter = buildPathFilter(path, patientIds, evaluator, inputContext);
+      final String element = getReferenceElement(path);
+      final Optional<Column> referenceFilter =
+          patientIds.isEmpty() || element == null
+              ? Optional.empty()
+              : DataSkippingFilter.fromReferences(
+                  List.of(element), patientRefs, rowDataset.schema());
+      final Column pathFilter =
+          referenceFilter
+              .map(column -> coalesce(column, lit(false)))
+              .orElseGet(() -> buildPathFilter(path, patientIds, evaluator, inputContext));
       if (pathFilter != null) {
         filter = filter.or(pathFilter);
       }
     }
 
-    // Coalesce to handle null values (treat null as false).
-    final Column safeFilter = coalesce(filter, lit(false));
-
-    // Apply the filter to the evaluator's dataset and extract matching IDs.
-    final org.apache.spark.sql.Dataset<org.apache.spark.sql.Row> evaluatorDataset =
-        evaluator.getDataset();
-    final org.apache.spark.sql.Dataset<org.apache.spark.sql.Row> matchingIds =
-        evaluatorDataset.filter(safeFilter).select(evaluatorDataset.col("id"));
-
-    // Use a left semi-join to filter the row dataset efficiently without collecting IDs.
-    // This preserves all columns from rowDataset while only keeping rows with matching IDs.
-    return rowDataset.join(
-        matchingIds, rowDataset.col("id").equalTo(matchingIds.col("id")), "left_semi");
+    // The filter column is derived from the rows of the dataset, so it can be applied directly.
+    return SingleScanFilter.apply(rowDataset, filter);
   }
 
   /**
@@ -288,9 +320,22 @@ public class PatientCompartmentService {
     }
   }
 
+  /**
+   * Get the name of the element referred to by a compartment path, if the path refers to an element
+   * directly or to the Patient references within it.
+   *
+   * @param path the compartment path
+   * @return the element name, or null if the path contains other FHIRPath expressions
+   */
+  @Nullable
+  private static String getReferenceElement(@Nonnull final String path) {
+    final Matcher matcher = REFERENCE_ELEMENT.matcher(path);
+    return matcher.matches() ? matcher.group(1) : null;
+  }
+
   /**
    * Build a simple column-based filter without FHIRPath evaluation. This is used for backward
-   * compatibility when no DataSource is provided.
+   * compatibility when no dataset is provided.
    *
    * @param paths the compartment paths to filter on
    * @param patientIds the patient IDs to filter by
@@ -22,11 +22,18 @@ import static org.apache.spark.sql.functions.col;
 
 import au.csiro.pathling.cache.CacheableDatabase;
 import au.csiro.pathling.errors.ResourceNotFoundError;
+import au.csiro.pathling.io.PendingWriteOverlay;
+import au.csiro.pathling.io.PendingWriteOverlay.PendingWrite;
 import au.csiro.pathling.library.PathlingContext;
+import au.csiro.pathling.operations.update.GroupCommitWriter;
 import io.delta.tables.DeltaTable;
 import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import java.util.List;
+import java.util.Optional;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.spark.sql.SparkSession;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
@@ -45,21 +52,48 @@ public class DeleteExecutor {
 
   @Nonnull private final CacheableDatabase cacheableDatabase;
 
+  @Nullable private final GroupCommitWriter groupCommitWriter;
+
+  @Nullable private final PendingWriteOverlay overlay;
+
+  /**
+   * Constructs a new DeleteExecutor that commits each deletion individually.
+   *
+   * @param pathlingContext the Pathling context for Spark operations
+   * @param databasePath the path to the Delta database
+   * @param cacheableDatabase the cacheable database for cache invalidation
+   */
+  public DeleteExecutor(
+      @Nonnull final PathlingContext pathlingContext,
+      @Nonnull final String databasePath,
+      @Nonnull final CacheableDatabase cacheableDatabase) {
+    this(pathlingContext, databasePath, cacheableDatabase, null, null);
+  }
+
   /**
    * Constructs a new DeleteExecutor.
    *
    * @param pathlingContext the Pathling context for Spark operations
    * @param databasePath the path to the Delta database
    * @param cacheableDatabase the cacheable database for cache invalidation
+   * @param groupCommitWriter the writer used to group deletions into shared commits, or null if
+   *     each deletion should be committed individually
+   * @param overlay the overlay of pending writes, used to determine whether a resource with a
+   *     pending write exists
    */
+  @Autowired
   public DeleteExecutor(
       @Nonnull final PathlingContext pathlingContext,
       @Value("${pathling.storage.warehouseUrl}/${pathling.storage.databaseName}") @Nonnull
           final String databasePath,
-      @Nonnull final CacheableDatabase cacheableDatabase) {
+      @Nonnull final CacheableDatabase cacheableDatabase,
+      @Nullable final GroupCommitWriter groupCommitWriter,
+      @Nullable final PendingWriteOverlay overlay) {
     this.pathlingContext = pathlingContext;
     this.databasePath = databasePath;
     this.cacheableDatabase = cacheableDatabase;
+    this.groupCommitWriter = groupCommitWriter;
+    this.overlay = overlay;
   }
 
   /**
@@ -70,6 +104,11 @@ public class DeleteExecutor {
    * @throws ResourceNotFoundError if the resource does not exist
    */
   public void delete(@Nonnull final String resourceCode, @Nonnull final String resourceId) {
+    if (groupCommitWriter != null && groupCommitWriter.isEnabled()) {
+      deleteGrouped(resourceCode, resourceId, groupCommitWriter);
+      return;
+    }
+
     final SparkSession spark = pathlingContext.getSpark();
     final String tablePath = getTablePath(resourceCode);
 
@@ -95,6 +134,40 @@ public class DeleteExecutor {
     cacheableDatabase.invalidate(tablePath);
   }
 
+  /**
+   * Deletes a resource by grouping the deletion with other concurrent writes to the same resource
+   * type. A pending write to the resource takes precedence over the contents of the table when
+   * determining whether the resource exists.
+   */
+  private void deleteGrouped(
+      @Nonnull final String resourceCode,
+      @Nonnull final String resourceId,
+      @Nonnull final GroupCommitWriter writer) {
+    final Optional<PendingWrite> pendingWrite =
+        overlay != null ? overlay.get(resourceCode, resourceId) : Optional.empty();
+    final boolean exists =
+        pendingWrite
+            .map(write -> !write.isDelete())
+            .orElseGet(() -> existsInTable(resourceCode, resourceId));
+    if (!exists) {
+      throw new ResourceNotFoundError("Resource not found: " + resourceCode + "/" + resourceId);
+    }
+
+    log.debug("Deleting {} with ID: {}", resourceCode, resourceId);
+    writer.write(resourceCode, List.of(), List.of(resourceId));
+  }
+
+  private boolean existsInTable(
+      @Nonnull final String resourceCode, @Nonnull final String resourceId) {
+    final SparkSession spark = pathlingContext.getSpark();
+    final String tablePath = getTablePath(resourceCode);
+    return DeltaTable.isDeltaTable(spark, tablePath)
+        && !DeltaTable.forPath(spark, tablePath)
+            .toDF()
+            .filter(col("id").equalTo(resourceId))
+            .isEmpty();
+  }
+
   /**
    * Gets the path to the Delta table for a given resource type.
    *
@@ -0,0 +1,204 @@
+/*
+ * Copyright © 2018-2026 Commonwealth Scientific and Industrial Research
+ * Organisation (CSIRO) ABN 41 687 119 230.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.pathling.operations.optimize;
+
+import static au.csiro.pathling.library.io.FileSystemPersistence.safelyJoinPaths;
+import static au.csiro.pathling.utilities.Preconditions.checkUserInput;
+
+import au.csiro.pathling.cache.CacheableDatabase;
+import au.csiro.pathling.config.ServerConfiguration;
+import au.csiro.pathling.config.StorageConfiguration;
+import au.csiro.pathling.io.WriteLayout;
+import au.csiro.pathling.library.io.source.QueryableDataSource;
+import au.csiro.pathling.operations.compartment.PatientCompartmentService;
+import au.csiro.pathling.operations.optimize.OptimizeResponse.TableResult;
+import au.csiro.pathling.security.PathlingAuthority;
+import au.csiro.pathling.security.ResourceAccess.AccessType;
+import au.csiro.pathling.security.SecurityAspect;
+import io.delta.tables.DeltaTable;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.RuntimeConfig;
+import org.apache.spark.sql.SparkSession;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import scala.Option;
+
+/**
+ * Encapsulates the execution of an optimize operation, which rewrites the files of the resource
+ * tables so that Delta can skip more of them when searching.
+ *
+ * <p>Each table with sort keys in the storage configuration is clustered by those columns using a
+ * Z-order curve, and file statistics are collected for them. Where the patient layout is enabled,
+ * tables within the Patient compartment that have no sort keys are clustered by their patient key.
+ * Other tables are compacted into larger files.
+ *
+ * @author John Grimes
+ */
+@Component
+@Slf4j
+public class OptimizeExecutor {
+
+  /**
+   * The table property that determines the columns that Delta collects file statistics for. By
+   * default, statistics are only collected for the first 32 columns of a table, which does not
+   * include many of the elements that are searched on.
+   */
+  static final String STATS_COLUMNS_PROPERTY = "delta.dataSkippingStatsColumns";
+
+  /** The session configuration that determines the maximum size of the files that are written. */
+  static final String MAX_FILE_SIZE_CONFIGURATION = "spark.databricks.delta.optimize.maxFileSize";
+
+  /** The columns that statistics are always collected for within a clustered table. */
+  private static final List<String> DEFAULT_STATS_COLUMNS = List.of("id", "meta.lastUpdated");
+
+  @Nonnull private final SparkSession spark;
+
+  @Nonnull private final QueryableDataSource deltaLake;
+
+  @Nonnull private final String databasePath;
+
+  @Nonnull private final ServerConfiguration serverConfiguration;
+
+  @Nonnull private final CacheableDatabase cacheableDatabase;
+
+  @Nonnull private final PatientCompartmentService patientCompartmentService;
+
+  /**
+   * Creates a new OptimizeExecutor.
+   *
+   * @param spark the Spark session
+   * @param deltaLake the data source containing the resource tables
+   * @param databasePath the path to the database containing the resource tables
+   * @param serverConfiguration the server configuration
+   * @param cacheableDatabase the cacheable database for cache invalidation
+   * @param patientCompartmentService the service used to find the patient key of each resource type
+   */
+  public OptimizeExecutor(
+      @Nonnull final SparkSession spark,
+      @Nonnull final QueryableDataSource deltaLake,
+      @Nonnull @Value("${pathling.storage.warehouseUrl}/${pathling.storage.databaseName}")
+          final String databasePath,
+      @Nonnull final ServerConfiguration serverConfiguration,
+      @Nonnull final CacheableDatabase cacheableDatabase,
+      @Nonnull final PatientCompartmentService patientCompartmentService) {
+    this.spark = spark;
+    this.deltaLake = deltaLake;
+    this.databasePath = databasePath;
+    this.serverConfiguration = serverConfiguration;
+    this.cacheableDatabase = cacheableDatabase;
+    this.patientCompartmentService = patientCompartmentService;
+  }
+
+  /**
+   * Optimises the tables of the requested resource types.
+   *
+   * @param resourceTypes the resource types to optimise, or null to optimise all tables
+   * @return the changes made to the files of each table
+   */
+  @Nonnull
+  public OptimizeResponse execute(@Nullable final Collection<String> resourceTypes) {
+    final Set<String> available = deltaLake.getResourceTypes();
+    final Collection<String> requested =
+        resourceTypes == null || resourceTypes.isEmpty() ? available : resourceTypes;
+    for (final String resourceType : requested) {
+      checkUserInput(
+          available.contains(resourceType), "No data found for resource type: " + resourceType);
+      if (serverConfiguration.getAuth().isEnabled()) {
+        SecurityAspect.checkHasAuthority(
+            PathlingAuthority.resourceAccess(AccessType.WRITE, resourceType));
+      }
+    }
+
+    final StorageConfiguration storage = serverConfiguration.getStorage();
+    final RuntimeConfig conf = spark.conf();
+    final Option<String> previousFileSize = conf.getOption(MAX_FILE_SIZE_CONFIGURATION);
+    if (storage.getTargetFileSize() != null) {
+      conf.set(MAX_FILE_SIZE_CONFIGURATION, storage.getTargetFileSize());
+    }
+    try {
+      final List<TableResult> results = new ArrayList<>();
+      for (final String resourceType : requested.stream().sorted().toList()) {
+        final List<String> columns =
+            WriteLayout.sortKeys(
+                resourceType,
+                deltaLake.read(resourceType).schema(),
+                storage,
+                patientCompartmentService);
+        results.add(optimize(resourceType, columns));
+      }
+      return new OptimizeResponse(results);
+    } finally {
+      if (storage.getTargetFileSize() != null) {
+        if (previousFileSize.isDefined()) {
+          conf.set(MAX_FILE_SIZE_CONFIGURATION, previousFileSize.get());
+        } else {
+          conf.unset(MAX_FILE_SIZE_CONFIGURATION);
+        }
+      }
+    }
+  }
+
+  @Nonnull
+  private TableResult optimize(
+      @Nonnull final String resourceType, @Nonnull final List<String> columns) {
+    final String tablePath = safelyJoinPaths(databasePath, resourceType + ".parquet");
+    final DeltaTable table = DeltaTable.forPath(spark, tablePath);
+    final Dataset<Row> result;
+    if (columns.isEmpty()) {
+      log.info("Compacting {} table", resourceType);
+      result = table.optimize().executeCompaction();
+    } else {
+      // Z-ordering requires statistics on each of the columns, so statistics collection is
+      // extended to them before the files are rewritten.
+      log.info("Clustering {} table by {}", resourceType, columns);
+      collectStatisticsFor(tablePath, columns);
+      result = table.optimize().executeZOrderBy(columns.toArray(String[]::new));
+    }
+    final Row metrics = result.select("metrics.numFilesAdded", "metrics.numFilesRemoved").first();
+    log.info(
+        "Optimised {} table: {} files added, {} files removed",
+        resourceType,
+        metrics.getLong(0),
+        metrics.getLong(1));
+    cacheableDatabase.invalidate(tablePath);
+    return new TableResult(resourceType, columns, metrics.getLong(0), metrics.getLong(1));
+  }
+
+  private void collectStatisticsFor(
+      @Nonnull final String tablePath, @Nonnull final List<String> columns) {
+    final Set<String> statsColumns = new LinkedHashSet<>(DEFAULT_STATS_COLUMNS);
+    statsColumns.addAll(columns);
+    spark.sql(
+        "ALTER TABLE delta.`"
+            + tablePath.replace("`", "``")
+            + "` SET TBLPROPERTIES ('"
+            + STATS_COLUMNS_PROPERTY
+            + "' = '"
+            + String.join(",", statsColumns)
+            + "')");
+  }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright © 2018-2026 Commonwealth Scientific and Industrial Research
+ * Organisation (CSIRO) ABN 41 687 119 230.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.pathling.operations.optimize;
+
+import au.csiro.pathling.async.AsyncSupported;
+import au.csiro.pathling.security.OperationAccess;
+import ca.uhn.fhir.rest.annotation.Operation;
+import ca.uhn.fhir.rest.annotation.OperationParam;
+import ca.uhn.fhir.rest.server.servlet.ServletRequestDetails;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import java.util.Arrays;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.hl7.fhir.r4.model.Parameters;
+import org.springframework.stereotype.Component;
+
+/**
+ * Enables the optimisation of the storage of the server, which clusters the files of each resource
+ * table so that searches can skip the files that cannot contain matching resources.
+ *
+ * @author John Grimes
+ */
+@Component
+@Slf4j
+public class OptimizeProvider {
+
+  @Nonnull private final OptimizeExecutor executor;
+
+  /**
+   * Creates a new OptimizeProvider.
+   *
+   * @param executor the executor for optimize requests
+   */
+  public OptimizeProvider(@Nonnull final OptimizeExecutor executor) {
+    this.executor = executor;
+  }
+
+  /**
+   * Optimises the tables of the requested resource types, or all tables if none are requested.
+   *
+   * @param type the resource types to optimise
+   * @param requestDetails the {@link ServletRequestDetails} containing HAPI inferred info
+   * @return a FHIR {@link Parameters} resource describing the changes made to each table
+   */
+  @Operation(name = "$optimize")
+  @OperationAccess("optimize")
+  @AsyncSupported
+  @Nonnull
+  public Parameters optimize(
+      @Nullable @OperationParam(name = "_type") final List<String> type,
+      @SuppressWarnings("unused") @Nonnull final ServletRequestDetails requestDetails) {
+    log.debug("Received $optimize request");
+    // Each value of the _type parameter may contain a comma-delimited list of resource types.
+    final List<String> resourceTypes =
+        type == null
+            ? null
+            : type.stream()
+                .flatMap(value -> Arrays.stream(value.split(",")))
+                .map(String::trim)
+                .filter(value -> !value.isEmpty())
+                .toList();
+    return executor.execute(resourceTypes).toOutput();
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright © 2018-2026 Commonwealth Scientific and Industrial Research
+ * Organisation (CSIRO) ABN 41 687 119 230.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.pathling.operations.optimize;
+
+import au.csiro.pathling.OperationResponse;
+import jakarta.annotation.Nonnull;
+import java.util.List;
+import org.hl7.fhir.r4.model.CodeType;
+import org.hl7.fhir.r4.model.InstantType;
+import org.hl7.fhir.r4.model.IntegerType;
+import org.hl7.fhir.r4.model.Parameters;
+import org.hl7.fhir.r4.model.Parameters.ParametersParameterComponent;
+import org.hl7.fhir.r4.model.StringType;
+
+/**
+ * Represents the response from an optimize operation, describing the changes made to the files of
+ * each table.
+ *
+ * @param tables the results for each of the tables that were optimised
+ * @author John Grimes
+ */
+public record OptimizeResponse(@Nonnull List<TableResult> tables)
+    implements OperationResponse<Parameters> {
+
+  /**
+   * The result of optimising a single table.
+   *
+   * @param resourceType the resource type stored within the table
+   * @param clusterColumns the columns that the table was clustered by, which is empty where the
+   *     table was only compacted
+   * @param filesAdded the number of files written
+   * @param filesRemoved the number of files that were replaced
+   */
+  public record TableResult(
+      @Nonnull String resourceType,
+      @Nonnull List<String> clusterColumns,
+      long filesAdded,
+      long filesRemoved) {}
+
+  @Override
+  public Parameters toOutput() {
+    final Parameters parameters = new Parameters();
+    parameters.addParameter("transactionTime", InstantType.now());
+    for (final TableResult table : tables) {
+      final ParametersParameterComponent output =
+          new ParametersParameterComponent().setName("output");
+      output.addPart().setName("type").setValue(new CodeType(table.resourceType()));
+      table
+          .clusterColumns()
+          .forEach(
+              column -> output.addPart().setName("clusterColumn").setValue(new StringType(column)));
+      output.addPart().setName("filesAdded").setValue(new IntegerType(table.filesAdded()));
+      output.addPart().setName("filesRemoved").setValue(new IntegerType(table.filesRemoved()));
+      parameters.addParameter(output);
+    }
+    return parameters;
+  }
+}
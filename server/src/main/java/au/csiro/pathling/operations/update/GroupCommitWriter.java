@@ -0,0 +1,399 @@
+/*
+ * Copyright © 2018-2026 Commonwealth Scientific and Industrial Research
+ * Organisation (CSIRO) ABN 41 687 119 230.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.pathling.operations.update;
+
+import static au.csiro.pathling.library.io.FileSystemPersistence.safelyJoinPaths;
+import static java.util.Objects.requireNonNull;
+import static org.apache.spark.sql.functions.lit;
+
+import au.csiro.pathling.cache.CacheableDatabase;
+import au.csiro.pathling.cache.SearchResultCache;
+import au.csiro.pathling.config.GroupCommitConfiguration;
+import au.csiro.pathling.config.ServerConfiguration;
+import au.csiro.pathling.encoders.FhirEncoders;
+import au.csiro.pathling.io.PendingWriteOverlay;
+import au.csiro.pathling.io.PendingWriteOverlay.PendingWrite;
+import au.csiro.pathling.library.PathlingContext;
+import io.delta.tables.DeltaTable;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Encoders;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.SaveMode;
+import org.apache.spark.sql.SparkSession;
+import org.apache.spark.sql.catalyst.encoders.ExpressionEncoder;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Groups single-resource writes into shared Delta commits.
+ *
+ * <p>Each Delta commit carries a fixed cost, and concurrent commits to the same table conflict with
+ * each other under optimistic concurrency control. Rather than committing each create, update or
+ * delete individually, writes to each resource type are collected for a short window (or until a
+ * batch size is reached) and then committed together using a single MERGE. All requests that
+ * contributed to the commit are completed once it lands.
+ *
+ * <p>Writes are added to the {@link PendingWriteOverlay} as soon as they are accepted, so that they
+ * are visible to reads and searches while the commit is pending.
+ *
+ * @author John Grimes
+ */
+@Component
+@Slf4j
+public class GroupCommitWriter {
+
+  /** The name of the column that marks a row within the merge source as a deletion. */
+  private static final String DELETE_FLAG = "_pathling_delete";
+
+  @Nonnull private final PathlingContext pathlingContext;
+
+  @Nonnull private final FhirEncoders fhirEncoders;
+
+  @Nonnull private final String databasePath;
+
+  @Nonnull private final CacheableDatabase cacheableDatabase;
+
+  @Nonnull private final PendingWriteOverlay overlay;
+
+  @Nullable private final SearchResultCache resultCache;
+
+  /** Whether writes should be grouped, as opposed to being committed individually. */
+  @Getter private final boolean enabled;
+
+  private final long maxWait;
+
+  private final int maxBatchSize;
+
+  @Nonnull private final Map<String, Batch> batches = new ConcurrentHashMap<>();
+
+  /** Triggers commits at the end of each collection window. */
+  @Nonnull
+  private final ScheduledExecutorService scheduler =
+      Executors.newSingleThreadScheduledExecutor(
+          runnable -> {
+            final Thread thread = new Thread(runnable, "pathling-group-commit");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  /** Runs commits, so that commits to different resource types can proceed concurrently. */
+  @Nonnull private final ExecutorService committers = Executors.newVirtualThreadPerTaskExecutor();
+
+  /**
+   * Constructs a new GroupCommitWriter.
+   *
+   * @param pathlingContext the Pathling context for Spark operations
+   * @param fhirEncoders encoders for converting FHIR resources to Spark Datasets
+   * @param databasePath the path to the Delta database
+   * @param cacheableDatabase the cacheable database for cache invalidation
+   * @param overlay the overlay that makes pending writes visible to reads
+   * @param resultCache the shared search result cache, which is cleared when writes are accepted
+   * @param configuration the server configuration
+   */
+  @Autowired
+  public GroupCommitWriter(
+      @Nonnull final PathlingContext pathlingContext,
+      @Nonnull final FhirEncoders fhirEncoders,
+      @Value("${pathling.storage.warehouseUrl}/${pathling.storage.databaseName}") @Nonnull
+          final String databasePath,
+      @Nonnull final CacheableDatabase cacheableDatabase,
+      @Nonnull final PendingWriteOverlay overlay,
+      @Nullable final SearchResultCache resultCache,
+      @Nonnull final ServerConfiguration configuration) {
+    this(
+        pathlingContext,
+        fhirEncoders,
+        databasePath,
+        cacheableDatabase,
+        overlay,
+        resultCache,
+        configuration.getGroupCommit());
+  }
+
+  /**
+   * Constructs a new GroupCommitWriter.
+   *
+   * @param pathlingContext the Pathling context for Spark operations
+   * @param fhirEncoders encoders for converting FHIR resources to Spark Datasets
+   * @param databasePath the path to the Delta database
+   * @param cacheableDatabase the cacheable database for cache invalidation
+   * @param overlay the overlay that makes pending writes visible to reads
+   * @param resultCache the shared search result cache, or null if there is none
+   * @param configuration the group commit configuration
+   */
+  public GroupCommitWriter(
+      @Nonnull final PathlingContext pathlingContext,
+      @Nonnull final FhirEncoders fhirEncoders,
+      @Nonnull final String databasePath,
+      @Nonnull final CacheableDatabase cacheableDatabase,
+      @Nonnull final PendingWriteOverlay overlay,
+      @Nullable final SearchResultCache resultCache,
+      @Nonnull final GroupCommitConfiguration configuration) {
+    this.pathlingContext = pathlingContext;
+    this.fhirEncoders = fhirEncoders;
+    this.databasePath = databasePath;
+    this.cacheableDatabase = cacheableDatabase;
+    this.overlay = overlay;
+    this.resultCache = resultCache;
+    this.enabled = configuration.isEnabled();
+    this.maxWait = configuration.getMaxWait();
+    this.maxBatchSize = configuration.getMaxBatchSize();
+  }
+
+  /**
+   * Writes resources to the Delta table for their type, returning once the commit that contains the
+   * writes has completed.
+   *
+   * @param resourceCode the type code of the resources (e.g., "Patient", "ViewDefinition")
+   * @param resources the resources to create or update
+   * @param deletedIds the IDs of resources to delete
+   */
+  public void write(
+      @Nonnull final String resourceCode,
+      @Nonnull final List<IBaseResource> resources,
+      @Nonnull final List<String> deletedIds) {
+    final List<PendingWrite> writes = new ArrayList<>();
+    resources.stream().map(PendingWrite::upsert).forEach(writes::add);
+    deletedIds.stream().map(PendingWrite::delete).forEach(writes::add);
+    if (writes.isEmpty()) {
+      return;
+    }
+
+    // Make the writes visible to reads before they are committed.
+    writes.forEach(write -> overlay.put(resourceCode, write));
+    if (resultCache != null) {
+      resultCache.clear();
+    }
+
+    final Submission submission = new Submission(writes, new CompletableFuture<>());
+    final Batch batch = batches.computeIfAbsent(resourceCode, Batch::new);
+    synchronized (batch) {
+      batch.queued.add(submission);
+      batch.queuedWrites += writes.size();
+      if (batch.queuedWrites >= maxBatchSize) {
+        // The batch is full, so commit it without waiting for the rest of the window.
+        cancelTimer(batch);
+        committers.execute(() -> flush(batch));
+      } else if (batch.timer == null) {
+        batch.timer =
+            scheduler.schedule(
+                () -> committers.execute(() -> flush(batch)), maxWait, TimeUnit.MILLISECONDS);
+      }
+    }
+    await(submission);
+  }
+
+  /** Commits any pending writes and stops accepting new commits. */
+  @PreDestroy
+  public void shutdown() {
+    scheduler.shutdownNow();
+    batches.values().forEach(this::flush);
+    committers.shutdown();
+  }
+
+  /**
+   * Commits all writes that are queued for a resource type. Commits to the same resource type are
+   * serialised, so that writes queued while a commit is in progress are grouped into the next one.
+   */
+  private void flush(@Nonnull final Batch batch) {
+    batch.commitLock.lock();
+    try {
+      final List<Submission> submissions;
+      synchronized (batch) {
+        submissions = List.copyOf(batch.queued);
+        batch.queued.clear();
+        batch.queuedWrites = 0;
+        cancelTimer(batch);
+      }
+      if (submissions.isEmpty()) {
+        return;
+      }
+
+      final List<PendingWrite> writes =
+          submissions.stream().flatMap(submission -> submission.writes().stream()).toList();
+      try {
+        commit(batch.resourceCode, writes);
+        submissions.forEach(submission -> submission.done().complete(null));
+      } catch (final Exception e) {
+        log.error("Failed to commit {} write(s) to {}", writes.size(), batch.resourceCode, e);
+        submissions.forEach(submission -> submission.done().completeExceptionally(e));
+      } finally {
+        writes.forEach(write -> overlay.remove(batch.resourceCode, write));
+      }
+    } finally {
+      batch.commitLock.unlock();
+    }
+  }
+
+  /**
+   * Commits a group of writes to the Delta table for a resource type using a single MERGE. Where
+   * the same resource is written more than once, the last write wins.
+   *
+   * @param resourceCode the type code of the resources
+   * @param writes the writes to commit, in the order they were accepted
+   */
+  void commit(@Nonnull final String resourceCode, @Nonnull final List<PendingWrite> writes) {
+    final Map<String, PendingWrite> latest = new LinkedHashMap<>();
+    for (final PendingWrite write : writes) {
+      latest.remove(write.id());
+      latest.put(write.id(), write);
+    }
+    final List<IBaseResource> upserts =
+        latest.values().stream().map(PendingWrite::resource).filter(Objects::nonNull).toList();
+    final List<String> deletes =
+        latest.values().stream().filter(PendingWrite::isDelete).map(PendingWrite::id).toList();
+    log.debug(
+        "Committing {} upsert(s) and {} delete(s) to {}",
+        upserts.size(),
+        deletes.size(),
+        resourceCode);
+
+    final SparkSession spark = pathlingContext.getSpark();
+    final ExpressionEncoder<IBaseResource> encoder = fhirEncoders.of(resourceCode);
+    requireNonNull(encoder, "No encoder found for resource type: " + resourceCode);
+    final Dataset<Row> updates = spark.createDataset(upserts, encoder).toDF();
+    final String tablePath = safelyJoinPaths(databasePath, resourceCode + ".parquet");
+
+    if (DeltaTable.isDeltaTable(spark, tablePath)) {
+      final DeltaTable table = DeltaTable.forPath(spark, tablePath);
+      // Leave out any resources that are already present with identical content, so that they do
+      // not cause the files that contain them to be rewritten.
+      final Dataset<Row> changed =
+          UpdateExecutor.withoutUnchanged(
+              table, updates, upserts.stream().map(r -> r.getIdElement().getIdPart()).toList());
+      if (deletes.isEmpty() && changed.isEmpty()) {
+        log.debug("No changes to commit to {}", resourceCode);
+        return;
+      }
+      final Dataset<Row> source =
+          changed
+              .withColumn(DELETE_FLAG, lit(false))
+              .unionByName(
+                  spark
+                      .createDataset(deletes, Encoders.STRING())
+                      .toDF("id")
+                      .withColumn(DELETE_FLAG, lit(true)),
+                  true);
+      // Assign each column explicitly, so that the deletion flag is not written to the table.
+      final Map<String, String> assignments =
+          Arrays.stream(updates.columns())
+              .collect(
+                  Collectors.toMap(
+                      Function.identity(),
+                      column -> "updates.`" + column + "`",
+                      (a, b) -> a,
+                      LinkedHashMap::new));
+      table
+          .as("original")
+          .merge(source.as("updates"), "original.id = updates.id")
+          .whenMatched("updates." + DELETE_FLAG)
+          .delete()
+          .whenMatched()
+          .updateExpr(assignments)
+          .whenNotMatched("NOT updates." + DELETE_FLAG)
+          .insertExpr(assignments)
+          .execute();
+    } else if (!upserts.isEmpty()) {
+      log.debug("Creating new Delta table for resource type: {}", resourceCode);
+      updates
+          .write()
+          .format("delta")
+          .mode(SaveMode.ErrorIfExists)
+          .option(UpdateExecutor.CHANGE_DATA_FEED_PROPERTY, "true")
+          .save(tablePath);
+    } else {
+      // There is no table, and nothing to add to it.
+      return;
+    }
+
+    cacheableDatabase.invalidate(tablePath);
+  }
+
+  private static void cancelTimer(@Nonnull final Batch batch) {
+    if (batch.timer != null) {
+      batch.timer.cancel(false);
+      batch.timer = null;
+    }
+  }
+
+  private static void await(@Nonnull final Submission submission) {
+    try {
+      submission.done().get();
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for write to be committed", e);
+    } catch (final ExecutionException e) {
+      if (e.getCause() instanceof final RuntimeException cause) {
+        throw cause;
+      }
+      throw new IllegalStateException("Failed to commit write", e.getCause());
+    }
+  }
+
+  /** The writes that are waiting to be committed for a single resource type. */
+  private static final class Batch {
+
+    @Nonnull private final String resourceCode;
+
+    @Nonnull private final List<Submission> queued = new ArrayList<>();
+
+    @Nonnull private final ReentrantLock commitLock = new ReentrantLock();
+
+    private int queuedWrites = 0;
+
+    @Nullable private ScheduledFuture<?> timer;
+
+    private Batch(@Nonnull final String resourceCode) {
+      this.resourceCode = resourceCode;
+    }
+  }
+
+  /**
+   * The writes made by a single request, along with a future that completes when they have been
+   * committed.
+   *
+   * @param writes the writes
+   * @param done completes when the writes have been committed
+   */
+  private record Submission(
+      @Nonnull List<PendingWrite> writes, @Nonnull CompletableFuture<Void> done) {}
+}
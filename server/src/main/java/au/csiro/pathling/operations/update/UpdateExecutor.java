@@ -19,20 +19,40 @@ package au.csiro.pathling.operations.update;
 
 import static au.csiro.pathling.library.io.FileSystemPersistence.safelyJoinPaths;
 import static au.csiro.pathling.utilities.Preconditions.checkUserInput;
+import static org.apache.spark.sql.functions.array_join;
+import static org.apache.spark.sql.functions.array_sort;
+import static org.apache.spark.sql.functions.coalesce;
+import static org.apache.spark.sql.functions.col;
+import static org.apache.spark.sql.functions.concat_ws;
+import static org.apache.spark.sql.functions.lit;
+import static org.apache.spark.sql.functions.map_values;
+import static org.apache.spark.sql.functions.regexp_replace;
+import static org.apache.spark.sql.functions.struct;
+import static org.apache.spark.sql.functions.to_json;
+import static org.apache.spark.sql.functions.transform;
 
 import au.csiro.pathling.cache.CacheableDatabase;
+import au.csiro.pathling.encoders.ExtensionSupport;
 import au.csiro.pathling.encoders.FhirEncoders;
 import au.csiro.pathling.library.PathlingContext;
 import io.delta.tables.DeltaTable;
 import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.spark.sql.Column;
 import org.apache.spark.sql.Dataset;
 import org.apache.spark.sql.Row;
 import org.apache.spark.sql.SaveMode;
 import org.apache.spark.sql.SparkSession;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.r4.model.Enumerations.ResourceType;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
@@ -45,6 +65,12 @@ import org.springframework.stereotype.Component;
 @Slf4j
 public class UpdateExecutor {
 
+  /**
+   * The table property that enables the Delta change data feed on tables created by the server, so
+   * that consumers can read only the rows that changed between versions.
+   */
+  static final String CHANGE_DATA_FEED_PROPERTY = "delta.enableChangeDataFeed";
+
   @Nonnull private final PathlingContext pathlingContext;
 
   @Nonnull private final FhirEncoders fhirEncoders;
@@ -53,6 +79,24 @@ public class UpdateExecutor {
 
   @Nonnull private final CacheableDatabase cacheableDatabase;
 
+  @Nullable private final GroupCommitWriter groupCommitWriter;
+
+  /**
+   * Constructs a new UpdateExecutor that commits each merge individually.
+   *
+   * @param pathlingContext the Pathling context for Spark operations
+   * @param fhirEncoders encoders for converting FHIR resources to Spark Datasets
+   * @param databasePath the path to the Delta database
+   * @param cacheableDatabase the cacheable database for cache invalidation
+   */
+  public UpdateExecutor(
+      @Nonnull final PathlingContext pathlingContext,
+      @Nonnull final FhirEncoders fhirEncoders,
+      @Nonnull final String databasePath,
+      @Nonnull final CacheableDatabase cacheableDatabase) {
+    this(pathlingContext, fhirEncoders, databasePath, cacheableDatabase, null);
+  }
+
   /**
    * Constructs a new UpdateExecutor.
    *
@@ -60,17 +104,22 @@ public class UpdateExecutor {
    * @param fhirEncoders encoders for converting FHIR resources to Spark Datasets
    * @param databasePath the path to the Delta database
    * @param cacheableDatabase the cacheable database for cache invalidation
+   * @param groupCommitWriter the writer used to group merges into shared commits, or null if each
+   *     merge should be committed individually
    */
+  @Autowired
   public UpdateExecutor(
       @Nonnull final PathlingContext pathlingContext,
       @Nonnull final FhirEncoders fhirEncoders,
       @Value("${pathling.storage.warehouseUrl}/${pathling.storage.databaseName}") @Nonnull
           final String databasePath,
-      @Nonnull final CacheableDatabase cacheableDatabase) {
+      @Nonnull final CacheableDatabase cacheableDatabase,
+      @Nullable final GroupCommitWriter groupCommitWriter) {
     this.pathlingContext = pathlingContext;
     this.fhirEncoders = fhirEncoders;
     this.databasePath = databasePath;
     this.cacheableDatabase = cacheableDatabase;
+    this.groupCommitWriter = groupCommitWriter;
   }
 
   /**
@@ -121,28 +170,52 @@ public class UpdateExecutor {
       return;
     }
 
+    if (groupCommitWriter != null && groupCommitWriter.isEnabled()) {
+      // Group this merge with other concurrent writes to the same resource type.
+      groupCommitWriter.write(resourceCode, resources, List.of());
+      return;
+    }
+
+    // Where the same resource appears more than once, only the last occurrence is merged, as Delta
+    // cannot merge more than one source row into the same target row.
+    final Map<String, IBaseResource> latest = new LinkedHashMap<>();
+    for (final IBaseResource resource : resources) {
+      latest.put(resource.getIdElement().getIdPart(), resource);
+    }
+
     final SparkSession spark = pathlingContext.getSpark();
     final Dataset<Row> updates =
-        spark.createDataset(resources, fhirEncoders.of(resourceCode)).toDF();
+        spark.createDataset(new ArrayList<>(latest.values()), fhirEncoders.of(resourceCode)).toDF();
 
-    log.debug("Merging {} resource(s) of type {}", resources.size(), resourceCode);
+    log.debug("Merging {} resource(s) of type {}", latest.size(), resourceCode);
     final String tablePath = getTablePath(resourceCode);
 
     if (deltaTableExists(spark, tablePath)) {
-      // Perform a merge operation on the existing table.
+      // Perform a merge operation on the existing table, leaving out any resources that are
+      // already present with identical content.
       final DeltaTable table = DeltaTable.forPath(spark, tablePath);
+      final Dataset<Row> changed = withoutUnchanged(table, updates, latest.keySet());
+      if (changed.isEmpty()) {
+        log.debug("No changes to resource(s) of type {}", resourceCode);
+        return;
+      }
       table
           .as("original")
-          .merge(updates.as("updates"), "original.id = updates.id")
+          .merge(changed.as("updates"), "original.id = updates.id")
           .whenMatched()
           .updateAll()
           .whenNotMatched()
           .insertAll()
           .execute();
     } else {
-      // Create a new table with the resources.
+      // Create a new table with the resources, recording its change data feed.
       log.debug("Creating new Delta table for resource type: {}", resourceCode);
-      updates.write().format("delta").mode(SaveMode.ErrorIfExists).save(tablePath);
+      updates
+          .write()
+          .format("delta")
+          .mode(SaveMode.ErrorIfExists)
+          .option(CHANGE_DATA_FEED_PROPERTY, "true")
+          .save(tablePath);
     }
 
     // Invalidate the cache to ensure subsequent requests see the updated data. Use the optimised
@@ -150,6 +223,67 @@ public class UpdateExecutor {
     cacheableDatabase.invalidate(tablePath);
   }
 
+  /**
+   * Removes the resources from a merge source that are already present within a table with
+   * identical content, so that the merge does not rewrite the files that contain them. The rows are
+   * compared using their JSON representation, as equality is not defined for some of the types used
+   * within encoded resources (e.g. maps).
+   *
+   * @param table the table that the resources are to be merged into
+   * @param updates the encoded resources, with unique IDs
+   * @param ids the IDs of the resources, which are used to limit the files that are read from the
+   *     table
+   * @return the resources that are either new or have changed
+   */
+  @Nonnull
+  static Dataset<Row> withoutUnchanged(
+      @Nonnull final DeltaTable table,
+      @Nonnull final Dataset<Row> updates,
+      @Nonnull final Collection<String> ids) {
+    final String[] columns = updates.columns();
+    final Dataset<Row> existing = table.toDF().filter(col("id").isin(ids.toArray()));
+    final Column unchanged =
+        col("updates.id")
+            .equalTo(col("original.id"))
+            .and(content("original", columns).equalTo(content("updates", columns)));
+    return updates.as("updates").join(existing.as("original"), unchanged, "left_anti");
+  }
+
+  @Nonnull
+  private static Column content(@Nonnull final String alias, @Nonnull final String[] columns) {
+    // Field IDs are assigned afresh each time a resource is encoded, so they are left out of the
+    // comparison. Extensions are keyed by these IDs, so only their values are compared.
+    final String extensionsField = ExtensionSupport.EXTENSIONS_FIELD_NAME();
+    final Column elements =
+        withoutFieldIds(
+            to_json(
+                struct(
+                    Arrays.stream(columns)
+                        .filter(column -> !column.equals(extensionsField))
+                        .map(
+                            column ->
+                                col(alias + ".`" + column.replace("`", "``") + "`").as(column))
+                        .toArray(Column[]::new))));
+    if (!Arrays.asList(columns).contains(extensionsField)) {
+      return elements;
+    }
+    final Column extensions =
+        array_sort(
+            transform(
+                map_values(col(alias + "." + extensionsField)),
+                extension -> withoutFieldIds(to_json(extension))));
+    return concat_ws("|", elements, coalesce(array_join(extensions, ","), lit("")));
+  }
+
+  @Nonnull
+  private static Column withoutFieldIds(@Nonnull final Column json) {
+    // Quotes within JSON string values are always escaped, so this only matches field names.
+    return regexp_replace(
+        regexp_replace(json, ",?\"" + ExtensionSupport.FID_FIELD_NAME() + "\":-?\\d+", ""),
+        "\\{,",
+        "{");
+  }
+
   /**
    * Prepares a resource for update by validating that its ID matches the supplied ID. Handles
    * conversion of UUID-prefixed IDs.
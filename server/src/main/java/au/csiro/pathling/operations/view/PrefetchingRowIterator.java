@@ -0,0 +1,209 @@
+/*
+ * Copyright © 2018-2026 Commonwealth Scientific and Industrial Research
+ * Organisation (CSIRO) ABN 41 687 119 230.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.pathling.operations.view;
+
+import jakarta.annotation.Nonnull;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.spark.SparkContext;
+import org.apache.spark.api.java.JavaRDD;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+
+/**
+ * An iterator over the rows of a dataset that computes a bounded window of partitions concurrently
+ * ahead of the consumer.
+ *
+ * <p>{@link Dataset#toLocalIterator()} runs one Spark job per partition, and only starts the job
+ * for the next partition once the previous one has been consumed. This iterator instead keeps up to
+ * {@code prefetchPartitions} partition jobs in flight, each submitted from a virtual thread. A new
+ * partition is only submitted when the consumer takes a completed one, so a consumer that is
+ * blocked writing to a slow client naturally applies backpressure to the computation, and the
+ * number of partitions held in driver memory never exceeds the window size plus one.
+ *
+ * <p>Partitions can be delivered either in partition order, preserving the ordering semantics of
+ * {@link Dataset#toLocalIterator()}, or in the order in which they complete.
+ *
+ * <p>Instances must be closed once they are no longer required, so that any outstanding partition
+ * jobs are cancelled.
+ *
+ * @author John Grimes
+ */
+@Slf4j
+public class PrefetchingRowIterator implements Iterator<Row>, AutoCloseable {
+
+  @Nonnull private final SparkContext sparkContext;
+
+  @Nonnull private final JavaRDD<Row> rdd;
+
+  private final int numPartitions;
+
+  private final int prefetchPartitions;
+
+  private final boolean ordered;
+
+  @Nonnull private final String jobTag;
+
+  @Nonnull private final ExecutorService executor;
+
+  @Nonnull private final CompletionService<List<Row>> completionService;
+
+  /** Futures for partitions that have been submitted but not yet consumed, in submission order. */
+  @Nonnull private final Deque<Future<List<Row>>> pending = new ArrayDeque<>();
+
+  @Nonnull private Iterator<Row> current = Collections.emptyIterator();
+
+  private int nextPartition = 0;
+
+  private int consumedPartitions = 0;
+
+  private boolean closed = false;
+
+  /**
+   * Constructs a new PrefetchingRowIterator.
+   *
+   * @param dataset the dataset to iterate over
+   * @param prefetchPartitions the maximum number of partitions to compute concurrently, must be at
+   *     least 1
+   * @param ordered whether rows should be delivered in partition order
+   */
+  public PrefetchingRowIterator(
+      @Nonnull final Dataset<Row> dataset, final int prefetchPartitions, final boolean ordered) {
+    if (prefetchPartitions < 1) {
+      throw new IllegalArgumentException("prefetchPartitions must be at least 1");
+    }
+    this.sparkContext = dataset.sparkSession().sparkContext();
+    this.rdd = dataset.javaRDD();
+    this.numPartitions = rdd.getNumPartitions();
+    this.prefetchPartitions = prefetchPartitions;
+    this.ordered = ordered;
+    this.jobTag = "pathling-prefetch-" + UUID.randomUUID();
+    this.executor = Executors.newVirtualThreadPerTaskExecutor();
+    this.completionService = new ExecutorCompletionService<>(executor);
+    log.debug(
+        "Prefetching {} partitions with a window of {} ({} delivery)",
+        numPartitions,
+        prefetchPartitions,
+        ordered ? "ordered" : "unordered");
+    fillWindow();
+  }
+
+  @Override
+  public boolean hasNext() {
+    while (!current.hasNext()) {
+      if (closed || consumedPartitions >= numPartitions) {
+        return false;
+      }
+      current = takeNextPartition().iterator();
+      consumedPartitions++;
+      fillWindow();
+    }
+    return true;
+  }
+
+  @Override
+  @Nonnull
+  public Row next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    return current.next();
+  }
+
+  /** Cancels any partition jobs that are still in flight and releases the worker threads. */
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    pending.forEach(future -> future.cancel(true));
+    pending.clear();
+    if (consumedPartitions < nextPartition) {
+      sparkContext.cancelJobsWithTag(jobTag);
+    }
+    executor.shutdownNow();
+  }
+
+  /** Submits partition jobs until the window is full or there are no more partitions. */
+  private void fillWindow() {
+    while (!closed
+        && nextPartition < numPartitions
+        && nextPartition - consumedPartitions < prefetchPartitions) {
+      final int partition = nextPartition++;
+      // Ordered delivery takes futures directly from the pending queue, so only unordered delivery
+      // goes through the completion service. This avoids the completion queue retaining references
+      // to partitions that have already been consumed.
+      final Future<List<Row>> future =
+          ordered
+              ? executor.submit(() -> collectPartition(partition))
+              : completionService.submit(() -> collectPartition(partition));
+      pending.addLast(future);
+    }
+  }
+
+  @Nonnull
+  private List<Row> collectPartition(final int partition) {
+    // Job tags are held in thread-local properties, so the tag needs to be added within the
+    // worker thread that submits the job.
+    sparkContext.addJobTag(jobTag);
+    try {
+      return rdd.collectPartitions(new int[] {partition})[0];
+    } finally {
+      sparkContext.removeJobTag(jobTag);
+    }
+  }
+
+  @Nonnull
+  private List<Row> takeNextPartition() {
+    try {
+      final Future<List<Row>> future;
+      if (ordered) {
+        future = pending.removeFirst();
+      } else {
+        future = completionService.take();
+        pending.remove(future);
+      }
+      return future.get();
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      close();
+      throw new IllegalStateException("Interrupted while waiting for partition results", e);
+    } catch (final ExecutionException | CancellationException e) {
+      close();
+      final Throwable cause = e.getCause() != null ? e.getCause() : e;
+      if (cause instanceof final RuntimeException runtimeException) {
+        throw runtimeException;
+      }
+      throw new IllegalStateException("Error computing partition results", cause);
+    }
+  }
+}
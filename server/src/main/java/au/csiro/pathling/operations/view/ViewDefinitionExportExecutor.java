@@ -20,6 +20,7 @@ package au.csiro.pathling.operations.view;
 import static au.csiro.pathling.library.io.FileSystemPersistence.safelyJoinPaths;
 
 import au.csiro.pathling.config.ServerConfiguration;
+import au.csiro.pathling.io.OutputCompression;
 import au.csiro.pathling.library.io.FileSystemPersistence;
 import au.csiro.pathling.library.io.source.QueryableDataSource;
 import au.csiro.pathling.operations.compartment.PatientCompartmentService;
@@ -190,7 +191,13 @@ public class ViewDefinitionExportExecutor {
 
     // Write output based on format.
     final List<String> fileUrls =
-        writeOutput(result, viewName, request.format(), request.includeHeader(), jobDirPath);
+        writeOutput(
+            result,
+            viewName,
+            request.format(),
+            request.includeHeader(),
+            request.compression(),
+            jobDirPath);
 
     return new ViewExportOutput(viewName, fileUrls);
   }
@@ -248,6 +255,7 @@ public class ViewDefinitionExportExecutor {
       @Nonnull final String viewName,
       @Nonnull final ViewExportFormat format,
       final boolean includeHeader,
+      @Nonnull final OutputCompression compression,
       @Nonnull final Path jobDirPath) {
 
     final String outputPath =
@@ -255,10 +263,10 @@ public class ViewDefinitionExportExecutor {
 
     switch (format) {
       case NDJSON -> {
-        return writeNdjson(result, outputPath, viewName, jobDirPath);
+        return writeNdjson(result, outputPath, compression);
       }
       case CSV -> {
-        return writeCsv(result, outputPath, viewName, includeHeader, jobDirPath);
+        return writeCsv(result, outputPath, viewName, includeHeader, compression);
       }
       case PARQUET -> {
         return writeParquet(result, outputPath, viewName, jobDirPath);
@@ -272,14 +280,16 @@ public class ViewDefinitionExportExecutor {
   private List<String> writeNdjson(
       @Nonnull final Dataset<Row> result,
       @Nonnull final String outputPath,
-      @Nonnull final String viewName,
-      @Nonnull final Path jobDirPath) {
+      @Nonnull final OutputCompression compression) {
 
-    result.write().mode(SaveMode.Overwrite).json(outputPath);
+    result
+        .write()
+        .mode(SaveMode.Overwrite)
+        .option("compression", compression.getSparkCodec())
+        .json(outputPath);
 
     // Rename partitioned files to follow naming convention.
-    return new ArrayList<>(
-        FileSystemPersistence.renamePartitionedFiles(sparkSession, outputPath, outputPath, "json"));
+    return compression.renamePartitionedFiles(sparkSession, outputPath, "json");
   }
 
   /**
@@ -294,10 +304,15 @@ public class ViewDefinitionExportExecutor {
       @Nonnull final String outputPath,
       @Nonnull final String viewName,
       final boolean includeHeader,
-      @Nonnull final Path jobDirPath) {
+      @Nonnull final OutputCompression compression) {
 
     try {
-      result.write().mode(SaveMode.Overwrite).option("header", includeHeader).csv(outputPath);
+      result
+          .write()
+          .mode(SaveMode.Overwrite)
+          .option("header", includeHeader)
+          .option("compression", compression.getSparkCodec())
+          .csv(outputPath);
     } catch (final Exception e) {
       // Spark throws AnalysisException when it encounters unsupported data types for a datasource.
       // We convert this to an InvalidRequestException to return a 400 status code.
@@ -314,8 +329,7 @@ public class ViewDefinitionExportExecutor {
     }
 
     // Rename partitioned files to follow naming convention.
-    return new ArrayList<>(
-        FileSystemPersistence.renamePartitionedFiles(sparkSession, outputPath, outputPath, "csv"));
+    return compression.renamePartitionedFiles(sparkSession, outputPath, "csv");
   }
 
   /** Writes the result as Parquet files. */
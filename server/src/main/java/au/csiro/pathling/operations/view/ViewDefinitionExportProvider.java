@@ -28,6 +28,7 @@ import au.csiro.pathling.async.RequestTag;
 import au.csiro.pathling.async.RequestTagFactory;
 import au.csiro.pathling.config.ServerConfiguration;
 import au.csiro.pathling.errors.AccessDeniedError;
+import au.csiro.pathling.io.OutputCompression;
 import au.csiro.pathling.library.io.source.QueryableDataSource;
 import au.csiro.pathling.operations.bulkexport.ExportResult;
 import au.csiro.pathling.operations.bulkexport.ExportResultRegistry;
@@ -144,6 +145,7 @@ public class ViewDefinitionExportProvider
    * @param patientIds patient IDs to filter by
    * @param groupIds group IDs to filter by
    * @param since filter resources modified after this timestamp
+   * @param outputCompression the compression codec to apply to NDJSON and CSV output
    * @param requestDetails the request details
    * @return the parameters result containing the export manifest, or null if cancelled
    */
@@ -161,6 +163,7 @@ public class ViewDefinitionExportProvider
       @Nullable @OperationParam(name = "patient") final List<String> patientIds,
       @Nullable @OperationParam(name = "group") final List<IdType> groupIds,
       @Nullable @OperationParam(name = "_since") final InstantType since,
+      @Nullable @OperationParam(name = "_outputCompression") final String outputCompression,
       @Nonnull final ServletRequestDetails requestDetails) {
     final Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
 
@@ -185,7 +188,8 @@ public class ViewDefinitionExportProvider
                             includeHeader,
                             patientIds,
                             groupIds,
-                            since
+                            since,
+                            outputCompression
                           });
                   final String operationCacheKey =
                       computeCacheKeyComponent(
@@ -277,6 +281,14 @@ public class ViewDefinitionExportProvider
 
     final InstantType since = (InstantType) params[7];
 
+    // Compression only applies to the text-based formats.
+    final ViewExportFormat exportFormat = ViewExportFormat.fromString(format);
+    final OutputCompression compression = OutputCompression.fromParam((String) params[8]);
+    if (compression != OutputCompression.NONE && exportFormat == ViewExportFormat.PARQUET) {
+      throw new InvalidRequestException(
+          "'_outputCompression' is only supported for the ndjson and csv formats.");
+    }
+
     // Collect patient IDs from both patient and group parameters.
     final Set<String> allPatientIds = collectPatientIds(patientIds, groupIds);
 
@@ -289,10 +301,11 @@ public class ViewDefinitionExportProvider
             servletRequestDetails.getFhirServerBase(),
             views,
             clientTrackingId,
-            ViewExportFormat.fromString(format),
+            exportFormat,
             header,
             allPatientIds,
-            since);
+            since,
+            compression);
 
     return new PreAsyncValidationResult<>(request, Collections.emptyList());
   }
@@ -318,6 +331,9 @@ public class ViewDefinitionExportProvider
 
     key.append("|format=").append(request.format());
     key.append("|header=").append(request.includeHeader());
+    if (request.compression() != OutputCompression.NONE) {
+      key.append("|compression=").append(request.compression().getCode());
+    }
 
     // Sort patient IDs for determinism.
     if (!request.patientIds().isEmpty()) {
@@ -17,6 +17,7 @@
 
 package au.csiro.pathling.operations.view;
 
+import au.csiro.pathling.io.OutputCompression;
 import jakarta.annotation.Nonnull;
 import jakarta.annotation.Nullable;
 import java.util.List;
@@ -34,6 +35,7 @@ import org.hl7.fhir.r4.model.InstantType;
  * @param includeHeader whether to include headers in CSV output
  * @param patientIds patient IDs to filter by (from patient and group parameters)
  * @param since filter resources modified after this timestamp
+ * @param compression the compression codec applied to NDJSON and CSV output files
  * @author John Grimes
  */
 public record ViewDefinitionExportRequest(
@@ -44,4 +46,39 @@ public record ViewDefinitionExportRequest(
     @Nonnull ViewExportFormat format,
     boolean includeHeader,
     @Nonnull Set<String> patientIds,
-    @Nullable InstantType since) {}
+    @Nullable InstantType since,
+    @Nonnull OutputCompression compression) {
+
+  /**
+   * Creates a request with uncompressed output.
+   *
+   * @param originalRequest the original request URL
+   * @param serverBaseUrl the FHIR server base URL (without trailing slash)
+   * @param views the list of views to export
+   * @param clientTrackingId optional client-provided tracking identifier
+   * @param format the output format (NDJSON, CSV, or Parquet)
+   * @param includeHeader whether to include headers in CSV output
+   * @param patientIds patient IDs to filter by (from patient and group parameters)
+   * @param since filter resources modified after this timestamp
+   */
+  public ViewDefinitionExportRequest(
+      @Nonnull final String originalRequest,
+      @Nonnull final String serverBaseUrl,
+      @Nonnull final List<ViewInput> views,
+      @Nullable final String clientTrackingId,
+      @Nonnull final ViewExportFormat format,
+      final boolean includeHeader,
+      @Nonnull final Set<String> patientIds,
+      @Nullable final InstantType since) {
+    this(
+        originalRequest,
+        serverBaseUrl,
+        views,
+        clientTrackingId,
+        format,
+        includeHeader,
+        patientIds,
+        since,
+        OutputCompression.NONE);
+  }
+}
@@ -18,6 +18,7 @@
 package au.csiro.pathling.operations.view;
 
 import au.csiro.pathling.config.ServerConfiguration;
+import au.csiro.pathling.config.ViewRunConfiguration;
 import au.csiro.pathling.encoders.FhirEncoders;
 import au.csiro.pathling.errors.UnsupportedFhirPathFeatureError;
 import au.csiro.pathling.io.source.DataSource;
@@ -231,13 +232,35 @@ public class ViewExecutionHelper {
 
     // Stream results.
     final StructType schema = result.schema();
-    final Iterator<Row> iterator = result.toLocalIterator();
+    final Iterator<Row> iterator = createResultIterator(result);
 
-    switch (outputFormat) {
-      case NDJSON -> streamNdjson(outputStream, iterator, schema);
-      case JSON -> writeJson(outputStream, iterator, schema);
-      default -> streamCsv(outputStream, iterator, schema);
+    try {
+      switch (outputFormat) {
+        case NDJSON -> streamNdjson(outputStream, iterator, schema);
+        case JSON -> writeJson(outputStream, iterator, schema);
+        default -> streamCsv(outputStream, iterator, schema);
+      }
+    } finally {
+      if (iterator instanceof final PrefetchingRowIterator prefetchingIterator) {
+        prefetchingIterator.close();
+      }
+    }
+  }
+
+  /**
+   * Creates an iterator over the result rows. When prefetching is enabled, a bounded window of
+   * partitions is computed concurrently ahead of the writer. Otherwise, partitions are computed one
+   * at a time as they are consumed.
+   */
+  @Nonnull
+  private Iterator<Row> createResultIterator(@Nonnull final Dataset<Row> result) {
+    final ViewRunConfiguration viewRunConfiguration = serverConfiguration.getViewRun();
+    final int prefetchPartitions = viewRunConfiguration.getPrefetchPartitions();
+    if (prefetchPartitions < 1) {
+      return result.toLocalIterator();
     }
+    return new PrefetchingRowIterator(
+        result, prefetchPartitions, viewRunConfiguration.isOrderedDelivery());
   }
 
   /**
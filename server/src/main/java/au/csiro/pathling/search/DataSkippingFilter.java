@@ -0,0 +1,291 @@
+/*
+ * Copyright © 2018-2026 Commonwealth Scientific and Industrial Research
+ * Organisation (CSIRO) ABN 41 687 119 230.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.pathling.search;
+
+import static org.apache.spark.sql.functions.col;
+import static org.apache.spark.sql.functions.lit;
+
+import au.csiro.pathling.fhirpath.FhirPathDateTime;
+import au.csiro.pathling.search.filter.SearchPrefix;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.spark.sql.Column;
+import org.apache.spark.sql.types.StructField;
+import org.apache.spark.sql.types.StructType;
+
+/**
+ * Derives simple filters from search criteria that allow Delta Lake to skip data files.
+ *
+ * <p>Delta Lake records the minimum and maximum value of columns within each data file, and can
+ * skip files that cannot match comparisons between a column and a literal. The filters built from
+ * search parameters use FHIRPath evaluation and user-defined functions, which Delta cannot reason
+ * about. This class builds an additional filter for each criterion where possible, which matches
+ * every resource that the criterion matches and is made up only of comparisons that Delta can use.
+ * It is applied alongside the full filter, so it never changes the result of a search.
+ *
+ * <p>Filters are derived for {@code _id}, {@code _lastUpdated}, and reference parameters that refer
+ * to a single reference element (e.g. {@code subject} and {@code patient} on Observation).
+ * References match on suffix, e.g. {@code Patient/123} also matches {@code
+ * http://example.com/fhir/Patient/123}, so relative references can only be used to skip files where
+ * all the references in the server are known to be relative.
+ *
+ * @author John Grimes
+ */
+@Slf4j
+public final class DataSkippingFilter {
+
+  /**
+   * Matches a search parameter expression that refers to a single element of the resource,
+   * optionally restricted to references to a type of resource.
+   */
+  private static final Pattern REFERENCE_EXPRESSION =
+      Pattern.compile("^(\\w+)\\.(\\w+)(?:\\.where\\(resolve\\(\\) is (\\w+)\\))?$");
+
+  /**
+   * The amount by which the bounds of a date range are widened, which accounts for the precision of
+   * the stored timestamp.
+   */
+  private static final Duration DATE_TOLERANCE = Duration.ofSeconds(1);
+
+  private DataSkippingFilter() {}
+
+  /**
+   * Derives a filter that allows files to be skipped from a search query string.
+   *
+   * @param registry the registry of search parameters
+   * @param resourceType the type of resource being searched
+   * @param queryString the search query string
+   * @param schema the schema of the resources being searched
+   * @param relativeReferences whether all references in the server are relative
+   * @return the filter, or empty if no filter could be derived from any of the criteria
+   */
+  @Nonnull
+  public static Optional<Column> fromQueryString(
+      @Nonnull final SearchParameterRegistry registry,
+      @Nonnull final String resourceType,
+      @Nonnull final String queryString,
+      @Nonnull final StructType schema,
+      final boolean relativeReferences) {
+    try {
+      return FhirSearch.fromQueryString(queryString).getCriteria().stream()
+          .map(
+              criterion ->
+                  fromCriterion(registry, resourceType, criterion, schema, relativeReferences))
+          .flatMap(Optional::stream)
+          .reduce(Column::and);
+    } catch (final RuntimeException e) {
+      // Any problem with the query is reported when the full filter is built.
+      log.debug("Unable to derive data skipping filter from query: {}", queryString, e);
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Derives a filter that allows files to be skipped from a list of reference elements that must
+   * match one of a set of references.
+   *
+   * @param elements the names of the reference elements
+   * @param references the references to match
+   * @param schema the schema of the resources being filtered
+   * @return the filter, or empty if any of the elements is not a single reference element
+   */
+  @Nonnull
+  public static Optional<Column> fromReferences(
+      @Nonnull final Collection<String> elements,
+      @Nonnull final Collection<String> references,
+      @Nonnull final StructType schema) {
+    final List<Column> filters = new ArrayList<>();
+    for (final String element : elements) {
+      if (!isSingleReference(schema, element)) {
+        return Optional.empty();
+      }
+      filters.add(col(element + ".reference").isin(references.toArray()));
+    }
+    return filters.stream().reduce(Column::or);
+  }
+
+  @Nonnull
+  private static Optional<Column> fromCriterion(
+      @Nonnull final SearchParameterRegistry registry,
+      @Nonnull final String resourceType,
+      @Nonnull final SearchCriterion criterion,
+      @Nonnull final StructType schema,
+      final boolean relativeReferences) {
+    if (criterion.getModifier() != null || criterion.getValues().isEmpty()) {
+      return Optional.empty();
+    }
+    return switch (criterion.getParameterCode()) {
+      case "_id" -> idFilter(criterion.getValues());
+      case "_lastUpdated" -> lastUpdatedFilter(criterion.getValues(), schema);
+      default ->
+          registry
+              .getParameter(resourceType, criterion.getParameterCode())
+              .filter(definition -> definition.type() == SearchParameterType.REFERENCE)
+              .flatMap(
+                  definition ->
+                      referenceFilter(
+                          resourceType,
+                          definition.expressions(),
+                          criterion.getValues(),
+                          schema,
+                          relativeReferences));
+    };
+  }
+
+  @Nonnull
+  private static Optional<Column> idFilter(@Nonnull final List<String> values) {
+    if (values.stream().anyMatch(value -> value.contains("|"))) {
+      return Optional.empty();
+    }
+    return Optional.of(col("id").isin(values.toArray()));
+  }
+
+  @Nonnull
+  private static Optional<Column> lastUpdatedFilter(
+      @Nonnull final List<String> values, @Nonnull final StructType schema) {
+    if (!hasField(schema, "meta")) {
+      return Optional.empty();
+    }
+    final Column lastUpdated = col("meta.lastUpdated");
+    final List<Column> filters = new ArrayList<>();
+    for (final String value : values) {
+      final Optional<Column> filter = dateRangeFilter(lastUpdated, value);
+      if (filter.isEmpty()) {
+        return Optional.empty();
+      }
+      filters.add(filter.get());
+    }
+    return filters.stream().reduce(Column::or);
+  }
+
+  /**
+   * Builds a comparison of a timestamp column that is true for every value that matches a date
+   * search value. The bounds are widened slightly, so that the comparison does not depend upon
+   * whether the boundaries of each range are inclusive.
+   */
+  @Nonnull
+  private static Optional<Column> dateRangeFilter(
+      @Nonnull final Column column, @Nonnull final String value) {
+    final SearchPrefix prefix = SearchPrefix.fromValue(value);
+    final FhirPathDateTime dateTime = FhirPathDateTime.parse(SearchPrefix.stripPrefix(value));
+    final Instant low = dateTime.getLowerBoundary().minus(DATE_TOLERANCE);
+    final Instant high = dateTime.getUpperBoundary().plus(DATE_TOLERANCE);
+    return switch (prefix) {
+      case EQ -> Optional.of(column.between(timestamp(low), timestamp(high)));
+      case GE -> Optional.of(column.geq(timestamp(low)));
+      case GT ->
+          Optional.of(column.geq(timestamp(dateTime.getUpperBoundary().minus(DATE_TOLERANCE))));
+      case LE -> Optional.of(column.leq(timestamp(high)));
+      case LT ->
+          Optional.of(column.leq(timestamp(dateTime.getLowerBoundary().plus(DATE_TOLERANCE))));
+      default -> Optional.empty();
+    };
+  }
+
+  @Nonnull
+  private static Optional<Column> referenceFilter(
+      @Nonnull final String resourceType,
+      @Nonnull final List<String> expressions,
+      @Nonnull final List<String> values,
+      @Nonnull final StructType schema,
+      final boolean relativeReferences) {
+    final List<Column> filters = new ArrayList<>();
+    for (final String expression : expressions) {
+      final Matcher matcher = REFERENCE_EXPRESSION.matcher(expression);
+      if (!matcher.matches()
+          || !matcher.group(1).equals(resourceType)
+          || !isSingleReference(schema, matcher.group(2))) {
+        return Optional.empty();
+      }
+      final List<String> references = new ArrayList<>();
+      for (final String value : values) {
+        final String reference = matchingReference(value, matcher.group(3), relativeReferences);
+        if (reference == null) {
+          return Optional.empty();
+        }
+        references.add(reference);
+      }
+      filters.add(col(matcher.group(2) + ".reference").isin(references.toArray()));
+    }
+    return filters.stream().reduce(Column::or);
+  }
+
+  /**
+   * Determines the only reference string that can match a reference search value, if there is one.
+   *
+   * @param value the search value
+   * @param targetType the type of resource that the parameter is restricted to, if any
+   * @param relativeReferences whether all references in the server are relative
+   * @return the reference string, or null if more than one reference string could match
+   */
+  @Nullable
+  private static String matchingReference(
+      @Nonnull final String value,
+      @Nullable final String targetType,
+      final boolean relativeReferences) {
+    // Absolute references are matched using exact equality.
+    if (value.contains("://") || value.startsWith("urn:")) {
+      return value;
+    }
+    if (!relativeReferences) {
+      return null;
+    }
+    if (value.contains("/")) {
+      return value;
+    }
+    return targetType == null ? null : targetType + "/" + value;
+  }
+
+  /**
+   * Determines whether an element of a resource is a single (non-repeating) reference.
+   *
+   * @param schema the schema of the resources
+   * @param element the name of the element
+   * @return true if the element is a single reference
+   */
+  public static boolean isSingleReference(
+      @Nonnull final StructType schema, @Nonnull final String element) {
+    return Arrays.stream(schema.fields())
+        .filter(field -> field.name().equals(element))
+        .map(StructField::dataType)
+        .anyMatch(
+            type ->
+                type instanceof final StructType struct
+                    && Arrays.asList(struct.fieldNames()).contains("reference"));
+  }
+
+  private static boolean hasField(@Nonnull final StructType schema, @Nonnull final String name) {
+    return Arrays.asList(schema.fieldNames()).contains(name);
+  }
+
+  @Nonnull
+  private static Column timestamp(@Nonnull final Instant instant) {
+    return lit(Timestamp.from(instant));
+  }
+}
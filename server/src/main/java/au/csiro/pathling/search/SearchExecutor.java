@@ -24,6 +24,7 @@ import static org.apache.spark.sql.functions.coalesce;
 import static org.apache.spark.sql.functions.col;
 import static org.apache.spark.sql.functions.lit;
 
+import au.csiro.pathling.cache.SearchResultCache;
 import au.csiro.pathling.encoders.FhirEncoders;
 import au.csiro.pathling.fhirpath.FhirPath;
 import au.csiro.pathling.fhirpath.collection.Collection;
@@ -31,6 +32,7 @@ import au.csiro.pathling.fhirpath.collection.ResourceCollection;
 import au.csiro.pathling.fhirpath.evaluation.DatasetEvaluator;
 import au.csiro.pathling.fhirpath.evaluation.DatasetEvaluatorBuilder;
 import au.csiro.pathling.fhirpath.parser.Parser;
+import au.csiro.pathling.io.DeltaStatistics;
 import au.csiro.pathling.io.source.DataSource;
 import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
@@ -39,9 +41,17 @@ import ca.uhn.fhir.rest.param.StringOrListParam;
 import ca.uhn.fhir.rest.param.StringParam;
 import jakarta.annotation.Nonnull;
 import jakarta.annotation.Nullable;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.spark.sql.Column;
 import org.apache.spark.sql.Dataset;
@@ -68,10 +78,25 @@ public class SearchExecutor implements IBundleProvider {
 
   @Nonnull private final Dataset<Row> result;
 
-  @Nonnull private Optional<Integer> count;
+  /** Used to run accurate counts in the background, so that they do not block the response. */
+  private static final ExecutorService COUNT_EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+
+  @Nonnull private final SearchTotalMode totalMode;
+
+  private final long accurateTotalTimeout;
+
+  @Nullable private final CompletableFuture<Long> accurateCount;
+
+  @Nullable private Integer estimatedCount;
+
+  private boolean estimateComputed = false;
 
   private final boolean cacheResults;
 
+  @Nullable private final SearchResultCache resultCache;
+
+  private final boolean relativeReferences;
+
   /**
    * Constructs a new SearchExecutor.
    *
@@ -93,10 +118,105 @@ public class SearchExecutor implements IBundleProvider {
       @Nullable final String standardSearchQueryString,
       @Nonnull final Optional<StringAndListParam> filters,
       final boolean cacheResults) {
+    this(
+        fhirContext,
+        dataSource,
+        fhirEncoders,
+        subjectResourceCode,
+        standardSearchQueryString,
+        filters,
+        cacheResults,
+        null,
+        SearchTotalMode.ACCURATE,
+        0);
+  }
+
+  /**
+   * Constructs a new SearchExecutor that shares cached results with other requests, and reports the
+   * total number of matches in the requested way.
+   *
+   * @param fhirContext the FHIR context for FHIR model operations
+   * @param dataSource the data source containing the resources to query
+   * @param fhirEncoders the encoders for converting Spark rows to FHIR resources
+   * @param subjectResourceCode the type code of the resource to search (e.g., "Patient",
+   *     "ViewDefinition")
+   * @param standardSearchQueryString an optional query string containing standard FHIR search
+   *     parameters (e.g., "gender=male&amp;birthdate=ge1990-01-01"), or null if none
+   * @param filters the optional FHIRPath filter expressions to apply
+   * @param cacheResults whether to cache the result dataset
+   * @param resultCache the shared cache to store results in, or null to cache results against this
+   *     executor only
+   * @param totalMode the way in which the total number of matches is reported
+   * @param accurateTotalTimeout the maximum time in milliseconds to wait for an accurate total, or
+   *     zero to wait until it is available
+   */
+  @SuppressWarnings("java:S107")
+  public SearchExecutor(
+      @Nonnull final FhirContext fhirContext,
+      @Nonnull final DataSource dataSource,
+      @Nonnull final FhirEncoders fhirEncoders,
+      @Nonnull final String subjectResourceCode,
+      @Nullable final String standardSearchQueryString,
+      @Nonnull final Optional<StringAndListParam> filters,
+      final boolean cacheResults,
+      @Nullable final SearchResultCache resultCache,
+      @Nonnull final SearchTotalMode totalMode,
+      final long accurateTotalTimeout) {
+    this(
+        fhirContext,
+        dataSource,
+        fhirEncoders,
+        subjectResourceCode,
+        standardSearchQueryString,
+        filters,
+        cacheResults,
+        resultCache,
+        totalMode,
+        accurateTotalTimeout,
+        false);
+  }
+
+  /**
+   * Constructs a new SearchExecutor that shares cached results with other requests, reports the
+   * total number of matches in the requested way, and may assume that all references are relative
+   * when skipping data files.
+   *
+   * @param fhirContext the FHIR context for FHIR model operations
+   * @param dataSource the data source containing the resources to query
+   * @param fhirEncoders the encoders for converting Spark rows to FHIR resources
+   * @param subjectResourceCode the type code of the resource to search (e.g., "Patient",
+   *     "ViewDefinition")
+   * @param standardSearchQueryString an optional query string containing standard FHIR search
+   *     parameters (e.g., "gender=male&amp;birthdate=ge1990-01-01"), or null if none
+   * @param filters the optional FHIRPath filter expressions to apply
+   * @param cacheResults whether to cache the result dataset
+   * @param resultCache the shared cache to store results in, or null to cache results against this
+   *     executor only
+   * @param totalMode the way in which the total number of matches is reported
+   * @param accurateTotalTimeout the maximum time in milliseconds to wait for an accurate total, or
+   *     zero to wait until it is available
+   * @param relativeReferences whether all references between resources are relative
+   */
+  @SuppressWarnings("java:S107")
+  public SearchExecutor(
+      @Nonnull final FhirContext fhirContext,
+      @Nonnull final DataSource dataSource,
+      @Nonnull final FhirEncoders fhirEncoders,
+      @Nonnull final String subjectResourceCode,
+      @Nullable final String standardSearchQueryString,
+      @Nonnull final Optional<StringAndListParam> filters,
+      final boolean cacheResults,
+      @Nullable final SearchResultCache resultCache,
+      @Nonnull final SearchTotalMode totalMode,
+      final long accurateTotalTimeout,
+      final boolean relativeReferences) {
     this.fhirEncoders = fhirEncoders;
+    this.relativeReferences = relativeReferences;
     this.subjectResourceCode = subjectResourceCode;
     this.cacheResults = cacheResults;
-    this.count = Optional.empty();
+    this.resultCache = resultCache;
+    this.totalMode = totalMode;
+    this.accurateTotalTimeout = accurateTotalTimeout;
 
     final String filterStrings = filters.map(SearchExecutor::filtersToString).orElse("none");
     log.info(
@@ -105,7 +225,22 @@ public class SearchExecutor implements IBundleProvider {
         standardSearchQueryString != null ? standardSearchQueryString : "none",
         filterStrings);
 
-    this.result = initializeDataset(fhirContext, dataSource, standardSearchQueryString, filters);
+    if (cacheResults && resultCache != null) {
+      this.result =
+          resultCache.getOrCache(
+              subjectResourceCode,
+              normaliseQuery(standardSearchQueryString, filters),
+              () -> initializeDataset(fhirContext, dataSource, standardSearchQueryString, filters));
+    } else {
+      this.result = initializeDataset(fhirContext, dataSource, standardSearchQueryString, filters);
+    }
+
+    // Start counting the results straight away when an accurate total has been requested, so that
+    // the count is underway while the response is being prepared.
+    this.accurateCount =
+        totalMode == SearchTotalMode.ACCURATE
+            ? CompletableFuture.supplyAsync(result::count, COUNT_EXECUTOR)
+            : null;
   }
 
   @Nonnull
@@ -145,7 +280,17 @@ public class SearchExecutor implements IBundleProvider {
       final Column standardFilter =
           builder.fromQueryString(resourceType, standardSearchQueryString);
       final Column safeFilter = coalesce(standardFilter, lit(false));
-      resultDataset = resultDataset.filter(safeFilter);
+      // Add a simpler form of the criteria where possible, which Delta can use to skip files.
+      resultDataset =
+          resultDataset.filter(
+              DataSkippingFilter.fromQueryString(
+                      builder.getRegistry(),
+                      subjectResourceCode,
+                      standardSearchQueryString,
+                      flatDataset.schema(),
+                      relativeReferences)
+                  .map(skippingFilter -> skippingFilter.and(safeFilter))
+                  .orElse(safeFilter));
     }
 
     // Apply FHIRPath filter expressions using DatasetEvaluator. This preserves FHIRPath boolean
@@ -160,7 +305,8 @@ public class SearchExecutor implements IBundleProvider {
 
   /**
    * Applies FHIRPath filter expressions to a dataset using the DatasetEvaluator, preserving the
-   * AND/OR combining semantics from the StringAndListParam structure.
+   * AND/OR combining semantics from the StringAndListParam structure. The combined filter is
+   * applied within a single scan of the dataset.
    *
    * @param fhirContext the FHIR context
    * @param dataset the dataset to filter
@@ -204,22 +350,15 @@ public class SearchExecutor implements IBundleProvider {
 
     requireNonNull(filterColumn);
 
-    final Column safeFilterColumn = coalesce(filterColumn, lit(false));
-
-    // Join the flat dataset with filtered IDs to preserve the flat schema for encoding.
-    final String filterIdAlias = randomAlias();
-    final Dataset<Row> evaluatorDataset = evaluator.getDataset();
-    final Dataset<Row> filteredIds =
-        evaluatorDataset
-            .select(evaluatorDataset.col("id").alias(filterIdAlias))
-            .filter(safeFilterColumn);
-
-    return dataset.join(filteredIds, dataset.col("id").equalTo(col(filterIdAlias)), "left_semi");
+    // The filter column is derived from the same rows as the dataset, so it can be applied directly
+    // without joining the matching IDs back to the flat dataset.
+    return SingleScanFilter.apply(dataset, filterColumn);
   }
 
   @Nonnull
   private Dataset<Row> cacheIfEnabled(@Nonnull final Dataset<Row> dataset) {
-    if (cacheResults) {
+    // When a shared result cache is in use, it takes responsibility for caching the dataset.
+    if (cacheResults && resultCache == null) {
       // Cache the dataset because it will be accessed for both the total count and record
       // retrieval.
       log.debug("Caching search dataset");
@@ -241,6 +380,16 @@ public class SearchExecutor implements IBundleProvider {
     return spark.emptyDataset(encoder).toDF();
   }
 
+  /**
+   * Returns the dataset that represents the results of this search.
+   *
+   * @return the result dataset
+   */
+  @Nonnull
+  Dataset<Row> getResult() {
+    return result;
+  }
+
   @Override
   @Nonnull
   public IPrimitiveType<Date> getPublished() {
@@ -291,10 +440,96 @@ public class SearchExecutor implements IBundleProvider {
   @Nullable
   @Override
   public Integer size() {
-    if (count.isEmpty()) {
-      count = Optional.of(Math.toIntExact(result.count()));
+    return switch (totalMode) {
+      case NONE -> null;
+      case ESTIMATE -> getEstimatedTotal();
+      case ACCURATE -> getAccurateTotal();
+    };
+  }
+
+  /**
+   * Returns an estimate of the total derived from Delta table statistics, without scanning the
+   * data.
+   *
+   * @return the estimated total, or null if no estimate is available for the underlying data
+   */
+  @Nullable
+  private Integer getEstimatedTotal() {
+    if (!estimateComputed) {
+      estimatedCount =
+          DeltaStatistics.estimateRowCount(result)
+              .map(estimate -> (int) Math.min(estimate, Integer.MAX_VALUE))
+              .orElse(null);
+      estimateComputed = true;
+      log.debug("Estimated search total: {}", estimatedCount);
     }
-    return count.get();
+    return estimatedCount;
+  }
+
+  /**
+   * Returns the accurate total, waiting for the background count for no longer than the configured
+   * timeout.
+   *
+   * @return the total, or null if the count did not complete in time
+   */
+  @Nullable
+  private Integer getAccurateTotal() {
+    requireNonNull(accurateCount);
+    try {
+      final Long total =
+          accurateTotalTimeout > 0
+              ? accurateCount.get(accurateTotalTimeout, TimeUnit.MILLISECONDS)
+              : accurateCount.get();
+      return Math.toIntExact(total);
+    } catch (final TimeoutException e) {
+      log.debug("Search total not available within {} ms", accurateTotalTimeout);
+      return null;
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return null;
+    } catch (final ExecutionException e) {
+      if (e.getCause() instanceof final RuntimeException runtimeException) {
+        throw runtimeException;
+      }
+      throw new IllegalStateException("Error counting search results", e.getCause());
+    }
+  }
+
+  /**
+   * Builds a normalised representation of the search criteria, such that searches that differ only
+   * in the order of their parameters or of their alternative filter expressions produce the same
+   * string.
+   *
+   * @param standardSearchQueryString the standard search parameters, or null if none
+   * @param filters the FHIRPath filter expressions
+   * @return the normalised search criteria
+   */
+  @Nonnull
+  static String normaliseQuery(
+      @Nullable final String standardSearchQueryString,
+      @Nonnull final Optional<StringAndListParam> filters) {
+    final String standardParams =
+        standardSearchQueryString == null || standardSearchQueryString.isBlank()
+            ? ""
+            : Arrays.stream(standardSearchQueryString.split("&"))
+                .filter(param -> !param.isBlank())
+                .sorted()
+                .collect(Collectors.joining("&"));
+    final String filterParams =
+        filters
+            .map(
+                andParam ->
+                    andParam.getValuesAsQueryTokens().stream()
+                        .map(
+                            orParam ->
+                                orParam.getValuesAsQueryTokens().stream()
+                                    .map(StringParam::getValue)
+                                    .sorted()
+                                    .collect(Collectors.joining(",")))
+                        .sorted()
+                        .collect(Collectors.joining("&")))
+            .orElse("");
+    return standardParams + "|" + filterParams;
   }
 
   @Nonnull
@@ -17,8 +17,11 @@
 
 package au.csiro.pathling.search;
 
+import au.csiro.pathling.cache.SearchResultCache;
+import au.csiro.pathling.config.SearchConfiguration;
 import au.csiro.pathling.config.ServerConfiguration;
 import au.csiro.pathling.encoders.FhirEncoders;
+import au.csiro.pathling.errors.InvalidUserInputError;
 import au.csiro.pathling.io.source.DataSource;
 import au.csiro.pathling.security.OperationAccess;
 import ca.uhn.fhir.context.FhirContext;
@@ -26,6 +29,7 @@ import ca.uhn.fhir.rest.annotation.OptionalParam;
 import ca.uhn.fhir.rest.annotation.RawParam;
 import ca.uhn.fhir.rest.annotation.Search;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
 import ca.uhn.fhir.rest.param.StringAndListParam;
 import ca.uhn.fhir.rest.server.IResourceProvider;
 import jakarta.annotation.Nonnull;
@@ -57,6 +61,9 @@ public class SearchProvider implements IResourceProvider {
   /** The name of the parameter which is passed to the search profile. */
   private static final String FILTER_PARAM = "filter";
 
+  /** The name of the parameter used to control how the total number of matches is reported. */
+  private static final String TOTAL_PARAM = "_total";
+
   @Nonnull private final ServerConfiguration configuration;
 
   @Nonnull private final FhirContext fhirContext;
@@ -69,6 +76,8 @@ public class SearchProvider implements IResourceProvider {
 
   @Nonnull private final String resourceTypeCode;
 
+  @Nonnull private final SearchResultCache resultCache;
+
   /**
    * Constructs a new SearchProvider.
    *
@@ -77,19 +86,22 @@ public class SearchProvider implements IResourceProvider {
    * @param dataSource the data source containing the resources to query
    * @param fhirEncoders the encoders for converting Spark rows to FHIR resources
    * @param resourceClass the class of the resource type to search
+   * @param resultCache the cache of search results shared across requests
    */
   public SearchProvider(
       @Nonnull final ServerConfiguration configuration,
       @Nonnull final FhirContext fhirContext,
       @Nonnull final DataSource dataSource,
       @Nonnull final FhirEncoders fhirEncoders,
-      @Nonnull final Class<? extends IBaseResource> resourceClass) {
+      @Nonnull final Class<? extends IBaseResource> resourceClass,
+      @Nonnull final SearchResultCache resultCache) {
     this.configuration = configuration;
     this.fhirContext = fhirContext;
     this.dataSource = dataSource;
     this.fhirEncoders = fhirEncoders;
     this.resourceClass = resourceClass;
     this.resourceTypeCode = fhirContext.getResourceDefinition(resourceClass).getName();
+    this.resultCache = resultCache;
   }
 
   @Override
@@ -103,14 +115,17 @@ public class SearchProvider implements IResourceProvider {
    * via {@code @RawParam} and passed through to the SearchExecutor for processing.
    *
    * @param rawParams the raw search parameters from the URL query string, or null if none
+   * @param requestDetails the details of the request, used to read the {@code _total} parameter
    * @return a {@link SearchExecutor} which will generate the Bundle of results
    */
   @Search(allowUnknownParams = true)
   @OperationAccess("search")
   @SuppressWarnings("UnusedReturnValue")
-  public IBundleProvider search(@Nullable @RawParam final Map<String, List<String>> rawParams) {
+  public IBundleProvider search(
+      @Nullable @RawParam final Map<String, List<String>> rawParams,
+      @Nullable final RequestDetails requestDetails) {
     final String queryString = buildQueryString(rawParams);
-    return buildSearchExecutor(queryString, Optional.empty());
+    return buildSearchExecutor(queryString, Optional.empty(), requestDetails);
   }
 
   /**
@@ -119,6 +134,7 @@ public class SearchProvider implements IResourceProvider {
    *
    * @param filters the AND/OR FHIRPath filter expressions passed using the "filter" key
    * @param rawParams the raw standard search parameters from the URL query string, or null if none
+   * @param requestDetails the details of the request, used to read the {@code _total} parameter
    * @return a {@link SearchExecutor} which will generate the Bundle of results
    */
   @Search(queryName = QUERY_NAME, allowUnknownParams = true)
@@ -126,9 +142,10 @@ public class SearchProvider implements IResourceProvider {
   @SuppressWarnings("UnusedReturnValue")
   public IBundleProvider search(
       @Nullable @OptionalParam(name = FILTER_PARAM) final StringAndListParam filters,
-      @Nullable @RawParam final Map<String, List<String>> rawParams) {
+      @Nullable @RawParam final Map<String, List<String>> rawParams,
+      @Nullable final RequestDetails requestDetails) {
     final String queryString = buildQueryString(rawParams);
-    return buildSearchExecutor(queryString, Optional.ofNullable(filters));
+    return buildSearchExecutor(queryString, Optional.ofNullable(filters), requestDetails);
   }
 
   /**
@@ -150,11 +167,37 @@ public class SearchProvider implements IResourceProvider {
         .collect(Collectors.joining("&"));
   }
 
+  /**
+   * Determines how the total number of matches should be reported, using the {@code _total}
+   * parameter if it has been supplied and the configured default otherwise.
+   *
+   * @param requestDetails the details of the request, or null if not available
+   * @param defaultMode the mode to use if the parameter has not been supplied
+   * @return the total mode to use
+   */
+  @Nonnull
+  static SearchTotalMode getTotalMode(
+      @Nullable final RequestDetails requestDetails, @Nonnull final SearchTotalMode defaultMode) {
+    final String[] values =
+        requestDetails != null ? requestDetails.getParameters().get(TOTAL_PARAM) : null;
+    if (values == null || values.length == 0 || values[0].isBlank()) {
+      return defaultMode;
+    }
+    try {
+      return SearchTotalMode.fromCode(values[0]);
+    } catch (final IllegalArgumentException e) {
+      throw new InvalidUserInputError(
+          "Invalid value for " + TOTAL_PARAM + " parameter: " + values[0]);
+    }
+  }
+
   @Nonnull
   private IBundleProvider buildSearchExecutor(
       @Nullable final String standardSearchQueryString,
-      @Nonnull final Optional<StringAndListParam> filters) {
+      @Nonnull final Optional<StringAndListParam> filters,
+      @Nullable final RequestDetails requestDetails) {
     final boolean cacheResults = configuration.getQuery().isCacheResults();
+    final SearchConfiguration searchConfiguration = configuration.getSearch();
     return new SearchExecutor(
         fhirContext,
         dataSource,
@@ -162,6 +205,10 @@ public class SearchProvider implements IResourceProvider {
         resourceTypeCode,
         standardSearchQueryString,
         filters,
-        cacheResults);
+        cacheResults,
+        resultCache,
+        getTotalMode(requestDetails, searchConfiguration.getDefaultTotalMode()),
+        searchConfiguration.getAccurateTotalTimeout(),
+        searchConfiguration.isRelativeReferences());
   }
 }
@@ -17,6 +17,7 @@
 
 package au.csiro.pathling.search;
 
+import au.csiro.pathling.cache.SearchResultCache;
 import au.csiro.pathling.config.ServerConfiguration;
 import au.csiro.pathling.encoders.FhirEncoders;
 import au.csiro.pathling.library.io.source.QueryableDataSource;
@@ -47,6 +48,8 @@ public class SearchProviderFactory {
 
   @Nonnull private final FhirEncoders fhirEncoders;
 
+  @Nonnull private final SearchResultCache resultCache;
+
   /**
    * Constructs a new SearchProviderFactory.
    *
@@ -55,18 +58,21 @@ public class SearchProviderFactory {
    * @param fhirContext the FHIR context for FHIR operations
    * @param dataSource the data source containing the resources to query
    * @param fhirEncoders the encoders for converting Spark rows to FHIR resources
+   * @param resultCache the cache of search results shared across requests
    */
   public SearchProviderFactory(
       @Nonnull final ApplicationContext applicationContext,
       @Nonnull final ServerConfiguration configuration,
       @Nonnull final FhirContext fhirContext,
       @Nonnull final QueryableDataSource dataSource,
-      @Nonnull final FhirEncoders fhirEncoders) {
+      @Nonnull final FhirEncoders fhirEncoders,
+      @Nonnull final SearchResultCache resultCache) {
     this.applicationContext = applicationContext;
     this.configuration = configuration;
     this.fhirContext = fhirContext;
     this.dataSource = dataSource;
     this.fhirEncoders = fhirEncoders;
+    this.resultCache = resultCache;
   }
 
   /**
@@ -86,7 +92,8 @@ public class SearchProviderFactory {
         fhirContext,
         dataSource,
         fhirEncoders,
-        resourceTypeClass);
+        resourceTypeClass,
+        resultCache);
   }
 
   /**
@@ -107,6 +114,7 @@ public class SearchProviderFactory {
         fhirContext,
         dataSource,
         fhirEncoders,
-        resourceTypeClass);
+        resourceTypeClass,
+        resultCache);
   }
 }
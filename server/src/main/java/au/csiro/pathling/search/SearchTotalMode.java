@@ -0,0 +1,68 @@
+/*
+ * Copyright © 2018-2026 Commonwealth Scientific and Industrial Research
+ * Organisation (CSIRO) ABN 41 687 119 230.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.pathling.search;
+
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import lombok.Getter;
+
+/**
+ * The ways in which the total number of matching resources can be reported for a search, as
+ * requested using the {@code _total} parameter.
+ *
+ * @author John Grimes
+ * @see <a href="https://hl7.org/fhir/R4/search.html#total">Total number of matches</a>
+ */
+public enum SearchTotalMode {
+  /** No total is reported, and no work is done to calculate it. */
+  NONE("none"),
+
+  /**
+   * An estimate of the total is reported, derived from table statistics without scanning the data.
+   */
+  ESTIMATE("estimate"),
+
+  /**
+   * The exact total is reported. The count is calculated in the background, and is reported once it
+   * is available.
+   */
+  ACCURATE("accurate");
+
+  @Nonnull @Getter private final String code;
+
+  SearchTotalMode(@Nonnull final String code) {
+    this.code = code;
+  }
+
+  /**
+   * Converts a code string to a SearchTotalMode enum value.
+   *
+   * @param code the code string to convert
+   * @return the corresponding SearchTotalMode
+   * @throws IllegalArgumentException if the code does not match any SearchTotalMode
+   */
+  @Nonnull
+  public static SearchTotalMode fromCode(@Nullable final String code) {
+    for (final SearchTotalMode mode : values()) {
+      if (mode.code.equals(code)) {
+        return mode;
+      }
+    }
+    throw new IllegalArgumentException("Unknown total mode: " + code);
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright © 2018-2026 Commonwealth Scientific and Industrial Research
+ * Organisation (CSIRO) ABN 41 687 119 230.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.pathling.search;
+
+import static au.csiro.pathling.utilities.Strings.randomAlias;
+import static org.apache.spark.sql.functions.coalesce;
+import static org.apache.spark.sql.functions.col;
+import static org.apache.spark.sql.functions.lit;
+
+import jakarta.annotation.Nonnull;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.spark.sql.Column;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.catalyst.plans.logical.LogicalPlan;
+import org.apache.spark.sql.catalyst.plans.logical.Project;
+
+/**
+ * Applies filter columns produced by FHIRPath evaluation to the dataset that they were evaluated
+ * against.
+ *
+ * <p>FHIRPath expressions evaluated over a flat resource dataset produce columns that are derived
+ * solely from the values within each row. Such a column can be applied to the dataset directly as a
+ * filter, which requires a single scan of the data and preserves the flat schema required for
+ * encoding.
+ *
+ * <p>Some columns cannot be evaluated within a single row, for example where an expression results
+ * in an aggregate, window or generator expression. These are detected by analysing a projection of
+ * the column over the dataset, and are instead evaluated in a projection alongside the resource ID,
+ * with the matching IDs joined back to the dataset.
+ *
+ * @author John Grimes
+ */
+@Slf4j
+public final class SingleScanFilter {
+
+  private SingleScanFilter() {}
+
+  /**
+   * Filters a dataset using a boolean column, treating null values as false.
+   *
+   * @param dataset the dataset to filter, which must have an {@code id} column
+   * @param filterColumn a boolean column derived from the dataset
+   * @return the filtered dataset, with the same schema as the input dataset
+   */
+  @Nonnull
+  public static Dataset<Row> apply(
+      @Nonnull final Dataset<Row> dataset, @Nonnull final Column filterColumn) {
+    final Column safeFilterColumn = coalesce(filterColumn, lit(false));
+    if (!requiresJoin(dataset, safeFilterColumn)) {
+      return dataset.filter(safeFilterColumn);
+    }
+
+    log.warn(
+        "Filter cannot be evaluated within a single row and requires a join: {}", filterColumn);
+    final String idAlias = randomAlias();
+    final String filterAlias = randomAlias();
+    final Dataset<Row> matchingIds =
+        dataset
+            .select(dataset.col("id").alias(idAlias), safeFilterColumn.alias(filterAlias))
+            .filter(col(filterAlias))
+            .select(col(idAlias));
+    return dataset.join(matchingIds, dataset.col("id").equalTo(col(idAlias)), "left_semi");
+  }
+
+  /**
+   * Determines whether a column requires anything other than a projection over the rows of the
+   * dataset in order to be evaluated, in which case it cannot be used directly as a filter.
+   *
+   * @param dataset the dataset that the column is derived from
+   * @param column the column to check
+   * @return true if the column cannot be evaluated within each row of the dataset
+   */
+  public static boolean requiresJoin(
+      @Nonnull final Dataset<Row> dataset, @Nonnull final Column column) {
+    // The analyser extracts aggregate, window and generator expressions into their own operators,
+    // so a row-local column is one that analyses to a simple projection over the dataset.
+    final LogicalPlan analyzed = dataset.select(column).queryExecution().analyzed();
+    return !(analyzed instanceof final Project project)
+        || !project.child().fastEquals(dataset.queryExecution().analyzed());
+  }
+}
@@ -46,6 +46,9 @@ import org.springframework.stereotype.Component;
 @Slf4j
 public class Spark {
 
+  /** The Hadoop configuration property that sets the size of each Parquet row group. */
+  static final String ROW_GROUP_SIZE_PROPERTY = "parquet.block.size";
+
   private Spark() {}
 
   /**
@@ -101,6 +104,12 @@ public class Spark {
           spark.sparkContext().hadoopConfiguration().set(property, value);
         });
 
+    // Set the size of the row groups within the Parquet files written by the server.
+    final Long rowGroupSize = configuration.getStorage().getRowGroupSize();
+    if (rowGroupSize != null) {
+      spark.sparkContext().hadoopConfiguration().setLong(ROW_GROUP_SIZE_PROPERTY, rowGroupSize);
+    }
+
     return spark;
   }
 
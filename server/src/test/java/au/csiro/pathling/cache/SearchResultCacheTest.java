@@ -0,0 +1,197 @@
+/*
+ * Copyright © 2018-2026 Commonwealth Scientific and Industrial Research
+ * Organisation (CSIRO) ABN 41 687 119 230.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.pathling.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import au.csiro.pathling.config.SearchCacheConfiguration;
+import au.csiro.pathling.test.SpringBootUnitTest;
+import au.csiro.pathling.util.FhirServerTestConfiguration;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.annotation.Nonnull;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.SparkSession;
+import org.apache.spark.storage.StorageLevel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+
+/**
+ * Tests for {@link SearchResultCache}.
+ *
+ * @author John Grimes
+ */
+@Import(FhirServerTestConfiguration.class)
+@SpringBootUnitTest
+class SearchResultCacheTest {
+
+  @Autowired private SparkSession sparkSession;
+
+  private StubDatabase database;
+
+  private SearchCacheConfiguration configuration;
+
+  @BeforeEach
+  void setUp() {
+    database = new StubDatabase("v1");
+    configuration = new SearchCacheConfiguration();
+  }
+
+  @AfterEach
+  void tearDown() {
+    sparkSession.catalog().clearCache();
+  }
+
+  @Test
+  void identicalSearchesShareCachedResult() {
+    final SearchResultCache cache = new SearchResultCache(database, configuration);
+    final AtomicInteger loads = new AtomicInteger();
+
+    final Dataset<Row> first = cache.getOrCache("Patient", "gender=male|", () -> load(loads));
+    final Dataset<Row> second = cache.getOrCache("Patient", "gender=male|", () -> load(loads));
+
+    assertThat(second).isSameAs(first);
+    assertThat(loads).hasValue(1);
+    assertThat(cache.getHits()).isEqualTo(1);
+    assertThat(cache.getMisses()).isEqualTo(1);
+    assertThat(first.storageLevel()).isNotEqualTo(StorageLevel.NONE());
+  }
+
+  @Test
+  void differentQueriesAndResourceTypesAreCachedSeparately() {
+    final SearchResultCache cache = new SearchResultCache(database, configuration);
+    final AtomicInteger loads = new AtomicInteger();
+
+    cache.getOrCache("Patient", "gender=male|", () -> load(loads));
+    cache.getOrCache("Patient", "gender=female|", () -> load(loads));
+    cache.getOrCache("Observation", "gender=male|", () -> load(loads));
+
+    assertThat(loads).hasValue(3);
+    assertThat(cache.size()).isEqualTo(3);
+  }
+
+  @Test
+  void changeInDatabaseVersionEvictsStaleResults() {
+    final SearchResultCache cache = new SearchResultCache(database, configuration);
+    final AtomicInteger loads = new AtomicInteger();
+    final Dataset<Row> first = cache.getOrCache("Patient", "|", () -> load(loads));
+
+    database.setVersion("v2");
+    final Dataset<Row> second = cache.getOrCache("Patient", "|", () -> load(loads));
+
+    assertThat(second).isNotSameAs(first);
+    assertThat(loads).hasValue(2);
+    assertThat(cache.size()).isEqualTo(1);
+    assertThat(cache.getEvictions()).isEqualTo(1);
+    assertThat(first.storageLevel()).isEqualTo(StorageLevel.NONE());
+  }
+
+  @Test
+  void leastRecentlyUsedEntryIsEvictedWhenFull() {
+    configuration.setMaxEntries(2);
+    final SearchResultCache cache = new SearchResultCache(database, configuration);
+    final AtomicInteger loads = new AtomicInteger();
+
+    final Dataset<Row> a = cache.getOrCache("Patient", "a|", () -> load(loads));
+    cache.getOrCache("Patient", "b|", () -> load(loads));
+    // Touch "a" so that "b" becomes the least recently used entry.
+    cache.getOrCache("Patient", "a|", () -> load(loads));
+    cache.getOrCache("Patient", "c|", () -> load(loads));
+
+    assertThat(cache.size()).isEqualTo(2);
+    assertThat(cache.getOrCache("Patient", "a|", () -> load(loads))).isSameAs(a);
+    assertThat(loads).hasValue(3);
+    cache.getOrCache("Patient", "b|", () -> load(loads));
+    assertThat(loads).hasValue(4);
+  }
+
+  @Test
+  void entriesAreEvictedWhenSizeBudgetIsExceeded() {
+    configuration.setMaxSizeBytes(1);
+    final SearchResultCache cache = new SearchResultCache(database, configuration);
+    final AtomicInteger loads = new AtomicInteger();
+
+    cache.getOrCache("Patient", "a|", () -> load(loads));
+    cache.getOrCache("Patient", "b|", () -> load(loads));
+
+    // The most recently added entry is always retained.
+    assertThat(cache.size()).isEqualTo(1);
+    assertThat(cache.getTotalSizeBytes()).isLessThanOrEqualTo(1);
+  }
+
+  @Test
+  void clearUnpersistsAllResults() {
+    final SearchResultCache cache = new SearchResultCache(database, configuration);
+    final Dataset<Row> dataset = cache.getOrCache("Patient", "|", () -> load(new AtomicInteger()));
+
+    cache.clear();
+
+    assertThat(cache.size()).isZero();
+    assertThat(cache.getTotalSizeBytes()).isZero();
+    assertThat(dataset.storageLevel()).isEqualTo(StorageLevel.NONE());
+  }
+
+  @Test
+  void metricsAreRegistered() {
+    final SearchResultCache cache = new SearchResultCache(database, configuration);
+    final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    cache.bindTo(registry);
+
+    cache.getOrCache("Patient", "|", () -> load(new AtomicInteger()));
+
+    assertThat(registry.get("pathling.search.cache.entries").gauge().value()).isEqualTo(1.0);
+    assertThat(registry.get("pathling.search.cache.misses").functionCounter().count())
+        .isEqualTo(1.0);
+  }
+
+  @Nonnull
+  private Dataset<Row> load(@Nonnull final AtomicInteger loads) {
+    // Each load produces a distinct plan, so that Spark does not treat the results as the same
+    // cached data.
+    return sparkSession.range(0, 10L + loads.incrementAndGet()).toDF();
+  }
+
+  /** A Cacheable implementation with a version that can be changed by the test. */
+  private static class StubDatabase implements Cacheable {
+
+    private String version;
+
+    StubDatabase(@Nonnull final String version) {
+      this.version = version;
+    }
+
+    void setVersion(@Nonnull final String version) {
+      this.version = version;
+    }
+
+    @Override
+    public Optional<String> getCacheKey() {
+      return Optional.of(version);
+    }
+
+    @Override
+    public boolean cacheKeyMatches(@Nonnull final String otherKey) {
+      return version.equals(otherKey);
+    }
+  }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright © 2018-2026 Commonwealth Scientific and Industrial Research
+ * Organisation (CSIRO) ABN 41 687 119 230.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package au.csiro.pathling.io;
+
+import static org.apache.spark.sql.functions.col;
+import static org.apache.spark.sql.functions.concat;
+import static org.apache.spark.sql.functions.lit;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import au.csiro.pathling.test.SpringBootUnitTest;
+import au.csiro.pathling.util.FhirServerTestConfiguration;
+import io.delta.tables.DeltaTable;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Encoders;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.SparkSession;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+
+/**
+ * Unit tests for {@link ChangeDataFeed}.
+ *
+ * @author John Grimes
+ */
+@Import(FhirServerTestConfiguration.class)
+@SpringBootUnitTest
+class ChangeDataFeedTest {
+
+  @Autowired private SparkSession sparkSession;
+
+  @TempDir private Path tempDir;
+
+  @AfterEach
+  void tearDown() {
+    sparkSession.catalog().clearCache();
+  }
+
+  @Test
+  void changesSinceTimeAreRead() throws InterruptedException {
+    // Given: a table with the change data feed enabled, which is subsequently updated and deleted
+    // from.
+    final String path = writeTable(true);
+    final Instant since = waitForNextCommit();
+    final DeltaTable table = DeltaTable.forPath(sparkSession, path);
+    table.update(col("id").equalTo("1"), Map.of("value", lit("updated")));
+    table.delete(col("id").equalTo("2"));
+
+    // When: the changes since the time are read.
+    final Optional<Dataset<Row>> changes =
+        ChangeDataFeed.readLatestChanges(sparkSession, path, since);
+
+    // Then: only the updated resource is current, and only the deleted resource is deleted.
+    assertThat(changes).isPresent();
+    assertThat(ids(ChangeDataFeed.current(changes.get()))).containsExactly("1");
+    assertThat(ChangeDataFeed.current(changes.get()).first().<String>getAs("value"))
+        .isEqualTo("updated");
+    assertThat(ids(ChangeDataFeed.deleted(changes.get()))).containsExactly("2");
+  }
+
+  @Test
+  void resourceDeletedAfterUpdateIsOnlyDeleted() throws InterruptedException {
+    // Given: a resource that is updated and then deleted after the time.
+    final String path = writeTable(true);
+    final Instant since = waitForNextCommit();
+    final DeltaTable table = DeltaTable.forPath(sparkSession, path);
+    table.update(col("id").equalTo("3"), Map.of("value", lit("updated")));
+    table.delete(col("id").equalTo("3"));
+
+    // When: the changes since the time are read.
+    final Dataset<Row> changes =
+        ChangeDataFeed.readLatestChanges(sparkSession, path, since).orElseThrow();
+
+    // Then: the latest change to the resource is its deletion.
+    assertThat(ids(ChangeDataFeed.current(changes))).isEmpty();
+    assertThat(ids(ChangeDataFeed.deleted(changes))).containsExactly("3");
+  }
+
+  @Test
+  void noCommitsSinceTimeIsEmpty() throws InterruptedException {
+    // Given: a table that has not changed since the time.
+    final String path = writeTable(true);
+    final Instant since = waitForNextCommit();
+
+    // When: the changes since the time are read.
+    final Optional<Dataset<Row>> changes =
+        ChangeDataFeed.readLatestChanges(sparkSession, path, since);
+
+    // Then: there are no changes.
+    assertThat(changes).isPresent();
+    assertThat(changes.get().isEmpty()).isTrue();
+  }
+
+  @Test
+  void tableCreatedAfterTimeIsNotRead() {
+    // Given: a table that was created after the time.
+    final Instant since = Instant.now().minusSeconds(60);
+    final String path = writeTable(true);
+
+    // When/Then: the changes cannot be determined from the change data feed.
+    assertThat(ChangeDataFeed.readLatestChanges(sparkSession, path, since)).isEmpty();
+  }
+
+  @Test
+  void tableWithoutChangeDataFeedIsNotRead() throws InterruptedException {
+    // Given: a table that was changed without the change data feed enabled.
+    final String path = writeTable(false);
+    final Instant since = waitForNextCommit();
+    DeltaTable.forPath(sparkSession, path).delete(col("id").equalTo("2"));
+
+    // When/Then: the changes cannot be determined from the change data feed.
+    assertThat(ChangeDataFeed.readLatestChanges(sparkSession, path, since)).isEmpty();
+  }
+
+  @Test
+  void missingTableIsNotRead() {
+    // When/Then: the changes to a table that does not exist cannot be determined.
+    final String path = tempDir.resolve("missing").toString();
+    assertThat(ChangeDataFeed.readLatestChanges(sparkSession, path, Instant.now())).isEmpty();
+  }
+
+  private String writeTable(final boolean changeDataFeed) {
+    final String path = tempDir.resolve("table").toString();
+    sparkSession
+        .range(0, 10)
+        .select(col("id").cast("string").as("id"), concat(lit("value-"), col("id")).as("value"))
+        .write()
+        .format("delta")
+        .option("delta.enableChangeDataFeed", String.valueOf(changeDataFeed))
+        .save(path);
+    return path;
+  }
+
+  /** Returns a time that falls between the previous commit and the next one. */
+  private static Instant waitForNextCommit() throws InterruptedException {
+    // Commit timestamps are derived from file modification times, which may be truncated to the
+    // second on some file systems.
+    Thread.sleep(1100);
+    final Instant since = Instant.now();
+    Thread.sleep(1100);
+    return since;
+  }
+
+  private static List<String> ids(final Dataset<Row> dataset) {
+    return dataset.select("id").as(Encoders.STRING()).collectAsList();
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright © 2018-2026 Commonwealth Scientific and Industrial Research
+ * Organisation (CSIRO) ABN 41 687 119 230.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.pathling.io;
+
+import static org.apache.spark.sql.functions.col;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import au.csiro.pathling.test.SpringBootUnitTest;
+import au.csiro.pathling.util.FhirServerTestConfiguration;
+import java.nio.file.Path;
+import java.util.Optional;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.SparkSession;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+
+/**
+ * Unit tests for {@link DeltaStatistics}.
+ *
+ * @author John Grimes
+ */
+@Import(FhirServerTestConfiguration.class)
+@SpringBootUnitTest
+class DeltaStatisticsTest {
+
+  @Autowired private SparkSession sparkSession;
+
+  @TempDir private Path tempDir;
+
+  @AfterEach
+  void tearDown() {
+    sparkSession.catalog().clearCache();
+  }
+
+  @Test
+  void unfilteredEstimateMatchesRecordCount() {
+    // Given: a Delta table written as several files.
+    final Dataset<Row> table = writeTable();
+
+    // When: the row count is estimated.
+    final Optional<Long> estimate = DeltaStatistics.estimateRowCount(table);
+
+    // Then: the estimate is the exact number of records in the table.
+    assertThat(estimate).contains(1000L);
+  }
+
+  @Test
+  void filteredEstimateIsUpperBound() {
+    // Given: a filter that only matches rows within one of the files.
+    final Dataset<Row> filtered = writeTable().filter(col("id").lt(10));
+
+    // When: the row count is estimated.
+    final Optional<Long> estimate = DeltaStatistics.estimateRowCount(filtered);
+
+    // Then: data skipping excludes some files, but the estimate is never less than the true count.
+    assertThat(estimate).isPresent();
+    assertThat(estimate.get()).isBetween(filtered.count(), 999L);
+  }
+
+  @Test
+  void cachedDatasetIsEstimatedFromTable() {
+    // Given: a cached dataset read from a Delta table.
+    final Dataset<Row> table = writeTable();
+    table.cache();
+
+    // When: the row count is estimated.
+    final Optional<Long> estimate = DeltaStatistics.estimateRowCount(table);
+
+    // Then: the estimate is still derived from the Delta log.
+    assertThat(estimate).contains(1000L);
+  }
+
+  @Test
+  void nonDeltaDatasetHasNoEstimate() {
+    // Given: a dataset that is not read from a Delta table.
+    final Dataset<Row> dataset = sparkSession.range(0, 100).toDF();
+
+    // When/Then: no estimate is available.
+    assertThat(DeltaStatistics.estimateRowCount(dataset)).isEmpty();
+  }
+
+  private Dataset<Row> writeTable() {
+    final String path = tempDir.resolve("table").toString();
+    sparkSession.range(0, 1000, 1, 4).toDF().write().format("delta").save(path);
+    return sparkSession.read().format("delta").load(path);
+  }
+}
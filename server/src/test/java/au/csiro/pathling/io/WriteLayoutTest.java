@@ -0,0 +1,166 @@
+/*
+ * Copyright © 2018-2026 Commonwealth Scientific and Industrial Research
+ * Organisation (CSIRO) ABN 41 687 119 230.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.pathling.io;
+
+import static org.apache.spark.sql.functions.col;
+import static org.apache.spark.sql.functions.concat;
+import static org.apache.spark.sql.functions.lit;
+import static org.apache.spark.sql.functions.max;
+import static org.apache.spark.sql.functions.min;
+import static org.apache.spark.sql.functions.spark_partition_id;
+import static org.apache.spark.sql.functions.struct;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import au.csiro.pathling.config.StorageConfiguration;
+import au.csiro.pathling.io.source.DataSource;
+import au.csiro.pathling.library.PathlingContext;
+import au.csiro.pathling.library.io.source.DatasetSource;
+import au.csiro.pathling.operations.compartment.PatientCompartmentService;
+import au.csiro.pathling.test.SpringBootUnitTest;
+import au.csiro.pathling.util.FhirServerTestConfiguration;
+import java.util.List;
+import java.util.Map;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.SparkSession;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+
+/**
+ * Unit tests for {@link WriteLayout}.
+ *
+ * @author John Grimes
+ */
+@Import({PatientCompartmentService.class, FhirServerTestConfiguration.class})
+@SpringBootUnitTest
+class WriteLayoutTest {
+
+  @Autowired private SparkSession sparkSession;
+
+  @Autowired private PathlingContext pathlingContext;
+
+  @Autowired private PatientCompartmentService patientCompartmentService;
+
+  @Test
+  void sourceIsUnchangedWithoutLayoutSettings() {
+    // Given: a data source and the default storage configuration.
+    final DataSource source = source(100);
+
+    // When: the source is arranged.
+    final DataSource arranged =
+        WriteLayout.arrange(
+            pathlingContext,
+            source,
+            StorageConfiguration.builder().build(),
+            patientCompartmentService);
+
+    // Then: the same source is returned.
+    assertThat(arranged).isSameAs(source);
+  }
+
+  @Test
+  void resourcesAreSplitByMaximumRecordsPerFile() {
+    // Given: a configuration with a maximum of 30 records per file.
+    final StorageConfiguration configuration =
+        StorageConfiguration.builder().maxRecordsPerFile(30L).build();
+
+    // When: a source of 100 resources is arranged.
+    final Dataset<Row> arranged =
+        WriteLayout.arrange(pathlingContext, source(100), configuration, patientCompartmentService)
+            .read("Observation");
+
+    // Then: the resources are split into partitions of no more than 30 resources.
+    final List<Row> partitionSizes = arranged.groupBy(spark_partition_id()).count().collectAsList();
+    assertThat(partitionSizes).hasSize(4);
+    assertThat(partitionSizes).allMatch(row -> row.getLong(1) <= 30);
+  }
+
+  @Test
+  void resourcesAreClusteredBySortKey() {
+    // Given: a configuration that sorts Observations by subject, with four partitions.
+    final StorageConfiguration configuration =
+        StorageConfiguration.builder()
+            .maxRecordsPerFile(25L)
+            .sortKeys(Map.of("Observation", List.of("subject")))
+            .build();
+
+    // When: a source of 100 resources is arranged.
+    final Dataset<Row> arranged =
+        WriteLayout.arrange(pathlingContext, source(100), configuration, patientCompartmentService)
+            .read("Observation");
+
+    // Then: each partition holds a distinct range of subjects, in order.
+    final List<Row> ranges =
+        arranged
+            .groupBy(spark_partition_id().as("partition"))
+            .agg(min("subject"), max("subject"))
+            .orderBy("partition")
+            .collectAsList();
+    for (int i = 1; i < ranges.size(); i++) {
+      assertThat(ranges.get(i).getString(1)).isGreaterThan(ranges.get(i - 1).getString(2));
+    }
+  }
+
+  @Test
+  void resourcesAreClusteredByPatientKey() {
+    // Given: a configuration with the patient layout enabled and no sort keys.
+    final StorageConfiguration configuration =
+        StorageConfiguration.builder().maxRecordsPerFile(25L).patientLayout(true).build();
+    final Dataset<Row> observations =
+        sparkSession
+            .range(100)
+            .select(
+                col("id").cast("string").as("id"),
+                struct(concat(lit("Patient/"), col("id").mod(10).cast("string")).as("reference"))
+                    .as("subject"));
+    final DataSource source =
+        new DatasetSource(pathlingContext).dataset("Observation", observations);
+
+    // When: the source is arranged.
+    final Dataset<Row> arranged =
+        WriteLayout.arrange(pathlingContext, source, configuration, patientCompartmentService)
+            .read("Observation");
+
+    // Then: each partition holds a distinct range of patients, in order.
+    assertThat(
+            WriteLayout.sortKeys(
+                "Observation", observations.schema(), configuration, patientCompartmentService))
+        .containsExactly("subject.reference");
+    final List<Row> ranges =
+        arranged
+            .groupBy(spark_partition_id().as("partition"))
+            .agg(min("subject.reference"), max("subject.reference"))
+            .orderBy("partition")
+            .collectAsList();
+    assertThat(ranges).hasSizeGreaterThan(1);
+    for (int i = 1; i < ranges.size(); i++) {
+      assertThat(ranges.get(i).getString(1)).isGreaterThan(ranges.get(i - 1).getString(2));
+    }
+  }
+
+  private DataSource source(final int count) {
+    final Dataset<Row> observations =
+        sparkSession
+            .range(count)
+            .select(
+                col("id").cast("string").as("id"),
+                concat(lit("Patient/"), col("id").mod(10).cast("string")).as("subject"));
+    return new DatasetSource(pathlingContext).dataset("Observation", observations);
+  }
+}
@@ -28,6 +28,7 @@ import au.csiro.pathling.async.PreAsyncValidation.PreAsyncValidationResult;
 import au.csiro.pathling.config.AuthorizationConfiguration;
 import au.csiro.pathling.config.ServerConfiguration;
 import au.csiro.pathling.encoders.FhirEncoders;
+import au.csiro.pathling.io.OutputCompression;
 import au.csiro.pathling.operations.compartment.PatientCompartmentService;
 import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.context.FhirVersionEnum;
@@ -269,6 +270,46 @@ class ExportOperationValidatorTest {
             });
   }
 
+  @Test
+  @DisplayName("applyOutputCompression should set the compression for ndjson output")
+  void applyOutputCompression_shouldSetCompressionForNdjson() {
+    // Given: a validated request with the default output format.
+    final PreAsyncValidationResult<ExportRequest> result =
+        validator.validateRequest(requestDetails, null, null, null, null, null);
+
+    // When: gzip compression is applied.
+    final PreAsyncValidationResult<ExportRequest> compressed =
+        validator.applyOutputCompression(result, "gzip");
+
+    // Then: the request carries the compression.
+    assertThat(compressed.result().outputCompression()).isEqualTo(OutputCompression.GZIP);
+  }
+
+  @Test
+  @DisplayName("applyOutputCompression should reject compression for parquet output")
+  void applyOutputCompression_shouldRejectCompressionForParquet() {
+    // Given: a validated request for parquet output.
+    final PreAsyncValidationResult<ExportRequest> result =
+        validator.validateRequest(requestDetails, "parquet", null, null, null, null);
+
+    // When/Then: applying compression is rejected.
+    assertThatThrownBy(() -> validator.applyOutputCompression(result, "zstd"))
+        .isInstanceOf(InvalidRequestException.class)
+        .hasMessageContaining("_outputCompression");
+  }
+
+  @Test
+  @DisplayName("applyOutputCompression should reject unknown codecs")
+  void applyOutputCompression_shouldRejectUnknownCodec() {
+    // Given: a validated request with the default output format.
+    final PreAsyncValidationResult<ExportRequest> result =
+        validator.validateRequest(requestDetails, null, null, null, null, null);
+
+    // When/Then: applying an unknown codec is rejected.
+    assertThatThrownBy(() -> validator.applyOutputCompression(result, "lz4"))
+        .isInstanceOf(InvalidRequestException.class);
+  }
+
   @Test
   @DisplayName("validateRequest should reject delta output format")
   void validateRequest_shouldRejectDeltaOutputFormat() {
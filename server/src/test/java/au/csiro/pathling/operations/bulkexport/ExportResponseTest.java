@@ -322,6 +322,59 @@ class ExportResponseTest {
     assertThat(json.get("output").isEmpty()).isTrue();
   }
 
+  // -------------------------------------------------------------------------
+  // Deleted resources tests
+  // -------------------------------------------------------------------------
+
+  @Test
+  void manifestContainsDeletedEntries() throws Exception {
+    // Deleted resources should be reported in the deleted section as Bundles.
+    final WriteDetails writeDetails = new WriteDetails(List.of());
+    final WriteDetails deletedDetails =
+        new WriteDetails(
+            List.of(new FileInformation("Bundle", "file:///tmp/jobs/job-id/Deleted.ndjson")));
+
+    final ExportResponse response =
+        new ExportResponse(
+            "http://example.org/fhir/$export?_since=2024-01-01T00:00:00Z",
+            "http://example.org/fhir",
+            writeDetails,
+            deletedDetails,
+            false);
+
+    final Parameters parameters = response.toOutput();
+    final List<ParametersParameterComponent> deletedParams =
+        getParametersByName(parameters, "deleted");
+    assertThat(deletedParams).hasSize(1);
+    assertThat(getPartValue(deletedParams.get(0), "type")).isEqualTo("Bundle");
+    assertThat(getPartValue(deletedParams.get(0), "url"))
+        .contains("$result")
+        .contains("job=job-id")
+        .contains("Deleted.ndjson");
+
+    final JsonNode json =
+        new ObjectMapper().readTree((String) parameters.getUserData("nativeJson"));
+    assertThat(json.get("deleted").isArray()).isTrue();
+    assertThat(json.get("deleted").get(0).get("type").asText()).isEqualTo("Bundle");
+  }
+
+  @Test
+  void deletedSectionOmittedWhenNotReported() throws Exception {
+    // The deleted section should be absent when deleted resources are not being reported.
+    final ExportResponse response =
+        new ExportResponse(
+            "http://example.org/fhir/$export",
+            "http://example.org/fhir",
+            new WriteDetails(List.of()),
+            false);
+
+    final Parameters parameters = response.toOutput();
+    assertThat(hasParameter(parameters, "deleted")).isFalse();
+    final JsonNode json =
+        new ObjectMapper().readTree((String) parameters.getUserData("nativeJson"));
+    assertThat(json.has("deleted")).isFalse();
+  }
+
   // -------------------------------------------------------------------------
   // Helper methods
   // -------------------------------------------------------------------------
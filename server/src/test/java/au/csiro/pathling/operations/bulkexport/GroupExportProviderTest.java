@@ -19,6 +19,7 @@ package au.csiro.pathling.operations.bulkexport;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -80,7 +81,7 @@ class GroupExportProviderTest {
 
     final Parameters result =
         provider.exportGroup(
-            new IdType("Group/g1"), null, null, null, null, null, null, requestDetails);
+            new IdType("Group/g1"), null, null, null, null, null, null, null, requestDetails);
 
     assertEquals(expected, result);
   }
@@ -113,9 +114,13 @@ class GroupExportProviderTest {
             new PreAsyncValidation.PreAsyncValidationResult<>(
                 exportRequest, Collections.emptyList()));
 
-    // Args: [groupId, outputFormat, since, until, type, typeFilter, elements, requestDetails].
+    when(exportOperationValidator.applyOutputCompression(any(), any()))
+        .thenAnswer(invocation -> invocation.getArgument(0));
+
+    // Args: [groupId, outputFormat, since, until, type, typeFilter, elements, outputCompression,
+    // requestDetails].
     final Object[] args =
-        new Object[] {groupId, null, null, null, null, null, null, requestDetails};
+        new Object[] {groupId, null, null, null, null, null, null, null, requestDetails};
 
     final PreAsyncValidation.PreAsyncValidationResult<ExportRequest> result =
         provider.preAsyncValidate(requestDetails, args);
@@ -19,6 +19,7 @@ package au.csiro.pathling.operations.bulkexport;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -73,7 +74,7 @@ class PatientExportProviderTest {
     when(exportOperationHelper.executeExport(requestDetails)).thenReturn(expected);
 
     final Parameters result =
-        provider.exportAllPatients(null, null, null, null, null, null, requestDetails);
+        provider.exportAllPatients(null, null, null, null, null, null, null, requestDetails);
 
     assertEquals(expected, result);
   }
@@ -87,7 +88,7 @@ class PatientExportProviderTest {
 
     final Parameters result =
         provider.exportSinglePatient(
-            new IdType("Patient/123"), null, null, null, null, null, null, requestDetails);
+            new IdType("Patient/123"), null, null, null, null, null, null, null, requestDetails);
 
     assertEquals(expected, result);
   }
@@ -115,8 +116,12 @@ class PatientExportProviderTest {
             new PreAsyncValidation.PreAsyncValidationResult<>(
                 exportRequest, Collections.emptyList()));
 
-    // Type-level args: [outputFormat, since, until, type, typeFilter, elements, requestDetails].
-    final Object[] args = new Object[] {null, null, null, null, null, null, requestDetails};
+    when(exportOperationValidator.applyOutputCompression(any(), any()))
+        .thenAnswer(invocation -> invocation.getArgument(0));
+
+    // Type-level args: [outputFormat, since, until, type, typeFilter, elements,
+    // outputCompression, requestDetails].
+    final Object[] args = new Object[] {null, null, null, null, null, null, null, requestDetails};
 
     final PreAsyncValidation.PreAsyncValidationResult<ExportRequest> result =
         provider.preAsyncValidate(requestDetails, args);
@@ -156,10 +161,13 @@ class PatientExportProviderTest {
             new PreAsyncValidation.PreAsyncValidationResult<>(
                 exportRequest, Collections.emptyList()));
 
+    when(exportOperationValidator.applyOutputCompression(any(), any()))
+        .thenAnswer(invocation -> invocation.getArgument(0));
+
     // Instance-level args: [patientId, outputFormat, since, until, type, typeFilter, elements,
-    // requestDetails].
+    // outputCompression, requestDetails].
     final Object[] args =
-        new Object[] {patientId, null, null, null, null, null, null, requestDetails};
+        new Object[] {patientId, null, null, null, null, null, null, null, requestDetails};
 
     final PreAsyncValidation.PreAsyncValidationResult<ExportRequest> result =
         provider.preAsyncValidate(requestDetails, args);
@@ -29,6 +29,7 @@ import au.csiro.pathling.library.PathlingContext;
 import au.csiro.pathling.library.io.SaveMode;
 import au.csiro.pathling.library.io.sink.FileInformation;
 import au.csiro.pathling.library.io.sink.WriteDetails;
+import au.csiro.pathling.operations.compartment.PatientCompartmentService;
 import au.csiro.pathling.test.SpringBootUnitTest;
 import au.csiro.pathling.util.FhirServerTestConfiguration;
 import java.io.IOException;
@@ -53,7 +54,7 @@ import org.springframework.context.annotation.Import;
  * @author John Grimes
  */
 @Slf4j
-@Import(FhirServerTestConfiguration.class)
+@Import({PatientCompartmentService.class, FhirServerTestConfiguration.class})
 @SpringBootUnitTest
 class ImportExecutorTest {
 
@@ -66,6 +67,8 @@ class ImportExecutorTest {
 
   @Autowired private CacheableDatabase cacheableDatabase;
 
+  @Autowired private PatientCompartmentService patientCompartmentService;
+
   @TempDir private Path tempDir;
 
   private Path uniqueTempDir;
@@ -83,7 +86,8 @@ class ImportExecutorTest {
             pathlingContext,
             databasePath,
             serverConfiguration,
-            cacheableDatabase);
+            cacheableDatabase,
+            patientCompartmentService);
   }
 
   // ========================================
@@ -406,7 +410,8 @@ class ImportExecutorTest {
             pathlingContext,
             "file://" + uniqueTempDir.toAbsolutePath(),
             serverConfiguration,
-            cacheableDatabase);
+            cacheableDatabase,
+            patientCompartmentService);
 
     final String patientUrl = "file://" + TEST_DATA_PATH.resolve("Patient.ndjson").toAbsolutePath();
     final ImportRequest request =
@@ -436,7 +441,8 @@ class ImportExecutorTest {
             pathlingContext,
             "file://" + uniqueTempDir.toAbsolutePath(),
             serverConfiguration,
-            cacheableDatabase);
+            cacheableDatabase,
+            patientCompartmentService);
 
     final String deniedUrl = "s3://denied-bucket/Patient.ndjson";
     final ImportRequest request =
@@ -485,7 +491,8 @@ class ImportExecutorTest {
             pathlingContext,
             "file://" + uniqueTempDir.toAbsolutePath(),
             serverConfiguration,
-            cacheableDatabase);
+            cacheableDatabase,
+            patientCompartmentService);
 
     final String allowedUrl = "file://" + TEST_DATA_PATH.resolve("Patient.ndjson").toAbsolutePath();
     final String deniedUrl = "s3://denied-bucket/Condition.ndjson";
@@ -563,7 +570,8 @@ class ImportExecutorTest {
             pathlingContext,
             "file://" + uniqueTempDir.toAbsolutePath(),
             serverConfiguration,
-            cacheableDatabase);
+            cacheableDatabase,
+            patientCompartmentService);
 
     final String patientUrl = "file://" + TEST_DATA_PATH.resolve("Patient.ndjson").toAbsolutePath();
     final List<String> customAllowableSources = List.of("file://");
@@ -24,6 +24,7 @@ import au.csiro.pathling.cache.CacheableDatabase;
 import au.csiro.pathling.config.ServerConfiguration;
 import au.csiro.pathling.library.PathlingContext;
 import au.csiro.pathling.library.io.SaveMode;
+import au.csiro.pathling.operations.compartment.PatientCompartmentService;
 import au.csiro.pathling.test.SpringBootUnitTest;
 import au.csiro.pathling.util.FhirServerTestConfiguration;
 import java.io.IOException;
@@ -49,7 +50,7 @@ import org.springframework.context.annotation.Import;
  * @author John Grimes
  */
 @Slf4j
-@Import(FhirServerTestConfiguration.class)
+@Import({PatientCompartmentService.class, FhirServerTestConfiguration.class})
 @SpringBootUnitTest
 class ImportLockTest {
 
@@ -63,6 +64,8 @@ class ImportLockTest {
 
   @Autowired private CacheableDatabase cacheableDatabase;
 
+  @Autowired private PatientCompartmentService patientCompartmentService;
+
   @TempDir private Path tempDir;
 
   private Path uniqueTempDir;
@@ -80,7 +83,8 @@ class ImportLockTest {
             pathlingContext,
             databasePath,
             serverConfiguration,
-            cacheableDatabase);
+            cacheableDatabase,
+            patientCompartmentService);
   }
 
   @Test
@@ -17,6 +17,8 @@
 
 package au.csiro.pathling.operations.compartment;
 
+import static au.csiro.pathling.util.TestHelpers.containsJoin;
+import static org.apache.spark.sql.functions.col;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import au.csiro.pathling.encoders.FhirEncoders;
@@ -32,6 +34,7 @@ import org.apache.spark.sql.Dataset;
 import org.apache.spark.sql.Encoders;
 import org.apache.spark.sql.Row;
 import org.apache.spark.sql.SparkSession;
+import org.apache.spark.sql.types.StructType;
 import org.hl7.fhir.r4.model.Appointment;
 import org.hl7.fhir.r4.model.Appointment.AppointmentParticipantComponent;
 import org.hl7.fhir.r4.model.Observation;
@@ -158,7 +161,7 @@ class PatientCompartmentServiceTest {
 
     final Dataset<Row> dataset = dataSource.read("Patient");
     final Dataset<Row> filtered =
-        service.filterByPatientCompartment("Patient", patientIds, dataset, dataSource);
+        service.filterByPatientCompartment("Patient", patientIds, dataset);
 
     assertThat(filtered.count()).isEqualTo(expectedCount);
   }
@@ -201,7 +204,7 @@ class PatientCompartmentServiceTest {
 
     final Dataset<Row> dataset = dataSource.read("Observation");
     final Dataset<Row> filtered =
-        service.filterByPatientCompartment("Observation", patientIds, dataset, dataSource);
+        service.filterByPatientCompartment("Observation", patientIds, dataset);
 
     assertThat(filtered.count()).isEqualTo(expectedIds.size());
     final List<String> actualIds = filtered.select("id").as(Encoders.STRING()).collectAsList();
@@ -255,13 +258,38 @@ class PatientCompartmentServiceTest {
 
     final Dataset<Row> dataset = dataSource.read("Appointment");
     final Dataset<Row> filtered =
-        service.filterByPatientCompartment("Appointment", patientIds, dataset, dataSource);
+        service.filterByPatientCompartment("Appointment", patientIds, dataset);
 
     assertThat(filtered.count()).isEqualTo(expectedIds.size());
     final List<String> actualIds = filtered.select("id").as(Encoders.STRING()).collectAsList();
     assertThat(actualIds).containsExactlyInAnyOrderElementsOf(expectedIds);
   }
 
+  @Test
+  void filterIsEvaluatedOverSuppliedDataset() {
+    // Given: a dataset that has already been filtered to a subset of the observations.
+    final Observation obs1 = new Observation();
+    obs1.setId("obs-1");
+    obs1.setSubject(new Reference("Patient/patient-1"));
+    final Observation obs2 = new Observation();
+    obs2.setId("obs-2");
+    obs2.setSubject(new Reference("Patient/patient-1"));
+
+    final CustomObjectDataSource dataSource =
+        new CustomObjectDataSource(
+            sparkSession, pathlingContext, fhirEncoders, List.of(obs1, obs2));
+    final Dataset<Row> dataset = dataSource.read("Observation").filter(col("id").equalTo("obs-2"));
+
+    // When: the compartment filter is applied.
+    final Dataset<Row> filtered =
+        service.filterByPatientCompartment("Observation", Set.of("patient-1"), dataset);
+
+    // Then: only the supplied rows are considered, and no join is required.
+    assertThat(filtered.select("id").as(Encoders.STRING()).collectAsList())
+        .containsExactly("obs-2");
+    assertThat(containsJoin(filtered.queryExecution().analyzed())).isFalse();
+  }
+
   @Test
   void nonCompartmentResourceReturnsEmptyResult() {
     // Organization is not in Patient compartment - filter should return no rows.
@@ -273,11 +301,34 @@ class PatientCompartmentServiceTest {
 
     final Dataset<Row> dataset = dataSource.read("Organization");
     final Dataset<Row> filtered =
-        service.filterByPatientCompartment("Organization", Set.of(), dataset, dataSource);
+        service.filterByPatientCompartment("Organization", Set.of(), dataset);
 
     assertThat(filtered.count()).isZero();
   }
 
+  // ==================== Tests for getPatientKeyColumn ====================
+
+  @ParameterizedTest(name = "{0} has patient key column {1}")
+  @CsvSource({
+    "Patient,id",
+    "Observation,subject.reference",
+    "Condition,subject.reference",
+    "Encounter,subject.reference"
+  })
+  void patientKeyColumnIsDerivedFromCompartmentPaths(
+      final String resourceType, final String expectedColumn) {
+    final StructType schema = fhirEncoders.of(resourceType).schema();
+    assertThat(service.getPatientKeyColumn(resourceType, schema)).contains(expectedColumn);
+  }
+
+  @ParameterizedTest(name = "{0} has no patient key column")
+  @CsvSource({"Appointment", "Organization"})
+  void patientKeyColumnIsEmptyWithoutSingleReference(final String resourceType) {
+    // Appointment only refers to patients through a repeating element.
+    final StructType schema = fhirEncoders.of(resourceType).schema();
+    assertThat(service.getPatientKeyColumn(resourceType, schema)).isEmpty();
+  }
+
   // ==================== Tests for buildPatientFilter (backward compatibility) ====================
 
   @ParameterizedTest(name = "buildPatientFilter for Patient with IDs {0}")
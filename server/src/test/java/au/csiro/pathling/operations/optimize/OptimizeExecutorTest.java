@@ -0,0 +1,197 @@
+/*
+ * Copyright © 2018-2026 Commonwealth Scientific and Industrial Research
+ * Organisation (CSIRO) ABN 41 687 119 230.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.pathling.operations.optimize;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import au.csiro.pathling.cache.CacheableDatabase;
+import au.csiro.pathling.config.AuthorizationConfiguration;
+import au.csiro.pathling.config.ServerConfiguration;
+import au.csiro.pathling.encoders.FhirEncoders;
+import au.csiro.pathling.errors.InvalidUserInputError;
+import au.csiro.pathling.library.PathlingContext;
+import au.csiro.pathling.operations.compartment.PatientCompartmentService;
+import au.csiro.pathling.operations.optimize.OptimizeResponse.TableResult;
+import au.csiro.pathling.test.SpringBootUnitTest;
+import au.csiro.pathling.util.FhirServerTestConfiguration;
+import jakarta.annotation.Nonnull;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.SparkSession;
+import org.hl7.fhir.r4.model.Condition;
+import org.hl7.fhir.r4.model.Enumerations.AdministrativeGender;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Reference;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+
+/**
+ * Tests for {@link OptimizeExecutor}.
+ *
+ * @author John Grimes
+ */
+@Import({PatientCompartmentService.class, FhirServerTestConfiguration.class})
+@SpringBootUnitTest
+class OptimizeExecutorTest {
+
+  private static final int RESOURCES = 40;
+
+  private static final int RESOURCES_PER_FILE = 5;
+
+  @Autowired private SparkSession sparkSession;
+
+  @Autowired private PathlingContext pathlingContext;
+
+  @Autowired private FhirEncoders fhirEncoders;
+
+  @Autowired private CacheableDatabase cacheableDatabase;
+
+  @Autowired private PatientCompartmentService patientCompartmentService;
+
+  @TempDir private Path tempDatabasePath;
+
+  private ServerConfiguration serverConfiguration;
+
+  @BeforeEach
+  void setUp() {
+    serverConfiguration = new ServerConfiguration();
+    final AuthorizationConfiguration authConfig = new AuthorizationConfiguration();
+    authConfig.setEnabled(false);
+    serverConfiguration.setAuth(authConfig);
+    serverConfiguration.getStorage().setSortKeys(Map.of("Patient", List.of("gender")));
+
+    // Write each table to many small files.
+    final Dataset<Row> patients =
+        sparkSession
+            .createDataset(
+                IntStream.range(0, RESOURCES).mapToObj(OptimizeExecutorTest::patient).toList(),
+                fhirEncoders.of(Patient.class))
+            .toDF();
+    final Dataset<Row> conditions =
+        sparkSession
+            .createDataset(
+                IntStream.range(0, RESOURCES).mapToObj(OptimizeExecutorTest::condition).toList(),
+                fhirEncoders.of(Condition.class))
+            .toDF();
+    write("Patient", patients);
+    write("Condition", conditions);
+  }
+
+  @Test
+  void clustersTablesWithSortKeysAndCompactsOthers() {
+    // When: all the tables are optimised.
+    final OptimizeResponse response = createExecutor().execute(null);
+
+    // Then: the Patient table was clustered by its sort keys and the Condition table was compacted,
+    // replacing all the original files.
+    final int originalFiles = RESOURCES / RESOURCES_PER_FILE;
+    assertThat(response.tables())
+        .containsExactly(
+            new TableResult("Condition", List.of(), 1, originalFiles),
+            new TableResult("Patient", List.of("gender"), 1, originalFiles));
+
+    // And: the content of the tables is unchanged.
+    assertThat(table("Patient").count()).isEqualTo(RESOURCES);
+    assertThat(table("Condition").count()).isEqualTo(RESOURCES);
+  }
+
+  @Test
+  void clustersCompartmentTablesByPatientWithPatientLayout() {
+    // Given: the patient layout is enabled, and the Condition table has no sort keys.
+    serverConfiguration.getStorage().setPatientLayout(true);
+
+    // When: the Condition table is optimised.
+    final OptimizeResponse response = createExecutor().execute(List.of("Condition"));
+
+    // Then: the table was clustered by the reference to its subject.
+    assertThat(response.tables())
+        .extracting(TableResult::clusterColumns)
+        .containsExactly(List.of("subject.reference"));
+  }
+
+  @Test
+  void optimisesOnlyRequestedTypes() {
+    // When: only the Condition table is optimised.
+    final OptimizeResponse response = createExecutor().execute(List.of("Condition"));
+
+    // Then: only the Condition table is reported.
+    assertThat(response.tables())
+        .extracting(TableResult::resourceType)
+        .containsExactly("Condition");
+  }
+
+  @Test
+  void rejectsTypesWithoutData() {
+    // When/Then: optimising a resource type without a table is rejected.
+    assertThatThrownBy(() -> createExecutor().execute(List.of("Encounter")))
+        .isInstanceOf(InvalidUserInputError.class)
+        .hasMessageContaining("Encounter");
+  }
+
+  @Nonnull
+  private OptimizeExecutor createExecutor() {
+    return new OptimizeExecutor(
+        sparkSession,
+        pathlingContext.read().delta(tempDatabasePath.toString()),
+        tempDatabasePath.toString(),
+        serverConfiguration,
+        cacheableDatabase,
+        patientCompartmentService);
+  }
+
+  private void write(@Nonnull final String resourceType, @Nonnull final Dataset<Row> resources) {
+    resources
+        .coalesce(1)
+        .write()
+        .format("delta")
+        .option("maxRecordsPerFile", RESOURCES_PER_FILE)
+        .save(tempDatabasePath.resolve(resourceType + ".parquet").toString());
+  }
+
+  @Nonnull
+  private Dataset<Row> table(@Nonnull final String resourceType) {
+    return sparkSession
+        .read()
+        .format("delta")
+        .load(tempDatabasePath.resolve(resourceType + ".parquet").toString());
+  }
+
+  @Nonnull
+  private static Patient patient(final int index) {
+    final Patient patient = new Patient();
+    patient.setId("patient-" + index);
+    patient.setGender(index % 2 == 0 ? AdministrativeGender.FEMALE : AdministrativeGender.MALE);
+    return patient;
+  }
+
+  @Nonnull
+  private static Condition condition(final int index) {
+    final Condition condition = new Condition();
+    condition.setId("condition-" + index);
+    condition.setSubject(new Reference("Patient/patient-" + index));
+    return condition;
+  }
+}
@@ -0,0 +1,324 @@
+/*
+ * Copyright © 2018-2026 Commonwealth Scientific and Industrial Research
+ * Organisation (CSIRO) ABN 41 687 119 230.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.pathling.operations.update;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import au.csiro.pathling.cache.CacheableDatabase;
+import au.csiro.pathling.config.GroupCommitConfiguration;
+import au.csiro.pathling.encoders.FhirEncoders;
+import au.csiro.pathling.errors.ResourceNotFoundError;
+import au.csiro.pathling.io.PendingWriteOverlay;
+import au.csiro.pathling.io.PendingWriteOverlay.PendingWrite;
+import au.csiro.pathling.library.PathlingContext;
+import au.csiro.pathling.operations.delete.DeleteExecutor;
+import au.csiro.pathling.test.SpringBootUnitTest;
+import au.csiro.pathling.util.FhirServerTestConfiguration;
+import io.delta.tables.DeltaTable;
+import jakarta.annotation.Nonnull;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Encoders;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.SparkSession;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+
+/**
+ * Tests for {@link GroupCommitWriter}.
+ *
+ * @author John Grimes
+ */
+@Import(FhirServerTestConfiguration.class)
+@SpringBootUnitTest
+class GroupCommitWriterTest {
+
+  @Autowired private SparkSession sparkSession;
+
+  @Autowired private PathlingContext pathlingContext;
+
+  @Autowired private FhirEncoders fhirEncoders;
+
+  @Autowired private CacheableDatabase cacheableDatabase;
+
+  @TempDir private Path tempDatabasePath;
+
+  private PendingWriteOverlay overlay;
+
+  private GroupCommitConfiguration configuration;
+
+  private GroupCommitWriter writer;
+
+  @BeforeEach
+  void setUp() {
+    overlay = new PendingWriteOverlay(sparkSession, fhirEncoders);
+    configuration = new GroupCommitConfiguration();
+  }
+
+  @AfterEach
+  void tearDown() {
+    if (writer != null) {
+      writer.shutdown();
+    }
+  }
+
+  @Test
+  void concurrentWritesAreCommittedTogether() throws Exception {
+    // Given: a batch size equal to the number of concurrent writers, and a window long enough that
+    // the commit is triggered by the batch size.
+    final int writers = 8;
+    configuration.setMaxBatchSize(writers);
+    configuration.setMaxWait(60_000);
+    createWriter();
+    final UpdateExecutor updateExecutor = createUpdateExecutor();
+
+    // When: each writer updates a different patient concurrently.
+    try (final ExecutorService executor = Executors.newFixedThreadPool(writers)) {
+      final List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < writers; i++) {
+        final Patient patient = patient("patient-" + i, "Family" + i);
+        futures.add(executor.submit(() -> updateExecutor.merge("Patient", patient)));
+      }
+      for (final Future<?> future : futures) {
+        future.get();
+      }
+    }
+
+    // Then: all the patients were written within a single commit.
+    assertThat(ids()).hasSize(writers);
+    assertThat(DeltaTable.forPath(sparkSession, tablePath()).history().count()).isEqualTo(1);
+  }
+
+  @Test
+  void committedChangesAreRecordedInChangeDataFeed() {
+    // Given: a table created by the writer.
+    createWriter();
+    writer.commit("Patient", List.of(PendingWrite.upsert(patient("patient-1", "Original"))));
+
+    // When: the patient is updated.
+    writer.commit("Patient", List.of(PendingWrite.upsert(patient("patient-1", "Updated"))));
+
+    // Then: the update can be read from the change data feed of the table.
+    final List<String> changeTypes =
+        sparkSession
+            .read()
+            .format("delta")
+            .option("readChangeFeed", "true")
+            .option("startingVersion", 1)
+            .load(tablePath())
+            .select("_change_type")
+            .as(Encoders.STRING())
+            .collectAsList();
+    assertThat(changeTypes).containsExactlyInAnyOrder("update_preimage", "update_postimage");
+  }
+
+  @Test
+  void laterWritesToSameResourceWin() {
+    // Given: an existing table containing two patients.
+    createWriter();
+    writer.commit(
+        "Patient",
+        List.of(
+            PendingWrite.upsert(patient("patient-1", "Original")),
+            PendingWrite.upsert(patient("patient-2", "Original"))));
+
+    // When: a single commit updates one patient twice, deletes the other, and creates a third.
+    writer.commit(
+        "Patient",
+        List.of(
+            PendingWrite.upsert(patient("patient-1", "First")),
+            PendingWrite.delete("patient-2"),
+            PendingWrite.upsert(patient("patient-3", "New")),
+            PendingWrite.upsert(patient("patient-1", "Second"))));
+
+    // Then: the table reflects the last write to each resource.
+    final Dataset<Row> table = sparkSession.read().format("delta").load(tablePath());
+    assertThat(ids()).containsExactlyInAnyOrder("patient-1", "patient-3");
+    assertThat(
+            table
+                .filter("id = 'patient-1'")
+                .selectExpr("name[0].family")
+                .as(Encoders.STRING())
+                .first())
+        .isEqualTo("Second");
+    assertThat(table.columns()).doesNotContain("_pathling_delete");
+  }
+
+  @Test
+  void unchangedWritesAreNotCommitted() {
+    // Given: an existing patient.
+    createWriter();
+    writer.commit("Patient", List.of(PendingWrite.upsert(patient("patient-1", "Original"))));
+
+    // When: the patient is written again with identical content.
+    writer.commit("Patient", List.of(PendingWrite.upsert(patient("patient-1", "Original"))));
+
+    // Then: no new version of the table is created.
+    assertThat(DeltaTable.forPath(sparkSession, tablePath()).history().count()).isEqualTo(1);
+  }
+
+  @Test
+  void individualMergesSkipUnchangedAndDuplicateResources() {
+    // Given: an update executor that commits each merge individually, and an existing table.
+    final UpdateExecutor updateExecutor =
+        new UpdateExecutor(
+            pathlingContext, fhirEncoders, tempDatabasePath.toString(), cacheableDatabase, null);
+    updateExecutor.merge(
+        "Patient", List.of(patient("patient-1", "Original"), patient("patient-2", "Original")));
+
+    // When: a merge contains an unchanged patient and two versions of a changed patient, followed
+    // by a merge that contains only an unchanged patient.
+    updateExecutor.merge(
+        "Patient",
+        List.of(
+            patient("patient-1", "Original"),
+            patient("patient-2", "First"),
+            patient("patient-2", "Second")));
+    updateExecutor.merge("Patient", List.of(patient("patient-1", "Original")));
+
+    // Then: only the first of these merges created a new version, which reflects the last version
+    // of the changed patient.
+    assertThat(DeltaTable.forPath(sparkSession, tablePath()).history().count()).isEqualTo(2);
+    assertThat(
+            sparkSession
+                .read()
+                .format("delta")
+                .load(tablePath())
+                .filter("id = 'patient-2'")
+                .selectExpr("name[0].family")
+                .as(Encoders.STRING())
+                .collectAsList())
+        .containsExactly("Second");
+  }
+
+  @Test
+  void deletionsAreGroupedAndChecked() {
+    // Given: an existing patient.
+    configuration.setMaxWait(0);
+    createWriter();
+    createUpdateExecutor().merge("Patient", patient("patient-1", "Smith"));
+    final DeleteExecutor deleteExecutor =
+        new DeleteExecutor(
+            pathlingContext, tempDatabasePath.toString(), cacheableDatabase, writer, overlay);
+
+    // When: the patient is deleted.
+    deleteExecutor.delete("Patient", "patient-1");
+
+    // Then: the patient is removed, and a second deletion reports that it was not found.
+    assertThat(ids()).isEmpty();
+    assertThatThrownBy(() -> deleteExecutor.delete("Patient", "patient-1"))
+        .isInstanceOf(ResourceNotFoundError.class);
+  }
+
+  @Test
+  void overlayAppliesPendingWritesToReads() {
+    // Given: a committed table containing two patients.
+    createWriter();
+    writer.commit(
+        "Patient",
+        List.of(
+            PendingWrite.upsert(patient("patient-1", "Original")),
+            PendingWrite.upsert(patient("patient-2", "Original"))));
+    final Dataset<Row> table = sparkSession.read().format("delta").load(tablePath());
+
+    // When: an update, a deletion and a creation are pending.
+    overlay.put("Patient", PendingWrite.upsert(patient("patient-1", "Updated")));
+    overlay.put("Patient", PendingWrite.delete("patient-2"));
+    overlay.put("Patient", PendingWrite.upsert(patient("patient-3", "New")));
+    final Dataset<Row> result = overlay.apply("Patient", table);
+
+    // Then: reads see the pending state of each resource.
+    assertThat(result.select("id").as(Encoders.STRING()).collectAsList())
+        .containsExactlyInAnyOrder("patient-1", "patient-3");
+    assertThat(
+            result
+                .filter("id = 'patient-1'")
+                .selectExpr("name[0].family")
+                .as(Encoders.STRING())
+                .first())
+        .isEqualTo("Updated");
+  }
+
+  @Test
+  void overlayOnlyRemovesCommittedVersion() {
+    // Given: a write that has been superseded by a later write to the same resource.
+    final PendingWrite first = PendingWrite.upsert(patient("patient-1", "First"));
+    final PendingWrite second = PendingWrite.upsert(patient("patient-1", "Second"));
+    overlay.put("Patient", first);
+    overlay.put("Patient", second);
+
+    // When: the first write is committed.
+    overlay.remove("Patient", first);
+
+    // Then: the later write remains pending.
+    assertThat(overlay.get("Patient", "patient-1")).containsSame(second);
+  }
+
+  private void createWriter() {
+    writer =
+        new GroupCommitWriter(
+            pathlingContext,
+            fhirEncoders,
+            tempDatabasePath.toString(),
+            cacheableDatabase,
+            overlay,
+            null,
+            configuration);
+  }
+
+  @Nonnull
+  private UpdateExecutor createUpdateExecutor() {
+    return new UpdateExecutor(
+        pathlingContext, fhirEncoders, tempDatabasePath.toString(), cacheableDatabase, writer);
+  }
+
+  @Nonnull
+  private String tablePath() {
+    return tempDatabasePath.resolve("Patient.parquet").toString();
+  }
+
+  @Nonnull
+  private List<String> ids() {
+    return sparkSession
+        .read()
+        .format("delta")
+        .load(tablePath())
+        .select("id")
+        .as(Encoders.STRING())
+        .collectAsList();
+  }
+
+  @Nonnull
+  private static Patient patient(@Nonnull final String id, @Nonnull final String family) {
+    final Patient patient = new Patient();
+    patient.setId(id);
+    patient.addName().setFamily(family);
+    return patient;
+  }
+}
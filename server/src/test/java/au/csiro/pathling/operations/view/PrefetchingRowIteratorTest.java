@@ -0,0 +1,121 @@
+/*
+ * Copyright © 2018-2026 Commonwealth Scientific and Industrial Research
+ * Organisation (CSIRO) ABN 41 687 119 230.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.pathling.operations.view;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import au.csiro.pathling.test.SpringBootUnitTest;
+import au.csiro.pathling.util.FhirServerTestConfiguration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.SparkSession;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+
+/**
+ * Unit tests for {@link PrefetchingRowIterator}.
+ *
+ * @author John Grimes
+ */
+@Import(FhirServerTestConfiguration.class)
+@SpringBootUnitTest
+class PrefetchingRowIteratorTest {
+
+  @Autowired private SparkSession sparkSession;
+
+  @Test
+  void orderedDeliveryPreservesPartitionOrder() {
+    final Dataset<Row> dataset = sparkSession.range(0, 1000, 1, 20).toDF();
+
+    final List<Long> values = collect(new PrefetchingRowIterator(dataset, 4, true));
+
+    final List<Long> expected = dataset.toJavaRDD().map(row -> row.getLong(0)).collect();
+    assertThat(values).containsExactlyElementsOf(expected);
+  }
+
+  @Test
+  void unorderedDeliveryReturnsAllRows() {
+    final Dataset<Row> dataset = sparkSession.range(0, 1000, 1, 20).toDF();
+
+    final List<Long> values = collect(new PrefetchingRowIterator(dataset, 4, false));
+
+    assertThat(values).hasSize(1000).doesNotHaveDuplicates();
+    assertThat(values).allSatisfy(value -> assertThat(value).isBetween(0L, 999L));
+  }
+
+  @Test
+  void windowLargerThanPartitionCount() {
+    final Dataset<Row> dataset = sparkSession.range(0, 10, 1, 2).toDF();
+
+    final List<Long> values = collect(new PrefetchingRowIterator(dataset, 16, true));
+
+    assertThat(values).containsExactly(0L, 1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L);
+  }
+
+  @Test
+  void emptyPartitionsAreSkipped() {
+    final Dataset<Row> dataset = sparkSession.range(0, 100, 1, 10).toDF().filter("id < 5");
+
+    final List<Long> values = collect(new PrefetchingRowIterator(dataset, 3, true));
+
+    assertThat(values).containsExactly(0L, 1L, 2L, 3L, 4L);
+  }
+
+  @Test
+  void closingEarlyStopsIteration() {
+    final Dataset<Row> dataset = sparkSession.range(0, 1000, 1, 20).toDF();
+    final PrefetchingRowIterator iterator = new PrefetchingRowIterator(dataset, 4, true);
+
+    assertThat(iterator.next().getLong(0)).isZero();
+    iterator.close();
+
+    assertThat(iterator.hasNext()).isTrue();
+    // The remainder of the current partition is still available, but no further partitions are
+    // fetched.
+    int remaining = 0;
+    while (iterator.hasNext()) {
+      iterator.next();
+      remaining++;
+    }
+    assertThat(remaining).isEqualTo(49);
+    assertThatThrownBy(iterator::next).isInstanceOf(NoSuchElementException.class);
+  }
+
+  @Test
+  void rejectsEmptyWindow() {
+    final Dataset<Row> dataset = sparkSession.range(0, 10).toDF();
+
+    assertThatThrownBy(() -> new PrefetchingRowIterator(dataset, 0, true))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  private static List<Long> collect(final PrefetchingRowIterator iterator) {
+    final List<Long> values = new ArrayList<>();
+    try (iterator) {
+      while (iterator.hasNext()) {
+        values.add(iterator.next().getLong(0));
+      }
+    }
+    return values;
+  }
+}
@@ -22,6 +22,7 @@ import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 import au.csiro.pathling.config.ServerConfiguration;
 import au.csiro.pathling.encoders.FhirEncoders;
+import au.csiro.pathling.io.OutputCompression;
 import au.csiro.pathling.library.PathlingContext;
 import au.csiro.pathling.library.io.source.QueryableDataSource;
 import au.csiro.pathling.operations.compartment.PatientCompartmentService;
@@ -34,11 +35,15 @@ import au.csiro.pathling.views.FhirView;
 import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
+import java.util.zip.GZIPInputStream;
 import org.apache.spark.sql.SparkSession;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.r4.model.Patient;
@@ -118,6 +123,40 @@ class ViewDefinitionExportExecutorTest {
     assertThat(outputs.get(0).fileUrls().get(0)).endsWith(".ndjson");
   }
 
+  @Test
+  void compressedNdjsonOutputCreatesGzipFiles() throws IOException {
+    // Given: a request for gzip-compressed NDJSON output.
+    final Patient patient = createPatient("test-1", "Smith");
+    executor = createExecutor(patient);
+    final ViewInput viewInput = new ViewInput("patients", createSimplePatientView());
+    final ViewDefinitionExportRequest request =
+        new ViewDefinitionExportRequest(
+            "http://example.org/$viewdefinition-export",
+            "http://example.org/fhir",
+            List.of(viewInput),
+            null,
+            ViewExportFormat.NDJSON,
+            true,
+            Collections.emptySet(),
+            null,
+            OutputCompression.GZIP);
+
+    // When: the export is executed.
+    final List<ViewExportOutput> outputs = executor.execute(request, UUID.randomUUID().toString());
+
+    // Then: the files are named with the gzip extension and contain the exported row.
+    final List<String> fileUrls = outputs.get(0).fileUrls();
+    assertThat(fileUrls).isNotEmpty().allMatch(url -> url.endsWith(".ndjson.gz"));
+    final StringBuilder content = new StringBuilder();
+    for (final String fileUrl : fileUrls) {
+      try (final InputStream input =
+          new GZIPInputStream(Files.newInputStream(Path.of(URI.create(fileUrl).getPath())))) {
+        content.append(new String(input.readAllBytes(), StandardCharsets.UTF_8));
+      }
+    }
+    assertThat(content.toString()).contains("test-1");
+  }
+
   // -------------------------------------------------------------------------
   // CSV output tests
   // -------------------------------------------------------------------------
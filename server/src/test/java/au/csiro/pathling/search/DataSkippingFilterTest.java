@@ -0,0 +1,183 @@
+/*
+ * Copyright © 2018-2026 Commonwealth Scientific and Industrial Research
+ * Organisation (CSIRO) ABN 41 687 119 230.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.pathling.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import au.csiro.pathling.encoders.FhirEncoders;
+import au.csiro.pathling.test.SpringBootUnitTest;
+import au.csiro.pathling.util.FhirServerTestConfiguration;
+import ca.uhn.fhir.context.FhirContext;
+import jakarta.annotation.Nonnull;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import org.apache.spark.sql.Column;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Encoders;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.SparkSession;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Reference;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+
+/**
+ * Unit tests for {@link DataSkippingFilter}.
+ *
+ * @author John Grimes
+ */
+@Import(FhirServerTestConfiguration.class)
+@SpringBootUnitTest
+class DataSkippingFilterTest {
+
+  @Autowired private SparkSession sparkSession;
+
+  @Autowired private FhirContext fhirContext;
+
+  @Autowired private FhirEncoders fhirEncoders;
+
+  private SearchParameterRegistry registry;
+
+  private Dataset<Row> observations;
+
+  @BeforeEach
+  void setUp() {
+    registry = SearchColumnBuilder.withDefaultRegistry(fhirContext).getRegistry();
+    observations =
+        sparkSession
+            .createDataset(
+                List.of(
+                    observation("obs-1", "Patient/p1", "2024-01-01T00:00:00Z"),
+                    observation("obs-2", "Patient/p2", "2024-06-01T00:00:00Z"),
+                    observation(
+                        "obs-3", "http://example.com/fhir/Patient/p1", "2025-02-01T00:00:00Z")),
+                fhirEncoders.of(Observation.class))
+            .toDF();
+  }
+
+  @Test
+  void relativeReferenceIsUsedWhenReferencesAreRelative() {
+    // When: a filter is derived from a search for the observations of a patient, with relative
+    // references declared.
+    final Optional<Column> filter = filter("subject=Patient/p1", true);
+
+    // Then: the filter compares the reference column with the reference.
+    assertThat(filter).isPresent();
+    assertThat(ids(filter.get())).containsExactly("obs-1");
+  }
+
+  @Test
+  void bareIdIsQualifiedWithTargetType() {
+    // When: a filter is derived from a search on a parameter restricted to patients.
+    final Optional<Column> filter = filter("patient=p2", true);
+
+    // Then: the filter matches the qualified reference.
+    assertThat(filter).isPresent();
+    assertThat(ids(filter.get())).containsExactly("obs-2");
+  }
+
+  @Test
+  void relativeReferenceIsNotUsedByDefault() {
+    // When: a filter is derived from a relative reference without relative references declared.
+    final Optional<Column> filter = filter("subject=Patient/p1", false);
+
+    // Then: no filter is derived, as the search also matches absolute references.
+    assertThat(filter).isEmpty();
+  }
+
+  @Test
+  void absoluteReferenceIsAlwaysUsed() {
+    // When: a filter is derived from an absolute reference.
+    final Optional<Column> filter = filter("subject=http://example.com/fhir/Patient/p1", false);
+
+    // Then: the filter matches the reference exactly.
+    assertThat(filter).isPresent();
+    assertThat(ids(filter.get())).containsExactly("obs-3");
+  }
+
+  @Test
+  void lastUpdatedRangeIsUsed() {
+    // When: a filter is derived from a range of last updated times.
+    final Optional<Column> filter = filter("_lastUpdated=ge2024-03-01&_lastUpdated=lt2025", false);
+
+    // Then: the filter matches the resources updated within the range.
+    assertThat(filter).isPresent();
+    assertThat(ids(filter.get())).containsExactly("obs-2");
+  }
+
+  @Test
+  void idAndReferenceFiltersAreCombined() {
+    // When: a filter is derived from a search with several criteria.
+    final Optional<Column> filter = filter("_id=obs-1,obs-2&subject=Patient/p2", true);
+
+    // Then: the filter requires all the criteria to match.
+    assertThat(filter).isPresent();
+    assertThat(ids(filter.get())).containsExactly("obs-2");
+  }
+
+  @Test
+  void criteriaWithModifiersAreNotUsed() {
+    // When: a filter is derived from a criterion with a modifier.
+    final Optional<Column> filter = filter("subject:Patient=p1", true);
+
+    // Then: no filter is derived.
+    assertThat(filter).isEmpty();
+  }
+
+  @Test
+  void referencesFilterRequiresSingleReferenceElements() {
+    // When: filters are derived from a single reference element and a repeating one.
+    final Optional<Column> subject =
+        DataSkippingFilter.fromReferences(
+            List.of("subject"), List.of("Patient/p1"), observations.schema());
+    final Optional<Column> performer =
+        DataSkippingFilter.fromReferences(
+            List.of("subject", "performer"), List.of("Patient/p1"), observations.schema());
+
+    // Then: only the single reference element can be used.
+    assertThat(subject).isPresent();
+    assertThat(ids(subject.get())).containsExactly("obs-1");
+    assertThat(performer).isEmpty();
+  }
+
+  @Nonnull
+  private Optional<Column> filter(
+      @Nonnull final String queryString, final boolean relativeReferences) {
+    return DataSkippingFilter.fromQueryString(
+        registry, "Observation", queryString, observations.schema(), relativeReferences);
+  }
+
+  @Nonnull
+  private List<String> ids(@Nonnull final Column filter) {
+    return observations.filter(filter).select("id").as(Encoders.STRING()).collectAsList();
+  }
+
+  @Nonnull
+  private static Observation observation(
+      @Nonnull final String id, @Nonnull final String subject, @Nonnull final String lastUpdated) {
+    final Observation observation = new Observation();
+    observation.setId(id);
+    observation.setSubject(new Reference(subject));
+    observation.getMeta().setLastUpdated(Date.from(Instant.parse(lastUpdated)));
+    return observation;
+  }
+}
@@ -17,6 +17,7 @@
 
 package au.csiro.pathling.search;
 
+import static au.csiro.pathling.util.TestHelpers.containsJoin;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
@@ -36,6 +37,8 @@ import java.util.Date;
 import java.util.List;
 import java.util.Optional;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
 import org.apache.spark.sql.SparkSession;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.r4.model.DateType;
@@ -124,6 +127,24 @@ class SearchExecutorTest {
             });
   }
 
+  @Test
+  void filterIsAppliedWithoutJoin() {
+    // Given: a FHIRPath filter over the subject resource.
+    final StringAndListParam filters = new StringAndListParam();
+    filters.addAnd(new StringParam("gender = 'male'"));
+    final Dataset<Row> dataset = dataSource.read("Patient");
+
+    // When: the search dataset is built.
+    final SearchExecutor executor =
+        new SearchExecutor(
+            fhirContext, dataSource, fhirEncoders, "Patient", null, Optional.of(filters), false);
+
+    // Then: the filter is applied within a single scan of the resource data.
+    final Dataset<Row> result = executor.getResult();
+    assertThat(containsJoin(result.queryExecution().analyzed())).isFalse();
+    assertThat(result.schema()).isEqualTo(dataset.schema());
+  }
+
   @Test
   void searchWithAndFilters() {
     // Given: AND conditions (multiple filter parameters).
@@ -277,6 +298,69 @@ class SearchExecutorTest {
     assertThat(resources).hasSize(25);
   }
 
+  @Test
+  void totalNoneOmitsCount() {
+    // Given: a search that does not request a total.
+    final IBundleProvider result =
+        new SearchExecutor(
+            fhirContext,
+            dataSource,
+            fhirEncoders,
+            "Patient",
+            null,
+            Optional.empty(),
+            false,
+            null,
+            SearchTotalMode.NONE,
+            0);
+
+    // Then: no total is reported, but the resources are still returned.
+    assertThat(result.size()).isNull();
+    assertThat(result.getResources(0, 10)).hasSize(10);
+  }
+
+  @Test
+  void totalEstimateWithoutDeltaStatisticsOmitsCount() {
+    // Given: a search over a data source that is not backed by Delta statistics.
+    final IBundleProvider result =
+        new SearchExecutor(
+            fhirContext,
+            dataSource,
+            fhirEncoders,
+            "Patient",
+            null,
+            Optional.empty(),
+            false,
+            null,
+            SearchTotalMode.ESTIMATE,
+            0);
+
+    // Then: no estimate is available, so no total is reported.
+    assertThat(result.size()).isNull();
+  }
+
+  @Test
+  void totalAccurateWaitsForCount() {
+    // Given: a search that requests an accurate total with no timeout.
+    final StringAndListParam filters = new StringAndListParam();
+    filters.addAnd(new StringParam("gender = 'male'"));
+    final IBundleProvider result =
+        new SearchExecutor(
+            fhirContext,
+            dataSource,
+            fhirEncoders,
+            "Patient",
+            null,
+            Optional.of(filters),
+            false,
+            null,
+            SearchTotalMode.ACCURATE,
+            0);
+
+    // Then: the exact count is reported.
+    assertThat(result.size()).isEqualTo(25);
+  }
+
   // ========== Standard search parameter tests (tasks 1.1-1.6) ==========
 
   @Test
@@ -457,4 +541,36 @@ class SearchExecutorTest {
 
     assertThat(result.size()).isEqualTo(50);
   }
+
+  @Test
+  void normaliseQueryIgnoresParameterOrder() {
+    final StringAndListParam filters1 = new StringAndListParam();
+    filters1.addAnd(new StringParam("gender = 'male'"));
+    filters1.addAnd(
+        new StringOrListParam()
+            .addOr(new StringParam("active = true"))
+            .addOr(new StringParam("active.empty()")));
+    final StringAndListParam filters2 = new StringAndListParam();
+    filters2.addAnd(
+        new StringOrListParam()
+            .addOr(new StringParam("active.empty()"))
+            .addOr(new StringParam("active = true")));
+    filters2.addAnd(new StringParam("gender = 'male'"));
+
+    assertThat(
+            SearchExecutor.normaliseQuery(
+                "gender=male&birthdate=ge1990-01-01", Optional.of(filters1)))
+        .isEqualTo(
+            SearchExecutor.normaliseQuery(
+                "birthdate=ge1990-01-01&gender=male", Optional.of(filters2)));
+  }
+
+  @Test
+  void normaliseQueryDistinguishesStandardParametersFromFilters() {
+    final StringAndListParam filters = new StringAndListParam();
+    filters.addAnd(new StringParam("gender=male"));
+
+    assertThat(SearchExecutor.normaliseQuery("gender=male", Optional.empty()))
+        .isNotEqualTo(SearchExecutor.normaliseQuery(null, Optional.of(filters)));
+  }
 }
@@ -24,6 +24,7 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import au.csiro.pathling.cache.SearchResultCache;
 import au.csiro.pathling.config.ServerConfiguration;
 import au.csiro.pathling.encoders.FhirEncoders;
 import au.csiro.pathling.library.io.source.QueryableDataSource;
@@ -52,6 +53,7 @@ class SearchProviderFactoryTest {
   @Mock private ServerConfiguration configuration;
   @Mock private QueryableDataSource dataSource;
   @Mock private FhirEncoders fhirEncoders;
+  @Mock private SearchResultCache resultCache;
 
   private SearchProviderFactory factory;
   private FhirContext fhirContext;
@@ -61,14 +63,15 @@ class SearchProviderFactoryTest {
     fhirContext = FhirContext.forR4();
     factory =
         new SearchProviderFactory(
-            applicationContext, configuration, fhirContext, dataSource, fhirEncoders);
+            applicationContext, configuration, fhirContext, dataSource, fhirEncoders, resultCache);
   }
 
   @Test
   void createsProviderForResourceType() {
     // The factory should request a SearchProvider bean for the resolved resource class.
     final SearchProvider mockProvider = mock(SearchProvider.class);
-    when(applicationContext.getBean(eq(SearchProvider.class), any(), any(), any(), any(), any()))
+    when(applicationContext.getBean(
+            eq(SearchProvider.class), any(), any(), any(), any(), any(), any()))
         .thenReturn(mockProvider);
 
     final SearchProvider result = factory.createSearchProvider(ResourceType.PATIENT);
@@ -81,14 +84,16 @@ class SearchProviderFactoryTest {
             fhirContext,
             dataSource,
             fhirEncoders,
-            Patient.class);
+            Patient.class,
+            resultCache);
   }
 
   @Test
   void createsProviderForResourceTypeCode() {
     // The factory should also support creation by string resource type code.
     final SearchProvider mockProvider = mock(SearchProvider.class);
-    when(applicationContext.getBean(eq(SearchProvider.class), any(), any(), any(), any(), any()))
+    when(applicationContext.getBean(
+            eq(SearchProvider.class), any(), any(), any(), any(), any(), any()))
         .thenReturn(mockProvider);
 
     final SearchProvider result = factory.createSearchProvider("Patient");
@@ -101,6 +106,7 @@ class SearchProviderFactoryTest {
             fhirContext,
             dataSource,
             fhirEncoders,
-            Patient.class);
+            Patient.class,
+            resultCache);
   }
 }
@@ -18,7 +18,10 @@
 package au.csiro.pathling.search;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
+import au.csiro.pathling.errors.InvalidUserInputError;
+import ca.uhn.fhir.rest.api.server.SystemRequestDetails;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -80,4 +83,32 @@ class SearchProviderTest {
     final Map<String, List<String>> params = Map.of("gender:not", List.of("male"));
     assertThat(SearchProvider.buildQueryString(params)).isEqualTo("gender:not=male");
   }
+
+  @Test
+  void totalModeDefaultsWhenParameterAbsent() {
+    // Requests without a _total parameter should use the configured default.
+    assertThat(SearchProvider.getTotalMode(null, SearchTotalMode.ESTIMATE))
+        .isEqualTo(SearchTotalMode.ESTIMATE);
+    assertThat(SearchProvider.getTotalMode(new SystemRequestDetails(), SearchTotalMode.NONE))
+        .isEqualTo(SearchTotalMode.NONE);
+  }
+
+  @Test
+  void totalModeReadFromParameter() {
+    // The _total parameter should override the configured default.
+    final SystemRequestDetails requestDetails = new SystemRequestDetails();
+    requestDetails.setParameters(Map.of("_total", new String[] {"none"}));
+    assertThat(SearchProvider.getTotalMode(requestDetails, SearchTotalMode.ACCURATE))
+        .isEqualTo(SearchTotalMode.NONE);
+  }
+
+  @Test
+  void totalModeRejectsUnknownValue() {
+    // An unsupported _total value should be reported as invalid user input.
+    final SystemRequestDetails requestDetails = new SystemRequestDetails();
+    requestDetails.setParameters(Map.of("_total", new String[] {"exact"}));
+    assertThatThrownBy(() -> SearchProvider.getTotalMode(requestDetails, SearchTotalMode.ACCURATE))
+        .isInstanceOf(InvalidUserInputError.class)
+        .hasMessageContaining("_total");
+  }
 }
@@ -0,0 +1,101 @@
+/*
+ * Copyright © 2018-2026 Commonwealth Scientific and Industrial Research
+ * Organisation (CSIRO) ABN 41 687 119 230.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.csiro.pathling.search;
+
+import static au.csiro.pathling.util.TestHelpers.containsJoin;
+import static org.apache.spark.sql.functions.col;
+import static org.apache.spark.sql.functions.lit;
+import static org.apache.spark.sql.functions.max;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import au.csiro.pathling.test.SpringBootUnitTest;
+import au.csiro.pathling.util.FhirServerTestConfiguration;
+import jakarta.annotation.Nonnull;
+import java.util.List;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Encoders;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.SparkSession;
+import org.apache.spark.sql.expressions.Window;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+
+/**
+ * Unit tests for {@link SingleScanFilter}.
+ *
+ * @author John Grimes
+ */
+@Import(FhirServerTestConfiguration.class)
+@SpringBootUnitTest
+class SingleScanFilterTest {
+
+  @Autowired private SparkSession sparkSession;
+
+  private Dataset<Row> dataset;
+
+  @BeforeEach
+  void setUp() {
+    dataset =
+        sparkSession
+            .range(0, 10)
+            .selectExpr("concat('id-', id) AS id", "id % 3 AS group", "id AS value");
+  }
+
+  @Test
+  void rowLocalFilterIsAppliedWithoutJoin() {
+    // Given: a filter derived only from the values within each row.
+    final Dataset<Row> result = SingleScanFilter.apply(dataset, col("value").lt(3));
+
+    // Then: the matching rows are returned, with the schema of the input and no join in the plan.
+    assertThat(SingleScanFilter.requiresJoin(dataset, col("value").lt(3))).isFalse();
+    assertThat(ids(result)).containsExactlyInAnyOrder("id-0", "id-1", "id-2");
+    assertThat(result.schema()).isEqualTo(dataset.schema());
+    assertThat(containsJoin(result.queryExecution().analyzed())).isFalse();
+  }
+
+  @Test
+  void nullFilterValuesAreTreatedAsFalse() {
+    // Given: a filter that evaluates to null for some rows.
+    final Dataset<Row> result =
+        SingleScanFilter.apply(
+            dataset, col("value").lt(3).and(col("group").equalTo(0).or(lit(null))));
+
+    // Then: only rows where the filter is true are returned.
+    assertThat(ids(result)).containsExactly("id-0");
+  }
+
+  @Test
+  void windowFilterRequiresJoin() {
+    // Given: a filter that depends upon values from other rows.
+    final var filter = col("value").equalTo(max(col("value")).over(Window.partitionBy("group")));
+
+    // Then: the filter is detected as requiring a join, and still produces the correct result.
+    assertThat(SingleScanFilter.requiresJoin(dataset, filter)).isTrue();
+    final Dataset<Row> result = SingleScanFilter.apply(dataset, filter);
+    assertThat(ids(result)).containsExactlyInAnyOrder("id-7", "id-8", "id-9");
+    assertThat(result.schema()).isEqualTo(dataset.schema());
+    assertThat(containsJoin(result.queryExecution().analyzed())).isTrue();
+  }
+
+  @Nonnull
+  private static List<String> ids(@Nonnull final Dataset<Row> result) {
+    return result.select("id").as(Encoders.STRING()).collectAsList();
+  }
+}
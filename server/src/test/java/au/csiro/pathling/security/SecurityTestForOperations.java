@@ -175,6 +175,7 @@ abstract class SecurityTestForOperations<T> extends SecurityTest {
             type,
             null,
             null,
+            null,
             requestDetails);
     try {
       // Convert Parameters to JSON using FHIR context.
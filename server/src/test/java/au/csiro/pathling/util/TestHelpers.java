@@ -29,8 +29,11 @@ import java.nio.charset.StandardCharsets;
 import org.apache.spark.sql.Dataset;
 import org.apache.spark.sql.Row;
 import org.apache.spark.sql.SparkSession;
+import org.apache.spark.sql.catalyst.plans.logical.Join;
+import org.apache.spark.sql.catalyst.plans.logical.LogicalPlan;
 import org.hl7.fhir.r4.model.Enumerations.ResourceType;
 import org.springframework.http.MediaType;
+import scala.jdk.javaapi.CollectionConverters;
 
 /**
  * @author John Grimes
@@ -109,4 +112,16 @@ public abstract class TestHelpers {
     assertNotNull(dataset);
     return dataset;
   }
+
+  /**
+   * Determines whether a logical plan contains a join at any level.
+   *
+   * @param plan the plan to inspect
+   * @return true if the plan contains a join
+   */
+  public static boolean containsJoin(@Nonnull final LogicalPlan plan) {
+    return plan instanceof Join
+        || CollectionConverters.asJava(plan.children()).stream()
+            .anyMatch(TestHelpers::containsJoin);
+  }
 }